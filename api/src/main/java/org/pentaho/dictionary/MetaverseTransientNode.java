@@ -17,6 +17,7 @@ import org.pentaho.metaverse.api.IIdentifierModifiable;
 import org.pentaho.metaverse.api.ILogicalIdGenerator;
 import org.pentaho.metaverse.api.IMetaverseLink;
 import org.pentaho.metaverse.api.IMetaverseNode;
+import org.pentaho.metaverse.api.LogicalIdCache;
 import org.pentaho.metaverse.api.PropertiesHolder;
 
 import java.util.ArrayList;
@@ -32,7 +33,7 @@ public class MetaverseTransientNode extends PropertiesHolder implements IMetaver
    */
   protected List<IMetaverseLink> links = new ArrayList<IMetaverseLink>();
   protected ILogicalIdGenerator logicalIdGenerator = DictionaryConst.LOGICAL_ID_GENERATOR_DEFAULT;
-  private String logicalId;
+  private final LogicalIdCache logicalIdCache = new LogicalIdCache();
 
   /**
    * Instantiates a new (empty) metaverse transient node.
@@ -133,17 +134,16 @@ public class MetaverseTransientNode extends PropertiesHolder implements IMetaver
   public String getLogicalId() {
     if ( logicalIdGenerator == null ) {
       return getStringID();
-    } else if ( logicalId == null || isDirty() ) {
-      logicalId = logicalIdGenerator.generateId( this );
     }
 
+    String logicalId = logicalIdCache.getLogicalId( logicalIdGenerator, this );
     return logicalId == null ? getStringID() : logicalId;
   }
 
   @Override
   public void setLogicalIdGenerator( ILogicalIdGenerator idGenerator ) {
     // clear out the logicalId so it will be re-generated on the next call to getLogicalId
-    logicalId = null;
+    logicalIdCache.clear();
     logicalIdGenerator = idGenerator;
   }
 }
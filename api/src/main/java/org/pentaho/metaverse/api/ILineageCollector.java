@@ -77,4 +77,15 @@ public interface ILineageCollector {
    */
   void compressArtifacts( List<String> paths, OutputStream os );
 
+  /**
+   * Rebuilds whatever the collector keeps to list artifacts quickly from the artifacts themselves, for artifacts
+   * written or removed by other means than the lineage writer
+   * @return the number of artifacts found
+   * @throws IllegalArgumentException when the artifacts cannot be read or the index cannot be written
+   * @throws UnsupportedOperationException when the collector keeps no such index
+   */
+  default int rebuildIndex() throws IllegalArgumentException {
+    throw new UnsupportedOperationException();
+  }
+
 }
@@ -24,6 +24,25 @@ public interface IMetaverseConfig {
   String KETTLE_LINEAGE_GENERATE_SUBGRAPHS = "KETTLE_LINEAGE_GENERATE_SUBGRAPHS";
   String KETTLE_LINEAGE_CONSOLIDATE_SUBGRAPHS = "KETTLE_LINEAGE_CONSOLIDATE_SUBGRAPHS";
   String KETTLE_LINEAGE_EXTERNAL_RESOURCE_CACHE_EXPIRE_TIME = "KETTLE_LINEAGE_EXTERNAL_RESOURCE_CACHE_EXPIRE_TIME";
+  String KETTLE_LINEAGE_WEBSERVICE_RESOURCE_CAPTURE = "KETTLE_LINEAGE_WEBSERVICE_RESOURCE_CAPTURE";
+  String KETTLE_LINEAGE_WEBSERVICE_RESOURCE_LIMIT = "KETTLE_LINEAGE_WEBSERVICE_RESOURCE_LIMIT";
+  String KETTLE_LINEAGE_EXECUTOR_POOL_SIZE = "KETTLE_LINEAGE_EXECUTOR_POOL_SIZE";
+  String KETTLE_LINEAGE_EXECUTOR_QUEUE_DEPTH = "KETTLE_LINEAGE_EXECUTOR_QUEUE_DEPTH";
+  String KETTLE_LINEAGE_EXECUTOR_BACKPRESSURE = "KETTLE_LINEAGE_EXECUTOR_BACKPRESSURE";
+  String KETTLE_LINEAGE_DESIGN_GRAPH_CACHE_SIZE = "KETTLE_LINEAGE_DESIGN_GRAPH_CACHE_SIZE";
+  String KETTLE_LINEAGE_DESIGN_GRAPH_CACHE_EXPIRE_TIME = "KETTLE_LINEAGE_DESIGN_GRAPH_CACHE_EXPIRE_TIME";
+  String KETTLE_LINEAGE_ANALYSIS_PARALLELISM = "KETTLE_LINEAGE_ANALYSIS_PARALLELISM";
+  String KETTLE_LINEAGE_EXECUTION_OUTPUT_COMPRESSION = "KETTLE_LINEAGE_EXECUTION_OUTPUT_COMPRESSION";
+  String KETTLE_LINEAGE_DOWNLOAD_COMPRESSION_LEVEL = "KETTLE_LINEAGE_DOWNLOAD_COMPRESSION_LEVEL";
+  String KETTLE_LINEAGE_CATALOG_PUBLISH_QUEUE_SIZE = "KETTLE_LINEAGE_CATALOG_PUBLISH_QUEUE_SIZE";
+  String KETTLE_LINEAGE_CATALOG_PUBLISH_BATCH_SIZE = "KETTLE_LINEAGE_CATALOG_PUBLISH_BATCH_SIZE";
+  String KETTLE_LINEAGE_CATALOG_PUBLISH_MAX_RETRIES = "KETTLE_LINEAGE_CATALOG_PUBLISH_MAX_RETRIES";
+  String KETTLE_LINEAGE_CATALOG_SPILL_FOLDER = "KETTLE_LINEAGE_CATALOG_SPILL_FOLDER";
+  String KETTLE_LINEAGE_SEARCH_MAX_DEPTH = "KETTLE_LINEAGE_SEARCH_MAX_DEPTH";
+  String KETTLE_LINEAGE_SEARCH_MAX_RESULTS = "KETTLE_LINEAGE_SEARCH_MAX_RESULTS";
+  String KETTLE_LINEAGE_SEARCH_TIMEOUT = "KETTLE_LINEAGE_SEARCH_TIMEOUT";
+  String KETTLE_LINEAGE_SHARE_OUTPUT_FIELD_NODES = "KETTLE_LINEAGE_SHARE_OUTPUT_FIELD_NODES";
+  String KETTLE_LINEAGE_HASH_LOGICAL_IDS = "KETTLE_LINEAGE_HASH_LOGICAL_IDS";
 
 
   void setExecutionRuntime( final String executionRuntime );
@@ -53,4 +72,12 @@ public interface IMetaverseConfig {
   void setExternalResourceCacheExpireTime( final String cacheExpire );
 
   String getExternalResourceCacheExpireTime();
+
+  void setShareOutputFieldNodes( final boolean shareOutputFieldNodes );
+
+  boolean getShareOutputFieldNodes();
+
+  void setHashLogicalIds( final boolean hashLogicalIds );
+
+  boolean getHashLogicalIds();
 }
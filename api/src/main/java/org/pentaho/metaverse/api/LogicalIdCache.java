@@ -0,0 +1,95 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.api;
+
+import java.util.Set;
+
+/**
+ * Holds the logical id generated for a node along with the values of the logical id properties it was generated from.
+ * The id is only generated again once one of those values changes, rather than after any property change.
+ */
+public class LogicalIdCache {
+
+  private static final String[] NO_KEYS = new String[ 0 ];
+
+  private String logicalId;
+  private ILogicalIdGenerator generator;
+  private String[] keys;
+  private Object[] values;
+
+  /**
+   * Returns the logical id of the given node, generating it if none was generated yet, or if the generator or the value
+   * of one of its logical id properties changed since.
+   *
+   * @param idGenerator the logical id generator of the node
+   * @param node        the node
+   * @return the logical id, or null if the generator does not produce one
+   */
+  public String getLogicalId( ILogicalIdGenerator idGenerator, IHasProperties node ) {
+    if ( logicalId == null || generator != idGenerator || !isCurrent( idGenerator, node ) ) {
+      String[] currentKeys = getKeys( idGenerator );
+      Object[] currentValues = getValues( currentKeys, node );
+      logicalId = idGenerator.generateId( node );
+      generator = idGenerator;
+      keys = currentKeys;
+      values = currentValues;
+    }
+    return logicalId;
+  }
+
+  /**
+   * Discards the cached logical id so it will be generated again on the next call to
+   * {@link #getLogicalId(ILogicalIdGenerator, IHasProperties)}
+   */
+  public void clear() {
+    logicalId = null;
+    generator = null;
+    keys = null;
+    values = null;
+  }
+
+  private boolean isCurrent( ILogicalIdGenerator idGenerator, IHasProperties node ) {
+    Set<String> currentKeys = idGenerator.getLogicalIdPropertyKeys();
+    if ( currentKeys == null ? keys.length != 0 : currentKeys.size() != keys.length ) {
+      return false;
+    }
+    int i = 0;
+    if ( currentKeys != null ) {
+      for ( String key : currentKeys ) {
+        if ( !key.equals( keys[ i ] ) || !equal( values[ i ], node.getProperty( key ) ) ) {
+          return false;
+        }
+        i++;
+      }
+    }
+    return true;
+  }
+
+  private static String[] getKeys( ILogicalIdGenerator idGenerator ) {
+    Set<String> keys = idGenerator.getLogicalIdPropertyKeys();
+    return keys == null ? NO_KEYS : keys.toArray( new String[ keys.size() ] );
+  }
+
+  private static Object[] getValues( String[] keys, IHasProperties node ) {
+    Object[] values = new Object[ keys.length ];
+    for ( int i = 0; i < keys.length; i++ ) {
+      values[ i ] = node.getProperty( keys[ i ] );
+    }
+    return values;
+  }
+
+  private static boolean equal( Object o1, Object o2 ) {
+    return o1 == null ? o2 == null : o1.equals( o2 );
+  }
+}
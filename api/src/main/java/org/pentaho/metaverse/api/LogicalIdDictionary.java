@@ -0,0 +1,108 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.api;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps hashed logical ids back to the canonical form they were computed from. A canonical form refers to the logical
+ * id of its namespace by hash, so {@link #expand(String)} resolves those references recursively to rebuild the nested
+ * JSON form a {@link MetaverseLogicalIdGenerator} produces when hashing is off.
+ */
+public class LogicalIdDictionary {
+
+  private static final LogicalIdDictionary INSTANCE = new LogicalIdDictionary();
+
+  private final Map<String, String> canonicalForms = new ConcurrentHashMap<>();
+
+  /**
+   * @return the dictionary logical id generators record hashed ids in, and namespaces resolve them through
+   */
+  public static LogicalIdDictionary getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Records the canonical form of a hashed logical id
+   *
+   * @param hashedId      the hashed logical id
+   * @param canonicalForm the canonical form the id was computed from
+   */
+  public void put( String hashedId, String canonicalForm ) {
+    if ( hashedId != null && canonicalForm != null ) {
+      canonicalForms.put( hashedId, canonicalForm );
+    }
+  }
+
+  /**
+   * Returns the canonical form of a hashed logical id
+   *
+   * @param hashedId the hashed logical id
+   * @return the canonical form, or null if the id is unknown
+   */
+  public String get( String hashedId ) {
+    return hashedId == null ? null : canonicalForms.get( hashedId );
+  }
+
+  /**
+   * Returns the readable form of a logical id, with every known hashed id it refers to replaced by its own readable
+   * form.
+   *
+   * @param logicalId the logical id
+   * @return the readable form, or the given id if it is unknown
+   */
+  public String expand( String logicalId ) {
+    String canonicalForm = get( logicalId );
+    if ( canonicalForm == null ) {
+      return logicalId;
+    }
+    StringBuilder sb = new StringBuilder( canonicalForm.length() );
+    int start = 0;
+    int open = -1;
+    for ( int i = 0; i < canonicalForm.length(); i++ ) {
+      char c = canonicalForm.charAt( i );
+      if ( c == '\\' ) {
+        // skip the escaped character
+        i++;
+      } else if ( c == '"' ) {
+        if ( open < 0 ) {
+          open = i;
+        } else {
+          String value = canonicalForm.substring( open + 1, i );
+          if ( canonicalForms.containsKey( value ) ) {
+            sb.append( canonicalForm, start, open ).append( expand( value ) );
+            start = i + 1;
+          }
+          open = -1;
+        }
+      }
+    }
+    return sb.append( canonicalForm, start, canonicalForm.length() ).toString();
+  }
+
+  /**
+   * @return the number of hashed ids in this dictionary
+   */
+  public int size() {
+    return canonicalForms.size();
+  }
+
+  /**
+   * Removes all hashed ids from this dictionary
+   */
+  public void clear() {
+    canonicalForms.clear();
+  }
+}
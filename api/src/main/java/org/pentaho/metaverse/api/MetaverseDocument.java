@@ -23,7 +23,7 @@ import org.pentaho.dictionary.DictionaryConst;
 public class MetaverseDocument extends PropertiesHolder implements IDocument {
 
   protected ILogicalIdGenerator logicalIdGenerator = DictionaryConst.LOGICAL_ID_GENERATOR_DEFAULT;
-  private String logicalId;
+  private final LogicalIdCache logicalIdCache = new LogicalIdCache();
 
   /**
    * The content of this document.
@@ -195,17 +195,16 @@ public class MetaverseDocument extends PropertiesHolder implements IDocument {
   public String getLogicalId() {
     if ( logicalIdGenerator == null ) {
       return getStringID();
-    } else if ( logicalId == null || isDirty() ) {
-      logicalId = logicalIdGenerator.generateId( this );
     }
 
+    String logicalId = logicalIdCache.getLogicalId( logicalIdGenerator, this );
     return logicalId == null ? getStringID() : logicalId;
   }
 
   @Override
   public void setLogicalIdGenerator( ILogicalIdGenerator idGenerator ) {
     // clear out the logicalId so it will be re-generated on the next call to getLogicalId
-    logicalId = null;
+    logicalIdCache.clear();
     logicalIdGenerator = idGenerator;
   }
 }
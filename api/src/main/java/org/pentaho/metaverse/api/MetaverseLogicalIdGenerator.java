@@ -15,7 +15,11 @@ package org.pentaho.metaverse.api;
 
 import org.apache.commons.lang.StringEscapeUtils;
 import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -23,6 +27,17 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+/**
+ * Generates logical ids from a sorted set of property keys. The canonical form of a logical id is a JSON object of
+ * those keys and their values, which embeds the logical id of the namespace the node lives in.
+ * <p>
+ * When hashing is on, the logical id is instead the 128-bit hash of the canonical form, as 32 hex characters. Since the
+ * namespace is then itself a hash, ids no longer grow with the nesting depth. The canonical forms are recorded in the
+ * shared {@link LogicalIdDictionary}, which {@link Namespace} resolves hashed namespaces through.
+ * <p>
+ * Unless set on the generator, hashing comes from the metaverse configuration, which is read once, by the first
+ * generated id: ids must not change form while a metaverse is being built.
+ */
 public class MetaverseLogicalIdGenerator implements ILogicalIdGenerator {
 
   protected SortedSet<String> logicalIdPropertyKeys;
@@ -32,6 +47,14 @@ public class MetaverseLogicalIdGenerator implements ILogicalIdGenerator {
   protected static final String RIGHT_BRACE = "}";
   protected static final String EQUALS = ":";
   protected static final String QUOTE = "\"";
+  protected static final String HASH_ALGORITHM = "MD5";
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  protected Boolean hashed;
+  protected LogicalIdDictionary dictionary;
+
+  private volatile boolean configured;
+  private boolean configuredHashed;
 
   public MetaverseLogicalIdGenerator( String... logicalIdPropertyKeys ) {
     setLogicalIdPropertyKeys( logicalIdPropertyKeys );
@@ -46,6 +69,42 @@ public class MetaverseLogicalIdGenerator implements ILogicalIdGenerator {
     this.dateFormat = dateFormat;
   }
 
+  /**
+   * @return true if generated ids are hashes of their canonical form, false if they are the canonical form itself
+   */
+  public boolean isHashed() {
+    if ( hashed != null ) {
+      return hashed;
+    }
+    configure();
+    return configuredHashed;
+  }
+
+  /**
+   * Sets whether generated ids are hashed, or null to follow the metaverse configuration
+   *
+   * @param hashed true to hash generated ids, false to keep their canonical form, null to use the configuration
+   */
+  public void setHashed( Boolean hashed ) {
+    this.hashed = hashed;
+  }
+
+  /**
+   * @return the dictionary the canonical form of hashed ids is recorded in
+   */
+  public LogicalIdDictionary getDictionary() {
+    return dictionary != null ? dictionary : LogicalIdDictionary.getInstance();
+  }
+
+  /**
+   * Sets a dictionary to record the canonical form of hashed ids in, besides the shared one
+   *
+   * @param dictionary the dictionary, or null to only use the shared one
+   */
+  public void setDictionary( LogicalIdDictionary dictionary ) {
+    this.dictionary = dictionary;
+  }
+
   @Override
   public void setLogicalIdPropertyKeys( String... keys ) {
     if ( logicalIdPropertyKeys == null ) {
@@ -110,9 +169,53 @@ public class MetaverseLogicalIdGenerator implements ILogicalIdGenerator {
         sb.append( RIGHT_BRACE );
       }
       logicalId = sb.toString();
+      if ( isHashed() ) {
+        String canonicalForm = logicalId;
+        logicalId = hash( canonicalForm );
+        // hashed namespaces are resolved through the shared dictionary
+        LogicalIdDictionary.getInstance().put( logicalId, canonicalForm );
+        if ( dictionary != null ) {
+          dictionary.put( logicalId, canonicalForm );
+        }
+      }
       propertiesNode.setProperty( DictionaryConst.PROPERTY_LOGICAL_ID, logicalId );
     }
     return logicalId;
   }
 
+  private void configure() {
+    if ( !configured ) {
+      synchronized ( this ) {
+        if ( !configured ) {
+          final IMetaverseConfig config = PentahoSystem.get( IMetaverseConfig.class );
+          // not hashed by default (if config is null)
+          configuredHashed = config != null && config.getHashLogicalIds();
+          configured = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the hashed logical id for the given canonical form
+   *
+   * @param canonicalForm the canonical form of a logical id
+   * @return the 128-bit hash of the canonical form, as 32 hex characters
+   */
+  public static String hash( String canonicalForm ) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance( HASH_ALGORITHM );
+    } catch ( NoSuchAlgorithmException e ) {
+      // every Java platform is required to support MD5
+      throw new IllegalStateException( e );
+    }
+    final byte[] bytes = digest.digest( canonicalForm.getBytes( StandardCharsets.UTF_8 ) );
+    final char[] chars = new char[ bytes.length * 2 ];
+    for ( int i = 0; i < bytes.length; i++ ) {
+      chars[ i * 2 ] = HEX_DIGITS[ ( bytes[ i ] >> 4 ) & 0xf ];
+      chars[ i * 2 + 1 ] = HEX_DIGITS[ bytes[ i ] & 0xf ];
+    }
+    return new String( chars );
+  }
 }
@@ -14,19 +14,32 @@
 package org.pentaho.metaverse.api;
 
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.commons.lang.StringEscapeUtils;
 import org.pentaho.dictionary.DictionaryConst;
 
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
 /**
  * This is the default implementation for namespace objects and includes methods for working with namespaces
+ * <p>
+ * A namespace that is a hashed logical id is resolved through the {@link LogicalIdDictionary}, and its sibling
+ * namespaces are hashed the same way.
  */
 public class Namespace implements INamespace {
 
   // Single re-usable ObjectMapper for JSON-to-Java conversions
   private static final ObjectMapper objectMapper = new ObjectMapper();
 
+  // the canonical forms of hashed logical ids are escaped for JavaScript, which also escapes single quotes and slashes
+  private static final ObjectMapper canonicalFormMapper =
+    new ObjectMapper().configure( JsonParser.Feature.ALLOW_BACKSLASH_ESCAPING_ANY_CHARACTER, true );
+
   private String namespace;
 
   public Namespace( String namespace ) {
@@ -42,7 +55,9 @@ public class Namespace implements INamespace {
   public INamespace getParentNamespace() {
     if ( namespace != null ) {
       try {
-        JsonNode jsonObject = objectMapper.readTree( namespace );
+        String canonicalForm = LogicalIdDictionary.getInstance().get( namespace );
+        JsonNode jsonObject = canonicalForm == null
+          ? objectMapper.readTree( namespace ) : canonicalFormMapper.readTree( canonicalForm );
         JsonNode namespaceNode = jsonObject.get( DictionaryConst.PROPERTY_NAMESPACE );
         if ( namespaceNode == null ) {
           return null;
@@ -67,6 +82,10 @@ public class Namespace implements INamespace {
   public INamespace getSiblingNamespace( String name, String type ) {
     if ( namespace != null ) {
       try {
+        String canonicalForm = LogicalIdDictionary.getInstance().get( namespace );
+        if ( canonicalForm != null ) {
+          return new Namespace( getHashedSibling( canonicalForm, name, type ) );
+        }
         JsonNode jsonObject = objectMapper.readTree( namespace );
 
         if ( jsonObject.isObject() ) {
@@ -82,4 +101,28 @@ public class Namespace implements INamespace {
     }
     return null;
   }
+
+  /**
+   * Builds the canonical form of the sibling the way a {@link MetaverseLogicalIdGenerator} does, so that the sibling
+   * of a hashed namespace is the hash of the sibling of its nested form
+   */
+  private static String getHashedSibling( String canonicalForm, String name, String type ) throws IOException {
+    ObjectNode object = (ObjectNode) canonicalFormMapper.readTree( canonicalForm );
+    object.put( DictionaryConst.PROPERTY_NAME, name );
+    object.put( DictionaryConst.PROPERTY_TYPE, type );
+    StringBuilder sb = new StringBuilder( "{" );
+    Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+    while ( fields.hasNext() ) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      sb.append( '"' ).append( field.getKey() ).append( "\":\"" )
+        .append( StringEscapeUtils.escapeJavaScript( field.getValue().asText() ) ).append( '"' );
+      if ( fields.hasNext() ) {
+        sb.append( ',' );
+      }
+    }
+    String siblingForm = sb.append( '}' ).toString();
+    String sibling = MetaverseLogicalIdGenerator.hash( siblingForm );
+    LogicalIdDictionary.getInstance().put( sibling, siblingForm );
+    return sibling;
+  }
 }
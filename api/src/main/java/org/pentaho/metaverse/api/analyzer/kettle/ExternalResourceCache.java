@@ -29,8 +29,10 @@ import org.slf4j.LoggerFactory;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A cache of resources encountered when a transformation is run that can be used to access these run-time resources at
@@ -42,6 +44,11 @@ public class ExternalResourceCache {
 
   protected static final long DEFAULT_TIMEOUT_SECONDS = 6L * 60 * 60; // 6 hours
 
+  /**
+   * The number of file names each step remembers the resolved resource of
+   */
+  protected static final int MAX_RESOLVED_NAMES = 10000;
+
   protected Cache<String, ExternalResourceValues> resourceCache;
 
   private static ExternalResourceCache INSTANCE;
@@ -91,6 +98,16 @@ public class ExternalResourceCache {
     }
   }
 
+  /**
+   * Returns the key under which resources for the given step are cached.
+   *
+   * @param meta the step meta
+   * @return the cache key, or null if it cannot be determined
+   */
+  public String getUniqueId( final BaseStepMeta meta ) {
+    return meta == null ? null : getUniqueId( meta.getParentStepMeta() );
+  }
+
   public void removeCachedResources( final Trans trans ) {
     final TransMeta transMeta = trans.getTransMeta();
     final List<StepMeta> steps = transMeta.getSteps();
@@ -117,6 +134,18 @@ public class ExternalResourceCache {
     }
   }
 
+  /**
+   * Returns the resources cached under the given key, caching a new, empty {@link ExternalResourceValues} first if
+   * there are none. Called for every row a step reads, so steps running in parallel do not wait on each other: the
+   * cache map is atomic on its own.
+   *
+   * @param uniqueMetaId the cache key, see {@link #getUniqueId(BaseStepMeta)}
+   * @return the cached resources
+   */
+  public ExternalResourceValues getOrCache( final String uniqueMetaId ) {
+    return resourceCache.asMap().computeIfAbsent( uniqueMetaId, key -> newExternalResourceValues() );
+  }
+
   @Override
   public String toString() {
     final StringBuilder sb = new StringBuilder();
@@ -138,6 +167,61 @@ public class ExternalResourceCache {
 
   public class ExternalResourceValues extends Resources<IExternalResourceInfo> {
 
+    /**
+     * Resources previously resolved from row values, keyed by file name. An empty value means the name did not
+     * resolve to a resource. Bounded, since a step may read a different file for every row; a name that was evicted is
+     * simply resolved again.
+     */
+    private final Cache<String, Optional<IExternalResourceInfo>> resolvedNames = CacheBuilder.newBuilder()
+      .maximumSize( MAX_RESOLVED_NAMES ).build();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Looks up the resource previously resolved for the given name.
+     *
+     * @param name the name read from a row
+     * @return the resolved resource, an empty {@link Optional} if the name did not resolve to a resource, or null if
+     * the name has not been resolved yet
+     */
+    public Optional<IExternalResourceInfo> getResolved( final String name ) {
+      final Optional<IExternalResourceInfo> resolved = resolvedNames.getIfPresent( name );
+      if ( resolved == null ) {
+        missCount.incrementAndGet();
+      } else {
+        hitCount.incrementAndGet();
+      }
+      return resolved;
+    }
+
+    /**
+     * Records the resource the given name resolved to, and adds it to these resources.
+     *
+     * @param name     the name read from a row
+     * @param resource the resolved resource, or null if the name does not refer to a resource
+     * @return true if the resource was not part of these resources yet
+     */
+    public boolean addResolved( final String name, final IExternalResourceInfo resource ) {
+      resolvedNames.put( name, Optional.ofNullable( resource ) );
+      return resource != null && internal.add( resource );
+    }
+
+    /**
+     * @return the number of row values that were found in the resolved names
+     */
+    public long getHitCount() {
+      return hitCount.get();
+    }
+
+    /**
+     * @return the number of row values that had to be resolved
+     */
+    public long getMissCount() {
+      return missCount.get();
+    }
+
     @Override
     public String toString() {
       final StringBuilder sb = new StringBuilder();
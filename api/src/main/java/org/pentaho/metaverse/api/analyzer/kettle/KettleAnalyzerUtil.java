@@ -13,6 +13,9 @@
 
 package org.pentaho.metaverse.api.analyzer.kettle;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.MapMaker;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.provider.UriParser;
@@ -58,7 +61,14 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.net.URLConnection;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 public class KettleAnalyzerUtil {
 
@@ -66,6 +76,19 @@ public class KettleAnalyzerUtil {
 
   private static final ExternalResourceCache rowResourceCache = ExternalResourceCache.getInstance();
 
+  /**
+   * The row resource state of each running file input step, weakly keyed by step instance so that it lives as long as
+   * the execution the step belongs to
+   */
+  private static final ConcurrentMap<BaseFileInputStep, RowResources> rowResources =
+    new MapMaker().weakKeys().makeMap();
+
+  /**
+   * The paths normalized by {@link #normalizeFilePathCached(String)}, keyed by the original path
+   */
+  private static final Cache<String, String> normalizedPaths = CacheBuilder.newBuilder()
+    .maximumSize( 10000 ).expireAfterAccess( 1, TimeUnit.HOURS ).build();
+
   /**
    * Utility method for normalizing file paths used in Metaverse Id generation. It will convert a valid path into a
    * consistent path regardless of URI notation or filesystem absolute path.
@@ -117,6 +140,31 @@ public class KettleAnalyzerUtil {
     return filePath;
   }
 
+  /**
+   * Same as {@link #normalizeFilePathSafely(String)}, but remembers the normalized paths, so that looking up vertices by
+   * the path of their containing document does not resolve the same paths through VFS over and over. Paths that cannot
+   * be normalized are not remembered.
+   *
+   * @param filePath the path to normalize
+   * @return the normalized path, or {@code filePath} if it cannot be normalized
+   */
+  public static String normalizeFilePathCached( final String filePath ) {
+    if ( filePath == null ) {
+      return normalizeFilePathSafely( null );
+    }
+    String normalizedPath = normalizedPaths.getIfPresent( filePath );
+    if ( normalizedPath == null ) {
+      try {
+        normalizedPath = normalizeFilePath( filePath );
+        normalizedPaths.put( filePath, normalizedPath );
+      } catch ( final MetaverseException e ) {
+        log.error( e.getMessage() );
+        normalizedPath = filePath;
+      }
+    }
+    return normalizedPath;
+  }
+
   public static Collection<IExternalResourceInfo> getResourcesFromMeta(
     final BaseStepMeta meta, final String[] filePaths ) {
 
@@ -151,31 +199,122 @@ public class KettleAnalyzerUtil {
   public static Collection<IExternalResourceInfo> getResourcesFromRow(
     BaseFileInputStep step, RowMetaInterface rowMeta, Object[] row ) {
 
+    final RowResources stepResources = getRowResources( step );
+    if ( stepResources == null ) {
+      return new HashSet<>();
+    }
+    final ExternalResourceCache.ExternalResourceValues resources = stepResources.getCached();
+    resolveRowResource( step, resources, rowMeta, row );
+    return resources.getInternal();
+  }
+
+  /**
+   * Resolves the file resource referenced by the given row, like {@link #getResourcesFromRow(BaseFileInputStep,
+   * RowMetaInterface, Object[])}, but only returns it if this step instance had not returned it before. This avoids
+   * copying the step's full set of resources for every row. What was returned is tracked per step instance, so each
+   * execution of a transformation reports all of its own resources, even when another execution of the same
+   * transformation read them too.
+   *
+   * @param step    the step reading the row
+   * @param rowMeta the metadata of the row
+   * @param row     the row data
+   * @return the newly seen resource, or an empty collection
+   */
+  public static Collection<IExternalResourceInfo> getNewResourcesFromRow(
+    BaseFileInputStep step, RowMetaInterface rowMeta, Object[] row ) {
+
+    final RowResources stepResources = getRowResources( step );
+    if ( stepResources == null ) {
+      return Collections.emptyList();
+    }
+    final IExternalResourceInfo resource = resolveRowResource( step, stepResources.getCached(), rowMeta, row );
+    return resource == null || !stepResources.reported.add( resource )
+      ? Collections.<IExternalResourceInfo>emptyList() : Collections.singletonList( resource );
+  }
+
+  /**
+   * Returns the row resource state of the given step. The cache key is computed once per step instance, since
+   * computing it requires a file path normalization.
+   */
+  private static RowResources getRowResources( final BaseFileInputStep step ) {
+    RowResources stepResources = rowResources.get( step );
+    if ( stepResources == null ) {
+      final String uniqueId = rowResourceCache.getUniqueId( getFileInputMeta( step ) );
+      if ( uniqueId == null ) {
+        return null;
+      }
+      stepResources = new RowResources( uniqueId );
+      final RowResources existing = rowResources.putIfAbsent( step, stepResources );
+      if ( existing != null ) {
+        stepResources = existing;
+      }
+    }
+    return stepResources;
+  }
+
+  private static BaseFileInputMeta getFileInputMeta( final BaseFileInputStep step ) {
     // For some reason the step doesn't return the StepMetaInterface directly, so go around it
     BaseFileInputMeta meta = (BaseFileInputMeta) step.getStepMetaInterface();
-    if ( meta == null ) {
+    if ( meta == null && step.getStepMeta() != null ) {
       meta = (BaseFileInputMeta) step.getStepMeta().getStepMetaInterface();
     }
-    ExternalResourceCache.ExternalResourceValues resources =
-      (ExternalResourceCache.ExternalResourceValues) rowResourceCache.get( meta );
-    if ( resources == null ) {
-      resources = rowResourceCache.newExternalResourceValues();
-      rowResourceCache.cache( meta, resources );
-    }
+    return meta;
+  }
 
+  /**
+   * Resolves the file named in the row's accepting field into a resource and adds it to {@code resources}. Each
+   * distinct file name is only resolved through VFS once, as long as it is remembered by {@code resources}.
+   *
+   * @return the resource, or null if the row does not name one
+   */
+  private static IExternalResourceInfo resolveRowResource( final BaseFileInputStep step,
+    final ExternalResourceCache.ExternalResourceValues resources, final RowMetaInterface rowMeta,
+    final Object[] row ) {
+
+    final BaseFileInputMeta meta = getFileInputMeta( step );
     try {
       String filename = meta == null ? null : step.environmentSubstitute(
         rowMeta.getString( row, meta.getAcceptingField(), null ) );
-      if ( !Utils.isEmpty( filename ) && ( KettleVFS.startsWithScheme( filename ) || FileUtil.isFullyQualified( filename ) ) ) {
+      if ( Utils.isEmpty( filename ) ) {
+        return null;
+      }
+      final Optional<IExternalResourceInfo> resolved = resources.getResolved( filename );
+      if ( resolved != null ) {
+        return resolved.orElse( null );
+      }
+      IExternalResourceInfo resource = null;
+      if ( KettleVFS.startsWithScheme( filename ) || FileUtil.isFullyQualified( filename ) ) {
         FileObject fileObject = KettleVFS.getFileObject( filename, step );
-        resources.add( ExternalResourceInfoFactory.createFileResource( fileObject, true ) );
+        resource = ExternalResourceInfoFactory.createFileResource( fileObject, true );
       }
+      resources.addResolved( filename, resource );
+      return resource;
     } catch ( KettleException kve ) {
       if ( log.isDebugEnabled() ) {
         log.debug( kve.getMessage() );
       }
     }
-    return resources.getInternal();
+    return null;
+  }
+
+  /**
+   * The row resources of a running step: the resources cached for its transformation step, shared by all executions,
+   * and the resources this step instance has returned as new
+   */
+  private static final class RowResources {
+    private final String uniqueId;
+    private final Set<IExternalResourceInfo> reported = ConcurrentHashMap.newKeySet();
+
+    private RowResources( final String uniqueId ) {
+      this.uniqueId = uniqueId;
+    }
+
+    /**
+     * Looked up every time, since the cached resources expire and are removed when the transformation finishes
+     */
+    private ExternalResourceCache.ExternalResourceValues getCached() {
+      return rowResourceCache.getOrCache( uniqueId );
+    }
   }
 
   public static TransMeta getSubTransMeta( final ISubTransAwareMeta meta ) throws MetaverseAnalyzerException {
@@ -428,6 +567,12 @@ public class KettleAnalyzerUtil {
     return config == null || config.getConsolidateSubGraphs();
   }
 
+  public static boolean shareOutputFieldNodes() {
+    final IMetaverseConfig config = PentahoSystem.get( IMetaverseConfig.class );
+    // return false by default (if config is null)
+    return config != null && config.getShareOutputFieldNodes();
+  }
+
   public static boolean safeStringMatch( String s1, String s2 ) {
     return ( s1 != null && s1.equals( s2 ) ) || ( s1 == null && s2 == null );
   }
@@ -0,0 +1,360 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+
+package org.pentaho.metaverse.api.analyzer.kettle;
+
+import com.google.common.collect.MapMaker;
+import org.pentaho.di.core.ProgressMonitorListener;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.trans.TransHopMeta;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepMeta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memoizes the row metadata returned by {@link TransMeta#getStepFields(StepMeta)} and
+ * {@link TransMeta#getPrevStepFields(StepMeta)} while a transformation is being analyzed. Step analyzers ask for the
+ * input and output fields of their step and of its neighbours, so without this cache the fields of a step are computed
+ * again for each step downstream of it. With it, the fields of a step are computed once, by
+ * {@link TransMeta#getThisStepFields(StepMeta, StepMeta, RowMetaInterface)}, from the memoized fields of the steps
+ * before it.
+ * <p>
+ * A cache is opened for a {@link TransMeta} when its analysis starts and closed when it ends, so the fields are never
+ * reused across analyses. The static accessors fall back to the {@link TransMeta} when no cache is open for it.
+ * Callers get a copy of the cached row metadata and are free to modify it.
+ */
+public class StepFieldsCache {
+
+  private static final Logger log = LoggerFactory.getLogger( StepFieldsCache.class );
+
+  private static final String KEY_SEPARATOR = "\u0000";
+
+  // weak keys are compared by identity, and an analysis that never closes its cache doesn't leak it
+  private static final ConcurrentMap<TransMeta, StepFieldsCache> OPEN_CACHES = new MapMaker().weakKeys().makeMap();
+
+  private final TransMeta transMeta;
+
+  private final Map<String, RowMetaInterface> stepFields = new ConcurrentHashMap<>();
+
+  private final Map<String, RowMetaInterface> prevStepFields = new ConcurrentHashMap<>();
+
+  // the steps each thread is computing the fields of, to tell a loop of hops
+  private final ThreadLocal<Set<String>> stepsComputing = ThreadLocal.withInitial( HashSet::new );
+
+  private final AtomicLong hitCount = new AtomicLong();
+
+  private final AtomicLong missCount = new AtomicLong();
+
+  StepFieldsCache( final TransMeta transMeta ) {
+    this.transMeta = transMeta;
+  }
+
+  /**
+   * Opens a cache for the analysis of the given transformation, unless one is open already.
+   *
+   * @param transMeta the transformation being analyzed
+   * @return true if a new cache was opened, in which case the caller is responsible for closing it
+   */
+  public static boolean open( final TransMeta transMeta ) {
+    return transMeta != null && OPEN_CACHES.putIfAbsent( transMeta, new StepFieldsCache( transMeta ) ) == null;
+  }
+
+  /**
+   * Closes the cache of the given transformation, discarding the memoized fields.
+   *
+   * @param transMeta the transformation that has been analyzed
+   */
+  public static void close( final TransMeta transMeta ) {
+    if ( transMeta != null ) {
+      OPEN_CACHES.remove( transMeta );
+    }
+  }
+
+  /**
+   * @param transMeta the transformation being analyzed
+   * @return the cache open for the transformation, or null if there is none
+   */
+  public static StepFieldsCache get( final TransMeta transMeta ) {
+    return transMeta == null ? null : OPEN_CACHES.get( transMeta );
+  }
+
+  /**
+   * @see TransMeta#getStepFields(StepMeta)
+   */
+  public static RowMetaInterface getStepFields( final TransMeta transMeta, final StepMeta stepMeta )
+    throws KettleStepException {
+    final StepFieldsCache cache = get( transMeta );
+    return cache == null ? transMeta.getStepFields( stepMeta ) : cache.getStepFields( stepMeta, null );
+  }
+
+  /**
+   * @see TransMeta#getStepFields(StepMeta, ProgressMonitorListener)
+   */
+  public static RowMetaInterface getStepFields( final TransMeta transMeta, final StepMeta stepMeta,
+                                                final ProgressMonitorListener monitor ) throws KettleStepException {
+    final StepFieldsCache cache = get( transMeta );
+    return cache == null ? transMeta.getStepFields( stepMeta, monitor ) : cache.getStepFields( stepMeta, null );
+  }
+
+  /**
+   * @see TransMeta#getStepFields(String)
+   */
+  public static RowMetaInterface getStepFields( final TransMeta transMeta, final String stepName )
+    throws KettleStepException {
+    final StepFieldsCache cache = get( transMeta );
+    if ( cache == null ) {
+      return transMeta.getStepFields( stepName );
+    }
+    final StepMeta stepMeta = transMeta.findStep( stepName );
+    return stepMeta == null ? null : cache.getStepFields( stepMeta, null );
+  }
+
+  /**
+   * @see TransMeta#getPrevStepFields(StepMeta)
+   */
+  public static RowMetaInterface getPrevStepFields( final TransMeta transMeta, final StepMeta stepMeta )
+    throws KettleStepException {
+    final StepFieldsCache cache = get( transMeta );
+    return cache == null ? transMeta.getPrevStepFields( stepMeta ) : cache.getPrevStepFields( stepMeta, null );
+  }
+
+  /**
+   * @see TransMeta#getPrevStepFields(StepMeta, ProgressMonitorListener)
+   */
+  public static RowMetaInterface getPrevStepFields( final TransMeta transMeta, final StepMeta stepMeta,
+                                                    final ProgressMonitorListener monitor )
+    throws KettleStepException {
+    final StepFieldsCache cache = get( transMeta );
+    return cache == null ? transMeta.getPrevStepFields( stepMeta, monitor )
+      : cache.getPrevStepFields( stepMeta, null );
+  }
+
+  /**
+   * @see TransMeta#getPrevStepFields(StepMeta, String, ProgressMonitorListener)
+   */
+  public static RowMetaInterface getPrevStepFields( final TransMeta transMeta, final StepMeta stepMeta,
+                                                    final String prevStepName, final ProgressMonitorListener monitor )
+    throws KettleStepException {
+    final StepFieldsCache cache = get( transMeta );
+    return cache == null ? transMeta.getPrevStepFields( stepMeta, prevStepName, monitor )
+      : cache.getPrevStepFields( stepMeta, prevStepName );
+  }
+
+  /**
+   * Computes and memoizes the input and output fields of the given steps, so that step analyzers running concurrently
+   * afterwards only read memoized copies and never call into the {@link TransMeta}, whose own caches are not
+   * thread-safe. Steps are visited upstream first, so the fields of each step are computed from the memoized fields of
+   * the steps before it. Steps whose fields cannot be determined are skipped; they are computed again, and the error
+   * reported, when a step analyzer asks for them.
+   *
+   * @param steps the steps of the transformation
+   */
+  public void warmUp( final List<StepMeta> steps ) {
+    final Map<String, List<String>> prevStepNames = new HashMap<>();
+    for ( int i = 0; i < transMeta.nrTransHops(); i++ ) {
+      final TransHopMeta hop = transMeta.getTransHop( i );
+      if ( hop != null && hop.getFromStep() != null && hop.getToStep() != null ) {
+        prevStepNames.computeIfAbsent( hop.getToStep().getName(), name -> new ArrayList<>() )
+          .add( hop.getFromStep().getName() );
+      }
+    }
+    final Map<String, StepMeta> stepsByName = new HashMap<>();
+    for ( final StepMeta step : steps ) {
+      stepsByName.put( step.getName(), step );
+    }
+    final Set<String> ordered = new LinkedHashSet<>();
+    for ( final StepMeta step : steps ) {
+      addUpstreamFirst( step.getName(), prevStepNames, ordered );
+    }
+
+    for ( final String stepName : ordered ) {
+      final StepMeta stepMeta = stepsByName.get( stepName );
+      if ( stepMeta == null ) {
+        continue;
+      }
+      try {
+        getStepFields( stepMeta, null );
+        getPrevStepFields( stepMeta, null );
+        for ( final String prevStepName : prevStepNames.getOrDefault( stepName, Collections.emptyList() ) ) {
+          getPrevStepFields( stepMeta, prevStepName );
+        }
+      } catch ( KettleStepException e ) {
+        log.debug( "Couldn't compute the fields of step " + stepName, e );
+      }
+    }
+  }
+
+  /**
+   * The fields the step sends to the target step, or to any step when there is none
+   */
+  private RowMetaInterface getStepFields( final StepMeta stepMeta, final StepMeta targetStep )
+    throws KettleStepException {
+    final String key =
+      targetStep == null ? stepMeta.getName() : stepMeta.getName() + KEY_SEPARATOR + targetStep.getName();
+    return memoize( stepFields, key, () -> computeStepFields( stepMeta, targetStep ) );
+  }
+
+  /**
+   * The fields the step receives from the given previous step, or from all of them when there is none
+   */
+  private RowMetaInterface getPrevStepFields( final StepMeta stepMeta, final String prevStepName )
+    throws KettleStepException {
+    final String key = prevStepName == null ? stepMeta.getName() : stepMeta.getName() + KEY_SEPARATOR + prevStepName;
+    return memoize( prevStepFields, key, () -> {
+      final RowMetaInterface row = new RowMeta();
+      for ( final StepMeta prevStep : transMeta.findPreviousSteps( stepMeta ) ) {
+        if ( prevStepName == null || prevStepName.equalsIgnoreCase( prevStep.getName() ) ) {
+          merge( row, getStepFields( prevStep, stepMeta ) );
+        }
+      }
+      return row;
+    } );
+  }
+
+  /**
+   * Computes the fields of a step the way {@link TransMeta#getStepFields(StepMeta, StepMeta, ProgressMonitorListener)}
+   * does, but from the memoized fields of the steps before it rather than by computing them again.
+   */
+  private RowMetaInterface computeStepFields( final StepMeta stepMeta, final StepMeta targetStep )
+    throws KettleStepException {
+    if ( targetStep != null && stepMeta.isSendingErrorRowsToStep( targetStep ) ) {
+      // the error rows are the input rows of the step, with the error fields added
+      final RowMetaInterface row = getPrevStepFields( stepMeta, null );
+      row.addRowMeta( stepMeta.getStepErrorMeta().getErrorFields() );
+      return row;
+    }
+    final List<StepMeta> prevSteps = transMeta.findPreviousSteps( stepMeta, false );
+    if ( prevSteps.isEmpty() && !stepMeta.getRemoteInputSteps().isEmpty() ) {
+      // the input of a clustered step comes from other servers
+      return transMeta.getStepFields( stepMeta, targetStep, null );
+    }
+    final Set<String> computing = stepsComputing.get();
+    if ( !computing.add( stepMeta.getName() ) ) {
+      // the step is part of a loop of hops, which is broken here
+      return null;
+    }
+    try {
+      final RowMetaInterface row = new RowMeta();
+      for ( final StepMeta prevStep : prevSteps ) {
+        merge( row, getStepFields( prevStep, stepMeta ) );
+      }
+      return transMeta.getThisStepFields( stepMeta, targetStep, row );
+    } finally {
+      computing.remove( stepMeta.getName() );
+    }
+  }
+
+  /**
+   * Adds the fields not in the row yet, like {@link TransMeta} merges the fields of several previous steps
+   */
+  private static void merge( final RowMetaInterface row, final RowMetaInterface add ) {
+    if ( add == null ) {
+      return;
+    }
+    for ( final ValueMetaInterface valueMeta : add.getValueMetaList() ) {
+      if ( row.searchValueMeta( valueMeta.getName() ) == null ) {
+        row.addValueMeta( valueMeta );
+      }
+    }
+  }
+
+  /**
+   * Adds the given step to the ordered set after all the steps before it. Iterative rather than recursive, since a
+   * long chain of steps would otherwise need as many stack frames.
+   */
+  private static void addUpstreamFirst( final String stepName, final Map<String, List<String>> prevStepNames,
+                                        final Set<String> ordered ) {
+    final Set<String> visiting = new HashSet<>();
+    final List<String> stack = new ArrayList<>();
+    stack.add( stepName );
+    while ( !stack.isEmpty() ) {
+      final String current = stack.get( stack.size() - 1 );
+      if ( ordered.contains( current ) ) {
+        stack.remove( stack.size() - 1 );
+        continue;
+      }
+      boolean pending = false;
+      if ( visiting.add( current ) ) {
+        for ( final String prevStepName : prevStepNames.getOrDefault( current, Collections.emptyList() ) ) {
+          // steps being visited are part of a loop, which is broken here
+          if ( !ordered.contains( prevStepName ) && !visiting.contains( prevStepName ) ) {
+            stack.add( prevStepName );
+            pending = true;
+          }
+        }
+      }
+      if ( !pending ) {
+        stack.remove( stack.size() - 1 );
+        ordered.add( current );
+      }
+    }
+  }
+
+  /**
+   * @return the number of lookups answered from this cache
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return the number of lookups that had to compute the fields
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  private RowMetaInterface memoize( final Map<String, RowMetaInterface> memo, final String key,
+                                    final FieldsLoader loader ) throws KettleStepException {
+    if ( key == null ) {
+      return loader.load();
+    }
+    RowMetaInterface rowMeta = memo.get( key );
+    if ( rowMeta == null ) {
+      missCount.incrementAndGet();
+      rowMeta = loader.load();
+      if ( rowMeta == null ) {
+        return null;
+      }
+      final RowMetaInterface existing = memo.putIfAbsent( key, rowMeta );
+      if ( existing != null ) {
+        rowMeta = existing;
+      }
+    } else {
+      hitCount.incrementAndGet();
+    }
+    return rowMeta.clone();
+  }
+
+  @FunctionalInterface
+  private interface FieldsLoader {
+    RowMetaInterface load() throws KettleStepException;
+  }
+}
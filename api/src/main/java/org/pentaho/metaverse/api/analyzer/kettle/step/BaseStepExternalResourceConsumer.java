@@ -73,4 +73,19 @@ public abstract class BaseStepExternalResourceConsumer<S extends BaseStep, M ext
     }
     return KettleAnalyzerUtil.getResourcesFromRow( (BaseFileInputStep) step, rowMeta, row );
   }
+
+  /**
+   * File input steps only report the files they did not report before; any other step reports what
+   * {@link #getResourcesFromRow(BaseStep, RowMetaInterface, Object[])} returns, so that the overrides of subclasses
+   * are honored.
+   */
+  @Override
+  public Collection<IExternalResourceInfo> getNewResourcesFromRow(
+    final S step, final RowMetaInterface rowMeta, final Object[] row ) {
+
+    if ( !( step instanceof BaseFileInputStep ) ) {
+      return getResourcesFromRow( step, rowMeta, row );
+    }
+    return KettleAnalyzerUtil.getNewResourcesFromRow( (BaseFileInputStep) step, rowMeta, row );
+  }
 }
@@ -31,4 +31,30 @@ public interface IStepExternalResourceConsumer<S extends BaseStep, M extends Bas
   extends IExternalResourceConsumer<M> {
 
   Collection<IExternalResourceInfo> getResourcesFromRow( S consumer, RowMetaInterface rowMeta, Object[] row );
+
+  /**
+   * Returns the resources referenced by the given row that may not have been reported for this step yet. Callers are
+   * expected to accumulate the results, rather than rely on a complete set being returned. The default implementation
+   * returns everything {@link #getResourcesFromRow(BaseStep, RowMetaInterface, Object[])} returns.
+   *
+   * @param consumer the step reading the row
+   * @param rowMeta  the metadata of the row
+   * @param row      the row data
+   * @return the resources referenced by the row, possibly only those not seen before
+   */
+  default Collection<IExternalResourceInfo> getNewResourcesFromRow(
+    S consumer, RowMetaInterface rowMeta, Object[] row ) {
+    return getResourcesFromRow( consumer, rowMeta, row );
+  }
+
+  /**
+   * Returns the maximum number of distinct resources to retain per step when capturing resources from rows. Once the
+   * limit is reached, a sample of the resources is retained and the rest are counted as overflow.
+   *
+   * @param meta the step meta
+   * @return the limit, or 0 (the default) for no limit
+   */
+  default int getRowResourceLimit( M meta ) {
+    return 0;
+  }
 }
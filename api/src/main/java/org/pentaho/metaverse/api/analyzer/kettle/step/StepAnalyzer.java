@@ -15,6 +15,7 @@ package org.pentaho.metaverse.api.analyzer.kettle.step;
 
 import com.google.common.base.Joiner;
 import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.Vertex;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
@@ -47,6 +48,7 @@ import org.pentaho.metaverse.api.StepField;
 import org.pentaho.metaverse.api.analyzer.kettle.BaseKettleMetaverseComponent;
 import org.pentaho.metaverse.api.analyzer.kettle.ComponentDerivationRecord;
 import org.pentaho.metaverse.api.analyzer.kettle.KettleAnalyzerUtil;
+import org.pentaho.metaverse.api.analyzer.kettle.StepFieldsCache;
 import org.pentaho.metaverse.api.messages.Messages;
 import org.pentaho.metaverse.api.model.kettle.IFieldMapping;
 
@@ -66,6 +68,16 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
   private static final Logger LOGGER = LogManager.getLogger( StepAnalyzer.class );
   public static final String NONE = "_none_";
 
+  /**
+   * The indexed vertex properties {@link #findVertices(Map)} looks vertices up by, most selective first
+   */
+  private static final String[] LOOKUP_KEYS = new String[] {
+    DictionaryConst.PROPERTY_LOGICAL_ID,
+    DictionaryConst.PROPERTY_NAME,
+    DictionaryConst.PROPERTY_PATH,
+    DictionaryConst.PROPERTY_TYPE
+  };
+
   protected IClonableDocumentAnalyzer documentAnalyzer;
   protected IComponentDescriptor documentDescriptor;
   protected String documentPath;
@@ -110,6 +122,12 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
    */
   protected RowMetaInterface stepFields = null;
 
+  /**
+   * Whether a field output to several next steps is represented by a single node, see
+   * {@link KettleAnalyzerUtil#shareOutputFieldNodes()}
+   */
+  protected boolean shareOutputFieldNodes = false;
+
   @Override
   public IMetaverseNode analyze( IComponentDescriptor descriptor, T meta ) throws MetaverseAnalyzerException {
 
@@ -118,6 +136,7 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
 
     setDescriptor( descriptor );
     baseStepMeta = meta;
+    shareOutputFieldNodes = KettleAnalyzerUtil.shareOutputFieldNodes();
 
     validateState( descriptor, meta );
 
@@ -221,21 +240,15 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
 
   /**
    * Determines if a field is considered a passthrough field or not. If the field name in question exists in the output
-   * (exact match), then it is considered a passthrough.
+   * (exact match), then it is considered a passthrough. The output field names are hashed, so checking every incoming
+   * field amounts to intersecting the incoming and outgoing field names.
    *
    * @param originalFieldName
    * @return
    */
   protected boolean isPassthrough( StepField originalFieldName ) {
-    if ( getOutputs() != null ) {
-      Set<StepField> fieldNames = getOutputs().getFieldNames();
-      for ( StepField fieldName : fieldNames ) {
-        if ( fieldName.getFieldName().equals( originalFieldName.getFieldName() ) ) {
-          return true;
-        }
-      }
-    }
-    return false;
+    final StepNodes outputs = getOutputs();
+    return outputs != null && outputs.containsFieldName( originalFieldName.getFieldName() );
   }
 
   /**
@@ -313,7 +326,8 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
 
   /**
    * Add new nodes to the metaverse for each of the fields that are output from this step. The fields are uniquely
-   * identified based on the step that created the node and the intended target step.
+   * identified based on the step that created the node and the intended target step, unless output field nodes are
+   * shared, in which case a single node stands for the field in all target steps.
    *
    * @param meta
    * @return
@@ -323,6 +337,7 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
 
     Map<String, RowMetaInterface> outputRowMetaInterfaces = getOutputRowMetaInterfaces( meta );
     if ( MapUtils.isNotEmpty( outputRowMetaInterfaces ) ) {
+      final Map<String, IMetaverseNode> sharedFieldNodes = shareOutputFieldNodes ? new HashMap<>() : null;
       for ( Map.Entry<String, RowMetaInterface> entry : outputRowMetaInterfaces.entrySet() ) {
         String nextStepName = entry.getKey();
         RowMetaInterface outputFields = entry.getValue();
@@ -330,10 +345,16 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
           for ( ValueMetaInterface valueMetaInterface : outputFields.getValueMetaList() ) {
 
             IMetaverseNode fieldNode =
-              createOutputFieldNode( getDescriptor().getContext(), valueMetaInterface, nextStepName,
+              sharedFieldNodes == null ? null : sharedFieldNodes.get( valueMetaInterface.getName() );
+            if ( fieldNode == null ) {
+              fieldNode = createOutputFieldNode( getDescriptor().getContext(), valueMetaInterface, nextStepName,
                 getOutputNodeType() );
-            // Add link to show that this step created the field
-            getMetaverseBuilder().addLink( rootNode, DictionaryConst.LINK_OUTPUTS, fieldNode );
+              // Add link to show that this step created the field
+              getMetaverseBuilder().addLink( rootNode, DictionaryConst.LINK_OUTPUTS, fieldNode );
+              if ( sharedFieldNodes != null ) {
+                sharedFieldNodes.put( valueMetaInterface.getName(), fieldNode );
+              }
+            }
             outputs.addNode( nextStepName, valueMetaInterface.getName(), fieldNode );
           }
         } else {
@@ -375,8 +396,11 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
 
     // don't add it to the graph if it is a transient node
     if ( targetStepName != null ) {
-      newFieldNode.setProperty( DictionaryConst.PROPERTY_TARGET_STEP, targetStepName );
-      newFieldNode.setLogicalIdGenerator( DictionaryConst.LOGICAL_ID_GENERATOR_TARGET_AWARE );
+      // shared nodes are identified without their target step, both when output here and when input downstream
+      if ( !shareOutputFieldNodes ) {
+        newFieldNode.setProperty( DictionaryConst.PROPERTY_TARGET_STEP, targetStepName );
+        newFieldNode.setLogicalIdGenerator( DictionaryConst.LOGICAL_ID_GENERATOR_TARGET_AWARE );
+      }
       if ( addTheNode ) {
         getMetaverseBuilder().addNode( newFieldNode );
       }
@@ -406,7 +430,7 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
           String[] stepInputFieldNames = inputFields.getFieldNames();
           try {
             if ( !ExternalResourceStepAnalyzer.RESOURCE.equals( prevStepName ) ) {
-              final RowMetaInterface stepInputFields = parentTransMeta.getPrevStepFields(
+              final RowMetaInterface stepInputFields = StepFieldsCache.getPrevStepFields( parentTransMeta,
                 parentStepMeta, prevStepName, null );
               if ( stepInputFields != null ) {
                 stepInputFieldNames = stepInputFields.getFieldNames();
@@ -602,7 +626,7 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
         rowMeta = new HashMap();
         ProgressNullMonitorListener progressMonitor = new ProgressNullMonitorListener();
         prevStepNames = parentTransMeta.getPrevStepNames( parentStepMeta );
-        RowMetaInterface rmi = parentTransMeta.getPrevStepFields( parentStepMeta, progressMonitor );
+        RowMetaInterface rmi = StepFieldsCache.getPrevStepFields( parentTransMeta, parentStepMeta, progressMonitor );
         progressMonitor.done();
         if ( !ArrayUtils.isEmpty( prevStepNames ) ) {
           populateInputFieldsRowMeta( rowMeta, rmi );
@@ -650,7 +674,7 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
     if ( transMeta != null ) {
       try {
         ProgressNullMonitorListener progressMonitor = new ProgressNullMonitorListener();
-        rmi = transMeta.getStepFields( stepMeta, progressMonitor );
+        rmi = StepFieldsCache.getStepFields( transMeta, stepMeta, progressMonitor );
         progressMonitor.done();
       } catch ( KettleStepException e ) {
         rmi = null;
@@ -822,7 +846,17 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
    * @return a @{link List} of {@link Vertex} objects containing the requested properties
    */
   protected List<Vertex> findVertices( final Map<String, String> properties ) {
-    return findVertices( getMetaverseBuilder().getGraph().getVertices().iterator(), properties );
+    final Graph graph = getMetaverseBuilder().getGraph();
+    // start from the key index of the most selective property, the remaining properties are matched below
+    if ( properties != null ) {
+      for ( final String lookupKey : LOOKUP_KEYS ) {
+        final String lookupValue = properties.get( lookupKey );
+        if ( lookupValue != null ) {
+          return findVertices( graph.getVertices( lookupKey, lookupValue ).iterator(), properties );
+        }
+      }
+    }
+    return findVertices( graph.getVertices().iterator(), properties );
   }
 
   /**
@@ -900,7 +934,7 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
     final Map<String, String> propsLookupMap = properties == null ? new HashMap() : new HashMap( properties );
     propsLookupMap.put( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_STEP );
     final List<Vertex> potentialMatches = findVertices( propsLookupMap );
-    final String transPath = KettleAnalyzerUtil.normalizeFilePathSafely( transMeta.getFilename() );
+    final String transPath = KettleAnalyzerUtil.normalizeFilePathCached( transMeta.getFilename() );
     // inspect input "contains" links for each vertex, when a "containing" transformation with a matching path is
     // found, we have the  vertex we need
     for ( final Vertex potentialMatch : potentialMatches ) {
@@ -908,7 +942,7 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
         DictionaryConst.LINK_CONTAINS ).iterator();
       while ( containingVertices.hasNext() ) {
         final Vertex containingVertex = containingVertices.next();
-        final String containingVertexPath = KettleAnalyzerUtil.normalizeFilePathSafely(
+        final String containingVertexPath = KettleAnalyzerUtil.normalizeFilePathCached(
           containingVertex.getProperty( DictionaryConst.PROPERTY_PATH ) );
         if ( transPath.equalsIgnoreCase( containingVertexPath ) ) {
           matchingNodes.add( potentialMatch );
@@ -988,15 +1022,7 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
    * @return the {@link Vertex} with the matching id or null
    */
   protected Vertex findVertexById( final String id ) {
-
-    final Iterator<Vertex> allVertices = getMetaverseBuilder().getGraph().getVertices().iterator();
-    while ( allVertices.hasNext() ) {
-      final Vertex vertex = allVertices.next();
-      if ( vertex.getId().equals( id ) ) {
-        return vertex;
-      }
-    }
-    return null;
+    return id == null ? null : getMetaverseBuilder().getGraph().getVertex( id );
   }
 
   /**
@@ -19,6 +19,7 @@ import org.pentaho.metaverse.api.StepField;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -32,6 +33,12 @@ public class StepNodes {
   // use LinkedHashMap to preserve order in which elements are added
   private LowerCaseKeyLinkedHashMap<String, LowerCaseKeyLinkedHashMap<String, IMetaverseNode>> store;
 
+  // the (lower case) names of the steps that have a field, by lower case field name
+  private Map<String, Set<String>> stepsByFieldName = new HashMap<>();
+
+  // the exact names of the fields of all steps
+  private Set<String> fieldNames = new HashSet<>();
+
   public StepNodes() {
     store = new LowerCaseKeyLinkedHashMap<>();
   }
@@ -46,21 +53,37 @@ public class StepNodes {
 
     stepFields.put( fieldName, node );
 
+    stepsByFieldName.computeIfAbsent( StringUtil.safeToLowerCase( fieldName ), key -> new LinkedHashSet<>() )
+      .add( StringUtil.safeToLowerCase( stepName ) );
+    fieldNames.add( fieldName );
   }
 
   public List<IMetaverseNode> findNodes( String fieldName ) {
     List<IMetaverseNode> nodes = new ArrayList<>();
 
-    for ( Map<String, IMetaverseNode> stepNodes : store.values() ) {
-      IMetaverseNode match = stepNodes.get( fieldName );
-      if ( match != null ) {
-        nodes.add( match );
+    Set<String> stepNames = stepsByFieldName.get( StringUtil.safeToLowerCase( fieldName ) );
+    if ( stepNames != null ) {
+      for ( String stepName : stepNames ) {
+        IMetaverseNode match = findNode( stepName, fieldName );
+        if ( match != null ) {
+          nodes.add( match );
+        }
       }
     }
 
     return nodes;
   }
 
+  /**
+   * Returns whether any step has a field with the given name. Unlike the lookups by name, this one is case sensitive.
+   *
+   * @param fieldName the field name
+   * @return true if a step has a field with that exact name
+   */
+  public boolean containsFieldName( String fieldName ) {
+    return fieldNames.contains( fieldName );
+  }
+
   public IMetaverseNode findNode( StepField stepField ) {
     return findNode( stepField.getStepName(), stepField.getFieldName() );
   }
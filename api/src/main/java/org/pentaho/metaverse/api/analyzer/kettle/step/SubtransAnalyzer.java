@@ -25,6 +25,7 @@ import org.pentaho.dictionary.DictionaryConst;
 import org.pentaho.metaverse.api.IComponentDescriptor;
 import org.pentaho.metaverse.api.IMetaverseNode;
 import org.pentaho.metaverse.api.MetaverseComponentDescriptor;
+import org.pentaho.metaverse.api.analyzer.kettle.StepFieldsCache;
 import org.pentaho.metaverse.api.messages.Messages;
 import org.pentaho.metaverse.api.model.BaseMetaverseBuilder;
 import org.slf4j.Logger;
@@ -98,7 +99,8 @@ public class SubtransAnalyzer<T extends BaseStepMeta> {
                                             IComponentDescriptor descriptor, Predicate<String> fieldPredicate,
                                             StepMeta step, RowsFromResultMeta rfrm, IMetaverseNode subTransStepNode ) {
     try {
-      RowMetaInterface rowMetaInterface = rfrm.getParentStepMeta().getParentTransMeta().getStepFields( step );
+      RowMetaInterface rowMetaInterface =
+        StepFieldsCache.getStepFields( rfrm.getParentStepMeta().getParentTransMeta(), step );
       for ( int i = 0; i < rowMetaInterface.getFieldNames().length; i++ ) {
         String field = rowMetaInterface.getFieldNames()[ i ];
         if ( fieldPredicate.test( field ) ) {
@@ -197,7 +199,8 @@ public class SubtransAnalyzer<T extends BaseStepMeta> {
                                            IComponentDescriptor descriptor, String resultStepName, StepMeta step,
                                            BaseStepMeta baseStepMeta, IMetaverseNode subTransStepNode ) {
     try {
-      RowMetaInterface rowMetaInterface = baseStepMeta.getParentStepMeta().getParentTransMeta().getStepFields( step );
+      RowMetaInterface rowMetaInterface =
+        StepFieldsCache.getStepFields( baseStepMeta.getParentStepMeta().getParentTransMeta(), step );
       for ( int i = 0; i < rowMetaInterface.getFieldNames().length; i++ ) {
         String field = rowMetaInterface.getFieldNames()[ i ];
         if ( streamFieldNode.getName().equals( field ) ) {
@@ -27,10 +27,13 @@ import org.pentaho.metaverse.api.MetaverseObjectFactory;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 
 import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This is the reference implementation for IMetaverseBuilder, offering the ability to add nodes, links, etc. to an
- * underlying graph
+ * underlying graph. Each change made through the builder is atomic, so a builder can be shared by analyzers running
+ * concurrently.
  */
 public class BaseMetaverseBuilder extends MetaverseObjectFactory implements IMetaverseBuilder {
 
@@ -42,6 +45,13 @@ public class BaseMetaverseBuilder extends MetaverseObjectFactory implements IMet
 
   private Graph graph;
 
+  /**
+   * Vertices added through this builder, keyed by their logical ID. This lets {@link #getVertexForNode(IMetaverseNode)}
+   * resolve logical ID matches without querying the graph. Entries are validated against the graph on lookup, since
+   * the graph may be modified outside of this builder.
+   */
+  private final Map<String, Vertex> logicalIdIndex = new ConcurrentHashMap<>();
+
   /**
    * This is a possible delegate reference to a metaverse object factory. This builder is itself a metaverse object
    * factory, so the reference is initialized to "this".
@@ -79,6 +89,7 @@ public class BaseMetaverseBuilder extends MetaverseObjectFactory implements IMet
   @Override
   public void setGraph( Graph graph ) {
     this.graph = graph;
+    logicalIdIndex.clear();
   }
 
   /**
@@ -88,7 +99,7 @@ public class BaseMetaverseBuilder extends MetaverseObjectFactory implements IMet
    * @return the builder
    */
   @Override
-  public IMetaverseBuilder addLink( IMetaverseLink link ) {
+  public synchronized IMetaverseBuilder addLink( IMetaverseLink link ) {
 
     // make sure the from and to nodes exist in the graph
     Vertex fromVertex = getVertexForNode( link.getFromNode() );
@@ -137,7 +148,7 @@ public class BaseMetaverseBuilder extends MetaverseObjectFactory implements IMet
    * @return the builder
    */
   @Override
-  public IMetaverseBuilder addNode( IMetaverseNode node ) {
+  public synchronized IMetaverseBuilder addNode( IMetaverseNode node ) {
     // does the node already exist?
     Vertex v = getVertexForNode( node );
 
@@ -275,6 +286,7 @@ public class BaseMetaverseBuilder extends MetaverseObjectFactory implements IMet
         }
       }
     }
+    indexLogicalId( v );
     node.setDirty( false );
   }
 
@@ -310,12 +322,16 @@ public class BaseMetaverseBuilder extends MetaverseObjectFactory implements IMet
       String logicalId = node.getLogicalId();
       Vertex vertex = graph.getVertex( node.getStringID() );
 
+      if ( vertex == null && !logicalId.equals( node.getStringID() ) ) {
+        vertex = getIndexedVertex( logicalId );
+      }
       if ( vertex == null && !logicalId.equals( node.getStringID() ) ) {
         // check for matching logicalIds
         Iterable<Vertex> logicalMatches = graph.getVertices( DictionaryConst.PROPERTY_LOGICAL_ID, logicalId );
         for ( Vertex match : logicalMatches ) {
           // just return the first match for now
           vertex = match;
+          logicalIdIndex.putIfAbsent( logicalId, match );
           break;
         }
       }
@@ -326,8 +342,54 @@ public class BaseMetaverseBuilder extends MetaverseObjectFactory implements IMet
     }
   }
 
+  /**
+   * Returns the vertex registered for the given logical ID, provided it is still part of the graph and still carries
+   * that logical ID. Stale entries are evicted.
+   *
+   * @param logicalId the logical ID to look up
+   * @return the matching Vertex or null if none is registered
+   */
+  private Vertex getIndexedVertex( String logicalId ) {
+    Vertex vertex = logicalIdIndex.get( logicalId );
+    if ( vertex != null
+      && ( graph.getVertex( vertex.getId() ) == null
+      || !logicalId.equals( vertex.getProperty( DictionaryConst.PROPERTY_LOGICAL_ID ) ) ) ) {
+      logicalIdIndex.remove( logicalId, vertex );
+      vertex = null;
+    }
+    return vertex;
+  }
+
+  /**
+   * Registers the vertex under its logical ID, if it has one and no other vertex has claimed it yet.
+   *
+   * @param vertex the vertex to register
+   */
+  private void indexLogicalId( Vertex vertex ) {
+    Object logicalId = vertex.getProperty( DictionaryConst.PROPERTY_LOGICAL_ID );
+    if ( logicalId instanceof String ) {
+      Vertex existing = getIndexedVertex( (String) logicalId );
+      if ( existing == null ) {
+        logicalIdIndex.putIfAbsent( (String) logicalId, vertex );
+      }
+    }
+  }
+
+  /**
+   * Removes the vertex from the graph and from the logical ID index.
+   *
+   * @param vertex the vertex to remove
+   */
+  private void removeVertex( Vertex vertex ) {
+    Object logicalId = vertex.getProperty( DictionaryConst.PROPERTY_LOGICAL_ID );
+    graph.removeVertex( vertex );
+    if ( logicalId instanceof String ) {
+      logicalIdIndex.remove( logicalId, vertex );
+    }
+  }
+
   @Override
-  public IMetaverseBuilder deleteLink( IMetaverseLink link ) {
+  public synchronized IMetaverseBuilder deleteLink( IMetaverseLink link ) {
     deleteLink( link, true );
     return this;
   }
@@ -373,7 +435,7 @@ public class BaseMetaverseBuilder extends MetaverseObjectFactory implements IMet
         Vertex[] fromAndTo = new Vertex[] { fromVertex, toVertex };
         for ( Vertex v : fromAndTo ) {
           if ( isVirtual( v ) ) {
-            graph.removeVertex( v );
+            removeVertex( v );
           }
         }
       }
@@ -382,10 +444,10 @@ public class BaseMetaverseBuilder extends MetaverseObjectFactory implements IMet
   }
 
   @Override
-  public IMetaverseBuilder deleteNode( IMetaverseNode node ) {
+  public synchronized IMetaverseBuilder deleteNode( IMetaverseNode node ) {
     Vertex v = getVertexForNode( node );
     if ( v != null ) {
-      graph.removeVertex( v );
+      removeVertex( v );
     }
     return this;
   }
@@ -397,7 +459,7 @@ public class BaseMetaverseBuilder extends MetaverseObjectFactory implements IMet
    * IMetaverseBuilder#updateLink(IMetaverseLink)
    */
   @Override
-  public IMetaverseBuilder updateLinkLabel( IMetaverseLink link, String label ) {
+  public synchronized IMetaverseBuilder updateLinkLabel( IMetaverseLink link, String label ) {
     if ( label != null && deleteLink( link, false ) ) {
       link.setLabel( label );
       addLink( link );
@@ -434,7 +496,7 @@ public class BaseMetaverseBuilder extends MetaverseObjectFactory implements IMet
    * IMetaverseBuilder#updateNode(IMetaverseNode)
    */
   @Override
-  public IMetaverseBuilder updateNode( IMetaverseNode node ) {
+  public synchronized IMetaverseBuilder updateNode( IMetaverseNode node ) {
 
     Vertex v = getVertexForNode( node );
     if ( v != null ) {
@@ -454,7 +516,7 @@ public class BaseMetaverseBuilder extends MetaverseObjectFactory implements IMet
    * @see IMetaverseBuilder#addLink(IMetaverseNode, java.lang.String, IMetaverseNode)
    */
   @Override
-  public IMetaverseBuilder addLink( IMetaverseNode fromNode, String label, IMetaverseNode toNode ) {
+  public synchronized IMetaverseBuilder addLink( IMetaverseNode fromNode, String label, IMetaverseNode toNode ) {
     IMetaverseLink link = createLinkObject();
 
     link.setFromNode( fromNode );
@@ -463,7 +525,7 @@ public class BaseMetaverseBuilder extends MetaverseObjectFactory implements IMet
     return addLink( link );
   }
 
-  public void addLink( Vertex fromVertex, String label, Vertex toVertex ) {
+  public synchronized void addLink( Vertex fromVertex, String label, Vertex toVertex ) {
     addEdge( fromVertex, label, toVertex );
   }
 
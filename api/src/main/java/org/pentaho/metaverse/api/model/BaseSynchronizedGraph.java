@@ -22,6 +22,8 @@ import com.tinkerpop.blueprints.KeyIndexableGraph;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.util.wrappers.id.IdGraph;
 
+import java.util.function.Supplier;
+
 /**
  * A Graph that provides thread-safe modification
  */
@@ -139,4 +141,18 @@ public class BaseSynchronizedGraph implements Graph {
   public Graph getGraph() {
     return this.graph;
   }
+
+  /**
+   * Runs several reads and changes of this graph as one, holding the lock that every change of this graph takes, so
+   * that no other thread changes the graph in between.
+   *
+   * @param operation the reads and changes to make
+   * @param <T>       the type of the result
+   * @return the result of the operation
+   */
+  public <T> T runExclusively( Supplier<T> operation ) {
+    synchronized ( graph ) {
+      return operation.get();
+    }
+  }
 }
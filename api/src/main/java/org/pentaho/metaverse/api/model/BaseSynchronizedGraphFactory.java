@@ -16,8 +16,10 @@ package org.pentaho.metaverse.api.model;
 
 import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.KeyIndexableGraph;
+import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.util.wrappers.id.IdGraph;
 import org.apache.commons.configuration.Configuration;
+import org.pentaho.dictionary.DictionaryConst;
 import org.pentaho.metaverse.api.messages.Messages;
 
 import java.util.Enumeration;
@@ -33,6 +35,33 @@ import java.util.ResourceBundle;
 public class BaseSynchronizedGraphFactory {
   private static final Map<String, String> configMap = new HashMap<>();
 
+  /**
+   * Graph configuration key that selects how the wrapped graph is synchronized, either {@link #LOCKING_MONITOR}
+   * (the default) or {@link #LOCKING_READ_WRITE}.
+   */
+  public static final String LOCKING_KEY = "metaverse.graph.locking";
+
+  /**
+   * Every mutation holds the graph monitor, see {@link BaseSynchronizedGraph}
+   */
+  public static final String LOCKING_MONITOR = "monitor";
+
+  /**
+   * Lookups share a read lock and iteration is snapshot-based, see {@link ReadWriteSynchronizedGraph}
+   */
+  public static final String LOCKING_READ_WRITE = "readwrite";
+
+  /**
+   * Vertex property keys that are looked up by value during analysis and post-processing. These are registered as key
+   * indices on every wrapped graph so that {@link Graph#getVertices(String, Object)} does not scan the whole graph.
+   */
+  public static final String[] INDEXED_VERTEX_KEYS = new String[] {
+    DictionaryConst.PROPERTY_LOGICAL_ID,
+    DictionaryConst.PROPERTY_TYPE,
+    DictionaryConst.PROPERTY_NAME,
+    DictionaryConst.PROPERTY_PATH
+  };
+
   static {
     configMap.put( "blueprints.graph", "com.tinkerpop.blueprints.impls.tg.TinkerGraph" );
   }
@@ -57,7 +86,7 @@ public class BaseSynchronizedGraphFactory {
    */
   public static Graph open( final Configuration configuration ) {
     Graph graph = com.tinkerpop.blueprints.GraphFactory.open( configuration );
-    return wrapGraph( graph );
+    return wrapGraph( graph, configuration.getString( LOCKING_KEY ) );
   }
 
   /**
@@ -69,7 +98,7 @@ public class BaseSynchronizedGraphFactory {
    */
   public static Graph open( final Map<String, String> configuration ) {
     Graph graph = com.tinkerpop.blueprints.GraphFactory.open( configuration );
-    return wrapGraph( graph );
+    return wrapGraph( graph, configuration.get( LOCKING_KEY ) );
   }
 
   /**
@@ -109,12 +138,47 @@ public class BaseSynchronizedGraphFactory {
    * @return The synchronized graph
    */
   public static Graph wrapGraph( Graph graph ) {
+    return wrapGraph( graph, LOCKING_MONITOR );
+  }
+
+  /**
+   * Wraps the underlying graph with a synchronized one, using the given locking strategy
+   *
+   * @param graph   The graph to wrap
+   * @param locking {@link #LOCKING_MONITOR} or {@link #LOCKING_READ_WRITE}; null defaults to {@link #LOCKING_MONITOR}
+   * @return The synchronized graph
+   */
+  public static Graph wrapGraph( Graph graph, String locking ) {
     if ( graph instanceof KeyIndexableGraph ) {
       KeyIndexableGraph keyIndexableGraph = (KeyIndexableGraph) graph;
       IdGraph<KeyIndexableGraph> idGraph = new IdGraph<>( keyIndexableGraph );
-      return new BaseSynchronizedGraph( idGraph );
+      createKeyIndices( idGraph );
+      if ( locking == null || LOCKING_MONITOR.equalsIgnoreCase( locking ) ) {
+        return new BaseSynchronizedGraph( idGraph );
+      } else if ( LOCKING_READ_WRITE.equalsIgnoreCase( locking ) ) {
+        return new ReadWriteSynchronizedGraph( idGraph );
+      } else {
+        throw new IllegalArgumentException( Messages.getString( "ERROR.Graph.UnknownLocking", locking ) );
+      }
     } else {
       throw new IllegalArgumentException( Messages.getString( "ERROR.BackingGraph.MustImplement.KeyIndexableGraph" ) );
     }
   }
+
+  /**
+   * Registers a vertex key index for each of the {@link #INDEXED_VERTEX_KEYS} that is not already indexed. Graphs that
+   * do not support vertex key indices are left untouched.
+   *
+   * @param graph The graph to create the key indices on
+   */
+  protected static void createKeyIndices( KeyIndexableGraph graph ) {
+    if ( graph.getFeatures() == null || !Boolean.TRUE.equals( graph.getFeatures().supportsVertexKeyIndex ) ) {
+      return;
+    }
+    for ( String key : INDEXED_VERTEX_KEYS ) {
+      if ( !graph.getIndexedKeys( Vertex.class ).contains( key ) ) {
+        graph.createKeyIndex( key, Vertex.class );
+      }
+    }
+  }
 }
@@ -0,0 +1,143 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.api.model;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A thread-safe set of external resources that holds at most {@code limit} distinct resources. Once the limit is
+ * reached, the retained resources are a uniform reservoir sample of all resources offered since, and the number of
+ * offered resources that were turned away is recorded as the overflow count.
+ * <p>
+ * Adding a resource may evict a previously added one, so this set does not honor the {@link Set#add(Object)} contract
+ * beyond the limit. It is meant to be used as a write-mostly accumulator.
+ */
+public class BoundedResourceSet extends AbstractSet<IExternalResourceInfo> {
+
+  private final int limit;
+
+  private final Set<IExternalResourceInfo> resources = Collections.newSetFromMap( new ConcurrentHashMap<>() );
+
+  private final List<IExternalResourceInfo> sample = new ArrayList<>();
+
+  private long offered;
+
+  private long rejected;
+
+  /**
+   * Creates a new bounded set
+   *
+   * @param limit the maximum number of resources to retain, must be positive
+   */
+  public BoundedResourceSet( final int limit ) {
+    if ( limit <= 0 ) {
+      throw new IllegalArgumentException( "limit must be positive: " + limit );
+    }
+    this.limit = limit;
+  }
+
+  @Override
+  public boolean add( final IExternalResourceInfo resource ) {
+    if ( resource == null || resources.contains( resource ) ) {
+      return false;
+    }
+    synchronized ( sample ) {
+      if ( resources.contains( resource ) ) {
+        return false;
+      }
+      offered++;
+      if ( sample.size() < limit ) {
+        sample.add( resource );
+        resources.add( resource );
+        return true;
+      }
+      final long slot = ThreadLocalRandom.current().nextLong( offered );
+      if ( slot < limit ) {
+        resources.remove( sample.set( (int) slot, resource ) );
+        resources.add( resource );
+        return true;
+      }
+      rejected++;
+      return false;
+    }
+  }
+
+  @Override
+  public boolean contains( final Object o ) {
+    return resources.contains( o );
+  }
+
+  @Override
+  public Iterator<IExternalResourceInfo> iterator() {
+    return Collections.unmodifiableSet( resources ).iterator();
+  }
+
+  @Override
+  public int size() {
+    return resources.size();
+  }
+
+  @Override
+  public void clear() {
+    synchronized ( sample ) {
+      resources.clear();
+      sample.clear();
+      offered = 0;
+      rejected = 0;
+    }
+  }
+
+  /**
+   * Moves the retained resources to the given collection and empties this set, so that it starts over as a new sample
+   *
+   * @param target the collection to add the retained resources to
+   * @return the overflow count up to now
+   */
+  public long drainTo( final Collection<? super IExternalResourceInfo> target ) {
+    synchronized ( sample ) {
+      final long overflow = getOverflowCount();
+      target.addAll( sample );
+      resources.clear();
+      sample.clear();
+      offered = 0;
+      rejected = 0;
+      return overflow;
+    }
+  }
+
+  /**
+   * @return the maximum number of resources this set retains
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * @return the number of times a resource was turned away because this set was full. A resource evicted from the
+   * sample is not counted, it was accepted and may well be offered again.
+   */
+  public long getOverflowCount() {
+    synchronized ( sample ) {
+      return rejected;
+    }
+  }
+}
@@ -20,7 +20,13 @@ import org.pentaho.metaverse.api.IRequiresMetaverseBuilder;
 import org.pentaho.metaverse.api.messages.Messages;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 
 /**
@@ -40,6 +46,16 @@ public class LineageHolder implements IRequiresMetaverseBuilder {
 
   private Future lineageTask;
 
+  /**
+   * Resources captured per step while rows are being processed. These are kept out of the execution data until
+   * {@link #flushStepResources()} is called, so that capturing a resource for a row costs a single set insertion.
+   */
+  private final Map<String, Set<IExternalResourceInfo>> stepResources = new ConcurrentHashMap<>();
+
+  /**
+   * The number of resources per step that were dropped by a {@link BoundedResourceSet}, recorded on flush
+   */
+  private final Map<String, Long> stepResourceOverflow = new ConcurrentHashMap<>();
 
   public LineageHolder() {
   }
@@ -110,4 +126,76 @@ public class LineageHolder implements IRequiresMetaverseBuilder {
     return this.subTransAndJobs;
   }
 
+  /**
+   * Returns the thread-safe resource accumulator for the given step, creating it if needed. Duplicate resources are
+   * discarded on insertion.
+   *
+   * @param stepName the name of the step the resources belong to
+   * @return the live set of resources captured so far for the step
+   */
+  public Set<IExternalResourceInfo> getStepResources( final String stepName ) {
+    return getStepResources( stepName, 0 );
+  }
+
+  /**
+   * Returns the thread-safe resource accumulator for the given step, creating it if needed. When {@code limit} is
+   * positive, a newly created accumulator is a {@link BoundedResourceSet} that retains at most {@code limit}
+   * resources.
+   *
+   * @param stepName the name of the step the resources belong to
+   * @param limit    the maximum number of resources to retain for the step, or 0 for no limit
+   * @return the live set of resources captured so far for the step
+   */
+  public Set<IExternalResourceInfo> getStepResources( final String stepName, final int limit ) {
+    return stepResources.computeIfAbsent( stepName, k -> limit > 0
+      ? new BoundedResourceSet( limit ) : Collections.newSetFromMap( new ConcurrentHashMap<>() ) );
+  }
+
+  /**
+   * Returns the number of times each step turned a resource away because it had reached its resource limit. This is
+   * populated by {@link #flushStepResources()} and only contains steps that actually turned resources away.
+   *
+   * @return the overflow counts keyed by step name
+   */
+  public Map<String, Long> getStepResourceOverflow() {
+    return stepResourceOverflow;
+  }
+
+  /**
+   * Merges the accumulated step resources into the external resources of the execution profile's execution data,
+   * without duplicates, and drains the accumulators. The accumulators themselves stay registered, since row listeners
+   * keep adding to the set they were handed, so resources captured after a flush are merged by the next one.
+   */
+  public void flushStepResources() {
+    if ( executionProfile == null || executionProfile.getExecutionData() == null || stepResources.isEmpty() ) {
+      return;
+    }
+    final Map<String, List<IExternalResourceInfo>> resourceMap =
+      executionProfile.getExecutionData().getExternalResources();
+    for ( Map.Entry<String, Set<IExternalResourceInfo>> entry : stepResources.entrySet() ) {
+      final List<IExternalResourceInfo> drained = new ArrayList<>();
+      final Set<IExternalResourceInfo> accumulator = entry.getValue();
+      if ( accumulator instanceof BoundedResourceSet ) {
+        final long overflow = ( (BoundedResourceSet) accumulator ).drainTo( drained );
+        if ( overflow > 0 ) {
+          stepResourceOverflow.merge( entry.getKey(), overflow, Long::sum );
+        }
+      } else {
+        final Iterator<IExternalResourceInfo> resources = accumulator.iterator();
+        while ( resources.hasNext() ) {
+          drained.add( resources.next() );
+          resources.remove();
+        }
+      }
+      if ( drained.isEmpty() ) {
+        continue;
+      }
+      final List<IExternalResourceInfo> existingResources = resourceMap.get( entry.getKey() );
+      final Set<IExternalResourceInfo> merged = existingResources == null
+        ? new LinkedHashSet<>() : new LinkedHashSet<>( existingResources );
+      merged.addAll( drained );
+      resourceMap.put( entry.getKey(), new ArrayList<>( merged ) );
+    }
+  }
+
 }
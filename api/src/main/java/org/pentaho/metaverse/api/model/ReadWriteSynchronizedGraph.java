@@ -0,0 +1,406 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.api.model;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.GraphQuery;
+import com.tinkerpop.blueprints.KeyIndexableGraph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.VertexQuery;
+import com.tinkerpop.blueprints.util.DefaultGraphQuery;
+import com.tinkerpop.blueprints.util.DefaultVertexQuery;
+import com.tinkerpop.blueprints.util.wrappers.id.IdGraph;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * A Graph that guards the underlying graph with a read/write lock instead of a single monitor. Lookups by ID and key
+ * run concurrently with each other and only block while the graph is being changed. Iteration is snapshot-based:
+ * {@link #getVertices()}, {@link #getEdges()} and {@link #query()} copy the matching elements while holding the read
+ * lock, so callers can iterate them while other threads keep modifying the graph.
+ * <p>
+ * The vertices and edges handed out are wrapped so that property changes take the write lock as well, since they
+ * update the key indices of the underlying graph, and property reads and traversals take the read lock.
+ */
+public class ReadWriteSynchronizedGraph extends BaseSynchronizedGraph {
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Creates a new read/write synchronized graph
+   *
+   * @param graph The underlying graph
+   */
+  public ReadWriteSynchronizedGraph( IdGraph<KeyIndexableGraph> graph ) {
+    super( graph );
+  }
+
+  @Override
+  public Vertex addVertex( Object id ) {
+    Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      Vertex vertex = id == null ? null : graph.getVertex( id );
+      if ( vertex == null ) {
+        vertex = graph.addVertex( id );
+      }
+      return wrap( vertex );
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public Vertex getVertex( Object id ) {
+    Lock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      return wrap( graph.getVertex( id ) );
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public void removeVertex( Vertex vertex ) {
+    Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      graph.removeVertex( unwrap( vertex ) );
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Returns a copy of all the vertices of the graph. The copy is made on every call, which takes time and memory in
+   * proportion to the number of vertices; look vertices up by ID or by an indexed key wherever possible.
+   *
+   * @return the vertices of the graph at the time of the call
+   */
+  @Override
+  public Iterable<Vertex> getVertices() {
+    Lock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      return snapshotVertices( graph.getVertices() );
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public Iterable<Vertex> getVertices( String key, Object value ) {
+    Lock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      return snapshotVertices( graph.getVertices( key, value ) );
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public Edge addEdge( Object id, Vertex outVertex, Vertex inVertex, String label ) {
+    Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      Edge edge = id == null ? null : graph.getEdge( id );
+      if ( edge == null ) {
+        edge = graph.addEdge( id, unwrap( outVertex ), unwrap( inVertex ), label );
+      }
+      return wrap( edge );
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public Edge getEdge( Object id ) {
+    Lock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      return wrap( graph.getEdge( id ) );
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public void removeEdge( Edge edge ) {
+    Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      graph.removeEdge( unwrap( edge ) );
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Returns a copy of all the edges of the graph. Like {@link #getVertices()}, the copy is made on every call.
+   *
+   * @return the edges of the graph at the time of the call
+   */
+  @Override
+  public Iterable<Edge> getEdges() {
+    Lock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      return snapshotEdges( graph.getEdges() );
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public Iterable<Edge> getEdges( String key, Object value ) {
+    Lock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      return snapshotEdges( graph.getEdges( key, value ) );
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Returns a query that resolves against this graph, so that its results are built from snapshots as well.
+   *
+   * @return a query over this graph
+   */
+  @Override
+  public GraphQuery query() {
+    return new DefaultGraphQuery( this );
+  }
+
+  @Override
+  public void shutdown() {
+    Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      graph.shutdown();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Runs the operation holding the write lock, which the lookups and traversals it makes take again as read locks.
+   */
+  @Override
+  public <T> T runExclusively( Supplier<T> operation ) {
+    Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      return operation.get();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private Vertex wrap( Vertex vertex ) {
+    return vertex == null ? null : new LockedVertex( vertex );
+  }
+
+  private Edge wrap( Edge edge ) {
+    return edge == null ? null : new LockedEdge( edge );
+  }
+
+  private static Vertex unwrap( Vertex vertex ) {
+    return vertex instanceof LockedVertex ? ( (LockedVertex) vertex ).base : vertex;
+  }
+
+  private static Edge unwrap( Edge edge ) {
+    return edge instanceof LockedEdge ? ( (LockedEdge) edge ).base : edge;
+  }
+
+  // callers hold the read lock
+  private List<Vertex> snapshotVertices( Iterable<Vertex> vertices ) {
+    List<Vertex> copy = new ArrayList<>();
+    if ( vertices != null ) {
+      for ( Vertex vertex : vertices ) {
+        copy.add( wrap( vertex ) );
+      }
+    }
+    return copy;
+  }
+
+  // callers hold the read lock
+  private List<Edge> snapshotEdges( Iterable<Edge> edges ) {
+    List<Edge> copy = new ArrayList<>();
+    if ( edges != null ) {
+      for ( Edge edge : edges ) {
+        copy.add( wrap( edge ) );
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * An element whose property accesses are guarded by the graph lock
+   */
+  private abstract class LockedElement<E extends Element> implements Element {
+    protected final E base;
+
+    private LockedElement( final E base ) {
+      this.base = base;
+    }
+
+    @Override
+    public <T> T getProperty( final String key ) {
+      Lock readLock = lock.readLock();
+      readLock.lock();
+      try {
+        return base.getProperty( key );
+      } finally {
+        readLock.unlock();
+      }
+    }
+
+    @Override
+    public Set<String> getPropertyKeys() {
+      Lock readLock = lock.readLock();
+      readLock.lock();
+      try {
+        return new HashSet<>( base.getPropertyKeys() );
+      } finally {
+        readLock.unlock();
+      }
+    }
+
+    @Override
+    public void setProperty( final String key, final Object value ) {
+      Lock writeLock = lock.writeLock();
+      writeLock.lock();
+      try {
+        base.setProperty( key, value );
+      } finally {
+        writeLock.unlock();
+      }
+    }
+
+    @Override
+    public <T> T removeProperty( final String key ) {
+      Lock writeLock = lock.writeLock();
+      writeLock.lock();
+      try {
+        return base.removeProperty( key );
+      } finally {
+        writeLock.unlock();
+      }
+    }
+
+    @Override
+    public Object getId() {
+      return base.getId();
+    }
+
+    @Override
+    public boolean equals( final Object object ) {
+      return object instanceof LockedElement && base.equals( ( (LockedElement<?>) object ).base );
+    }
+
+    @Override
+    public int hashCode() {
+      return base.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return base.toString();
+    }
+  }
+
+  /**
+   * A vertex whose property accesses and traversals are guarded by the graph lock
+   */
+  private final class LockedVertex extends LockedElement<Vertex> implements Vertex {
+
+    private LockedVertex( final Vertex base ) {
+      super( base );
+    }
+
+    @Override
+    public Iterable<Edge> getEdges( final Direction direction, final String... labels ) {
+      Lock readLock = lock.readLock();
+      readLock.lock();
+      try {
+        return snapshotEdges( base.getEdges( direction, labels ) );
+      } finally {
+        readLock.unlock();
+      }
+    }
+
+    @Override
+    public Iterable<Vertex> getVertices( final Direction direction, final String... labels ) {
+      Lock readLock = lock.readLock();
+      readLock.lock();
+      try {
+        return snapshotVertices( base.getVertices( direction, labels ) );
+      } finally {
+        readLock.unlock();
+      }
+    }
+
+    @Override
+    public VertexQuery query() {
+      return new DefaultVertexQuery( this );
+    }
+
+    @Override
+    public Edge addEdge( final String label, final Vertex inVertex ) {
+      return ReadWriteSynchronizedGraph.this.addEdge( null, this, inVertex, label );
+    }
+
+    @Override
+    public void remove() {
+      removeVertex( this );
+    }
+  }
+
+  /**
+   * An edge whose property accesses are guarded by the graph lock
+   */
+  private final class LockedEdge extends LockedElement<Edge> implements Edge {
+
+    private LockedEdge( final Edge base ) {
+      super( base );
+    }
+
+    @Override
+    public Vertex getVertex( final Direction direction ) {
+      return wrap( base.getVertex( direction ) );
+    }
+
+    @Override
+    public String getLabel() {
+      return base.getLabel();
+    }
+
+    @Override
+    public void remove() {
+      removeEdge( this );
+    }
+  }
+}
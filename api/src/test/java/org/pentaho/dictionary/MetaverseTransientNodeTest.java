@@ -27,6 +27,9 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -132,4 +135,24 @@ public class MetaverseTransientNodeTest {
 
     assertEquals( "myId", myNode.getLogicalId() );
   }
+
+  @Test
+  public void testGetLogicalId_onlyRegeneratedWhenLogicalIdPropertyChanges() throws Exception {
+    MetaverseTransientNode myNode = new MetaverseTransientNode( "myId" );
+    ILogicalIdGenerator generator = spy( new MetaverseLogicalIdGenerator( "type", "name" ) );
+    myNode.setName( "testName" );
+    myNode.setType( "testType" );
+    myNode.setLogicalIdGenerator( generator );
+
+    String logicalId = myNode.getLogicalId();
+    myNode.setProperty( "zzz", "last" );
+    assertEquals( logicalId, myNode.getLogicalId() );
+    myNode.setName( "testName" );
+    assertEquals( logicalId, myNode.getLogicalId() );
+    verify( generator, times( 1 ) ).generateId( myNode );
+
+    myNode.setName( "otherName" );
+    assertEquals( "{\"name\":\"otherName\",\"type\":\"testType\"}", myNode.getLogicalId() );
+    verify( generator, times( 2 ) ).generateId( myNode );
+  }
 }
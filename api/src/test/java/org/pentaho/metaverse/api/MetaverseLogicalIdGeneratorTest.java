@@ -19,18 +19,25 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.MockedStatic;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.GregorianCalendar;
 import java.util.HashSet;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -244,4 +251,60 @@ public class MetaverseLogicalIdGeneratorTest {
     // make sure a call was made to add the logical id as a property
     verify( node ).setProperty( DictionaryConst.PROPERTY_LOGICAL_ID, logicalId );
   }
+
+  @Test
+  public void testGenerateLogicalId_hashed() throws Exception {
+    String[] logicalIdKeys = new String[] { "name", "type", "dataSource" };
+    idGenerator = new MetaverseLogicalIdGenerator( logicalIdKeys );
+    idGenerator.setHashed( true );
+    LogicalIdDictionary dictionary = new LogicalIdDictionary();
+    idGenerator.setDictionary( dictionary );
+
+    String canonicalForm = "{\"dataSource\":\"Sampledata\",\"name\":\"SALES_DATA\",\"type\":\"Database Table\"}";
+
+    when( node.getProperty( "name" ) ).thenReturn( "SALES_DATA" );
+    when( node.getProperty( "type" ) ).thenReturn( "Database Table" );
+    when( node.getProperty( "dataSource" ) ).thenReturn( "Sampledata" );
+    when( node.getPropertyKeys() ).thenReturn( new HashSet<String>() {{
+      add( "dataSource" );
+      add( "name" );
+      add( "type" );
+    }} );
+
+    String logicalId = idGenerator.generateId( node );
+    assertEquals( 32, logicalId.length() );
+    assertEquals( MetaverseLogicalIdGenerator.hash( canonicalForm ), logicalId );
+    assertEquals( canonicalForm, dictionary.get( logicalId ) );
+
+    // make sure a call was made to add the logical id as a property
+    verify( node ).setProperty( DictionaryConst.PROPERTY_LOGICAL_ID, logicalId );
+  }
+
+  @Test
+  public void testGenerateLogicalId_configured() throws Exception {
+    IMetaverseConfig config = mock( IMetaverseConfig.class );
+    when( config.getHashLogicalIds() ).thenReturn( true );
+    when( node.getProperty( "name" ) ).thenReturn( "john doe" );
+    when( node.getPropertyKeys() ).thenReturn( Collections.singleton( "name" ) );
+
+    try ( MockedStatic<PentahoSystem> pentahoSystem = mockStatic( PentahoSystem.class ) ) {
+      pentahoSystem.when( () -> PentahoSystem.get( IMetaverseConfig.class ) ).thenReturn( config );
+      String logicalId = idGenerator.generateId( node );
+      assertEquals( logicalId, idGenerator.generateId( node ) );
+      assertEquals( MetaverseLogicalIdGenerator.hash(
+        "{\"address\":\"\",\"age\":\"\",\"birthday\":\"\",\"name\":\"john doe\"}" ), logicalId );
+      assertNotNull( LogicalIdDictionary.getInstance().get( logicalId ) );
+      // the configuration is read once
+      pentahoSystem.verify( () -> PentahoSystem.get( IMetaverseConfig.class ), times( 1 ) );
+    } finally {
+      LogicalIdDictionary.getInstance().clear();
+    }
+  }
+
+  @Test
+  public void testHash() throws Exception {
+    assertEquals( "d41d8cd98f00b204e9800998ecf8427e", MetaverseLogicalIdGenerator.hash( "" ) );
+    assertEquals( MetaverseLogicalIdGenerator.hash( "{\"name\":\"a\"}" ),
+      MetaverseLogicalIdGenerator.hash( "{\"name\":\"a\"}" ) );
+  }
 }
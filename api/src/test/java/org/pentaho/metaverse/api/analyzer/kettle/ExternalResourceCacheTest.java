@@ -28,12 +28,18 @@ import org.pentaho.metaverse.api.IMetaverseConfig;
 import org.pentaho.metaverse.api.model.IExternalResourceInfo;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
@@ -167,6 +173,29 @@ public class ExternalResourceCacheTest {
     assertEquals( 0, testInstance.resourceCache.size() );
   }
 
+  @Test
+  public void test_getOrCache() throws Exception {
+    final ExternalResourceCache.ExternalResourceValues resources = testInstance.getOrCache( "key" );
+    assertNotNull( resources );
+    assertSame( resources, testInstance.getOrCache( "key" ) );
+    assertSame( resources, testInstance.resourceCache.getIfPresent( "key" ) );
+
+    // steps running in parallel all get the same resources
+    final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+    try {
+      final List<Future<ExternalResourceCache.ExternalResourceValues>> futures = new ArrayList<>();
+      for ( int i = 0; i < 100; i++ ) {
+        futures.add( executor.submit( () -> testInstance.getOrCache( "parallel" ) ) );
+      }
+      for ( Future<ExternalResourceCache.ExternalResourceValues> future : futures ) {
+        assertSame( testInstance.resourceCache.getIfPresent( "parallel" ), future.get() );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals( 2, testInstance.resourceCache.size() );
+  }
+
   @Test
   public void test_ExternalResourceExternalResourceValues() {
     final IExternalResourceInfo resource1 = Mockito.mock( IExternalResourceInfo.class );
@@ -47,6 +47,7 @@ import org.pentaho.metaverse.api.model.IExternalResourceInfo;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
@@ -60,6 +61,7 @@ import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
 
 /**
@@ -109,6 +111,22 @@ public class KettleAnalyzerUtilTest {
     }
   }
 
+  @Test
+  public void testNormalizeFilePathCached() throws Exception {
+    final String path = "temp/cached";
+    final String normalizedPath = KettleAnalyzerUtil.normalizeFilePathCached( path );
+    assertEquals( KettleAnalyzerUtil.normalizeFilePath( path ), normalizedPath );
+
+    // the normalized path is remembered, while paths that cannot be normalized are not
+    try ( MockedStatic<KettleVFS> mockedKettleVFS = mockStatic( KettleVFS.class ) ) {
+      mockedKettleVFS.when( () -> KettleVFS.getFileObject( anyString() ) )
+        .thenThrow( new KettleFileException( "mockedException" ) );
+      assertEquals( normalizedPath, KettleAnalyzerUtil.normalizeFilePathCached( path ) );
+      assertEquals( "temp/uncached", KettleAnalyzerUtil.normalizeFilePathCached( "temp/uncached" ) );
+    }
+    assertNotEquals( "temp/uncached", KettleAnalyzerUtil.normalizeFilePathCached( "temp/uncached" ) );
+  }
+
   @Test
   public void tesBuildDocument() throws MetaverseException {
     final IMetaverseBuilder builder = new BaseMetaverseBuilder( null );
@@ -338,6 +356,49 @@ public class KettleAnalyzerUtilTest {
     }
   }
 
+  @Test
+  public void getNewResourcesFromRowResolvesEachFileOnceTest() throws Exception {
+    String filename = "/filefolder/memoized";
+    BaseFileInputStep step = mock( BaseFileInputStep.class );
+    RowMetaInterface rowMeta = mock( RowMetaInterface.class );
+    Object[] row = new Object[]{};
+    IExternalResourceInfo resourceInfo = initMocksForGetResourcesFromRowTest( filename, step );
+
+    try ( MockedStatic<KettleVFS> mockedKettleVFS = mockStatic( KettleVFS.class ) ) {
+      mockedKettleVFS.when( () -> KettleVFS.getFileObject( Mockito.<String>any(), Mockito.<VariableSpace>any() ) ).thenReturn( fileObject );
+      Collection<IExternalResourceInfo> newResources = KettleAnalyzerUtil.getNewResourcesFromRow( step, rowMeta, row );
+      assertEquals( 1, newResources.size() );
+      assertTrue( newResources.contains( resourceInfo ) );
+
+      assertTrue( KettleAnalyzerUtil.getNewResourcesFromRow( step, rowMeta, row ).isEmpty() );
+      assertTrue( KettleAnalyzerUtil.getResourcesFromRow( step, rowMeta, row ).contains( resourceInfo ) );
+      mockedKettleVFS.verify( () -> KettleVFS.getFileObject( Mockito.<String>any(), Mockito.<VariableSpace>any() ),
+        times( 1 ) );
+    }
+  }
+
+  @Test
+  public void getNewResourcesFromRowReportsResourcesOfEachRunTest() throws Exception {
+    String filename = "/filefolder/rerun";
+    BaseFileInputStep firstRun = mock( BaseFileInputStep.class );
+    BaseFileInputStep secondRun = mock( BaseFileInputStep.class );
+    RowMetaInterface rowMeta = mock( RowMetaInterface.class );
+    Object[] row = new Object[]{};
+    initMocksForGetResourcesFromRowTest( filename, firstRun );
+    IExternalResourceInfo resourceInfo = initMocksForGetResourcesFromRowTest( filename, secondRun );
+
+    try ( MockedStatic<KettleVFS> mockedKettleVFS = mockStatic( KettleVFS.class ) ) {
+      mockedKettleVFS.when( () -> KettleVFS.getFileObject( Mockito.<String>any(), Mockito.<VariableSpace>any() ) ).thenReturn( fileObject );
+      assertTrue( KettleAnalyzerUtil.getNewResourcesFromRow( firstRun, rowMeta, row ).contains( resourceInfo ) );
+      // another run of the same transformation reads the same file, and reports it too
+      assertTrue( KettleAnalyzerUtil.getNewResourcesFromRow( secondRun, rowMeta, row ).contains( resourceInfo ) );
+      assertTrue( KettleAnalyzerUtil.getNewResourcesFromRow( secondRun, rowMeta, row ).isEmpty() );
+      // but the file name is only resolved once
+      mockedKettleVFS.verify( () -> KettleVFS.getFileObject( Mockito.<String>any(), Mockito.<VariableSpace>any() ),
+        times( 1 ) );
+    }
+  }
+
   private IExternalResourceInfo initMocksForGetResourcesFromRowTest( String filename, BaseFileInputStep step ) {
     StepMeta stepMeta = mock( StepMeta.class );
     TransMeta transMeta = mock( TransMeta.class );
@@ -0,0 +1,210 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+
+package org.pentaho.metaverse.api.analyzer.kettle;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.trans.TransHopMeta;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepMeta;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith( MockitoJUnitRunner.StrictStubs.class )
+public class StepFieldsCacheTest {
+
+  @Mock
+  private TransMeta transMeta;
+
+  @After
+  public void tearDown() {
+    StepFieldsCache.close( transMeta );
+  }
+
+  @Test
+  public void testNoCacheOpen() throws Exception {
+    final StepMeta step = mock( StepMeta.class );
+    when( transMeta.getStepFields( step ) ).thenReturn( rowMeta( "a" ) );
+
+    assertNull( StepFieldsCache.get( transMeta ) );
+    StepFieldsCache.getStepFields( transMeta, step );
+    StepFieldsCache.getStepFields( transMeta, step );
+    verify( transMeta, times( 2 ) ).getStepFields( step );
+  }
+
+  @Test
+  public void testOpenAndClose() {
+    assertTrue( StepFieldsCache.open( transMeta ) );
+    final StepFieldsCache cache = StepFieldsCache.get( transMeta );
+    assertFalse( StepFieldsCache.open( transMeta ) );
+    assertSame( cache, StepFieldsCache.get( transMeta ) );
+
+    StepFieldsCache.close( transMeta );
+    assertNull( StepFieldsCache.get( transMeta ) );
+    assertFalse( StepFieldsCache.open( null ) );
+  }
+
+  @Test
+  public void testFieldsAreComputedOnce() throws Exception {
+    final StepMeta input = step( "input" );
+    final StepMeta step = step( "step" );
+    when( transMeta.findPreviousSteps( input, false ) ).thenReturn( Collections.emptyList() );
+    when( transMeta.findPreviousSteps( step, false ) ).thenReturn( Collections.singletonList( input ) );
+    when( transMeta.findPreviousSteps( step ) ).thenReturn( Collections.singletonList( input ) );
+    when( transMeta.getThisStepFields( eq( input ), any(), any( RowMetaInterface.class ) ) ).then( adding( "a" ) );
+    when( transMeta.getThisStepFields( eq( step ), isNull(), any( RowMetaInterface.class ) ) ).then( adding( "b" ) );
+    StepFieldsCache.open( transMeta );
+
+    final RowMetaInterface first = StepFieldsCache.getStepFields( transMeta, step );
+    final RowMetaInterface second = StepFieldsCache.getStepFields( transMeta, step );
+    assertArrayEquals( new String[] { "a", "b" }, second.getFieldNames() );
+    assertNotSame( first, second );
+    assertArrayEquals( new String[] { "a" }, StepFieldsCache.getPrevStepFields( transMeta, step ).getFieldNames() );
+    StepFieldsCache.getPrevStepFields( transMeta, step );
+
+    // the fields of the input step are computed once, for both the fields of the step and its input fields
+    verify( transMeta ).getThisStepFields( eq( input ), eq( step ), any( RowMetaInterface.class ) );
+    verify( transMeta ).getThisStepFields( eq( step ), isNull(), any( RowMetaInterface.class ) );
+    verify( transMeta, never() ).getStepFields( any( StepMeta.class ) );
+    verify( transMeta, never() ).getPrevStepFields( any( StepMeta.class ) );
+    final StepFieldsCache cache = StepFieldsCache.get( transMeta );
+    assertEquals( 3, cache.getMissCount() );
+    assertEquals( 3, cache.getHitCount() );
+  }
+
+  @Test
+  public void testCopiesAreIndependent() throws Exception {
+    final StepMeta step = step( "step" );
+    when( transMeta.getThisStepFields( eq( step ), isNull(), any( RowMetaInterface.class ) ) ).then( adding( "a" ) );
+    StepFieldsCache.open( transMeta );
+
+    StepFieldsCache.getStepFields( transMeta, step ).addValueMeta( new ValueMetaString( "b" ) );
+    assertArrayEquals( new String[] { "a" }, StepFieldsCache.getStepFields( transMeta, step ).getFieldNames() );
+  }
+
+  @Test
+  public void testNullFieldsAreNotCached() throws Exception {
+    final StepMeta step = step( "step" );
+    StepFieldsCache.open( transMeta );
+
+    assertNull( StepFieldsCache.getStepFields( transMeta, step ) );
+    assertNull( StepFieldsCache.getStepFields( transMeta, step ) );
+    verify( transMeta, times( 2 ) ).getThisStepFields( eq( step ), isNull(), any( RowMetaInterface.class ) );
+  }
+
+  @Test
+  public void testWarmUpComputesUpstreamStepsFirst() throws Exception {
+    final StepMeta input = step( "input" );
+    final StepMeta calc = step( "calc" );
+    final StepMeta output = step( "output" );
+    when( transMeta.nrTransHops() ).thenReturn( 2 );
+    when( transMeta.getTransHop( 0 ) ).thenReturn( new TransHopMeta( calc, output ) );
+    when( transMeta.getTransHop( 1 ) ).thenReturn( new TransHopMeta( input, calc ) );
+    when( transMeta.findPreviousSteps( input, false ) ).thenReturn( Collections.emptyList() );
+    when( transMeta.findPreviousSteps( calc, false ) ).thenReturn( Collections.singletonList( input ) );
+    when( transMeta.findPreviousSteps( output, false ) ).thenReturn( Collections.singletonList( calc ) );
+    when( transMeta.findPreviousSteps( input ) ).thenReturn( Collections.emptyList() );
+    when( transMeta.findPreviousSteps( calc ) ).thenReturn( Collections.singletonList( input ) );
+    when( transMeta.findPreviousSteps( output ) ).thenReturn( Collections.singletonList( calc ) );
+    when( transMeta.getThisStepFields( eq( input ), any(), any( RowMetaInterface.class ) ) ).then( adding( "a" ) );
+    when( transMeta.getThisStepFields( eq( calc ), any(), any( RowMetaInterface.class ) ) ).then( adding( "b" ) );
+    when( transMeta.getThisStepFields( eq( output ), any(), any( RowMetaInterface.class ) ) ).then( adding( null ) );
+    when( transMeta.findStep( "calc" ) ).thenReturn( calc );
+    StepFieldsCache.open( transMeta );
+
+    StepFieldsCache.get( transMeta ).warmUp( Arrays.asList( output, calc, input ) );
+
+    final InOrder order = inOrder( transMeta );
+    order.verify( transMeta ).getThisStepFields( eq( input ), isNull(), any( RowMetaInterface.class ) );
+    order.verify( transMeta ).getThisStepFields( eq( calc ), isNull(), any( RowMetaInterface.class ) );
+    order.verify( transMeta ).getThisStepFields( eq( output ), isNull(), any( RowMetaInterface.class ) );
+
+    assertArrayEquals( new String[] { "a", "b" },
+      StepFieldsCache.getStepFields( transMeta, "calc" ).getFieldNames() );
+    assertArrayEquals( new String[] { "a", "b" },
+      StepFieldsCache.getStepFields( transMeta, output, null ).getFieldNames() );
+    assertArrayEquals( new String[] { "a", "b" },
+      StepFieldsCache.getPrevStepFields( transMeta, output, "calc", null ).getFieldNames() );
+    // once for each step, and once for each hop
+    verify( transMeta, times( 5 ) ).getThisStepFields( any(), any(), any( RowMetaInterface.class ) );
+    verify( transMeta, never() ).getStepFields( any( StepMeta.class ) );
+  }
+
+  @Test
+  public void testLoopOfHopsIsBroken() throws Exception {
+    final StepMeta first = step( "first" );
+    final StepMeta second = step( "second" );
+    when( transMeta.findPreviousSteps( first, false ) ).thenReturn( Collections.singletonList( second ) );
+    when( transMeta.findPreviousSteps( second, false ) ).thenReturn( Collections.singletonList( first ) );
+    when( transMeta.getThisStepFields( eq( first ), any(), any( RowMetaInterface.class ) ) ).then( adding( "a" ) );
+    when( transMeta.getThisStepFields( eq( second ), any(), any( RowMetaInterface.class ) ) ).then( adding( "b" ) );
+    StepFieldsCache.open( transMeta );
+
+    assertArrayEquals( new String[] { "b", "a" }, StepFieldsCache.getStepFields( transMeta, first ).getFieldNames() );
+  }
+
+  /**
+   * Answers getThisStepFields with the fields it was given, and the named field added unless it is null
+   */
+  private static Answer<RowMetaInterface> adding( final String fieldName ) {
+    return invocation -> {
+      final RowMetaInterface row = invocation.getArgument( 2 );
+      if ( fieldName != null ) {
+        row.addValueMeta( new ValueMetaString( fieldName ) );
+      }
+      return row;
+    };
+  }
+
+  private static StepMeta step( final String name ) {
+    final StepMeta step = mock( StepMeta.class );
+    when( step.getName() ).thenReturn( name );
+    return step;
+  }
+
+  private static RowMetaInterface rowMeta( final String... fieldNames ) {
+    final RowMetaInterface rowMeta = new RowMeta();
+    for ( final String fieldName : fieldNames ) {
+      rowMeta.addValueMeta( new ValueMetaString( fieldName ) );
+    }
+    return rowMeta;
+  }
+}
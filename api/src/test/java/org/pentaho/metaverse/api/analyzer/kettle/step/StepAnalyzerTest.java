@@ -13,6 +13,10 @@
 
 package org.pentaho.metaverse.api.analyzer.kettle.step;
 
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.util.wrappers.id.IdGraph;
 import org.apache.commons.collections.CollectionUtils;
 import org.junit.Before;
 import org.junit.Test;
@@ -51,6 +55,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
@@ -298,6 +303,27 @@ public class StepAnalyzerTest {
     assertFalse( analyzer.isPassthrough( testField ) );
   }
 
+  @Test
+  public void testGetPassthroughChanges_wideRow() throws Exception {
+    // 3,000 columns coming in, every other one going out
+    StepNodes wideInputs = new StepNodes();
+    StepNodes wideOutputs = new StepNodes();
+    for ( int i = 0; i < 3000; i++ ) {
+      wideInputs.addNode( "prevStep", "column" + i, fieldNode );
+      if ( i % 2 == 0 ) {
+        wideOutputs.addNode( "nextStep", "column" + i, fieldNode );
+      }
+    }
+    doReturn( wideInputs ).when( analyzer ).getInputs();
+    doReturn( wideOutputs ).when( analyzer ).getOutputs();
+
+    Set<ComponentDerivationRecord> passthroughChanges = analyzer.getPassthroughChanges();
+    assertEquals( 1500, passthroughChanges.size() );
+    for ( ComponentDerivationRecord passthroughChange : passthroughChanges ) {
+      assertTrue( wideOutputs.containsFieldName( passthroughChange.getChangedEntityName() ) );
+    }
+  }
+
   @Test
   public void testIsPassthrough_noOutputs() throws Exception {
     doReturn( null ).when( analyzer ).getOutputs();
@@ -450,6 +476,43 @@ public class StepAnalyzerTest {
     verify( builder, times( vmis.size() ) ).addLink( rootNode, DictionaryConst.LINK_OUTPUTS, fieldNode );
   }
 
+  @Test
+  public void testProcessOutputs_sharedFieldNodes() throws Exception {
+    analyzer.shareOutputFieldNodes = true;
+    Map<String, RowMetaInterface> outputRmis = new HashMap<>();
+    RowMetaInterface rowMetaInterface = mock( RowMetaInterface.class );
+    outputRmis.put( "nextStep", rowMetaInterface );
+    outputRmis.put( "otherNextStep", rowMetaInterface );
+
+    List<ValueMetaInterface> vmis = new ArrayList<>();
+    vmis.add( new ValueMeta( "full name" ) );
+    vmis.add( new ValueMeta( "address" ) );
+    vmis.add( new ValueMeta( "email" ) );
+
+    doReturn( outputRmis ).when( analyzer ).getOutputRowMetaInterfaces( baseStepMeta );
+    when( rowMetaInterface.getValueMetaList() ).thenReturn( vmis );
+
+    doReturn( fieldNode ).when( analyzer ).createOutputFieldNode(
+      any( IAnalysisContext.class ),
+      any( ValueMetaInterface.class ),
+      anyString(),
+      eq( DictionaryConst.NODE_TYPE_TRANS_FIELD ) );
+
+    StepNodes stepNodes = analyzer.processOutputs( baseStepMeta );
+
+    assertEquals( 2, stepNodes.getStepNames().size() );
+    assertEquals( vmis.size() * 2, stepNodes.getFieldNames().size() );
+    assertSame( stepNodes.findNode( "nextStep", "address" ), stepNodes.findNode( "otherNextStep", "address" ) );
+
+    // one node per field, whatever the number of next steps
+    verify( analyzer, times( vmis.size() ) ).createOutputFieldNode(
+      any( IAnalysisContext.class ),
+      any( ValueMetaInterface.class ),
+      anyString(),
+      eq( DictionaryConst.NODE_TYPE_TRANS_FIELD ) );
+    verify( builder, times( vmis.size() ) ).addLink( rootNode, DictionaryConst.LINK_OUTPUTS, fieldNode );
+  }
+
   @Test
   public void testGetPrevFieldDescriptor() throws Exception {
     IComponentDescriptor descriptor = analyzer.getPrevFieldDescriptor( "previousStep", "address" );
@@ -482,6 +545,22 @@ public class StepAnalyzerTest {
     verify( builder ).addNode( node );
   }
 
+  @Test
+  public void testCreateFieldNode_shared() throws Exception {
+    analyzer.shareOutputFieldNodes = true;
+    IComponentDescriptor fieldDescriptor = mock( IComponentDescriptor.class );
+    ValueMetaInterface fieldMeta = new ValueMeta( "address" );
+
+    MetaverseTransientNode node = new MetaverseTransientNode( "hello" );
+    doReturn( node ).when( analyzer ).createNodeFromDescriptor( fieldDescriptor );
+
+    IMetaverseNode fieldNode = analyzer.createFieldNode( fieldDescriptor, fieldMeta, "nextStep", true );
+    assertNull( fieldNode.getProperty( DictionaryConst.PROPERTY_TARGET_STEP ) );
+
+    // it is still added to the graph
+    verify( builder ).addNode( node );
+  }
+
   @Test
   public void testCreateFieldNode_virtual() throws Exception {
     IComponentDescriptor fieldDescriptor = mock( IComponentDescriptor.class );
@@ -843,4 +922,47 @@ public class StepAnalyzerTest {
     verify( analyzer, times( changeRecords.size() ) ).mapChange( any( ComponentDerivationRecord.class ) );
     verify( analyzer ).customAnalyze( baseStepMeta, analyzedNode );
   }
+
+  @Test
+  public void testFindVertexById() {
+    final Graph graph = new IdGraph<>( new TinkerGraph() );
+    final Vertex vertex = graph.addVertex( "vertexId" );
+    when( builder.getGraph() ).thenReturn( graph );
+
+    assertSame( vertex, analyzer.findVertexById( "vertexId" ) );
+    assertNull( analyzer.findVertexById( "otherId" ) );
+    assertNull( analyzer.findVertexById( null ) );
+  }
+
+  @Test
+  public void testFindVerticesAndStepVertex() {
+    final Graph graph = new IdGraph<>( new TinkerGraph() );
+    final Vertex trans = graph.addVertex( "trans" );
+    trans.setProperty( DictionaryConst.PROPERTY_PATH, "lineage/trans.ktr" );
+    final Vertex otherTrans = graph.addVertex( "otherTrans" );
+    otherTrans.setProperty( DictionaryConst.PROPERTY_PATH, "lineage/other.ktr" );
+    final Vertex step = addStepVertex( graph, "step", trans );
+    addStepVertex( graph, "otherStep", trans );
+    addStepVertex( graph, "step", otherTrans );
+    when( builder.getGraph() ).thenReturn( graph );
+    when( parentTransMeta.getFilename() ).thenReturn( "lineage/trans.ktr" );
+
+    final Map<String, String> properties = new HashMap<>();
+    properties.put( DictionaryConst.PROPERTY_NAME, "step" );
+    assertEquals( 2, analyzer.findVertices( properties ).size() );
+    properties.put( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_FIELD );
+    assertTrue( analyzer.findVertices( properties ).isEmpty() );
+    assertEquals( 5, analyzer.findVertices( (Map<String, String>) null ).size() );
+
+    assertSame( step, analyzer.findStepVertex( parentTransMeta, "step" ) );
+    assertNull( analyzer.findStepVertex( parentTransMeta, "missingStep" ) );
+  }
+
+  private static Vertex addStepVertex( final Graph graph, final String name, final Vertex trans ) {
+    final Vertex step = graph.addVertex( trans.getId() + "/" + name );
+    step.setProperty( DictionaryConst.PROPERTY_NAME, name );
+    step.setProperty( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_STEP );
+    graph.addEdge( null, trans, step, DictionaryConst.LINK_CONTAINS );
+    return step;
+  }
 }
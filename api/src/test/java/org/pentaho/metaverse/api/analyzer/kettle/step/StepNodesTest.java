@@ -15,9 +15,13 @@ package org.pentaho.metaverse.api.analyzer.kettle.step;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.pentaho.metaverse.api.IMetaverseNode;
 
+import java.util.Arrays;
 import java.util.Map;
 
+import static org.mockito.Mockito.mock;
+
 public class StepNodesTest {
 
   @Test
@@ -31,4 +35,30 @@ public class StepNodesTest {
     Assert.assertTrue( map.containsKey( "FOO" ) );
     Assert.assertTrue( map.containsKey( "foo" ) );
   }
+
+  @Test
+  public void testFindNodes() {
+    final IMetaverseNode node1 = mock( IMetaverseNode.class );
+    final IMetaverseNode node2 = mock( IMetaverseNode.class );
+    final IMetaverseNode node3 = mock( IMetaverseNode.class );
+    final StepNodes stepNodes = new StepNodes();
+    stepNodes.addNode( "step1", "Name", node1 );
+    stepNodes.addNode( "step2", "name", node2 );
+    stepNodes.addNode( "Step1", "other", node3 );
+
+    Assert.assertEquals( Arrays.asList( node1, node2 ), stepNodes.findNodes( "NAME" ) );
+    Assert.assertEquals( Arrays.asList( node3 ), stepNodes.findNodes( "other" ) );
+    Assert.assertTrue( stepNodes.findNodes( "unknown" ).isEmpty() );
+    Assert.assertEquals( 2, stepNodes.getStepNames().size() );
+  }
+
+  @Test
+  public void testContainsFieldName() {
+    final StepNodes stepNodes = new StepNodes();
+    stepNodes.addNode( "step1", "Name", mock( IMetaverseNode.class ) );
+
+    Assert.assertTrue( stepNodes.containsFieldName( "Name" ) );
+    Assert.assertFalse( stepNodes.containsFieldName( "name" ) );
+    Assert.assertFalse( stepNodes.containsFieldName( "other" ) );
+  }
 }
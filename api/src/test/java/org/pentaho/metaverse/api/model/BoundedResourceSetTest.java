@@ -0,0 +1,90 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+
+package org.pentaho.metaverse.api.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedResourceSetTest {
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testNonPositiveLimit() {
+    new BoundedResourceSet( 0 );
+  }
+
+  @Test
+  public void testAddBelowLimit() {
+    BoundedResourceSet set = new BoundedResourceSet( 3 );
+    assertTrue( set.add( resource( "a" ) ) );
+    assertTrue( set.add( resource( "b" ) ) );
+    assertFalse( set.add( resource( "a" ) ) );
+    assertFalse( set.add( null ) );
+    assertEquals( 2, set.size() );
+    assertTrue( set.contains( resource( "b" ) ) );
+    assertEquals( 0, set.getOverflowCount() );
+  }
+
+  @Test
+  public void testAddBeyondLimit() {
+    BoundedResourceSet set = new BoundedResourceSet( 10 );
+    int rejected = 0;
+    for ( int i = 0; i < 100; i++ ) {
+      if ( !set.add( resource( "r" + i ) ) ) {
+        rejected++;
+      }
+    }
+    assertEquals( 10, set.size() );
+    assertEquals( 10, set.getLimit() );
+    assertEquals( rejected, set.getOverflowCount() );
+
+    set.clear();
+    assertTrue( set.isEmpty() );
+    assertEquals( 0, set.getOverflowCount() );
+  }
+
+  @Test
+  public void testReofferedResourcesAreNotRecounted() {
+    BoundedResourceSet set = new BoundedResourceSet( 1 );
+    assertTrue( set.add( resource( "a" ) ) );
+    int rejected = 0;
+    for ( int i = 0; i < 50; i++ ) {
+      // "a" and "b" keep replacing each other, nothing is lost for good
+      for ( String name : new String[] { "a", "b" } ) {
+        if ( !set.contains( resource( name ) ) && !set.add( resource( name ) ) ) {
+          rejected++;
+        }
+      }
+    }
+    assertEquals( 1, set.size() );
+    assertEquals( rejected, set.getOverflowCount() );
+
+    List<IExternalResourceInfo> drained = new ArrayList<>();
+    assertEquals( rejected, set.drainTo( drained ) );
+    assertEquals( 1, drained.size() );
+    assertEquals( 0, set.getOverflowCount() );
+  }
+
+  private static IExternalResourceInfo resource( String name ) {
+    BaseResourceInfo resource = new BaseResourceInfo();
+    resource.setName( name );
+    return resource;
+  }
+}
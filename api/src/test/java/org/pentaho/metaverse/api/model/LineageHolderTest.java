@@ -22,11 +22,20 @@ import org.pentaho.di.job.Job;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.metaverse.api.IMetaverseBuilder;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
 @RunWith( MockitoJUnitRunner.StrictStubs.class )
@@ -110,4 +119,45 @@ public class LineageHolderTest {
     assertEquals( trans, lineageHolder.getSubTransAndJobs().get( 0 ) );
     assertEquals( job, lineageHolder.getSubTransAndJobs().get( 1 ) );
   }
+
+  @Test
+  public void testFlushStepResources() {
+    IExecutionData executionData = Mockito.mock( IExecutionData.class );
+    Map<String, List<IExternalResourceInfo>> resourceMap = new HashMap<>();
+    IExternalResourceInfo existing = Mockito.mock( IExternalResourceInfo.class );
+    IExternalResourceInfo captured = Mockito.mock( IExternalResourceInfo.class );
+    resourceMap.put( "step", new ArrayList<>( Collections.singletonList( existing ) ) );
+    when( executionProfile.getExecutionData() ).thenReturn( executionData );
+    when( executionData.getExternalResources() ).thenReturn( resourceMap );
+
+    lineageHolder = new LineageHolder( executionProfile, builder );
+    lineageHolder.getStepResources( "step" ).add( captured );
+    lineageHolder.getStepResources( "step" ).add( existing );
+    lineageHolder.getStepResources( "step" ).add( captured );
+    lineageHolder.flushStepResources();
+
+    assertEquals( Arrays.asList( existing, captured ), resourceMap.get( "step" ) );
+    assertTrue( lineageHolder.getStepResources( "step" ).isEmpty() );
+  }
+
+  @Test
+  public void testFlushStepResources_accumulatorKeptAcrossFlushes() {
+    IExecutionData executionData = Mockito.mock( IExecutionData.class );
+    Map<String, List<IExternalResourceInfo>> resourceMap = new HashMap<>();
+    IExternalResourceInfo first = Mockito.mock( IExternalResourceInfo.class );
+    IExternalResourceInfo second = Mockito.mock( IExternalResourceInfo.class );
+    when( executionProfile.getExecutionData() ).thenReturn( executionData );
+    when( executionData.getExternalResources() ).thenReturn( resourceMap );
+
+    lineageHolder = new LineageHolder( executionProfile, builder );
+    // a row listener holds on to its accumulator
+    Set<IExternalResourceInfo> accumulator = lineageHolder.getStepResources( "step", 5 );
+    accumulator.add( first );
+    lineageHolder.flushStepResources();
+    accumulator.add( second );
+    lineageHolder.flushStepResources();
+
+    assertSame( accumulator, lineageHolder.getStepResources( "step" ) );
+    assertEquals( Arrays.asList( first, second ), resourceMap.get( "step" ) );
+  }
 }
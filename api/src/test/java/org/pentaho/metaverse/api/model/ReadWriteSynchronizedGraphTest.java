@@ -0,0 +1,206 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.api.model;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReadWriteSynchronizedGraphTest {
+
+  private Graph graph;
+
+  @Before
+  public void setUp() throws Exception {
+    graph = BaseSynchronizedGraphFactory.wrapGraph( new TinkerGraph(), BaseSynchronizedGraphFactory.LOCKING_READ_WRITE );
+  }
+
+  @Test
+  public void testWrapGraph() {
+    assertTrue( graph instanceof ReadWriteSynchronizedGraph );
+  }
+
+  @Test
+  public void testOpen_Map() {
+    Map<String, String> config = new HashMap<>();
+    config.put( "blueprints.graph", "com.tinkerpop.blueprints.impls.tg.TinkerGraph" );
+    config.put( BaseSynchronizedGraphFactory.LOCKING_KEY, BaseSynchronizedGraphFactory.LOCKING_READ_WRITE );
+    assertTrue( BaseSynchronizedGraphFactory.open( config ) instanceof ReadWriteSynchronizedGraph );
+
+    config.put( BaseSynchronizedGraphFactory.LOCKING_KEY, BaseSynchronizedGraphFactory.LOCKING_MONITOR );
+    assertEquals( BaseSynchronizedGraph.class, BaseSynchronizedGraphFactory.open( config ).getClass() );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testWrapGraph_unknownLocking() {
+    BaseSynchronizedGraphFactory.wrapGraph( new TinkerGraph(), "bogus" );
+  }
+
+  @Test
+  public void testAddVertexAndEdge_existingIds() {
+    Vertex v1 = graph.addVertex( "v1" );
+    Vertex v2 = graph.addVertex( "v2" );
+    assertEquals( v1, graph.addVertex( "v1" ) );
+
+    Edge e = graph.addEdge( "e", v1, v2, "link" );
+    assertEquals( e, graph.addEdge( "e", v1, v2, "link" ) );
+    assertEquals( v2, e.getVertex( Direction.IN ) );
+    assertEquals( v2, v1.getVertices( Direction.OUT, "link" ).iterator().next() );
+    assertNotNull( graph.getEdge( "e" ) );
+    assertEquals( 1, count( graph.getEdges() ) );
+    assertEquals( 2, count( graph.getVertices() ) );
+  }
+
+  @Test
+  public void testRunExclusively() throws Exception {
+    final Vertex vertex = graph.addVertex( "v1" );
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final Future<?>[] writer = new Future<?>[ 1 ];
+      final int vertices = ( (BaseSynchronizedGraph) graph ).runExclusively( () -> {
+        // reads and changes made from the operation take the lock again, those of other threads wait for it
+        writer[ 0 ] = executor.submit( () -> graph.addVertex( "v3" ) );
+        graph.addEdge( "e", vertex, graph.addVertex( "v2" ), "link" );
+        try {
+          Thread.sleep( 100 );
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+        }
+        assertFalse( writer[ 0 ].isDone() );
+        return count( graph.getVertices() );
+      } );
+      assertEquals( 2, vertices );
+      writer[ 0 ].get( 10, TimeUnit.SECONDS );
+      assertEquals( 3, count( graph.getVertices() ) );
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testQuery() {
+    graph.addVertex( "v1" ).setProperty( "type", "a" );
+    graph.addVertex( "v2" ).setProperty( "type", "b" );
+    assertEquals( 1, count( graph.query().has( "type", "a" ).vertices() ) );
+    assertEquals( 1, count( graph.getVertices( "type", "b" ) ) );
+  }
+
+  @Test
+  public void testIterationIsSnapshot() {
+    graph.addVertex( "v1" );
+    Iterator<Vertex> vertices = graph.getVertices().iterator();
+    graph.addVertex( "v2" );
+    graph.removeVertex( graph.getVertex( "v1" ) );
+    assertTrue( vertices.hasNext() );
+    assertEquals( "v1", vertices.next().getId() );
+  }
+
+  @Test
+  public void testConcurrentReadersAndWriters() throws Exception {
+    final int writers = 4;
+    final int verticesPerWriter = 2000;
+    ExecutorService executor = Executors.newFixedThreadPool( writers + 2 );
+    try {
+      Future<?>[] futures = new Future<?>[ writers + 2 ];
+      for ( int w = 0; w < writers; w++ ) {
+        final int writer = w;
+        futures[ w ] = executor.submit( () -> {
+          Vertex previous = null;
+          for ( int i = 0; i < verticesPerWriter; i++ ) {
+            Vertex v = graph.addVertex( writer + "_" + i );
+            if ( previous != null ) {
+              graph.addEdge( writer + "_" + i + "_edge", previous, v, "next" );
+            }
+            previous = v;
+          }
+        } );
+      }
+      for ( int r = writers; r < writers + 2; r++ ) {
+        futures[ r ] = executor.submit( () -> {
+          for ( int i = 0; i < 50; i++ ) {
+            count( graph.getVertices() );
+            count( graph.getEdges() );
+          }
+        } );
+      }
+      for ( Future<?> future : futures ) {
+        // any ConcurrentModificationException surfaces here
+        future.get( 60, TimeUnit.SECONDS );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals( writers * verticesPerWriter, count( graph.getVertices() ) );
+    assertEquals( writers * ( verticesPerWriter - 1 ), count( graph.getEdges() ) );
+  }
+
+  @Test
+  public void testConcurrentPropertyWritersAndReaders() throws Exception {
+    final int writers = 4;
+    final int verticesPerWriter = 1000;
+    ExecutorService executor = Executors.newFixedThreadPool( writers + 2 );
+    try {
+      Future<?>[] futures = new Future<?>[ writers + 2 ];
+      for ( int w = 0; w < writers; w++ ) {
+        final int writer = w;
+        futures[ w ] = executor.submit( () -> {
+          for ( int i = 0; i < verticesPerWriter; i++ ) {
+            // indexed property writes update the key index the readers look up
+            graph.addVertex( writer + "_" + i ).setProperty( "type", "t" + ( i % 10 ) );
+          }
+        } );
+      }
+      for ( int r = writers; r < writers + 2; r++ ) {
+        futures[ r ] = executor.submit( () -> {
+          for ( int i = 0; i < 500; i++ ) {
+            for ( Vertex vertex : graph.getVertices( "type", "t" + ( i % 10 ) ) ) {
+              vertex.getProperty( "type" );
+            }
+          }
+        } );
+      }
+      for ( Future<?> future : futures ) {
+        future.get( 60, TimeUnit.SECONDS );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals( writers * verticesPerWriter / 10, count( graph.getVertices( "type", "t3" ) ) );
+  }
+
+  private static int count( Iterable<?> elements ) {
+    int count = 0;
+    for ( Object ignored : elements ) {
+      count++;
+    }
+    return count;
+  }
+}
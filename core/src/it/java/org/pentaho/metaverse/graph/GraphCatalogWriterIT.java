@@ -30,6 +30,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.mockito.Matchers.anyString;
 
@@ -55,6 +56,8 @@ public class GraphCatalogWriterIT extends StepAnalyzerValidationIT {
     graphCatalogWriter.setCatalogLineageClientProvider( mockCatalogLineageClientProvider );
 
     graphCatalogWriter.outputGraphImpl( graph, null );
+    // lineage is published to the catalog asynchronously
+    Assert.assertTrue( graphCatalogWriter.flush( 10, TimeUnit.SECONDS ) );
 
     Path personCsvPath = Paths.get("src", "it", "resources", "person.csv");
     Path personDetailsCsvPath = Paths.get("src", "it", "resources", "person_details.csv");
@@ -126,6 +129,8 @@ public class GraphCatalogWriterIT extends StepAnalyzerValidationIT {
     graphCatalogWriter.setCatalogLineageClientProvider( mockCatalogLineageClientProvider );
 
     graphCatalogWriter.outputGraphImpl( graph, null );
+    // lineage is published to the catalog asynchronously
+    Assert.assertTrue( graphCatalogWriter.flush( 10, TimeUnit.SECONDS ) );
 
     Path personCsvPath = Paths.get("src", "it", "resources", "person.csv");
     LineageDataResource personCsv = new LineageDataResource( "person.csv" );
@@ -36,11 +36,13 @@ import org.pentaho.metaverse.api.MetaverseAnalyzerException;
 import org.pentaho.metaverse.api.MetaverseComponentDescriptor;
 import org.pentaho.metaverse.api.Namespace;
 import org.pentaho.metaverse.api.PropertiesHolder;
+import org.pentaho.metaverse.api.analyzer.kettle.StepFieldsCache;
 import org.pentaho.metaverse.api.analyzer.kettle.annotations.AnnotatedClassFields;
 import org.pentaho.metaverse.api.analyzer.kettle.annotations.AnnotationDrivenStepMetaAnalyzer;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IClonableStepAnalyzer;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IStepAnalyzer;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IStepAnalyzerProvider;
+import org.pentaho.metaverse.impl.MetaverseConfig;
 import org.pentaho.metaverse.messages.Messages;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.slf4j.Logger;
@@ -52,6 +54,11 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * The TransformationAnalyzer class is responsible for gathering transformation metadata, creating links
@@ -78,8 +85,14 @@ public class TransformationAnalyzer extends BaseDocumentAnalyzer {
 
   private static final Logger log = LoggerFactory.getLogger( TransformationAnalyzer.class );
 
+  /**
+   * The pool analyzing the steps of transformations concurrently, shared by all transformation analyzers. It is created
+   * on first use with the configured parallelism and is never shut down, as other analyses may be using it.
+   */
+  private static volatile ForkJoinPool analysisPool;
+
   @Override
-  public synchronized IMetaverseNode analyze( IComponentDescriptor descriptor, IDocument document )
+  public IMetaverseNode analyze( IComponentDescriptor descriptor, IDocument document )
     throws MetaverseAnalyzerException {
 
     validateState( document );
@@ -118,11 +131,26 @@ public class TransformationAnalyzer extends BaseDocumentAnalyzer {
   }
 
   @Override
-  public synchronized IMetaverseNode analyze(
+  public IMetaverseNode analyze(
     final IComponentDescriptor documentDescriptor, final AbstractMeta meta, final IMetaverseNode node,
     final String documentPath ) throws MetaverseAnalyzerException {
 
     final TransMeta transMeta = (TransMeta) meta;
+    // the step fields are memoized for the duration of this analysis only
+    final boolean openedStepFieldsCache = StepFieldsCache.open( transMeta );
+    try {
+      return analyzeTransformation( documentDescriptor, transMeta, node, documentPath );
+    } finally {
+      if ( openedStepFieldsCache ) {
+        StepFieldsCache.close( transMeta );
+      }
+    }
+  }
+
+  private IMetaverseNode analyzeTransformation(
+    final IComponentDescriptor documentDescriptor, final TransMeta transMeta, final IMetaverseNode node,
+    final String documentPath ) throws MetaverseAnalyzerException {
+
     Trans t = new Trans( transMeta );
     t.setInternalKettleVariables( transMeta );
 
@@ -188,66 +216,26 @@ public class TransformationAnalyzer extends BaseDocumentAnalyzer {
         }
       }
     }
-    final List<AnalyzerHolder> analyzerHolders = new ArrayList();
-
-    // handle the step
+    final List<StepMeta> steps = new ArrayList<>( transMeta.nrSteps() );
     for ( int stepNr = 0; stepNr < transMeta.nrSteps(); stepNr++ ) {
       StepMeta stepMeta = transMeta.getStep( stepNr );
-      try {
-        if ( stepMeta != null ) {
-          if ( stepMeta.getParentTransMeta() == null ) {
-            stepMeta.setParentTransMeta( transMeta );
-          }
-
-          IMetaverseNode stepNode = null;
-          IComponentDescriptor stepDescriptor = new MetaverseComponentDescriptor( stepMeta.getName(),
-            DictionaryConst.NODE_TYPE_TRANS_STEP, node, documentDescriptor.getContext() );
-          Set<IStepAnalyzer> stepAnalyzers = getStepAnalyzers( stepMeta );
-          final BaseStepMeta baseStepMeta = getBaseStepMetaFromStepMeta( stepMeta );
-          if ( stepAnalyzers != null && !stepAnalyzers.isEmpty() ) {
-            for ( IStepAnalyzer stepAnalyzer : stepAnalyzers ) {
-              // the analyzers provided by the provider are singletons created at startup time - in order to be able
-              // to analyze multiple transformations concurrently, we need to clone the analyzer, such that each
-              // transformation step has its own dedicated analyzer with a metaverseBuilder that is unique to the
-              // transformation execution and does not change while the transformation is being analyzed
-              if ( stepAnalyzer instanceof IClonableStepAnalyzer ) {
-                stepAnalyzer = ( (IClonableStepAnalyzer) stepAnalyzer ).cloneAnalyzer();
-                ( (IClonableStepAnalyzer) stepAnalyzer ).setDocumentAnalyzer( this );
-                ( (IClonableStepAnalyzer) stepAnalyzer ).setDocumentDescriptor( documentDescriptor );
-                ( (IClonableStepAnalyzer) stepAnalyzer ).setDocumentPath( documentPath );
-              } else {
-                log.debug( Messages.getString( "WARNING.CannotCloneAnalyzer" ), stepAnalyzer );
-              }
-              stepAnalyzer.setMetaverseBuilder( metaverseBuilder );
-              stepNode = (IMetaverseNode) stepAnalyzer.analyze( stepDescriptor, baseStepMeta );
-              analyzerHolders.add( new AnalyzerHolder( stepAnalyzer, baseStepMeta, stepNode ) );
-            }
-          } else if ( ( new AnnotatedClassFields( baseStepMeta ) ).hasMetaverseAnnotations() ) {
-            AnnotationDrivenStepMetaAnalyzer annotationDrivenStepMetaAnalyzer =
-              new AnnotationDrivenStepMetaAnalyzer( baseStepMeta );
-            annotationDrivenStepMetaAnalyzer.setMetaverseBuilder( metaverseBuilder );
-            annotationDrivenStepMetaAnalyzer.setDocumentAnalyzer( this );
-            annotationDrivenStepMetaAnalyzer.setDocumentDescriptor( documentDescriptor );
-            annotationDrivenStepMetaAnalyzer.setDocumentPath( documentPath );
-            stepNode = annotationDrivenStepMetaAnalyzer.analyze( stepDescriptor, baseStepMeta );
-            analyzerHolders.add( new AnalyzerHolder( annotationDrivenStepMetaAnalyzer, baseStepMeta, stepNode ) );
-          } else {
-            GenericStepMetaAnalyzer defaultStepAnalyzer = new GenericStepMetaAnalyzer();
-            defaultStepAnalyzer.setMetaverseBuilder( metaverseBuilder );
-            stepNode = defaultStepAnalyzer.analyze( stepDescriptor, getBaseStepMetaFromStepMeta( stepMeta ) );
-          }
-          if ( stepNode != null ) {
-            metaverseBuilder.addLink( node, DictionaryConst.LINK_CONTAINS, stepNode );
-          }
+      if ( stepMeta != null ) {
+        if ( stepMeta.getParentTransMeta() == null ) {
+          stepMeta.setParentTransMeta( transMeta );
         }
-      } catch ( Throwable mae ) {
-        //Don't throw an exception, just log and carry on
-        log.warn( Messages.getString( "ERROR.ErrorDuringAnalysis", stepMeta.getName(),
-          Const.NVL( mae.getLocalizedMessage(), "Unspecified" ) ) );
-        log.debug( Messages.getString( "ERROR.ErrorDuringAnalysisStackTrace" ), mae );
+        steps.add( stepMeta );
       }
     }
 
+    // a sequential analysis memoizes the fields as the step analyzers ask for them, warming up would only add work
+    final StepFieldsCache stepFieldsCache = StepFieldsCache.get( transMeta );
+    if ( stepFieldsCache != null && MetaverseConfig.analysisParallelism() > 1 && steps.size() > 1 ) {
+      stepFieldsCache.warmUp( steps );
+    }
+
+    // handle the steps
+    final List<AnalyzerHolder> analyzerHolders = analyzeSteps( documentDescriptor, steps, node, documentPath );
+
     // Model the hops between steps
     int numHops = transMeta.nrTransHops();
     for ( int i = 0; i < numHops; i++ ) {
@@ -307,6 +295,150 @@ public class TransformationAnalyzer extends BaseDocumentAnalyzer {
     return node;
   }
 
+  /**
+   * Analyzes the given steps. When the configured analysis parallelism is greater than 1, steps whose analyzers are
+   * not shared are analyzed concurrently; the others are analyzed on the calling thread. The fields of the steps have
+   * been computed beforehand by the {@link StepFieldsCache}, so the concurrent analyzers only read them.
+   *
+   * @return the analyzers that need to post-process their step, in step order
+   */
+  private List<AnalyzerHolder> analyzeSteps( final IComponentDescriptor documentDescriptor,
+                                             final List<StepMeta> steps, final IMetaverseNode node,
+                                             final String documentPath ) throws MetaverseAnalyzerException {
+
+    final List<AnalyzerHolder> analyzerHolders = new ArrayList<>();
+    final int parallelism = MetaverseConfig.analysisParallelism();
+    if ( parallelism <= 1 || steps.size() <= 1 ) {
+      for ( final StepMeta stepMeta : steps ) {
+        analyzerHolders.addAll( analyzeStep( documentDescriptor, stepMeta, node, documentPath ) );
+      }
+      return analyzerHolders;
+    }
+
+    final ForkJoinPool pool = getAnalysisPool( parallelism );
+    final List<Future<List<AnalyzerHolder>>> results = new ArrayList<>( steps.size() );
+    for ( final StepMeta stepMeta : steps ) {
+      final Callable<List<AnalyzerHolder>> task = () -> analyzeStep( documentDescriptor, stepMeta, node, documentPath );
+      if ( canAnalyzeConcurrently( stepMeta ) ) {
+        results.add( pool.submit( task ) );
+      } else {
+        final FutureTask<List<AnalyzerHolder>> inline = new FutureTask<>( task );
+        inline.run();
+        results.add( inline );
+      }
+    }
+    try {
+      for ( final Future<List<AnalyzerHolder>> result : results ) {
+        analyzerHolders.addAll( result.get() );
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new MetaverseAnalyzerException( e );
+    } catch ( ExecutionException e ) {
+      throw new MetaverseAnalyzerException( e.getCause() );
+    }
+    return analyzerHolders;
+  }
+
+  /**
+   * Analyzes a single step, linking its node to the transformation node. Errors are logged, not thrown, so that a
+   * failing step does not prevent the analysis of the others.
+   *
+   * @return the analyzers that need to post-process the step
+   */
+  private List<AnalyzerHolder> analyzeStep( final IComponentDescriptor documentDescriptor, final StepMeta stepMeta,
+                                            final IMetaverseNode node, final String documentPath ) {
+    final List<AnalyzerHolder> analyzerHolders = new ArrayList<>();
+    try {
+      IMetaverseNode stepNode = null;
+      IComponentDescriptor stepDescriptor = new MetaverseComponentDescriptor( stepMeta.getName(),
+        DictionaryConst.NODE_TYPE_TRANS_STEP, node, documentDescriptor.getContext() );
+      Set<IStepAnalyzer> stepAnalyzers = getStepAnalyzers( stepMeta );
+      final BaseStepMeta baseStepMeta = getBaseStepMetaFromStepMeta( stepMeta );
+      if ( stepAnalyzers != null && !stepAnalyzers.isEmpty() ) {
+        for ( IStepAnalyzer stepAnalyzer : stepAnalyzers ) {
+          // the analyzers provided by the provider are singletons created at startup time - in order to be able
+          // to analyze multiple transformations concurrently, we need to clone the analyzer, such that each
+          // transformation step has its own dedicated analyzer with a metaverseBuilder that is unique to the
+          // transformation execution and does not change while the transformation is being analyzed
+          if ( stepAnalyzer instanceof IClonableStepAnalyzer ) {
+            stepAnalyzer = ( (IClonableStepAnalyzer) stepAnalyzer ).cloneAnalyzer();
+            ( (IClonableStepAnalyzer) stepAnalyzer ).setDocumentAnalyzer( this );
+            ( (IClonableStepAnalyzer) stepAnalyzer ).setDocumentDescriptor( documentDescriptor );
+            ( (IClonableStepAnalyzer) stepAnalyzer ).setDocumentPath( documentPath );
+            stepAnalyzer.setMetaverseBuilder( metaverseBuilder );
+            stepNode = (IMetaverseNode) stepAnalyzer.analyze( stepDescriptor, baseStepMeta );
+          } else {
+            log.debug( Messages.getString( "WARNING.CannotCloneAnalyzer" ), stepAnalyzer );
+            // a shared analyzer holds the builder of the transformation it analyzes, other transformations being
+            // analyzed at the same time must wait for it
+            synchronized ( stepAnalyzer ) {
+              stepAnalyzer.setMetaverseBuilder( metaverseBuilder );
+              stepNode = (IMetaverseNode) stepAnalyzer.analyze( stepDescriptor, baseStepMeta );
+            }
+          }
+          analyzerHolders.add( new AnalyzerHolder( stepAnalyzer, baseStepMeta, stepNode ) );
+        }
+      } else if ( ( new AnnotatedClassFields( baseStepMeta ) ).hasMetaverseAnnotations() ) {
+        AnnotationDrivenStepMetaAnalyzer annotationDrivenStepMetaAnalyzer =
+          new AnnotationDrivenStepMetaAnalyzer( baseStepMeta );
+        annotationDrivenStepMetaAnalyzer.setMetaverseBuilder( metaverseBuilder );
+        annotationDrivenStepMetaAnalyzer.setDocumentAnalyzer( this );
+        annotationDrivenStepMetaAnalyzer.setDocumentDescriptor( documentDescriptor );
+        annotationDrivenStepMetaAnalyzer.setDocumentPath( documentPath );
+        stepNode = annotationDrivenStepMetaAnalyzer.analyze( stepDescriptor, baseStepMeta );
+        analyzerHolders.add( new AnalyzerHolder( annotationDrivenStepMetaAnalyzer, baseStepMeta, stepNode ) );
+      } else {
+        GenericStepMetaAnalyzer defaultStepAnalyzer = new GenericStepMetaAnalyzer();
+        defaultStepAnalyzer.setMetaverseBuilder( metaverseBuilder );
+        stepNode = defaultStepAnalyzer.analyze( stepDescriptor, getBaseStepMetaFromStepMeta( stepMeta ) );
+      }
+      if ( stepNode != null ) {
+        metaverseBuilder.addLink( node, DictionaryConst.LINK_CONTAINS, stepNode );
+      }
+    } catch ( Throwable mae ) {
+      //Don't throw an exception, just log and carry on
+      log.warn( Messages.getString( "ERROR.ErrorDuringAnalysis", stepMeta.getName(),
+        Const.NVL( mae.getLocalizedMessage(), "Unspecified" ) ) );
+      log.debug( Messages.getString( "ERROR.ErrorDuringAnalysisStackTrace" ), mae );
+    }
+    return analyzerHolders;
+  }
+
+  /**
+   * A step can be analyzed concurrently with others if none of its analyzers is shared, i.e. they are all cloned for
+   * the step, or it is analyzed by a new annotation-driven or generic analyzer.
+   */
+  private boolean canAnalyzeConcurrently( final StepMeta stepMeta ) {
+    final Set<IStepAnalyzer> stepAnalyzers = getStepAnalyzers( stepMeta );
+    if ( stepAnalyzers != null ) {
+      for ( final IStepAnalyzer stepAnalyzer : stepAnalyzers ) {
+        if ( !( stepAnalyzer instanceof IClonableStepAnalyzer ) ) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the shared analysis pool, creating it with the given parallelism on first use. A change of the configured
+   * parallelism only resizes the pool after a restart; setting it to 1 still turns concurrent analysis off at once.
+   */
+  private static ForkJoinPool getAnalysisPool( final int parallelism ) {
+    ForkJoinPool pool = analysisPool;
+    if ( pool == null ) {
+      synchronized ( TransformationAnalyzer.class ) {
+        pool = analysisPool;
+        if ( pool == null ) {
+          pool = new ForkJoinPool( parallelism );
+          analysisPool = pool;
+        }
+      }
+    }
+    return pool;
+  }
+
   /**
    * Returns a set of strings corresponding to which types of content are supported by this analyzer
    *
@@ -48,6 +48,7 @@ import org.pentaho.metaverse.api.model.LineageHolder;
 import org.pentaho.metaverse.api.model.kettle.MetaverseExtensionPoint;
 import org.pentaho.metaverse.graph.GraphCatalogWriter;
 import org.pentaho.metaverse.graph.GraphMLWriter;
+import org.pentaho.metaverse.impl.LineageExecutor;
 import org.pentaho.metaverse.impl.MetaverseCompletionService;
 import org.pentaho.metaverse.impl.MetaverseConfig;
 import org.pentaho.metaverse.impl.VfsLineageWriter;
@@ -204,16 +205,10 @@ public class JobRuntimeExtensionPoint extends BaseRuntimeExtensionPoint implemen
   }
 
   protected void createLineGraphAsync( final Job job ) {
-    // Need to spin this processing off into its own thread, so we don't hold up normal PDI processing
-    Thread lineageWorker = new Thread( new Runnable() {
-
-      @Override
-      public void run() {
-        createLineGraph( job );
-      }
-    } );
-
-    lineageWorker.start();
+    // Hand this processing off to the lineage workers, so we don't hold up normal PDI processing
+    // if the writers are saturated and the graph is never created, the lineage holder must still be released
+    LineageExecutor.getWriterInstance().execute( () -> createLineGraph( job ),
+      () -> JobLineageHolderMap.getInstance().removeLineageHolder( job ) );
   }
 
   protected void createLineGraph( final Job job ) {
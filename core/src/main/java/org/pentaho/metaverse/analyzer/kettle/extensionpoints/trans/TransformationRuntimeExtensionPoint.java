@@ -13,6 +13,8 @@
 
 package org.pentaho.metaverse.analyzer.kettle.extensionpoints.trans;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.pentaho.di.connections.ConnectionDetails;
@@ -30,6 +32,8 @@ import org.pentaho.di.core.service.PluginServiceLoader;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransListener;
 import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
 import org.pentaho.dictionary.DictionaryConst;
 import org.pentaho.metaverse.analyzer.kettle.TransformationAnalyzer;
 import org.pentaho.metaverse.analyzer.kettle.extensionpoints.BaseRuntimeExtensionPoint;
@@ -40,26 +44,33 @@ import org.pentaho.metaverse.api.IMetaverseNode;
 import org.pentaho.metaverse.api.INamespace;
 import org.pentaho.metaverse.api.Namespace;
 import org.pentaho.metaverse.api.analyzer.kettle.KettleAnalyzerUtil;
+import org.pentaho.metaverse.api.analyzer.kettle.step.IStepExternalResourceConsumer;
+import org.pentaho.metaverse.api.analyzer.kettle.step.IStepExternalResourceConsumerProvider;
 import org.pentaho.metaverse.api.model.IExecutionData;
 import org.pentaho.metaverse.api.model.IExecutionProfile;
 import org.pentaho.metaverse.api.model.IExternalResourceInfo;
 import org.pentaho.metaverse.api.model.IParamInfo;
 import org.pentaho.metaverse.api.model.LineageHolder;
 import org.pentaho.metaverse.api.model.kettle.MetaverseExtensionPoint;
+import org.pentaho.metaverse.graph.DesignGraphCache;
 import org.pentaho.metaverse.graph.GraphCatalogWriter;
 import org.pentaho.metaverse.graph.GraphMLWriter;
+import org.pentaho.metaverse.impl.LineageExecutor;
 import org.pentaho.metaverse.impl.MetaverseCompletionService;
 import org.pentaho.metaverse.impl.MetaverseConfig;
 import org.pentaho.metaverse.impl.VfsLineageWriter;
 import org.pentaho.metaverse.impl.model.ExecutionProfile;
 import org.pentaho.metaverse.impl.model.ParamInfo;
 import org.pentaho.metaverse.messages.Messages;
+import org.pentaho.metaverse.util.MetaverseBeanUtil;
 import org.pentaho.metaverse.util.MetaverseUtil;
 import org.pentaho.metaverse.api.ICatalogLineageClientProvider;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -67,6 +78,8 @@ import java.util.Map;
 import java.util.List;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.function.Supplier;
 
 /**
@@ -149,6 +162,13 @@ public class TransformationRuntimeExtensionPoint extends BaseRuntimeExtensionPoi
 
       // Create a document for the Trans
       final String clientName = getExecutionEngineInfo().getName();
+
+      // a transformation that has already been analyzed with the same definition and variables yields the same graph
+      final String designGraphKey = getDesignGraphKey( trans, clientName );
+      if ( DesignGraphCache.getInstance().copyInto( designGraphKey, builder.getGraph() ) ) {
+        holder.setMetaverseBuilder( builder );
+        return;
+      }
       final INamespace namespace = new Namespace( clientName );
 
       final IMetaverseNode designNode = builder.getMetaverseObjectFactory()
@@ -157,7 +177,11 @@ public class TransformationRuntimeExtensionPoint extends BaseRuntimeExtensionPoi
 
       final String id = TransExtensionPointUtil.getFilename( trans.getTransMeta() );
       final IDocument metaverseDocument = KettleAnalyzerUtil.buildDocument( builder, trans.getTransMeta(), id, namespace );
-      final Runnable analyzerRunner = MetaverseUtil.getAnalyzerRunner( documentAnalyzer, metaverseDocument );
+      final Runnable documentRunner = MetaverseUtil.getAnalyzerRunner( documentAnalyzer, metaverseDocument );
+      final Runnable analyzerRunner = designGraphKey == null ? documentRunner : () -> {
+        documentRunner.run();
+        DesignGraphCache.getInstance().put( designGraphKey, builder.getGraph() );
+      };
 
       // set the lineage task, so that we can wait for it to finish before proceeding to write out the graph
       holder.setLineageTask( MetaverseCompletionService.getInstance().submit( analyzerRunner,
@@ -168,6 +192,82 @@ public class TransformationRuntimeExtensionPoint extends BaseRuntimeExtensionPoi
     holder.setMetaverseBuilder( builder );
   }
 
+  /**
+   * Returns the key under which the design-time graph of the given transformation is cached: a hash of the
+   * transformation definition and of the values of the variables and parameters it uses. Only transformations without
+   * a parent have a key, as the graphs of sub-transformations are part of their parent's graph, and only those without
+   * data-driven steps, see {@link #hasDataDrivenSteps(TransMeta)}.
+   *
+   * @param trans      the transformation about to be analyzed
+   * @param clientName the name of the execution engine, which names the graph's locator node
+   * @return the key, or null if the graph of this transformation is not cached
+   */
+  protected String getDesignGraphKey( final Trans trans, final String clientName ) {
+    if ( !DesignGraphCache.getInstance().isEnabled() || trans.getParentJob() != null
+      || trans.getParentTrans() != null || hasDataDrivenSteps( trans.getTransMeta() ) ) {
+      return null;
+    }
+    final TransMeta transMeta = trans.getTransMeta();
+    try {
+      final Hasher hasher = Hashing.sha256().newHasher()
+        .putString( Const.NVL( clientName, "" ), StandardCharsets.UTF_8 ).putChar( '\n' )
+        .putString( Const.NVL( TransExtensionPointUtil.getFilename( transMeta ), "" ), StandardCharsets.UTF_8 )
+        .putChar( '\n' )
+        .putString( transMeta.getXML(), StandardCharsets.UTF_8 );
+      final SortedMap<String, String> values = new TreeMap<>();
+      for ( final String var : transMeta.getUsedVariables() ) {
+        values.put( var, trans.getVariable( var ) );
+      }
+      final String[] params = trans.listParameters();
+      if ( params != null ) {
+        for ( final String param : params ) {
+          values.put( param, trans.getParameterValue( param ) );
+        }
+      }
+      for ( final Map.Entry<String, String> value : values.entrySet() ) {
+        hasher.putChar( '\n' ).putString( value.getKey(), StandardCharsets.UTF_8 ).putChar( '=' )
+          .putString( Const.NVL( value.getValue(), "" ), StandardCharsets.UTF_8 );
+      }
+      return hasher.hash().toString();
+    } catch ( final Exception e ) {
+      log.debug( "Couldn't compute the design graph key of " + trans.getName(), e );
+      return null;
+    }
+  }
+
+  /**
+   * Returns true if a step of the transformation reads or writes resources named by its rows. The analysis adds those
+   * resources to the graph, they are only known once the transformation has run and may differ from one run to the
+   * next, so the graph of such a transformation is not cached.
+   *
+   * @param transMeta the transformation
+   * @return true if the graph of the transformation depends on its data
+   */
+  protected boolean hasDataDrivenSteps( final TransMeta transMeta ) {
+    final IStepExternalResourceConsumerProvider consumerProvider = (IStepExternalResourceConsumerProvider)
+      MetaverseBeanUtil.getInstance().get( IStepExternalResourceConsumerProvider.class );
+    if ( consumerProvider == null ) {
+      // without consumers no resources are captured from rows
+      return false;
+    }
+    for ( final StepMeta stepMeta : transMeta.getSteps() ) {
+      final StepMetaInterface meta = stepMeta.getStepMetaInterface();
+      if ( meta == null ) {
+        continue;
+      }
+      final List<IStepExternalResourceConsumer> consumers =
+        consumerProvider.getExternalResourceConsumers( Collections.<Class<?>>singleton( meta.getClass() ) );
+      if ( consumers != null ) {
+        for ( final IStepExternalResourceConsumer consumer : consumers ) {
+          if ( consumer.isDataDriven( meta ) ) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
   protected void populateExecutionProfile( IExecutionProfile executionProfile, Trans trans ) {
     TransMeta transMeta = trans.getTransMeta();
 
@@ -288,16 +388,10 @@ public class TransformationRuntimeExtensionPoint extends BaseRuntimeExtensionPoi
   }
 
   protected void createLineGraphAsync( Trans trans ) {
-    // Need to spin this processing off into its own thread, so we don't hold up normal PDI processing
-    Thread lineageWorker = new Thread( new Runnable() {
-
-      @Override
-      public void run() {
-        createLineGraph( trans );
-      }
-    } );
-
-    lineageWorker.start();
+    // Hand this processing off to the lineage workers, so we don't hold up normal PDI processing
+    // if the writers are saturated and the graph is never created, the lineage holder must still be released
+    LineageExecutor.getWriterInstance().execute( () -> createLineGraph( trans ),
+      () -> TransLineageHolderMap.getInstance().removeLineageHolder( trans ) );
   }
 
   private void removeSensitiveDataFromHolder( LineageHolder holder ) {
@@ -335,6 +429,12 @@ public class TransformationRuntimeExtensionPoint extends BaseRuntimeExtensionPoi
           log.debug( Messages.getString( "ERROR.ErrorDuringAnalysisStackTrace" ), e );
         }
       }
+      // resources captured per row are only added to the execution data now that the transformation has finished
+      holder.flushStepResources();
+      for ( Map.Entry<String, Long> overflow : holder.getStepResourceOverflow().entrySet() ) {
+        log.warn( Messages.getString( "WARN.StepResourcesOverflow", trans.getName(), overflow.getKey(),
+          String.valueOf( overflow.getValue() ) ) );
+      }
       IExecutionProfile executionProfile = holder.getExecutionProfile();
       if ( executionProfile == null ) {
         // Note that this should NEVER happen, this is purely a preventative measure...
@@ -16,18 +16,16 @@ package org.pentaho.metaverse.analyzer.kettle.extensionpoints.trans.step;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.BaseStepMeta;
 import org.pentaho.di.trans.step.RowAdapter;
 import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.metaverse.analyzer.kettle.extensionpoints.trans.TransLineageHolderMap;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IStepExternalResourceConsumer;
-import org.pentaho.metaverse.api.model.IExecutionProfile;
 import org.pentaho.metaverse.api.model.IExternalResourceInfo;
+import org.pentaho.metaverse.api.model.LineageHolder;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 public class StepExternalConsumerRowListener extends RowAdapter {
@@ -35,6 +33,11 @@ public class StepExternalConsumerRowListener extends RowAdapter {
   private final IStepExternalResourceConsumer stepExternalResourceConsumer;
   private final StepInterface step;
 
+  /**
+   * The step's resource accumulator in the lineage holder, resolved on the first row that yields resources
+   */
+  private Set<IExternalResourceInfo> stepResources;
+
   public StepExternalConsumerRowListener(
     IStepExternalResourceConsumer stepExternalResourceConsumer, StepInterface step ) {
     this.stepExternalResourceConsumer = stepExternalResourceConsumer;
@@ -54,25 +57,24 @@ public class StepExternalConsumerRowListener extends RowAdapter {
   public void rowReadEvent( RowMetaInterface rowMeta, Object[] row ) throws KettleStepException {
 
     Collection<IExternalResourceInfo> resources =
-      stepExternalResourceConsumer.getResourcesFromRow( (BaseStep) step, rowMeta, row );
-    if ( resources != null ) {
-      // Add the resources to the execution profile
-      IExecutionProfile executionProfile =
-        TransLineageHolderMap.getInstance().getLineageHolder( step.getTrans() ).getExecutionProfile();
-      if ( executionProfile != null ) {
-        String stepName = step.getStepname();
-        Map<String, List<IExternalResourceInfo>> resourceMap =
-          executionProfile.getExecutionData().getExternalResources();
-        final List<IExternalResourceInfo> existingResources = resourceMap.get( stepName );
-        Set<IExternalResourceInfo> externalResources = existingResources == null ? new HashSet()
-          : new HashSet( resourceMap.get( stepName ) );
-        if ( externalResources == null ) {
-          externalResources = new HashSet();
+      stepExternalResourceConsumer.getNewResourcesFromRow( (BaseStep) step, rowMeta, row );
+    if ( resources != null && !resources.isEmpty() ) {
+      if ( stepResources == null ) {
+        LineageHolder holder = TransLineageHolderMap.getInstance().getLineageHolder( step.getTrans() );
+        if ( holder.getExecutionProfile() == null ) {
+          return;
         }
-        // avoid adding duplicates
-        externalResources.addAll( new HashSet<>( resources ) );
-        resourceMap.put( stepName, new ArrayList( externalResources ) );
+        // The accumulated resources are added to the execution profile once the transformation has finished
+        stepResources = holder.getStepResources( step.getStepname(),
+          stepExternalResourceConsumer.getRowResourceLimit( getStepMeta() ) );
       }
+      // avoid adding duplicates
+      stepResources.addAll( resources );
     }
   }
+
+  private BaseStepMeta getStepMeta() {
+    final StepMeta stepMeta = ( (BaseStep) step ).getStepMeta();
+    return stepMeta == null ? null : (BaseStepMeta) stepMeta.getStepMetaInterface();
+  }
 }
@@ -0,0 +1,131 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.analyzer.kettle.step;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.metaverse.api.model.ExternalResourceInfoFactory;
+import org.pentaho.metaverse.api.model.WebServiceResourceInfo;
+
+/**
+ * Builds the {@link WebServiceResourceInfo} a row of a web service step (HTTP Client, HTTP Post) refers to. The indexes
+ * of the URL, header and parameter fields are looked up once per row layout rather than by name for every row.
+ * <p>
+ * In normalized mode, only the URL and the header and parameter names are captured, so that rows calling the same
+ * URL with different values yield equal resources.
+ */
+public class WebServiceRowResourceResolver {
+
+  private final String url;
+  private final String urlField;
+  private final String[] headerFields;
+  private final String[] headerNames;
+  private final String[] parameterFields;
+  private final String[] parameterNames;
+  private final boolean normalized;
+
+  private volatile FieldIndexes fieldIndexes;
+
+  /**
+   * Creates a new resolver
+   *
+   * @param url             the static URL, used when {@code urlField} is null
+   * @param urlField        the name of the field holding the URL, or null if the URL is static
+   * @param headerFields    the names of the fields holding header values, may be null
+   * @param headerNames     the header names, matching {@code headerFields}
+   * @param parameterFields the names of the fields holding parameter values, may be null
+   * @param parameterNames  the parameter names, matching {@code parameterFields}
+   * @param normalized      true to capture header and parameter names only
+   */
+  public WebServiceRowResourceResolver( final String url, final String urlField, final String[] headerFields,
+                                        final String[] headerNames, final String[] parameterFields,
+                                        final String[] parameterNames, final boolean normalized ) {
+    this.url = url;
+    this.urlField = urlField;
+    this.headerFields = headerFields == null ? new String[ 0 ] : headerFields;
+    this.headerNames = headerNames == null ? new String[ 0 ] : headerNames;
+    this.parameterFields = parameterFields == null ? new String[ 0 ] : parameterFields;
+    this.parameterNames = parameterNames == null ? new String[ 0 ] : parameterNames;
+    this.normalized = normalized;
+  }
+
+  /**
+   * Returns the resource the given row refers to.
+   *
+   * @param rowMeta the metadata of the row
+   * @param row     the row data
+   * @return the resource, or null if the row has no URL
+   * @throws KettleValueException if a field value cannot be converted to a String
+   */
+  public WebServiceResourceInfo resolve( final RowMetaInterface rowMeta, final Object[] row )
+    throws KettleValueException {
+
+    final FieldIndexes indexes = getFieldIndexes( rowMeta );
+    final String resolvedUrl = urlField == null ? url : getString( rowMeta, row, indexes.url );
+    if ( Const.isEmpty( resolvedUrl ) ) {
+      return null;
+    }
+    final WebServiceResourceInfo resourceInfo =
+      (WebServiceResourceInfo) ExternalResourceInfoFactory.createURLResource( resolvedUrl, true );
+
+    for ( int i = 0; i < headerFields.length; i++ ) {
+      resourceInfo.addHeader( headerNames[ i ], normalized ? null : getString( rowMeta, row, indexes.headers[ i ] ) );
+    }
+    for ( int i = 0; i < parameterFields.length; i++ ) {
+      resourceInfo.addParameter( parameterNames[ i ],
+        normalized ? null : getString( rowMeta, row, indexes.parameters[ i ] ) );
+    }
+    return resourceInfo;
+  }
+
+  private FieldIndexes getFieldIndexes( final RowMetaInterface rowMeta ) {
+    FieldIndexes indexes = fieldIndexes;
+    if ( indexes == null || indexes.rowMeta != rowMeta ) {
+      indexes = new FieldIndexes( rowMeta );
+      fieldIndexes = indexes;
+    }
+    return indexes;
+  }
+
+  private static String getString( final RowMetaInterface rowMeta, final Object[] row, final int index )
+    throws KettleValueException {
+    return index < 0 ? null : rowMeta.getString( row, index );
+  }
+
+  /**
+   * The field indexes for one row layout
+   */
+  private final class FieldIndexes {
+    private final RowMetaInterface rowMeta;
+    private final int url;
+    private final int[] headers;
+    private final int[] parameters;
+
+    private FieldIndexes( final RowMetaInterface rowMeta ) {
+      this.rowMeta = rowMeta;
+      this.url = urlField == null ? -1 : rowMeta.indexOfValue( urlField );
+      this.headers = indexesOf( rowMeta, headerFields );
+      this.parameters = indexesOf( rowMeta, parameterFields );
+    }
+
+    private int[] indexesOf( final RowMetaInterface rowMeta, final String[] fields ) {
+      final int[] indexes = new int[ fields.length ];
+      for ( int i = 0; i < fields.length; i++ ) {
+        indexes[ i ] = normalized ? -1 : rowMeta.indexOfValue( fields[ i ] );
+      }
+      return indexes;
+    }
+  }
+}
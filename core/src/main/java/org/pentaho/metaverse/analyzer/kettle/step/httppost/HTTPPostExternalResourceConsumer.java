@@ -14,7 +14,7 @@
 package org.pentaho.metaverse.analyzer.kettle.step.httppost;
 
 import com.google.common.annotations.VisibleForTesting;
-import org.apache.commons.lang.ArrayUtils;
+import com.google.common.collect.MapMaker;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleFileException;
@@ -23,22 +23,28 @@ import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.steps.httppost.HTTPPOST;
 import org.pentaho.di.trans.steps.httppost.HTTPPOSTMeta;
+import org.pentaho.metaverse.analyzer.kettle.step.WebServiceRowResourceResolver;
 import org.pentaho.metaverse.api.IAnalysisContext;
 import org.pentaho.metaverse.api.analyzer.kettle.step.BaseStepExternalResourceConsumer;
 import org.pentaho.metaverse.api.model.ExternalResourceInfoFactory;
 import org.pentaho.metaverse.api.model.IExternalResourceInfo;
 import org.pentaho.metaverse.api.model.WebServiceResourceInfo;
+import org.pentaho.metaverse.impl.MetaverseConfig;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
+import java.util.Map;
 
 public class HTTPPostExternalResourceConsumer
   extends BaseStepExternalResourceConsumer<HTTPPOST, HTTPPOSTMeta> {
 
   private static HTTPPostExternalResourceConsumer instance;
 
+  // Row resolvers are kept per running step, as they cache the field indexes of its input rows
+  private final Map<HTTPPOST, WebServiceRowResourceResolver> rowResolvers = new MapMaker().weakKeys().makeMap();
+
   @VisibleForTesting
   protected HTTPPostExternalResourceConsumer() {
   }
@@ -106,32 +112,8 @@ public class HTTPPostExternalResourceConsumer
     }
     if ( meta != null ) {
       try {
-        String url;
-        if ( meta.isUrlInField() ) {
-          url = rowMeta.getString( row, meta.getUrlField(), null );
-        } else {
-          url = meta.getUrl();
-        }
-        if ( !Const.isEmpty( url ) ) {
-          WebServiceResourceInfo resourceInfo =
-            (WebServiceResourceInfo) ExternalResourceInfoFactory.createURLResource( url, true );
-
-          if ( ArrayUtils.isNotEmpty( meta.getArgumentField() ) ) {
-            for ( int i = 0; i < meta.getArgumentField().length; i++ ) {
-              String field = meta.getArgumentField()[ i ];
-              String label = meta.getArgumentParameter()[ i ];
-              resourceInfo.addHeader( label, rowMeta.getString( row, field, null ) );
-            }
-          }
-
-          if ( ArrayUtils.isNotEmpty( meta.getQueryField() ) ) {
-            for ( int i = 0; i < meta.getQueryField().length; i++ ) {
-              String field = meta.getQueryField()[ i ];
-              String label = meta.getQueryParameter()[ i ];
-              resourceInfo.addParameter( label, rowMeta.getString( row, field, null ) );
-            }
-          }
-
+        WebServiceResourceInfo resourceInfo = getRowResolver( httpClientInput, meta ).resolve( rowMeta, row );
+        if ( resourceInfo != null ) {
           resources.add( resourceInfo );
         }
       } catch ( KettleException kve ) {
@@ -141,6 +123,18 @@ public class HTTPPostExternalResourceConsumer
     return resources;
   }
 
+  @Override
+  public int getRowResourceLimit( HTTPPOSTMeta meta ) {
+    return MetaverseConfig.webServiceResourceLimit();
+  }
+
+  private WebServiceRowResourceResolver getRowResolver( HTTPPOST step, HTTPPOSTMeta meta ) {
+    return rowResolvers.computeIfAbsent( step, key -> new WebServiceRowResourceResolver(
+      meta.getUrl(), meta.isUrlInField() ? meta.getUrlField() : null,
+      meta.getArgumentField(), meta.getArgumentParameter(), meta.getQueryField(), meta.getQueryParameter(),
+      MetaverseConfig.normalizeWebServiceResources() ) );
+  }
+
   @Override
   public Class<HTTPPOSTMeta> getMetaClass() {
     return HTTPPOSTMeta.class;
@@ -38,6 +38,7 @@ import org.pentaho.metaverse.api.MetaverseAnalyzerException;
 import org.pentaho.metaverse.api.MetaverseComponentDescriptor;
 import org.pentaho.metaverse.api.StepField;
 import org.pentaho.metaverse.api.analyzer.kettle.KettleAnalyzerUtil;
+import org.pentaho.metaverse.api.analyzer.kettle.StepFieldsCache;
 import org.pentaho.metaverse.api.analyzer.kettle.jobentry.IJobEntryAnalyzerProvider;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IClonableStepAnalyzer;
 import org.pentaho.metaverse.api.analyzer.kettle.step.StepAnalyzer;
@@ -221,7 +222,7 @@ public class JobExecutorStepAnalyzer extends StepAnalyzer<JobExecutorMeta> {
       StepMeta step = parentTransMeta.findStep( nextStepName );
       ProgressNullMonitorListener progressMonitor = new ProgressNullMonitorListener();
       try {
-        RowMetaInterface prevStepFields = parentTransMeta.getPrevStepFields( step, progressMonitor );
+        RowMetaInterface prevStepFields = StepFieldsCache.getPrevStepFields( parentTransMeta, step, progressMonitor );
         outputFields.put( nextStepName, prevStepFields );
         progressMonitor.done();
       } catch ( KettleStepException e ) {
@@ -25,6 +25,7 @@ import org.pentaho.metaverse.api.IMetaverseNode;
 import org.pentaho.metaverse.api.MetaverseAnalyzerException;
 import org.pentaho.metaverse.api.StepField;
 import org.pentaho.metaverse.api.analyzer.kettle.ComponentDerivationRecord;
+import org.pentaho.metaverse.api.analyzer.kettle.StepFieldsCache;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IClonableStepAnalyzer;
 import org.pentaho.metaverse.api.analyzer.kettle.step.StepAnalyzer;
 import org.pentaho.metaverse.api.model.Operation;
@@ -145,12 +146,12 @@ public class MergeJoinStepAnalyzer extends StepAnalyzer<MergeJoinMeta> {
       try {
         StepMeta stepMeta1 = meta.getStepIOMeta().getInfoStreams().get( 0 ).getStepMeta();
         ProgressNullMonitorListener progress = new ProgressNullMonitorListener();
-        leftStepFields = parentTransMeta.getStepFields( stepMeta1, progress );
+        leftStepFields = StepFieldsCache.getStepFields( parentTransMeta, stepMeta1, progress );
         progress.done();
 
         progress = new ProgressNullMonitorListener();
         StepMeta stepMeta2 = meta.getStepIOMeta().getInfoStreams().get( 1 ).getStepMeta();
-        rightStepFields = parentTransMeta.getStepFields( stepMeta2, progress );
+        rightStepFields = StepFieldsCache.getStepFields( parentTransMeta, stepMeta2, progress );
         progress.done();
         rowMeta.put( stepMeta1.getName(), leftStepFields );
         rowMeta.put( stepMeta2.getName(), rightStepFields );
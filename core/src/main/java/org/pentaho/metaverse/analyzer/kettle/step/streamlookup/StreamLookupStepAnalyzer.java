@@ -26,6 +26,7 @@ import org.pentaho.metaverse.api.IMetaverseNode;
 import org.pentaho.metaverse.api.MetaverseAnalyzerException;
 import org.pentaho.metaverse.api.StepField;
 import org.pentaho.metaverse.api.analyzer.kettle.ComponentDerivationRecord;
+import org.pentaho.metaverse.api.analyzer.kettle.StepFieldsCache;
 import org.pentaho.metaverse.api.analyzer.kettle.step.StepAnalyzer;
 import org.pentaho.metaverse.api.model.Operation;
 import org.pentaho.metaverse.messages.Messages;
@@ -62,7 +63,7 @@ public class StreamLookupStepAnalyzer extends StepAnalyzer<StreamLookupMeta> {
       for ( String prevStepName : parentTransMeta.getPrevStepNames( parentStepMeta ) ) {
         if ( !rowMeta.containsKey( prevStepName ) ) {
           try {
-            rowMeta.put( prevStepName, parentTransMeta.getStepFields( prevStepName ) );
+            rowMeta.put( prevStepName, StepFieldsCache.getStepFields( parentTransMeta, prevStepName ) );
           } catch ( KettleStepException e ) {
             LOGGER.warn( Messages.getString( "WARNING.CannotDetermineRowMeta", prevStepName, e.toString() ) );
           }
@@ -163,7 +164,7 @@ public class StreamLookupStepAnalyzer extends StepAnalyzer<StreamLookupMeta> {
         String prevStepName = prevStepNames[ i ];
         if ( !prevStepName.equals( lookupStepName ) ) {
           try {
-            RowMetaInterface stepFields = parentTransMeta.getStepFields( prevStepName );
+            RowMetaInterface stepFields = StepFieldsCache.getStepFields( parentTransMeta, prevStepName );
             if ( stepFields != null ) {
               ValueMetaInterface valueMetaInterface = stepFields.searchValueMeta( newFieldName );
               return valueMetaInterface != null;
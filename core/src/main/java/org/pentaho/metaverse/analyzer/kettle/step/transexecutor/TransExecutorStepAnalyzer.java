@@ -29,6 +29,7 @@ import org.pentaho.metaverse.api.IMetaverseNode;
 import org.pentaho.metaverse.api.MetaverseAnalyzerException;
 import org.pentaho.metaverse.api.StepField;
 import org.pentaho.metaverse.api.analyzer.kettle.KettleAnalyzerUtil;
+import org.pentaho.metaverse.api.analyzer.kettle.StepFieldsCache;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IClonableStepAnalyzer;
 import org.pentaho.metaverse.api.analyzer.kettle.step.StepAnalyzer;
 import org.pentaho.metaverse.api.analyzer.kettle.step.SubtransAnalyzer;
@@ -176,7 +177,7 @@ public class TransExecutorStepAnalyzer extends StepAnalyzer<TransExecutorMeta> {
       StepMeta step = parentTransMeta.findStep( nextStepName );
       ProgressNullMonitorListener progressMonitor = new ProgressNullMonitorListener();
       try {
-        RowMetaInterface prevStepFields = parentTransMeta.getPrevStepFields( step, progressMonitor );
+        RowMetaInterface prevStepFields = StepFieldsCache.getPrevStepFields( parentTransMeta, step, progressMonitor );
         outputFields.put( nextStepName, prevStepFields );
         progressMonitor.done();
       } catch ( KettleStepException e ) {
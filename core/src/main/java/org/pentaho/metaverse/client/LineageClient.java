@@ -28,7 +28,6 @@ import org.pentaho.metaverse.api.StepField;
 import org.pentaho.metaverse.api.StepFieldOperations;
 import org.pentaho.metaverse.api.model.Operations;
 import org.pentaho.metaverse.graph.LineageGraphMap;
-import org.pentaho.metaverse.util.MetaverseUtil;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -76,15 +75,12 @@ public class LineageClient implements ILineageClient {
       Future<Graph> lineageGraphTask = LineageGraphMap.getInstance().get( transMeta );
       if ( lineageGraphTask != null ) {
         Graph lineageGraph = lineageGraphTask.get();
-        List<Vertex> targetFields = getTargetFields( lineageGraph, targetStepName, fieldNames );
+        LineageQueryEngine.GraphQueries queries = LineageQueryEngine.getInstance().forGraph( lineageGraph );
+        List<Vertex> targetFields = queries.getTargetFields( targetStepName, fieldNames,
+          () -> getTargetFields( lineageGraph, targetStepName, fieldNames ) );
 
-        GremlinPipeline pipe = getOriginStepsPipe( targetFields );
-        List<List<Vertex>> pathList = pipe.toList();
-        if ( pathList != null ) {
-
-          for ( List<Vertex> path : pathList ) {
-            // Transform each path of vertices into a "path" of StepFieldOperations objects (basically save off
-            // properties of each vertex into a new list)
+        for ( Vertex target : targetFields ) {
+          for ( List<Vertex> path : queries.getOriginPaths( target, MAX_LOOPS ) ) {
             String targetField = path.get( 0 ).getProperty( DictionaryConst.PROPERTY_NAME );
             Set<StepField> pathSet = originStepsMap.get( targetField );
 
@@ -139,16 +135,13 @@ public class LineageClient implements ILineageClient {
         if ( lineageGraph != null ) {
 
           // Get the creator field nodes for all the field names passed in
-          List<Vertex> getTargetFields = getTargetFields( lineageGraph, targetStepName, fieldNames );
-
-
-          // The "origin steps pipe" with a second param of true returns a pipeline that will return paths between
-          // the origin field nodes and the target field node.
-          GremlinPipeline pipe = getOriginStepsPipe( getTargetFields );
-          List<List<Vertex>> pathList = pipe.toList();
-          if ( pathList != null ) {
+          LineageQueryEngine.GraphQueries queries = LineageQueryEngine.getInstance().forGraph( lineageGraph );
+          List<Vertex> targetFields = queries.getTargetFields( targetStepName, fieldNames,
+            () -> getTargetFields( lineageGraph, targetStepName, fieldNames ) );
 
-            for ( List<Vertex> path : pathList ) {
+          // The origin paths run from each target field node back to its origin field nodes
+          for ( Vertex target : targetFields ) {
+            for ( List<Vertex> path : queries.getOriginPaths( target, MAX_LOOPS ) ) {
               // Transform each path of vertices into a "path" of StepFieldOperations objects (basically save off
               // properties of each vertex into a new list)
               List<StepFieldOperations> stepFieldOps = new ArrayList<>();
@@ -163,8 +156,7 @@ public class LineageClient implements ILineageClient {
                 Map<String, String> stepField = STEPFIELDOPS_PIPE_FUNC.compute( v );
                 String stepName = stepField.get( "stepName" );
                 String fieldName = stepField.get( "fieldName" );
-                Operations operations = MetaverseUtil.convertOperationsStringToMap(
-                  (String) v.getProperty( DictionaryConst.PROPERTY_OPERATIONS ) );
+                Operations operations = queries.getOperations( v );
 
                 stepFieldOps.add( 0, new StepFieldOperations( stepName, fieldName, operations ) );
               }
@@ -216,6 +208,14 @@ public class LineageClient implements ILineageClient {
     return targetFieldNodesPipe.toList();
   }
 
+  /**
+   * Returns a pipeline producing the paths from the given target fields back to their origin fields. The origin steps
+   * and operation paths queries of this client compute the same paths with {@link LineageQueryEngine}, which shares
+   * them across queries.
+   *
+   * @param inV the target field vertices
+   * @return a pipeline of paths, each from a target field to one of its origin fields
+   */
   protected GremlinPipeline getOriginStepsPipe( List<Vertex> inV ) {
     GremlinPipeline pipe = new GremlinPipeline( inV )
 
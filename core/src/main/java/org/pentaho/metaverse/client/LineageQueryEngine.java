@@ -0,0 +1,167 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.client;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.api.model.Operations;
+import org.pentaho.metaverse.util.MetaverseUtil;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers the origin and operation path queries of {@link LineageClient} for lineage graphs. Origins are found with a
+ * breadth-first search back along "derives" and "joins" links, which visits each field once. The origin paths of each
+ * target field, and the operations of each field, are computed once per graph and shared by all queries on it.
+ * <p>
+ * Graphs are told apart by identity: lineage graphs are not modified once built, so a graph instance stands for a
+ * version of the lineage of a transformation. The memoized results hold vertices, and so their graph, so the results
+ * of at most {@value #MAX_GRAPHS} graphs are kept, and only until they have not been queried for a while.
+ */
+class LineageQueryEngine {
+
+  private static final LineageQueryEngine INSTANCE = new LineageQueryEngine();
+
+  private static final int MAX_TARGET_QUERIES = 1000;
+  static final int MAX_GRAPHS = 16;
+  private static final long GRAPH_EXPIRY_MINUTES = 10L;
+
+  // weak keys compare graphs by identity
+  private final Cache<Graph, GraphQueries> graphQueries = CacheBuilder.newBuilder().weakKeys()
+    .maximumSize( MAX_GRAPHS ).expireAfterAccess( GRAPH_EXPIRY_MINUTES, TimeUnit.MINUTES ).build();
+
+  static LineageQueryEngine getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * @return the queries on the given graph, sharing their results with earlier queries on it
+   */
+  GraphQueries forGraph( final Graph graph ) {
+    try {
+      return graphQueries.get( graph, GraphQueries::new );
+    } catch ( ExecutionException e ) {
+      throw new IllegalStateException( e.getCause() );
+    }
+  }
+
+  /**
+   * The queries on one lineage graph, and their memoized results
+   */
+  static class GraphQueries {
+
+    private final Cache<List<Object>, List<Vertex>> targetFields =
+      CacheBuilder.newBuilder().maximumSize( MAX_TARGET_QUERIES ).build();
+    private final Map<Vertex, List<List<Vertex>>> originPaths = new ConcurrentHashMap<>();
+    private final Map<Vertex, Optional<Operations>> operations = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the fields output by the target step with the given names, looking them up on the first query for the
+     * step and names only
+     *
+     * @param targetStepName the name of the target step
+     * @param fieldNames     the names of the fields
+     * @param lookup         looks the fields up in the graph
+     * @return the target field vertices
+     */
+    List<Vertex> getTargetFields( final String targetStepName, final Collection<String> fieldNames,
+                                  final Callable<List<Vertex>> lookup ) throws ExecutionException {
+      return targetFields.get( Arrays.asList( targetStepName, new HashSet<>( fieldNames ) ),
+        () -> Collections.unmodifiableList( new ArrayList<>( lookup.call() ) ) );
+    }
+
+    /**
+     * Returns the paths from the target field back to each of its origin fields: the fields found along "derives" and
+     * "joins" links that are not derived from another field. Each path starts with the target field and ends with the
+     * origin; a field that is not derived or joined from another one is its own origin.
+     *
+     * @param target   the target field vertex
+     * @param maxLoops the maximum number of links followed from the target
+     * @return the origin paths, shortest first
+     */
+    List<List<Vertex>> getOriginPaths( final Vertex target, final int maxLoops ) {
+      return originPaths.computeIfAbsent( target, v -> Collections.unmodifiableList( findOriginPaths( v, maxLoops ) ) );
+    }
+
+    /**
+     * @return the operations recorded on the field vertex, parsed once per vertex, or null if there are none
+     */
+    Operations getOperations( final Vertex field ) {
+      return operations.computeIfAbsent( field, v -> Optional.ofNullable( MetaverseUtil.convertOperationsStringToMap(
+        (String) v.getProperty( DictionaryConst.PROPERTY_OPERATIONS ) ) ) ).orElse( null );
+    }
+
+    private static List<List<Vertex>> findOriginPaths( final Vertex target, final int maxLoops ) {
+      if ( !target.getVertices( Direction.IN, DictionaryConst.LINK_DERIVES, DictionaryConst.LINK_JOINS )
+        .iterator().hasNext() ) {
+        return Collections.singletonList( Collections.singletonList( target ) );
+      }
+      // each field is reached once, through the shortest path from the target
+      final Map<Vertex, Vertex> next = new HashMap<>();
+      final Map<Vertex, Integer> depth = new HashMap<>();
+      final Set<Vertex> origins = new LinkedHashSet<>();
+      final Deque<Vertex> queue = new ArrayDeque<>();
+      depth.put( target, 0 );
+      queue.add( target );
+      while ( !queue.isEmpty() ) {
+        final Vertex current = queue.poll();
+        final int currentDepth = depth.get( current );
+        for ( Vertex previous : current.getVertices(
+          Direction.IN, DictionaryConst.LINK_DERIVES, DictionaryConst.LINK_JOINS ) ) {
+          if ( depth.containsKey( previous ) ) {
+            continue;
+          }
+          next.put( previous, current );
+          depth.put( previous, currentDepth + 1 );
+          if ( !previous.getVertices( Direction.IN, DictionaryConst.LINK_DERIVES ).iterator().hasNext() ) {
+            origins.add( previous );
+          }
+          // joined fields are followed further, even when not derived
+          if ( currentDepth + 1 < maxLoops ) {
+            queue.add( previous );
+          }
+        }
+      }
+      final List<List<Vertex>> paths = new ArrayList<>( origins.size() );
+      for ( Vertex origin : origins ) {
+        final List<Vertex> path = new ArrayList<>();
+        for ( Vertex v = origin; v != null; v = next.get( v ) ) {
+          path.add( 0, v );
+        }
+        paths.add( Collections.unmodifiableList( path ) );
+      }
+      return paths;
+    }
+  }
+}
@@ -23,6 +23,7 @@ import org.pentaho.metaverse.api.IGraphWriter;
 import org.pentaho.metaverse.api.model.BaseMetaverseBuilder;
 import org.pentaho.metaverse.impl.MetaverseConfig;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
@@ -38,20 +39,38 @@ import java.util.Set;
  */
 public abstract class BaseGraphWriter implements IGraphWriter {
 
+  /**
+   * The size of the buffer the graph is written through
+   */
+  protected static final int OUTPUT_BUFFER_SIZE = 256 * 1024;
+
   public static void adjustGraph( final Graph graph ) {
-    mergeOutputsAndInputs( graph );
+    // the adjustments below only ever remove field vertices, so the step, job entry and external resource vertices
+    // they operate on can be collected once up front
+    final List<Vertex> documentElementVertices = new ArrayList<>();
+    final List<Vertex> externalResourceVertices = new ArrayList<>();
+    for ( final Vertex vertex : graph.getVertices() ) {
+      final Object category = vertex.getProperty( DictionaryConst.PROPERTY_CATEGORY );
+      if ( DictionaryConst.CATEGORY_DOCUMENT_ELEMENT.equals( category ) ) {
+        documentElementVertices.add( vertex );
+      } else if ( isExternalResourceVertex( vertex, category ) ) {
+        externalResourceVertices.add( vertex );
+      }
+    }
+
+    mergeOutputsAndInputs( graph, documentElementVertices );
 
     if ( MetaverseConfig.deduplicateTransformationFields() ) {
-      deduplicateTransFields( graph );
+      deduplicateTransFields( graph, documentElementVertices );
     }
 
     if ( MetaverseConfig.adjustExternalResourceFields() ) {
       // first add the missing links from each external resources to their fields
-      addExternalResourceContainsFieldsLinks( graph );
+      addExternalResourceContainsFieldsLinks( graph, externalResourceVertices );
 
       // if a single step reads more than one external resource, we will now likely have duplicate fields "contain"ed by
       // each resource, which need to be de-duplicated
-      deduplicateExternalResourceFields( graph );
+      deduplicateExternalResourceFields( graph, externalResourceVertices );
     }
   }
 
@@ -59,39 +78,18 @@ public abstract class BaseGraphWriter implements IGraphWriter {
   public final void outputGraph( Graph graph, OutputStream graphMLOutputStream ) throws IOException {
 
     adjustGraph( graph );
-    outputGraphImpl( graph, graphMLOutputStream );
-  }
-
-  protected abstract void outputGraphImpl( final Graph graph, final OutputStream outputStream ) throws IOException;
-
-  private static Set<Vertex> getVerticesByCategoryAndName( final Graph graph, final String category,
-                                                           final String name ) {
-    final Iterator<Vertex> allVertices = graph.getVertices().iterator();
-
-    final Set<Vertex> documentElementVertices = new HashSet();
-    while ( allVertices.hasNext() ) {
-      final Vertex vertex = allVertices.next();
-      if ( ( category == null || category.equals( vertex.getProperty( DictionaryConst.PROPERTY_CATEGORY ) ) )
-        && ( name == null || name.equals( vertex.getProperty( DictionaryConst.PROPERTY_NAME ) ) ) ) {
-        documentElementVertices.add( vertex );
-      }
+    if ( graphMLOutputStream == null ) {
+      outputGraphImpl( graph, null );
+      return;
     }
-    return documentElementVertices;
+    // the graph is written element by element, buffer the many small writes that result before they reach the
+    // underlying (often VFS) stream
+    final OutputStream bufferedOutputStream = new BufferedOutputStream( graphMLOutputStream, OUTPUT_BUFFER_SIZE );
+    outputGraphImpl( graph, bufferedOutputStream );
+    bufferedOutputStream.flush();
   }
 
-  private static Set<Vertex> getVerticesByCategory( final Graph graph, final String category ) {
-    return getVerticesByCategoryAndName( graph, category, null );
-  }
-
-  /**
-   * Returns all vertices categorized as "documentelement", which corresponds to all Step and Job Entry vertices.
-   *
-   * @param graph the {@link Graph}
-   * @return a {@link Set} of vertices corresponding to Steps and Job Enties.
-   */
-  private static Set<Vertex> getDocumentElementVertices( final Graph graph ) {
-    return getVerticesByCategory( graph, DictionaryConst.CATEGORY_DOCUMENT_ELEMENT );
-  }
+  protected abstract void outputGraphImpl( final Graph graph, final OutputStream outputStream ) throws IOException;
 
   /**
    * In some cases, we are unable to make a connection between a step's output fields and the input fields that the step
@@ -99,13 +97,12 @@ public abstract class BaseGraphWriter implements IGraphWriter {
    * IN "outputs" link, and check whether there are any matching "output" fields in the steps that hop to the given
    * step. If so, merge the fields, OR if there are multiple fields that match, add appropriate missing links.
    */
-  private static void mergeOutputsAndInputs( final Graph graph ) {
-    // get all Step and Job Entry nodes
-    final Iterator<Vertex> documentElementVertices = getDocumentElementVertices( graph ).iterator();
-
-    while ( documentElementVertices.hasNext() ) {
-      final Vertex documentElementVertex = documentElementVertices.next();
+  private static void mergeOutputsAndInputs( final Graph graph, final List<Vertex> documentElementVertices ) {
+    // the output fields of each step by name, built when the step is first looked at as an input step; merging only
+    // removes orphaned input fields, which are not the output of any step, so these stay valid throughout
+    final Map<Vertex, Map<String, List<Vertex>>> outputFieldsByStep = new HashMap<>();
 
+    for ( final Vertex documentElementVertex : documentElementVertices ) {
       final List<Vertex> inputFields = getLinkedVertices( documentElementVertex, Direction.IN,
         DictionaryConst.LINK_INPUTS, DictionaryConst.CATEGORY_FIELD, true, DictionaryConst.NODE_TYPE_TRANS_FIELD,
         true );
@@ -119,35 +116,33 @@ public abstract class BaseGraphWriter implements IGraphWriter {
         final List<Vertex> inputSteps = getLinkedVertices( documentElementVertex, Direction.IN,
           DictionaryConst.LINK_HOPSTO, DictionaryConst.CATEGORY_DOCUMENT_ELEMENT, true,
           DictionaryConst.NODE_TYPE_TRANS_STEP, true );
-        // traverse all input steps and get their output fields whose names match the orphaned field;
-        // when the first match is found, merge the two fields, all subsequent matches need to have the "input" link
-        // added from the output field to the orphaned field
+        // look up the output fields of all input steps whose names match the orphaned field; when the first match is
+        // found, merge the two fields, all subsequent matches need to have the "input" link added from the output
+        // field to the orphaned field
         for ( final Vertex orphanedInputField : orphanedInputFields ) {
           final String orphanedInputFieldName = orphanedInputField.getProperty( DictionaryConst.PROPERTY_NAME );
           int matchCount = 0;
           for ( final Vertex inputStep : inputSteps ) {
-            final List<Vertex> inputStepOutputFields = getLinkedVertices( inputStep, Direction.OUT,
-              DictionaryConst.LINK_OUTPUTS, DictionaryConst.CATEGORY_FIELD, true,
-              DictionaryConst.NODE_TYPE_TRANS_FIELD, true );
-            for ( final Vertex inputStepOutputField : inputStepOutputFields ) {
-              final String inputStepOutputFieldName = inputStepOutputField.getProperty( DictionaryConst
-                .PROPERTY_NAME );
-              if ( inputStepOutputFieldName.equals( orphanedInputFieldName ) ) {
-                // we have a match - if this is the first match, merge the fields
-                if ( matchCount == 0 ) {
-                  rewireEdges( graph, inputStepOutputField, orphanedInputField, Direction.IN );
-                  rewireEdges( graph, inputStepOutputField, orphanedInputField, Direction.OUT );
-                  // remove the orphaned input field, we no longer need it
-                  orphanedInputField.remove();
-                } else {
-                  // otherwise add an input link from the inputStepOutputField to the parent step of the orphaned field
-                  final String newLinkId = BaseMetaverseBuilder.getEdgeId( inputStepOutputField,
-                    DictionaryConst.LINK_INPUTS, documentElementVertex );
-                  graph.addEdge( newLinkId, inputStepOutputField, documentElementVertex, DictionaryConst.LINK_INPUTS )
-                    .setProperty( "text", DictionaryConst.LINK_INPUTS );
-                }
-                matchCount++;
+            final List<Vertex> matchingOutputFields = outputFieldsByStep.computeIfAbsent( inputStep,
+              BaseGraphWriter::getOutputFieldsByName ).get( orphanedInputFieldName );
+            if ( matchingOutputFields == null ) {
+              continue;
+            }
+            for ( final Vertex inputStepOutputField : matchingOutputFields ) {
+              // we have a match - if this is the first match, merge the fields
+              if ( matchCount == 0 ) {
+                rewireEdges( graph, inputStepOutputField, orphanedInputField, Direction.IN );
+                rewireEdges( graph, inputStepOutputField, orphanedInputField, Direction.OUT );
+                // remove the orphaned input field, we no longer need it
+                orphanedInputField.remove();
+              } else {
+                // otherwise add an input link from the inputStepOutputField to the parent step of the orphaned field
+                final String newLinkId = BaseMetaverseBuilder.getEdgeId( inputStepOutputField,
+                  DictionaryConst.LINK_INPUTS, documentElementVertex );
+                graph.addEdge( newLinkId, inputStepOutputField, documentElementVertex, DictionaryConst.LINK_INPUTS )
+                  .setProperty( "text", DictionaryConst.LINK_INPUTS );
               }
+              matchCount++;
             }
           }
         }
@@ -155,12 +150,24 @@ public abstract class BaseGraphWriter implements IGraphWriter {
     }
   }
 
-  private static void deduplicateTransFields( final Graph graph ) {
-    // get all Step and Job Entry nodes
-    final Iterator<Vertex> documentElementVertices = getDocumentElementVertices( graph ).iterator();
+  /**
+   * Returns the transformation fields the given step outputs, grouped by name, in the order of the step's "outputs"
+   * edges.
+   */
+  private static Map<String, List<Vertex>> getOutputFieldsByName( final Vertex stepVertex ) {
+    final Map<String, List<Vertex>> outputFieldsByName = new HashMap<>();
+    for ( final Vertex outputField : getLinkedVertices( stepVertex, Direction.OUT, DictionaryConst.LINK_OUTPUTS,
+      DictionaryConst.CATEGORY_FIELD, true, DictionaryConst.NODE_TYPE_TRANS_FIELD, true ) ) {
+      final String name = outputField.getProperty( DictionaryConst.PROPERTY_NAME );
+      if ( name != null ) {
+        outputFieldsByName.computeIfAbsent( name, key -> new ArrayList<>() ).add( outputField );
+      }
+    }
+    return outputFieldsByName;
+  }
 
-    while ( documentElementVertices.hasNext() ) {
-      final Vertex documentElementVertex = documentElementVertices.next();
+  private static void deduplicateTransFields( final Graph graph, final List<Vertex> documentElementVertices ) {
+    for ( final Vertex documentElementVertex : documentElementVertices ) {
       // merge fields at the end of the "outputs" edges
       mergeFields( graph, documentElementVertex, Direction.OUT, DictionaryConst.LINK_OUTPUTS, true );
     }
@@ -238,18 +245,13 @@ public abstract class BaseGraphWriter implements IGraphWriter {
     }
   }
 
-  private static Set<Vertex> getCollectionVertices( final Graph graph ) {
-    return getVerticesByCategory( graph, DictionaryConst.CATEGORY_FIELD_COLLECTION );
-  }
-
-  private static Set<Vertex> getSQLVertices( final Graph graph ) {
-    return getVerticesByCategoryAndName( graph, DictionaryConst.CATEGORY_OTHER, DictionaryConst.NODE_NAME_SQL );
-  }
-
-  private static Set<Vertex> getExternalResourceVertices( final Graph graph ) {
-    final Set<Vertex> externalResourceVertexSet = getCollectionVertices( graph );
-    externalResourceVertexSet.addAll( getSQLVertices( graph ) );
-    return externalResourceVertexSet;
+  /**
+   * External resources are field collections (files, database tables etc...) and SQL queries.
+   */
+  private static boolean isExternalResourceVertex( final Vertex vertex, final Object category ) {
+    return DictionaryConst.CATEGORY_FIELD_COLLECTION.equals( category )
+      || ( DictionaryConst.CATEGORY_OTHER.equals( category )
+      && DictionaryConst.NODE_NAME_SQL.equals( vertex.getProperty( DictionaryConst.PROPERTY_NAME ) ) );
   }
 
   private static List<Vertex> getLinkedVertices( final Vertex originVertex, final Direction edgeDirection,
@@ -298,12 +300,9 @@ public abstract class BaseGraphWriter implements IGraphWriter {
   }
 
   // add "contains" edges only to fields and columns which input into the step
-  private static void addExternalResourceContainsFieldsLinks( final Graph graph ) {
-    // get all external resources (files, SQL queries, database tables etc...)
-    final Iterator<Vertex> externalResourceVertices = getExternalResourceVertices( graph ).iterator();
-
-    while ( externalResourceVertices.hasNext() ) {
-      final Vertex externalResourceVertex = externalResourceVertices.next();
+  private static void addExternalResourceContainsFieldsLinks( final Graph graph,
+                                                              final List<Vertex> externalResourceVertices ) {
+    for ( final Vertex externalResourceVertex : externalResourceVertices ) {
       // for each external resource vertex, get all steps that read it
       List<Vertex> stepVertices = getStepsReadingExternalResource( externalResourceVertex );
       for ( final Vertex stepVertex : stepVertices ) {
@@ -334,14 +333,11 @@ public abstract class BaseGraphWriter implements IGraphWriter {
     }
   }
 
-  private static void deduplicateExternalResourceFields( final Graph graph ) {
-    // get all external resources (files, SQL queries, database tables etc...)
-    final Iterator<Vertex> externalResourceVertices = getExternalResourceVertices( graph ).iterator();
-
+  private static void deduplicateExternalResourceFields( final Graph graph,
+                                                         final List<Vertex> externalResourceVertices ) {
     // traverse the links and see if there are any that point to fields with the same names, if so, they need to be
     // merged
-    while ( externalResourceVertices.hasNext() ) {
-      final Vertex vertex = externalResourceVertices.next();
+    for ( final Vertex vertex : externalResourceVertices ) {
       // merge non-transformation fields at the end of the "outputs" edges
       mergeFields( graph, vertex, Direction.OUT, DictionaryConst.LINK_CONTAINS, false );
     }
@@ -25,6 +25,7 @@ import org.pentaho.dictionary.MetaverseLink;
 import org.pentaho.metaverse.api.IMetaverseLink;
 import org.pentaho.metaverse.api.IMetaverseNode;
 import org.pentaho.metaverse.api.IMetaverseReader;
+import org.pentaho.metaverse.impl.MetaverseConfig;
 import org.pentaho.metaverse.impl.MetaverseNode;
 import org.pentaho.metaverse.messages.Messages;
 import org.pentaho.metaverse.util.MetaverseUtil;
@@ -34,13 +35,18 @@ import org.slf4j.LoggerFactory;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An implementation of an IMetaverseReader that uses a Blueprints graph as the underlying storage
@@ -84,11 +90,10 @@ public class BlueprintsGraphMetaverseReader implements IMetaverseReader {
 
   @Override
   public IMetaverseNode findNode( String id ) {
-    Vertex vertex = getGraph().getVertex( id );
+    Vertex vertex = enhanceGraph( getGraph() ).getVertex( id );
     if ( vertex == null ) {
       return null;
     }
-    MetaverseUtil.enhanceVertex( vertex );
     MetaverseNode node = new MetaverseNode( vertex );
     return node;
   }
@@ -205,99 +210,173 @@ public class BlueprintsGraphMetaverseReader implements IMetaverseReader {
 
   @Override
   public Graph search( List<String> resultTypes, List<String> startNodeIDs, boolean shortestOnly ) {
+    final MetaverseConfig config = MetaverseConfig.getInstance();
+    return search( resultTypes, startNodeIDs, shortestOnly, config.getSearchMaxDepth(),
+      config.getSearchMaxResults(), TimeUnit.SECONDS.toMillis( config.getSearchTimeout() ) );
+  }
 
-    Graph g = new TinkerGraph();
+  /**
+   * Searches the metaverse for nodes of the specified result types, by traversing the graph model from the specified
+   * starting node(s). From each starting node, the search goes upstream, and downstream from where it also goes
+   * upstream again to pick up the structure (containers, parents) of the nodes it reaches.
+   * <p>
+   * All starting nodes are searched at once, breadth first, so each result is reached through the shortest path from
+   * the closest starting node. The search stops at whichever limit it hits first and returns the paths found so far.
+   *
+   * @param resultTypes   the result types, null or empty for all nodes
+   * @param startNodeIDs  the start node ids
+   * @param shortestOnly  true to only return the shortest path to each result, false to return every path the search
+   *                      follows to a result
+   * @param maxDepth      the number of edges a path has at most, 0 for no limit
+   * @param maxResults    the number of result nodes at most, 0 for no limit
+   * @param timeoutMillis the milliseconds after which the search stops, 0 for no limit
+   * @return a read-only view of the paths in the metaverse graph
+   */
+  public Graph search( List<String> resultTypes, List<String> startNodeIDs, boolean shortestOnly, int maxDepth,
+                       int maxResults, long timeoutMillis ) {
 
-    for ( String startNodeID : startNodeIDs ) {
-      if ( graph != null ) {
-        // traverse look for paths to the results
-        Vertex startVertex = graph.getVertex( startNodeID );
-        GraphPath path = new GraphPath();
-        Set<Object> done = new HashSet<Object>();
-        Map<Object, GraphPath> shortestPaths = new HashMap<Object, GraphPath>();
-        traverseGraph( startVertex, graph, resultTypes, path, done, shortestPaths, Direction.IN, shortestOnly );
-        done = new HashSet<Object>();
-        traverseGraph( startVertex, graph, resultTypes, path, done, shortestPaths, Direction.OUT, shortestOnly );
-        Iterator<Map.Entry<Object, GraphPath>> paths = shortestPaths.entrySet().iterator();
-        while ( paths.hasNext() ) {
-          Map.Entry<Object, GraphPath> entry = paths.next();
-          GraphPath shortPath = entry.getValue();
-          shortPath.addToGraph( g );
-        }
+    SubgraphView view = new SubgraphView( graph );
+    if ( graph == null || startNodeIDs == null ) {
+      return enhanceGraph( view );
+    }
+    final long deadline = timeoutMillis > 0 ? System.currentTimeMillis() + timeoutMillis : Long.MAX_VALUE;
 
+    // a vertex is reached either while going upstream or while going downstream, which lead to different paths
+    Map<Object, SearchStep> upstream = new HashMap<>();
+    Map<Object, SearchStep> downstream = new HashMap<>();
+    Deque<SearchStep> queue = new ArrayDeque<>();
+    for ( String startNodeID : startNodeIDs ) {
+      Vertex startVertex = graph.getVertex( startNodeID );
+      if ( startVertex != null && !upstream.containsKey( startVertex.getId() ) ) {
+        SearchStep up = new SearchStep( startVertex, true, 0 );
+        SearchStep down = new SearchStep( startVertex, false, 0 );
+        upstream.put( startVertex.getId(), up );
+        downstream.put( startVertex.getId(), down );
+        queue.add( up );
+        queue.add( down );
       }
     }
-    g = enhanceGraph( g );
-    return g;
-  }
 
-  private void traverseGraph( Vertex startVertex, Graph subGraph, List<String> resultTypes, GraphPath path,
-                              Set<Object> done, Map<Object, GraphPath> shortestPaths, Direction direction, boolean shortestOnly ) {
-    boolean isTargetType = resultTypes == null
-      || resultTypes.size() == 0
-      || resultTypes.contains( startVertex.getProperty( DictionaryConst.PROPERTY_TYPE ) );
-    if ( !isTargetType && done.contains( startVertex.getId() ) ) {
-      return;
-    }
-    path.addVertex( startVertex );
-    if ( isTargetType ) {
-      // this is one of our target types
-      if ( shortestOnly ) {
-        GraphPath shortestPath = shortestPaths.get( startVertex.getId() );
-        if ( shortestPath == null || path.getLength() < shortestPath.getLength() ) {
-          shortestPaths.put( startVertex.getId(), path.clone() );
-          if ( done.contains( startVertex.getId() ) ) {
-            path.pop();
-            return;
+    Set<Object> results = new HashSet<>();
+    List<SearchStep> resultSteps = new ArrayList<>();
+    while ( !queue.isEmpty() ) {
+      if ( System.currentTimeMillis() > deadline ) {
+        LOGGER.warn( Messages.getString( "WARN.SearchTimedOut", Long.toString( timeoutMillis ) ) );
+        break;
+      }
+      SearchStep step = queue.poll();
+      if ( isResultType( step.vertex, resultTypes ) ) {
+        if ( !results.contains( step.vertex.getId() ) ) {
+          if ( maxResults > 0 && results.size() >= maxResults ) {
+            LOGGER.warn( Messages.getString( "WARN.SearchResultLimitReached", Integer.toString( maxResults ) ) );
+            break;
           }
+          results.add( step.vertex.getId() );
+          resultSteps.add( step );
+        } else if ( !shortestOnly ) {
+          resultSteps.add( step );
         }
-      } else {
-        shortestPaths.put( path.toString(), path.clone() );
       }
-    }
-    done.add( startVertex.getId() );
-    if ( direction == Direction.IN ) {
-      Iterator<Edge> edges = startVertex.getEdges( Direction.IN ).iterator();
-      while ( edges.hasNext() ) {
-        Edge edge = edges.next();
-        if ( done.contains( edge.getId() ) ) {
-          continue;
+      if ( maxDepth > 0 && step.depth >= maxDepth ) {
+        continue;
+      }
+      if ( step.upstream ) {
+        follow( step, Direction.IN, upstream, queue, !shortestOnly );
+      } else {
+        follow( step, Direction.OUT, downstream, queue, !shortestOnly );
+        if ( step.depth > 0 ) {
+          // go upstream to find structure
+          follow( step, Direction.IN, upstream, queue, !shortestOnly );
         }
-        path.addEdge( edge );
-        Vertex nextVertex = edge.getVertex( Direction.OUT );
-        traverseGraph( nextVertex, subGraph, resultTypes, path, done, shortestPaths, direction, shortestOnly );
-        path.pop();
       }
     }
-    if ( direction == Direction.OUT ) {
-      Iterator<Edge> edges = startVertex.getEdges( Direction.OUT ).iterator();
-      while ( edges.hasNext() ) {
-        Edge edge = edges.next();
-        if ( done.contains( edge.getId() ) ) {
-          continue;
+
+    if ( shortestOnly ) {
+      for ( SearchStep step : resultSteps ) {
+        view.include( step.vertex );
+        while ( !step.hops.isEmpty() ) {
+          SearchHop hop = step.hops.get( 0 );
+          view.include( hop.edge );
+          step = hop.from;
         }
-        path.addEdge( edge );
-        Vertex nextVertex = edge.getVertex( Direction.IN );
-        traverseGraph( nextVertex, subGraph, resultTypes, path, done, shortestPaths, direction, shortestOnly );
-        path.pop();
       }
-      // go upstream to find structure
-      if ( path.getLength() > 1 ) {
-        edges = startVertex.getEdges( Direction.IN ).iterator();
-        while ( edges.hasNext() ) {
-          Edge edge = edges.next();
-          if ( done.contains( edge.getId() ) ) {
-            continue;
+    } else {
+      Set<SearchStep> done = Collections.newSetFromMap( new IdentityHashMap<>() );
+      Deque<SearchStep> pending = new ArrayDeque<>( resultSteps );
+      done.addAll( resultSteps );
+      while ( !pending.isEmpty() ) {
+        SearchStep step = pending.pop();
+        view.include( step.vertex );
+        for ( SearchHop hop : step.hops ) {
+          view.include( hop.edge );
+          if ( done.add( hop.from ) ) {
+            pending.push( hop.from );
           }
-          path.addEdge( edge );
-          Vertex nextVertex = edge.getVertex( Direction.OUT );
-          // go upstream to find structure
-          traverseGraph( nextVertex, subGraph, resultTypes, path, done, shortestPaths, Direction.IN, shortestOnly );
-          path.pop();
         }
       }
     }
-    path.pop();
+    return enhanceGraph( view );
+  }
+
+  private static boolean isResultType( Vertex vertex, List<String> resultTypes ) {
+    return resultTypes == null
+      || resultTypes.isEmpty()
+      || resultTypes.contains( vertex.getProperty( DictionaryConst.PROPERTY_TYPE ) );
+  }
+
+  /**
+   * Queues the vertices adjacent to the vertex of a search step
+   *
+   * @param step      the step to continue from
+   * @param direction the direction of the edges to follow, IN to go upstream and OUT to go downstream
+   * @param reached   the steps already reached in that direction, by vertex ID
+   * @param queue     the steps to search next
+   * @param allHops   true to record every hop to a step, false to only record the first one
+   */
+  private static void follow( SearchStep step, Direction direction, Map<Object, SearchStep> reached,
+                              Deque<SearchStep> queue, boolean allHops ) {
+    Direction opDirection = direction == Direction.IN ? Direction.OUT : Direction.IN;
+    for ( Edge edge : step.vertex.getEdges( direction ) ) {
+      Vertex nextVertex = edge.getVertex( opDirection );
+      SearchStep next = reached.get( nextVertex.getId() );
+      if ( next == null ) {
+        next = new SearchStep( nextVertex, direction == Direction.IN, step.depth + 1 );
+        reached.put( nextVertex.getId(), next );
+        queue.add( next );
+      } else if ( !allHops ) {
+        continue;
+      }
+      next.hops.add( new SearchHop( edge, step ) );
+    }
+  }
+
+  /**
+   * A vertex reached by a search, with the hops it was reached through. The first hop lies on a shortest path.
+   */
+  private static final class SearchStep {
+    private final Vertex vertex;
+    private final boolean upstream;
+    private final int depth;
+    private final List<SearchHop> hops = new ArrayList<>( 1 );
+
+    private SearchStep( Vertex vertex, boolean upstream, int depth ) {
+      this.vertex = vertex;
+      this.upstream = upstream;
+      this.depth = depth;
+    }
+  }
+
+  /**
+   * An edge followed by a search, and the step it was followed from
+   */
+  private static final class SearchHop {
+    private final Edge edge;
+    private final SearchStep from;
+
+    private SearchHop( Edge edge, SearchStep from ) {
+      this.edge = edge;
+      this.from = from;
+    }
   }
 
   @Override
@@ -354,27 +433,14 @@ public class BlueprintsGraphMetaverseReader implements IMetaverseReader {
   }
 
   /**
-   * Adds localized types and categories, add node color information
+   * Adds localized types and categories, add node color information. The graph itself is not changed, the returned
+   * graph computes these properties when they are read.
    *
    * @param g The graph to enhance
    * @return The enhanced graph
    */
   protected Graph enhanceGraph( Graph g ) {
-
-    // TODO should we clone the graph?
-    Iterator<Vertex> vertices = g.getVertices().iterator();
-    // enhance the vertixes
-    while ( vertices.hasNext() ) {
-      Vertex vertex = vertices.next();
-      MetaverseUtil.enhanceVertex( vertex );
-    }
-    Iterator<Edge> edges = g.getEdges().iterator();
-    // enhance the vertixes
-    while ( edges.hasNext() ) {
-      Edge edge = edges.next();
-      MetaverseUtil.enhanceEdge( edge );
-    }
-    return g;
+    return new EnhancedGraph( g );
   }
 
 
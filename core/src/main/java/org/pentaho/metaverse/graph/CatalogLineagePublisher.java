@@ -0,0 +1,599 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.graph;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.pentaho.metaverse.api.ICatalogLineageClient;
+import org.pentaho.metaverse.api.model.catalog.FieldLevelRelationship;
+import org.pentaho.metaverse.api.model.catalog.LineageDataResource;
+import org.pentaho.metaverse.impl.MetaverseConfig;
+import org.pentaho.metaverse.messages.Messages;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Publishes lineage to a data catalog off the lineage writing thread. Lineage waits in a bounded queue and a single
+ * worker sends it to the catalog, one {@link ICatalogLineageClient#processLineage(List, List)} call per execution
+ * unless {@code batchSize} is more than 1. Failed calls are retried with exponential backoff.
+ * <p>
+ * Batching is opt-in: the lineage of up to {@code batchSize} executions is then merged into one call, so the catalog
+ * is sent the resources read and written by all of them together and cannot tell which execution read or wrote which
+ * resource. Field level relationships are kept per resource.
+ * <p>
+ * Without a queue, lineage is published on the calling thread, which is the lineage writing thread: the call is tried
+ * once, and never retried after sleeping on that thread.
+ * <p>
+ * Lineage that cannot be queued because the queue is full, or that could not be sent after all retries, is spilled to
+ * the spill folder as JSON, one file per execution. Spilled lineage is queued again once the catalog accepts lineage,
+ * and when a publisher is created for the folder, so that it survives restarts. Without a spill folder such lineage is
+ * dropped.
+ * <p>
+ * Lineage that failed before is sent on its own, so that lineage the catalog always rejects does not hold back the
+ * rest. After {@value #MAX_FAILURES} failures it is quarantined: kept in the spill folder, but never sent again.
+ */
+public class CatalogLineagePublisher {
+
+  static final String SPILL_EXTENSION = ".lineage";
+  static final String QUARANTINE_EXTENSION = ".failed";
+  private static final String CLAIMED_EXTENSION = ".claimed";
+  private static final String TEMP_EXTENSION = ".tmp";
+
+  private static final long INITIAL_BACKOFF_MILLIS = 1000L;
+  private static final long MAX_BACKOFF_MILLIS = 60000L;
+  private static final long KEEP_ALIVE_SECONDS = 60L;
+  static final int MAX_FAILURES = 3;
+
+  private static final Logger log = LoggerFactory.getLogger( CatalogLineagePublisher.class );
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final ICatalogLineageClient client;
+  private final BlockingQueue<CatalogLineage> queue;
+  private final int batchSize;
+  private final int maxRetries;
+  private final Path spillFolder;
+  private final ThreadPoolExecutor worker;
+  private final AtomicBoolean draining = new AtomicBoolean();
+
+  private long initialBackoffMillis = INITIAL_BACKOFF_MILLIS;
+
+  private final LongAdder publishedCount = new LongAdder();
+  private final LongAdder spilledCount = new LongAdder();
+  private final LongAdder droppedCount = new LongAdder();
+  private final LongAdder quarantinedCount = new LongAdder();
+
+  /**
+   * Creates a publisher configured according to the {@link MetaverseConfig}
+   *
+   * @param client the client of the catalog to publish to
+   * @return a new publisher
+   */
+  public static CatalogLineagePublisher create( final ICatalogLineageClient client ) {
+    final MetaverseConfig config = MetaverseConfig.getInstance();
+    return new CatalogLineagePublisher( client, config.getCatalogPublishQueueSize(),
+      config.getCatalogPublishBatchSize(), config.getCatalogPublishMaxRetries(), config.getCatalogSpillFolder() );
+  }
+
+  /**
+   * Creates a new publisher, and queues any lineage spilled to the spill folder by an earlier publisher
+   *
+   * @param client      the client of the catalog to publish to
+   * @param queueSize   the maximum number of executions waiting to be published, 0 to publish on the calling thread
+   *                    (spilled lineage is then not published again)
+   * @param batchSize   the maximum number of executions published in one call, 1 to publish each on its own
+   * @param maxRetries  the number of times a failed call is retried, by the worker only
+   * @param spillFolder the local folder lineage is spilled to, null or empty to drop such lineage
+   */
+  public CatalogLineagePublisher( final ICatalogLineageClient client, final int queueSize, final int batchSize,
+                                  final int maxRetries, final String spillFolder ) {
+    this.client = client;
+    this.queue = queueSize > 0 ? new ArrayBlockingQueue<>( queueSize ) : null;
+    this.batchSize = Math.max( 1, batchSize );
+    this.maxRetries = Math.max( 0, maxRetries );
+    this.spillFolder = spillFolder == null || spillFolder.trim().isEmpty() ? null : Paths.get( spillFolder );
+    worker = new ThreadPoolExecutor( 1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+      runnable -> {
+        final Thread thread = new Thread( runnable, "lineage-catalog-publisher" );
+        thread.setDaemon( true );
+        return thread;
+      } );
+    // the worker goes away when there is nothing to publish
+    worker.allowCoreThreadTimeOut( true );
+
+    if ( queue != null && reloadSpilled() > 0 ) {
+      scheduleDrain();
+    }
+  }
+
+  /**
+   * Publishes the lineage of one execution. Unless the publisher is synchronous, this returns as soon as the lineage is
+   * queued or spilled.
+   *
+   * @param inputSources  the resources read by the execution
+   * @param outputTargets the resources written by the execution
+   */
+  public void publish( final List<LineageDataResource> inputSources, final List<LineageDataResource> outputTargets ) {
+    final CatalogLineage lineage = new CatalogLineage( inputSources, outputTargets );
+    if ( queue == null ) {
+      if ( send( Collections.singletonList( lineage ) ) ) {
+        publishedCount.increment();
+      } else {
+        fail( Collections.singletonList( lineage ) );
+      }
+    } else if ( worker.isShutdown() || !queue.offer( lineage ) ) {
+      log.warn( Messages.getString( "WARN.CatalogQueueFull" ) );
+      spill( Collections.singletonList( lineage ) );
+    } else {
+      scheduleDrain();
+    }
+  }
+
+  /**
+   * Waits until the queued lineage has been published, or spilled
+   *
+   * @param timeout the maximum time to wait
+   * @param unit    the unit of the timeout
+   * @return true if no lineage is waiting, false if the timeout elapsed first
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean flush( final long timeout, final TimeUnit unit ) throws InterruptedException {
+    final long deadline = System.nanoTime() + unit.toNanos( timeout );
+    while ( getQueueDepth() > 0 || draining.get() ) {
+      if ( System.nanoTime() - deadline >= 0 ) {
+        return false;
+      }
+      Thread.sleep( 10L );
+    }
+    return true;
+  }
+
+  /**
+   * Stops publishing, spilling the lineage still waiting in the queue so that it is published after a restart
+   *
+   * @param timeout the maximum time to wait for the batch being published
+   * @param unit    the unit of the timeout
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void shutdown( final long timeout, final TimeUnit unit ) throws InterruptedException {
+    worker.shutdown();
+    if ( queue != null ) {
+      final List<CatalogLineage> pending = new ArrayList<>();
+      queue.drainTo( pending );
+      if ( !pending.isEmpty() ) {
+        spill( pending );
+      }
+    }
+    if ( !worker.awaitTermination( timeout, unit ) ) {
+      // interrupts the backoff of the batch being published, which is then spilled
+      worker.shutdownNow();
+    }
+  }
+
+  /**
+   * @return the number of executions waiting to be published
+   */
+  public int getQueueDepth() {
+    return queue == null ? 0 : queue.size();
+  }
+
+  /**
+   * @return the number of executions published to the catalog
+   */
+  public long getPublishedCount() {
+    return publishedCount.sum();
+  }
+
+  /**
+   * @return the number of executions spilled to the spill folder
+   */
+  public long getSpilledCount() {
+    return spilledCount.sum();
+  }
+
+  /**
+   * @return the number of executions quarantined after failing to be published too many times
+   */
+  public long getQuarantinedCount() {
+    return quarantinedCount.sum();
+  }
+
+  /**
+   * @return the number of executions that could neither be published nor spilled
+   */
+  public long getDroppedCount() {
+    return droppedCount.sum();
+  }
+
+  void setInitialBackoffMillis( final long initialBackoffMillis ) {
+    this.initialBackoffMillis = initialBackoffMillis;
+  }
+
+  private void scheduleDrain() {
+    if ( draining.compareAndSet( false, true ) ) {
+      try {
+        worker.execute( this::drain );
+      } catch ( RuntimeException e ) {
+        // shut down, the queued lineage is spilled by shutdown()
+        draining.set( false );
+      }
+    }
+  }
+
+  private void drain() {
+    try {
+      final List<CatalogLineage> polled = new ArrayList<>( batchSize );
+      final List<CatalogLineage> batch = new ArrayList<>( batchSize );
+      while ( !worker.isShutdown() ) {
+        polled.clear();
+        batch.clear();
+        queue.drainTo( polled, batchSize );
+        if ( polled.isEmpty() ) {
+          return;
+        }
+        for ( CatalogLineage lineage : polled ) {
+          if ( lineage.failures > 0 ) {
+            publishBatch( Collections.singletonList( lineage ) );
+          } else {
+            batch.add( lineage );
+          }
+        }
+        if ( !batch.isEmpty() ) {
+          publishBatch( batch );
+        }
+      }
+    } finally {
+      draining.set( false );
+      // lineage queued after the last poll would otherwise wait for the next publish() call
+      if ( !queue.isEmpty() && !worker.isShutdown() ) {
+        scheduleDrain();
+      }
+    }
+  }
+
+  private void publishBatch( final List<CatalogLineage> batch ) {
+    if ( send( batch ) ) {
+      publishedCount.add( batch.size() );
+      // the catalog is accepting lineage again, so lineage spilled earlier gets another chance
+      reloadSpilled();
+    } else {
+      fail( batch );
+    }
+  }
+
+  private boolean send( final List<CatalogLineage> batch ) {
+    final List<LineageDataResource> inputSources = new ArrayList<>();
+    final List<LineageDataResource> outputTargets = new ArrayList<>();
+    for ( CatalogLineage lineage : batch ) {
+      inputSources.addAll( lineage.inputSources );
+      outputTargets.addAll( lineage.outputTargets );
+    }
+    // the calling thread is not held up by retries when there is no worker
+    final int retries = queue == null ? 0 : maxRetries;
+    long backoff = initialBackoffMillis;
+    for ( int attempt = 0; ; attempt++ ) {
+      try {
+        client.processLineage( inputSources, outputTargets );
+        return true;
+      } catch ( Exception e ) {
+        if ( attempt >= retries ) {
+          log.error( Messages.getString( "ERROR.CatalogPublishFailed", String.valueOf( attempt + 1 ) ), e );
+          return false;
+        }
+        log.warn( Messages.getString( "WARN.CatalogPublishRetry", String.valueOf( backoff ), e.getMessage() ) );
+        try {
+          Thread.sleep( backoff );
+        } catch ( InterruptedException ie ) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+        backoff = Math.min( backoff * 2, MAX_BACKOFF_MILLIS );
+      }
+    }
+  }
+
+  /**
+   * Spills the lineage that could not be published, or quarantines it once it has failed too many times
+   */
+  private void fail( final List<CatalogLineage> batch ) {
+    for ( CatalogLineage lineage : batch ) {
+      lineage.failures++;
+      if ( lineage.failures >= MAX_FAILURES ) {
+        log.error( Messages.getString( "ERROR.CatalogLineageQuarantined", String.valueOf( lineage.failures ) ) );
+        if ( write( lineage, QUARANTINE_EXTENSION ) ) {
+          quarantinedCount.increment();
+        }
+      } else if ( write( lineage, SPILL_EXTENSION ) ) {
+        spilledCount.increment();
+      }
+    }
+  }
+
+  private void spill( final List<CatalogLineage> batch ) {
+    for ( CatalogLineage lineage : batch ) {
+      if ( write( lineage, SPILL_EXTENSION ) ) {
+        spilledCount.increment();
+      }
+    }
+  }
+
+  /**
+   * Writes the lineage to the spill folder
+   *
+   * @return true if written, false if the lineage was dropped
+   */
+  private boolean write( final CatalogLineage lineage, final String extension ) {
+    if ( spillFolder == null ) {
+      droppedCount.increment();
+      log.error( Messages.getString( "ERROR.CatalogSpillFolderNotConfigured" ) );
+      return false;
+    }
+    final String name = System.currentTimeMillis() + "-" + UUID.randomUUID();
+    final Path temp = spillFolder.resolve( name + TEMP_EXTENSION );
+    try {
+      Files.createDirectories( spillFolder );
+      try ( OutputStream os = Files.newOutputStream( temp ) ) {
+        MAPPER.writeValue( os, lineage.toJson() );
+      }
+      // renamed once complete, so that a partially written file is never reloaded
+      Files.move( temp, spillFolder.resolve( name + extension ), StandardCopyOption.ATOMIC_MOVE );
+      return true;
+    } catch ( IOException e ) {
+      droppedCount.increment();
+      log.error( Messages.getString( "ERROR.CatalogSpillFailed", spillFolder.toString() ), e );
+      try {
+        Files.deleteIfExists( temp );
+      } catch ( IOException ignored ) {
+        // nothing more to do
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Queues the spilled lineage that fits in the queue, oldest first
+   *
+   * @return the number of executions queued
+   */
+  private int reloadSpilled() {
+    if ( spillFolder == null || !Files.isDirectory( spillFolder ) || queue.remainingCapacity() == 0 ) {
+      return 0;
+    }
+    final List<Path> files;
+    try ( Stream<Path> list = Files.list( spillFolder ) ) {
+      files = list.filter( file -> file.getFileName().toString().endsWith( SPILL_EXTENSION ) ).sorted()
+        .limit( queue.remainingCapacity() ).collect( Collectors.toList() );
+    } catch ( IOException e ) {
+      log.error( Messages.getString( "ERROR.CatalogSpillFolderNotListed", spillFolder.toString() ), e );
+      return 0;
+    }
+    int reloaded = 0;
+    for ( Path file : files ) {
+      final Path claimed = file.resolveSibling( file.getFileName() + CLAIMED_EXTENSION );
+      try {
+        // claimed first, so that publishers sharing the folder do not reload the same lineage
+        Files.move( file, claimed, StandardCopyOption.ATOMIC_MOVE );
+      } catch ( IOException e ) {
+        continue;
+      }
+      try {
+        final CatalogLineage lineage;
+        try ( InputStream is = Files.newInputStream( claimed ) ) {
+          lineage = CatalogLineage.fromJson( MAPPER.readTree( is ) );
+        }
+        if ( queue.offer( lineage ) ) {
+          Files.delete( claimed );
+          reloaded++;
+        } else {
+          Files.move( claimed, file, StandardCopyOption.ATOMIC_MOVE );
+        }
+      } catch ( IOException | RuntimeException e ) {
+        log.error( Messages.getString( "ERROR.CatalogSpillNotReloaded", claimed.toString() ), e );
+      }
+    }
+    return reloaded;
+  }
+
+  /**
+   * The lineage of one execution
+   */
+  static class CatalogLineage {
+    private final ArrayList<LineageDataResource> inputSources;
+    private final ArrayList<LineageDataResource> outputTargets;
+    // the number of times the lineage could not be published
+    private int failures;
+
+    CatalogLineage( final List<LineageDataResource> inputSources, final List<LineageDataResource> outputTargets ) {
+      this.inputSources = inputSources == null ? new ArrayList<>() : new ArrayList<>( inputSources );
+      this.outputTargets = outputTargets == null ? new ArrayList<>() : new ArrayList<>( outputTargets );
+    }
+
+    /**
+     * Writes the lineage as JSON. Resources and field level relationships refer to each other, so each of them is
+     * written once in its own list, and referred to by its position in that list.
+     */
+    JsonNode toJson() {
+      final List<LineageDataResource> resources = new ArrayList<>();
+      final Map<LineageDataResource, Integer> resourceIndexes = new IdentityHashMap<>();
+      final List<FieldLevelRelationship> relationships = new ArrayList<>();
+      final Map<FieldLevelRelationship, Integer> relationshipIndexes = new IdentityHashMap<>();
+      final ObjectNode json = MAPPER.createObjectNode();
+      json.put( "failures", failures );
+      final ArrayNode inputs = json.putArray( "inputSources" );
+      for ( LineageDataResource resource : inputSources ) {
+        if ( resource != null ) {
+          inputs.add( index( resource, resources, resourceIndexes ) );
+        }
+      }
+      final ArrayNode outputs = json.putArray( "outputTargets" );
+      for ( LineageDataResource resource : outputTargets ) {
+        if ( resource != null ) {
+          outputs.add( index( resource, resources, resourceIndexes ) );
+        }
+      }
+      final ArrayNode resourcesJson = json.putArray( "resources" );
+      // grows as relationships lead to resources that are neither read nor written by the execution
+      for ( int i = 0; i < resources.size(); i++ ) {
+        final LineageDataResource resource = resources.get( i );
+        final ObjectNode resourceJson = resourcesJson.addObject();
+        resourceJson.put( "name", resource.getName() );
+        resourceJson.put( "path", resource.getPath() );
+        if ( resource.getFields() != null ) {
+          final ArrayNode fields = resourceJson.putArray( "fields" );
+          resource.getFields().forEach( fields::add );
+        }
+        resourceJson.put( "catalogResourceID", resource.getCatalogResourceID() );
+        resourceJson.put( "catalogResourcePath", resource.getCatalogResourcePath() );
+        resourceJson.put( "catalogDataSourceName", resource.getCatalogDataSourceName() );
+        resourceJson.put( "catalogResourceLogicalPath", resource.getCatalogResourceLogicalPath() );
+        resourceJson.set( "vertexId", MAPPER.valueToTree( resource.getVertexId() ) );
+        resourceJson.put( "dbSchema", resource.getDbSchema() );
+        resourceJson.put( "dbHost", resource.getDbHost() );
+        resourceJson.put( "dbName", resource.getDbName() );
+        resourceJson.put( "dbPort", resource.getDbPort() );
+        resourceJson.put( "hdfsHost", resource.getHdfsHost() );
+        resourceJson.put( "hdfsPort", resource.getHdfsPort() );
+        resourceJson.put( "s3Bucket", resource.getS3Bucket() );
+        final ArrayNode relationshipsJson = resourceJson.putArray( "fieldLevelRelationships" );
+        for ( FieldLevelRelationship relationship : resource.getFieldLevelRelationships() ) {
+          relationshipsJson.add( index( relationship, relationships, relationshipIndexes ) );
+          if ( relationship.getInputSourceResource() != null ) {
+            index( relationship.getInputSourceResource(), resources, resourceIndexes );
+          }
+          if ( relationship.getOutputTargetResource() != null ) {
+            index( relationship.getOutputTargetResource(), resources, resourceIndexes );
+          }
+        }
+      }
+      final ArrayNode relationshipsJson = json.putArray( "fieldLevelRelationships" );
+      for ( FieldLevelRelationship relationship : relationships ) {
+        final ObjectNode relationshipJson = relationshipsJson.addObject();
+        putIndex( relationshipJson, "inputSourceResource", relationship.getInputSourceResource(), resourceIndexes );
+        relationshipJson.put( "inputSourceResourceField", relationship.getInputSourceResourceField() );
+        putIndex( relationshipJson, "outputTargetResource", relationship.getOutputTargetResource(), resourceIndexes );
+        relationshipJson.put( "outputTargetResourceField", relationship.getOutputTargetResourceField() );
+      }
+      return json;
+    }
+
+    /**
+     * Reads lineage written by {@link #toJson()}
+     */
+    static CatalogLineage fromJson( final JsonNode json ) throws IOException {
+      final List<LineageDataResource> resources = new ArrayList<>();
+      for ( JsonNode resourceJson : json.path( "resources" ) ) {
+        final LineageDataResource resource = new LineageDataResource( text( resourceJson, "name" ) );
+        resource.setPath( text( resourceJson, "path" ) );
+        if ( resourceJson.hasNonNull( "fields" ) ) {
+          final List<String> fields = new ArrayList<>();
+          resourceJson.get( "fields" ).forEach( field -> fields.add( field.asText() ) );
+          resource.setFields( fields );
+        }
+        resource.setCatalogResourceID( text( resourceJson, "catalogResourceID" ) );
+        resource.setCatalogResourcePath( text( resourceJson, "catalogResourcePath" ) );
+        resource.setCatalogDataSourceName( text( resourceJson, "catalogDataSourceName" ) );
+        resource.setCatalogResourceLogicalPath( text( resourceJson, "catalogResourceLogicalPath" ) );
+        if ( resourceJson.hasNonNull( "vertexId" ) ) {
+          resource.setVertexId( MAPPER.treeToValue( resourceJson.get( "vertexId" ), Object.class ) );
+        }
+        resource.setDbSchema( text( resourceJson, "dbSchema" ) );
+        resource.setDbHost( text( resourceJson, "dbHost" ) );
+        resource.setDbName( text( resourceJson, "dbName" ) );
+        resource.setDbPort( text( resourceJson, "dbPort" ) );
+        resource.setHdfsHost( text( resourceJson, "hdfsHost" ) );
+        resource.setHdfsPort( text( resourceJson, "hdfsPort" ) );
+        resource.setS3Bucket( text( resourceJson, "s3Bucket" ) );
+        resources.add( resource );
+      }
+      final List<FieldLevelRelationship> relationships = new ArrayList<>();
+      for ( JsonNode relationshipJson : json.path( "fieldLevelRelationships" ) ) {
+        relationships.add( new FieldLevelRelationship(
+          resource( relationshipJson, "inputSourceResource", resources ),
+          resource( relationshipJson, "outputTargetResource", resources ),
+          text( relationshipJson, "inputSourceResourceField" ),
+          text( relationshipJson, "outputTargetResourceField" ) ) );
+      }
+      int i = 0;
+      for ( JsonNode resourceJson : json.path( "resources" ) ) {
+        for ( JsonNode relationship : resourceJson.path( "fieldLevelRelationships" ) ) {
+          resources.get( i ).addFieldLevelRelationship( relationships.get( relationship.asInt() ) );
+        }
+        i++;
+      }
+      final CatalogLineage lineage = new CatalogLineage( resources( json, "inputSources", resources ),
+        resources( json, "outputTargets", resources ) );
+      lineage.failures = json.path( "failures" ).asInt();
+      return lineage;
+    }
+
+    private static <T> int index( final T element, final List<T> elements, final Map<T, Integer> indexes ) {
+      return indexes.computeIfAbsent( element, e -> {
+        elements.add( e );
+        return elements.size() - 1;
+      } );
+    }
+
+    private static void putIndex( final ObjectNode json, final String key, final LineageDataResource resource,
+                                  final Map<LineageDataResource, Integer> resourceIndexes ) {
+      if ( resource == null ) {
+        json.putNull( key );
+      } else {
+        json.put( key, resourceIndexes.get( resource ) );
+      }
+    }
+
+    private static String text( final JsonNode json, final String key ) {
+      return json.hasNonNull( key ) ? json.get( key ).asText() : null;
+    }
+
+    private static LineageDataResource resource( final JsonNode json, final String key,
+                                                 final List<LineageDataResource> resources ) {
+      return json.hasNonNull( key ) ? resources.get( json.get( key ).asInt() ) : null;
+    }
+
+    private static List<LineageDataResource> resources( final JsonNode json, final String key,
+                                                        final List<LineageDataResource> resources ) {
+      final List<LineageDataResource> found = new ArrayList<>();
+      for ( JsonNode index : json.path( key ) ) {
+        found.add( resources.get( index.asInt() ) );
+      }
+      return found;
+    }
+  }
+}
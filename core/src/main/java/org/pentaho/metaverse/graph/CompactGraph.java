@@ -0,0 +1,1055 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Features;
+import com.tinkerpop.blueprints.GraphQuery;
+import com.tinkerpop.blueprints.KeyIndexableGraph;
+import com.tinkerpop.blueprints.Parameter;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.VertexQuery;
+import com.tinkerpop.blueprints.util.DefaultGraphQuery;
+import com.tinkerpop.blueprints.util.DefaultVertexQuery;
+import com.tinkerpop.blueprints.util.ElementHelper;
+import com.tinkerpop.blueprints.util.ExceptionFactory;
+import com.tinkerpop.blueprints.util.StringFactory;
+import org.apache.commons.configuration.Configuration;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory {@link KeyIndexableGraph} that stores lineage graphs in far less heap than a TinkerGraph. Vertices and
+ * edges are slots in primitive arrays rather than objects: adjacency lists are int arrays of edge slots, and the
+ * properties of an element are an int array of (key, value) pairs. Property keys and edge labels are interned as small
+ * ints, and String, number, Boolean and Character values are stored once per graph no matter how many elements share
+ * them. Values of other types are stored as is and not shared.
+ * <p>
+ * The slots of removed vertices and edges are reused by the ones added next, and values are counted by the properties
+ * holding them and dropped once none does, so a graph that is updated for as long as the server runs does not grow past
+ * its largest size. Property keys and edge labels are kept, there are only a few of them.
+ * <p>
+ * The {@link Vertex} and {@link Edge} instances handed out are lightweight handles onto a slot, created on demand, so
+ * two handles onto the same slot are equal but not identical. The id of an element is a long made of its slot and of
+ * the number of times the slot was reused, so the handle and the id of a removed element never refer to the element
+ * that reuses its slot. Supplied ids are ignored, wrap the graph in an
+ * {@link com.tinkerpop.blueprints.util.wrappers.id.IdGraph} (as {@link SynchronizedGraphFactory#wrapGraph} does) to
+ * keep them.
+ * <p>
+ * All reads and writes, including property changes made on vertices and edges, are guarded by the graph monitor since
+ * elements share the dictionaries. Iterating over the vertices or edges of the graph walks a snapshot of their slots.
+ */
+public class CompactGraph implements KeyIndexableGraph {
+
+  private static final Features FEATURES = new Features();
+
+  static {
+    FEATURES.supportsDuplicateEdges = true;
+    FEATURES.supportsSelfLoops = true;
+    FEATURES.supportsSerializableObjectProperty = true;
+    FEATURES.supportsBooleanProperty = true;
+    FEATURES.supportsDoubleProperty = true;
+    FEATURES.supportsFloatProperty = true;
+    FEATURES.supportsIntegerProperty = true;
+    FEATURES.supportsPrimitiveArrayProperty = true;
+    FEATURES.supportsUniformListProperty = true;
+    FEATURES.supportsMixedListProperty = true;
+    FEATURES.supportsLongProperty = true;
+    FEATURES.supportsMapProperty = true;
+    FEATURES.supportsStringProperty = true;
+    FEATURES.ignoresSuppliedIds = true;
+    FEATURES.isPersistent = false;
+    FEATURES.isWrapper = false;
+    FEATURES.supportsIndices = false;
+    FEATURES.supportsVertexIndex = false;
+    FEATURES.supportsEdgeIndex = false;
+    FEATURES.supportsKeyIndices = true;
+    FEATURES.supportsVertexKeyIndex = true;
+    FEATURES.supportsEdgeKeyIndex = true;
+    FEATURES.supportsVertexIteration = true;
+    FEATURES.supportsEdgeIteration = true;
+    FEATURES.supportsEdgeRetrieval = true;
+    FEATURES.supportsVertexProperties = true;
+    FEATURES.supportsEdgeProperties = true;
+    FEATURES.supportsTransactions = false;
+    FEATURES.supportsThreadedTransactions = false;
+    FEATURES.supportsThreadIsolatedTransactions = false;
+  }
+
+  private static final int[] EMPTY = new int[ 0 ];
+  private static final int INITIAL_CAPACITY = 64;
+
+  // property keys and edge labels
+  private final List<String> names = new ArrayList<>();
+  private final Map<String, Integer> nameIds = new HashMap<>();
+
+  // property values, a value id is free once no property holds it
+  private final List<Object> values = new ArrayList<>();
+  private final Map<Object, Integer> valueIds = new HashMap<>();
+  private int[] valueReferences = new int[ INITIAL_CAPACITY ];
+  private final IntList freeValueIds = new IntList();
+
+  // a vertex slot is free once its properties are null
+  private int vertexSlots;
+  private int vertexCount;
+  private int[] vertexGenerations = new int[ INITIAL_CAPACITY ];
+  private final IntList freeVertexSlots = new IntList();
+  private int[][] vertexProperties = new int[ INITIAL_CAPACITY ][];
+  private int[][] outEdges = new int[ INITIAL_CAPACITY ][];
+  private int[] outEdgeCounts = new int[ INITIAL_CAPACITY ];
+  private int[][] inEdges = new int[ INITIAL_CAPACITY ][];
+  private int[] inEdgeCounts = new int[ INITIAL_CAPACITY ];
+
+  // an edge slot is free once its properties are null
+  private int edgeSlots;
+  private int edgeCount;
+  private int[] edgeGenerations = new int[ INITIAL_CAPACITY ];
+  private final IntList freeEdgeSlots = new IntList();
+  private int[][] edgeProperties = new int[ INITIAL_CAPACITY ][];
+  private int[] edgeOutVertices = new int[ INITIAL_CAPACITY ];
+  private int[] edgeInVertices = new int[ INITIAL_CAPACITY ];
+  private int[] edgeLabels = new int[ INITIAL_CAPACITY ];
+
+  // key id -> value id -> slots
+  private final Map<Integer, Map<Integer, IntList>> vertexKeyIndex = new HashMap<>();
+  private final Map<Integer, Map<Integer, IntList>> edgeKeyIndex = new HashMap<>();
+
+  /**
+   * Creates a new, empty graph
+   */
+  public CompactGraph() {
+  }
+
+  /**
+   * Creates a new, empty graph. This graph has no settings, the constructor is there for
+   * {@link com.tinkerpop.blueprints.GraphFactory}.
+   *
+   * @param configuration the graph configuration
+   */
+  public CompactGraph( final Configuration configuration ) {
+    this();
+  }
+
+  @Override
+  public Features getFeatures() {
+    return FEATURES;
+  }
+
+  @Override
+  public synchronized Vertex addVertex( final Object id ) {
+    final int slot;
+    if ( freeVertexSlots.size > 0 ) {
+      slot = freeVertexSlots.removeLast();
+    } else {
+      if ( vertexSlots == vertexProperties.length ) {
+        final int capacity = vertexSlots * 2;
+        vertexProperties = Arrays.copyOf( vertexProperties, capacity );
+        vertexGenerations = Arrays.copyOf( vertexGenerations, capacity );
+        outEdges = Arrays.copyOf( outEdges, capacity );
+        outEdgeCounts = Arrays.copyOf( outEdgeCounts, capacity );
+        inEdges = Arrays.copyOf( inEdges, capacity );
+        inEdgeCounts = Arrays.copyOf( inEdgeCounts, capacity );
+      }
+      slot = vertexSlots++;
+    }
+    vertexProperties[ slot ] = EMPTY;
+    outEdges[ slot ] = EMPTY;
+    outEdgeCounts[ slot ] = 0;
+    inEdges[ slot ] = EMPTY;
+    inEdgeCounts[ slot ] = 0;
+    vertexCount++;
+    return new CompactVertex( vertexId( slot ) );
+  }
+
+  @Override
+  public synchronized Vertex getVertex( final Object id ) {
+    if ( id == null ) {
+      throw ExceptionFactory.vertexIdCanNotBeNull();
+    }
+    final Long vertexId = toId( id );
+    return vertexId != null && isVertex( vertexId ) ? new CompactVertex( vertexId ) : null;
+  }
+
+  @Override
+  public void removeVertex( final Vertex vertex ) {
+    final long id = vertexId( vertex );
+    synchronized ( this ) {
+      if ( !isVertex( id ) ) {
+        return;
+      }
+      final int slot = slot( id );
+      for ( int edge : Arrays.copyOf( outEdges[ slot ], outEdgeCounts[ slot ] ) ) {
+        removeEdge( edge );
+      }
+      for ( int edge : Arrays.copyOf( inEdges[ slot ], inEdgeCounts[ slot ] ) ) {
+        removeEdge( edge );
+      }
+      unindex( vertexKeyIndex, vertexProperties[ slot ], slot );
+      release( vertexProperties[ slot ] );
+      vertexProperties[ slot ] = null;
+      outEdges[ slot ] = null;
+      inEdges[ slot ] = null;
+      vertexGenerations[ slot ]++;
+      freeVertexSlots.add( slot );
+      vertexCount--;
+    }
+  }
+
+  @Override
+  public Iterable<Vertex> getVertices() {
+    final long[] ids;
+    synchronized ( this ) {
+      ids = ids( liveSlots( vertexProperties, vertexSlots, vertexCount ), vertexCount, vertexGenerations );
+    }
+    return new VertexList( ids );
+  }
+
+  @Override
+  public synchronized Iterable<Vertex> getVertices( final String key, final Object value ) {
+    final IntList slots = find( vertexKeyIndex, vertexProperties, vertexSlots, key, value );
+    return new VertexList( ids( slots.elements, slots.size, vertexGenerations ) );
+  }
+
+  @Override
+  public Edge addEdge( final Object id, final Vertex outVertex, final Vertex inVertex, final String label ) {
+    if ( label == null ) {
+      throw ExceptionFactory.edgeLabelCanNotBeNull();
+    }
+    final long outId = vertexId( outVertex );
+    final long inId = vertexId( inVertex );
+    synchronized ( this ) {
+      if ( !isVertex( outId ) || !isVertex( inId ) ) {
+        throw new IllegalArgumentException( "The vertices of the edge must be in the graph" );
+      }
+      final int out = slot( outId );
+      final int in = slot( inId );
+      final int slot;
+      if ( freeEdgeSlots.size > 0 ) {
+        slot = freeEdgeSlots.removeLast();
+      } else {
+        if ( edgeSlots == edgeProperties.length ) {
+          final int capacity = edgeSlots * 2;
+          edgeProperties = Arrays.copyOf( edgeProperties, capacity );
+          edgeGenerations = Arrays.copyOf( edgeGenerations, capacity );
+          edgeOutVertices = Arrays.copyOf( edgeOutVertices, capacity );
+          edgeInVertices = Arrays.copyOf( edgeInVertices, capacity );
+          edgeLabels = Arrays.copyOf( edgeLabels, capacity );
+        }
+        slot = edgeSlots++;
+      }
+      edgeProperties[ slot ] = EMPTY;
+      edgeOutVertices[ slot ] = out;
+      edgeInVertices[ slot ] = in;
+      edgeLabels[ slot ] = nameId( label );
+      outEdges[ out ] = append( outEdges[ out ], outEdgeCounts[ out ]++, slot );
+      inEdges[ in ] = append( inEdges[ in ], inEdgeCounts[ in ]++, slot );
+      edgeCount++;
+      return new CompactEdge( edgeId( slot ) );
+    }
+  }
+
+  @Override
+  public synchronized Edge getEdge( final Object id ) {
+    if ( id == null ) {
+      throw ExceptionFactory.edgeIdCanNotBeNull();
+    }
+    final Long edgeId = toId( id );
+    return edgeId != null && isEdge( edgeId ) ? new CompactEdge( edgeId ) : null;
+  }
+
+  @Override
+  public void removeEdge( final Edge edge ) {
+    if ( !( edge instanceof CompactEdge ) || ( (CompactEdge) edge ).graph() != this ) {
+      return;
+    }
+    synchronized ( this ) {
+      final long id = ( (CompactEdge) edge ).id;
+      if ( isEdge( id ) ) {
+        removeEdge( slot( id ) );
+      }
+    }
+  }
+
+  @Override
+  public Iterable<Edge> getEdges() {
+    final long[] ids;
+    synchronized ( this ) {
+      ids = ids( liveSlots( edgeProperties, edgeSlots, edgeCount ), edgeCount, edgeGenerations );
+    }
+    return new EdgeList( ids );
+  }
+
+  @Override
+  public synchronized Iterable<Edge> getEdges( final String key, final Object value ) {
+    final IntList slots = find( edgeKeyIndex, edgeProperties, edgeSlots, key, value );
+    return new EdgeList( ids( slots.elements, slots.size, edgeGenerations ) );
+  }
+
+  @Override
+  public GraphQuery query() {
+    return new DefaultGraphQuery( this );
+  }
+
+  @Override
+  public void shutdown() {
+    // nothing to release, the graph lives on the heap
+  }
+
+  @Override
+  public synchronized <T extends Element> void createKeyIndex( final String key, final Class<T> elementClass,
+                                                               final Parameter... indexParameters ) {
+    final int keyId = nameId( key );
+    if ( Vertex.class.isAssignableFrom( elementClass ) ) {
+      createKeyIndex( vertexKeyIndex, vertexProperties, vertexSlots, keyId );
+    } else if ( Edge.class.isAssignableFrom( elementClass ) ) {
+      createKeyIndex( edgeKeyIndex, edgeProperties, edgeSlots, keyId );
+    } else {
+      throw ExceptionFactory.classIsNotIndexable( elementClass );
+    }
+  }
+
+  @Override
+  public synchronized <T extends Element> void dropKeyIndex( final String key, final Class<T> elementClass ) {
+    final Integer keyId = nameIds.get( key );
+    if ( keyId != null ) {
+      keyIndex( elementClass ).remove( keyId );
+    }
+  }
+
+  @Override
+  public synchronized <T extends Element> Set<String> getIndexedKeys( final Class<T> elementClass ) {
+    final Set<String> keys = new HashSet<>();
+    for ( Integer keyId : keyIndex( elementClass ).keySet() ) {
+      keys.add( names.get( keyId ) );
+    }
+    return keys;
+  }
+
+  /**
+   * @return the number of vertices in this graph
+   */
+  public synchronized int getVertexCount() {
+    return vertexCount;
+  }
+
+  /**
+   * @return the number of edges in this graph
+   */
+  public synchronized int getEdgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * @return the number of distinct property values stored in this graph
+   */
+  public synchronized int getValueCount() {
+    return values.size() - freeValueIds.size;
+  }
+
+  @Override
+  public String toString() {
+    return StringFactory.graphString( this, "vertices:" + getVertexCount() + " edges:" + getEdgeCount() );
+  }
+
+  private Map<Integer, Map<Integer, IntList>> keyIndex( final Class<? extends Element> elementClass ) {
+    if ( Vertex.class.isAssignableFrom( elementClass ) ) {
+      return vertexKeyIndex;
+    } else if ( Edge.class.isAssignableFrom( elementClass ) ) {
+      return edgeKeyIndex;
+    }
+    throw ExceptionFactory.classIsNotIndexable( elementClass );
+  }
+
+  private void createKeyIndex( final Map<Integer, Map<Integer, IntList>> keyIndex, final int[][] properties,
+                               final int slots, final int keyId ) {
+    if ( keyIndex.containsKey( keyId ) ) {
+      return;
+    }
+    final Map<Integer, IntList> index = new HashMap<>();
+    keyIndex.put( keyId, index );
+    for ( int slot = 0; slot < slots; slot++ ) {
+      final int valueId = valueIdOf( properties[ slot ], keyId );
+      if ( valueId >= 0 ) {
+        index( index, valueId, slot );
+      }
+    }
+  }
+
+  private IntList find( final Map<Integer, Map<Integer, IntList>> keyIndex, final int[][] properties,
+                        final int slots, final String key, final Object value ) {
+    final IntList found = new IntList();
+    final Integer keyId = nameIds.get( key );
+    if ( keyId == null ) {
+      return found;
+    }
+    final boolean shared = isShared( value );
+    final Integer valueId = shared ? valueIds.get( value ) : null;
+    if ( shared && valueId == null ) {
+      // no element holds this value
+      return found;
+    }
+    final Map<Integer, IntList> index = keyIndex.get( keyId );
+    if ( index != null && valueId != null ) {
+      final IntList indexed = index.get( valueId );
+      if ( indexed != null ) {
+        found.addAll( indexed );
+      }
+      return found;
+    }
+    for ( int slot = 0; slot < slots; slot++ ) {
+      final int slotValueId = valueIdOf( properties[ slot ], keyId );
+      if ( slotValueId >= 0
+        && ( valueId != null ? slotValueId == valueId : values.get( slotValueId ).equals( value ) ) ) {
+        found.add( slot );
+      }
+    }
+    return found;
+  }
+
+  private void removeEdge( final int slot ) {
+    if ( !isEdge( slot ) ) {
+      return;
+    }
+    final int out = edgeOutVertices[ slot ];
+    final int in = edgeInVertices[ slot ];
+    outEdgeCounts[ out ] = remove( outEdges[ out ], outEdgeCounts[ out ], slot );
+    inEdgeCounts[ in ] = remove( inEdges[ in ], inEdgeCounts[ in ], slot );
+    unindex( edgeKeyIndex, edgeProperties[ slot ], slot );
+    release( edgeProperties[ slot ] );
+    edgeProperties[ slot ] = null;
+    edgeGenerations[ slot ]++;
+    freeEdgeSlots.add( slot );
+    edgeCount--;
+  }
+
+  private boolean isVertex( final int slot ) {
+    return slot >= 0 && slot < vertexSlots && vertexProperties[ slot ] != null;
+  }
+
+  private boolean isVertex( final long id ) {
+    final int slot = slot( id );
+    return isVertex( slot ) && vertexGenerations[ slot ] == generation( id );
+  }
+
+  private boolean isEdge( final int slot ) {
+    return slot >= 0 && slot < edgeSlots && edgeProperties[ slot ] != null;
+  }
+
+  private boolean isEdge( final long id ) {
+    final int slot = slot( id );
+    return isEdge( slot ) && edgeGenerations[ slot ] == generation( id );
+  }
+
+  private long vertexId( final Vertex vertex ) {
+    if ( !( vertex instanceof CompactVertex ) || ( (CompactVertex) vertex ).graph() != this ) {
+      throw new IllegalArgumentException( "The vertex does not belong to this graph: " + vertex );
+    }
+    return ( (CompactVertex) vertex ).id;
+  }
+
+  private long vertexId( final int slot ) {
+    return id( slot, vertexGenerations[ slot ] );
+  }
+
+  private long edgeId( final int slot ) {
+    return id( slot, edgeGenerations[ slot ] );
+  }
+
+  /**
+   * @return the properties of the element, or null if it has been removed
+   */
+  private int[] properties( final boolean vertex, final long id ) {
+    if ( vertex ? !isVertex( id ) : !isEdge( id ) ) {
+      return null;
+    }
+    return ( vertex ? vertexProperties : edgeProperties )[ slot( id ) ];
+  }
+
+  private int nameId( final String name ) {
+    Integer id = nameIds.get( name );
+    if ( id == null ) {
+      id = names.size();
+      names.add( name );
+      nameIds.put( name, id );
+    }
+    return id;
+  }
+
+  /**
+   * Returns the id of the value, for one more property holding it
+   */
+  private int valueId( final Object value ) {
+    final boolean shared = isShared( value );
+    Integer id = shared ? valueIds.get( value ) : null;
+    if ( id == null ) {
+      if ( freeValueIds.size > 0 ) {
+        id = freeValueIds.removeLast();
+        values.set( id, value );
+      } else {
+        id = values.size();
+        values.add( value );
+        if ( id == valueReferences.length ) {
+          valueReferences = Arrays.copyOf( valueReferences, id * 2 );
+        }
+      }
+      if ( shared ) {
+        valueIds.put( value, id );
+      }
+    }
+    valueReferences[ id ]++;
+    return id;
+  }
+
+  /**
+   * Drops the value once the last property holding it is gone
+   */
+  private void release( final int valueId ) {
+    if ( --valueReferences[ valueId ] == 0 ) {
+      final Object value = values.set( valueId, null );
+      if ( isShared( value ) ) {
+        valueIds.remove( value );
+      }
+      freeValueIds.add( valueId );
+    }
+  }
+
+  private void release( final int[] properties ) {
+    for ( int i = 0; i < properties.length; i += 2 ) {
+      release( properties[ i + 1 ] );
+    }
+  }
+
+  private static boolean isShared( final Object value ) {
+    return value instanceof String || value instanceof Boolean || value instanceof Character
+      || value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+      || value instanceof Double || value instanceof Float || value instanceof BigDecimal
+      || value instanceof BigInteger;
+  }
+
+  private static int valueIdOf( final int[] properties, final int keyId ) {
+    if ( properties != null ) {
+      for ( int i = 0; i < properties.length; i += 2 ) {
+        if ( properties[ i ] == keyId ) {
+          return properties[ i + 1 ];
+        }
+      }
+    }
+    return -1;
+  }
+
+  private static void index( final Map<Integer, IntList> index, final int valueId, final int slot ) {
+    IntList slots = index.get( valueId );
+    if ( slots == null ) {
+      slots = new IntList();
+      index.put( valueId, slots );
+    }
+    slots.add( slot );
+  }
+
+  private static void unindex( final Map<Integer, IntList> index, final int valueId, final int slot ) {
+    final IntList slots = index.get( valueId );
+    if ( slots != null ) {
+      slots.remove( slot );
+      if ( slots.size == 0 ) {
+        index.remove( valueId );
+      }
+    }
+  }
+
+  private static void unindex( final Map<Integer, Map<Integer, IntList>> keyIndex, final int[] properties,
+                               final int slot ) {
+    for ( int i = 0; i < properties.length; i += 2 ) {
+      final Map<Integer, IntList> index = keyIndex.get( properties[ i ] );
+      if ( index != null ) {
+        unindex( index, properties[ i + 1 ], slot );
+      }
+    }
+  }
+
+  /**
+   * @return the id as a long, or null if it is not an integer and so cannot be the id of an element
+   */
+  private static Long toId( final Object id ) {
+    if ( id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte ) {
+      return ( (Number) id ).longValue();
+    }
+    if ( id instanceof BigInteger ) {
+      return ( (BigInteger) id ).bitLength() < Long.SIZE ? ( (BigInteger) id ).longValue() : null;
+    }
+    if ( id instanceof BigDecimal ) {
+      try {
+        return ( (BigDecimal) id ).longValueExact();
+      } catch ( ArithmeticException e ) {
+        return null;
+      }
+    }
+    if ( id instanceof Number ) {
+      final double value = ( (Number) id ).doubleValue();
+      return value == Math.rint( value ) && Math.abs( value ) < Long.MAX_VALUE ? (Long) (long) value : null;
+    }
+    try {
+      return Long.parseLong( id.toString() );
+    } catch ( NumberFormatException e ) {
+      return null;
+    }
+  }
+
+  private static long id( final int slot, final int generation ) {
+    return ( (long) generation << Integer.SIZE ) | slot;
+  }
+
+  private static int slot( final long id ) {
+    return (int) id;
+  }
+
+  private static int generation( final long id ) {
+    return (int) ( id >>> Integer.SIZE );
+  }
+
+  private static long[] ids( final int[] slots, final int size, final int[] generations ) {
+    final long[] ids = new long[ size ];
+    for ( int i = 0; i < size; i++ ) {
+      ids[ i ] = id( slots[ i ], generations[ slots[ i ] ] );
+    }
+    return ids;
+  }
+
+  private static int[] liveSlots( final int[][] properties, final int slots, final int count ) {
+    final int[] live = new int[ count ];
+    int size = 0;
+    for ( int slot = 0; slot < slots; slot++ ) {
+      if ( properties[ slot ] != null ) {
+        live[ size++ ] = slot;
+      }
+    }
+    return live;
+  }
+
+  private static int[] append( final int[] elements, final int size, final int element ) {
+    final int[] target = size < elements.length ? elements : Arrays.copyOf( elements, Math.max( 4, size * 2 ) );
+    target[ size ] = element;
+    return target;
+  }
+
+  private static int remove( final int[] elements, final int size, final int element ) {
+    for ( int i = 0; i < size; i++ ) {
+      if ( elements[ i ] == element ) {
+        System.arraycopy( elements, i + 1, elements, i, size - i - 1 );
+        return size - 1;
+      }
+    }
+    return size;
+  }
+
+  // element access, the element classes call these holding no lock
+
+  private synchronized Object getProperty( final boolean vertex, final long id, final String key ) {
+    final Integer keyId = nameIds.get( key );
+    if ( keyId == null ) {
+      return null;
+    }
+    final int valueId = valueIdOf( properties( vertex, id ), keyId );
+    return valueId < 0 ? null : values.get( valueId );
+  }
+
+  private synchronized Set<String> getPropertyKeys( final boolean vertex, final long id ) {
+    final int[] properties = properties( vertex, id );
+    if ( properties == null ) {
+      return Collections.emptySet();
+    }
+    final Set<String> keys = new HashSet<>();
+    for ( int i = 0; i < properties.length; i += 2 ) {
+      keys.add( names.get( properties[ i ] ) );
+    }
+    return keys;
+  }
+
+  private synchronized void setProperty( final boolean vertex, final long id, final String key,
+                                         final Object value ) {
+    final int[][] allProperties = vertex ? vertexProperties : edgeProperties;
+    int[] properties = properties( vertex, id );
+    if ( properties == null ) {
+      // the element has been removed
+      return;
+    }
+    final int slot = slot( id );
+    final int keyId = nameId( key );
+    final int valueId = valueId( value );
+    final Map<Integer, IntList> index = ( vertex ? vertexKeyIndex : edgeKeyIndex ).get( keyId );
+    int i = 0;
+    while ( i < properties.length && properties[ i ] != keyId ) {
+      i += 2;
+    }
+    if ( i < properties.length ) {
+      if ( index != null ) {
+        unindex( index, properties[ i + 1 ], slot );
+      }
+      release( properties[ i + 1 ] );
+      properties[ i + 1 ] = valueId;
+    } else {
+      properties = Arrays.copyOf( properties, properties.length + 2 );
+      properties[ i ] = keyId;
+      properties[ i + 1 ] = valueId;
+      allProperties[ slot ] = properties;
+    }
+    if ( index != null ) {
+      index( index, valueId, slot );
+    }
+  }
+
+  private synchronized Object removeProperty( final boolean vertex, final long id, final String key ) {
+    final int[][] allProperties = vertex ? vertexProperties : edgeProperties;
+    final int[] properties = properties( vertex, id );
+    final Integer keyId = nameIds.get( key );
+    if ( properties == null || keyId == null ) {
+      return null;
+    }
+    final int slot = slot( id );
+    for ( int i = 0; i < properties.length; i += 2 ) {
+      if ( properties[ i ] == keyId ) {
+        final int valueId = properties[ i + 1 ];
+        final Map<Integer, IntList> index = ( vertex ? vertexKeyIndex : edgeKeyIndex ).get( keyId );
+        if ( index != null ) {
+          unindex( index, valueId, slot );
+        }
+        final int[] remaining = new int[ properties.length - 2 ];
+        System.arraycopy( properties, 0, remaining, 0, i );
+        System.arraycopy( properties, i + 2, remaining, i, properties.length - i - 2 );
+        allProperties[ slot ] = remaining;
+        final Object value = values.get( valueId );
+        release( valueId );
+        return value;
+      }
+    }
+    return null;
+  }
+
+  private synchronized long[] getEdges( final long id, final Direction direction, final String... labels ) {
+    final IntList edges = new IntList();
+    if ( !isVertex( id ) ) {
+      return new long[ 0 ];
+    }
+    final int slot = slot( id );
+    final int[] labelIds = labelIds( labels );
+    if ( labelIds != null && labelIds.length == 0 ) {
+      return new long[ 0 ];
+    }
+    if ( direction != Direction.IN ) {
+      addEdges( edges, outEdges[ slot ], outEdgeCounts[ slot ], labelIds );
+    }
+    if ( direction != Direction.OUT ) {
+      addEdges( edges, inEdges[ slot ], inEdgeCounts[ slot ], labelIds );
+    }
+    return ids( edges.elements, edges.size, edgeGenerations );
+  }
+
+  private synchronized long[] getAdjacentVertices( final long id, final Direction direction,
+                                                   final String... labels ) {
+    final IntList vertices = new IntList();
+    if ( !isVertex( id ) ) {
+      return new long[ 0 ];
+    }
+    final int slot = slot( id );
+    final int[] labelIds = labelIds( labels );
+    if ( labelIds != null && labelIds.length == 0 ) {
+      return new long[ 0 ];
+    }
+    if ( direction != Direction.IN ) {
+      addVertices( vertices, outEdges[ slot ], outEdgeCounts[ slot ], labelIds, edgeInVertices );
+    }
+    if ( direction != Direction.OUT ) {
+      addVertices( vertices, inEdges[ slot ], inEdgeCounts[ slot ], labelIds, edgeOutVertices );
+    }
+    return ids( vertices.elements, vertices.size, vertexGenerations );
+  }
+
+  private int[] labelIds( final String... labels ) {
+    if ( labels == null || labels.length == 0 ) {
+      return null;
+    }
+    final IntList ids = new IntList();
+    for ( String label : labels ) {
+      final Integer id = nameIds.get( label );
+      if ( id != null ) {
+        ids.add( id );
+      }
+    }
+    return Arrays.copyOf( ids.elements, ids.size );
+  }
+
+  private void addEdges( final IntList target, final int[] edges, final int count, final int[] labelIds ) {
+    for ( int i = 0; i < count; i++ ) {
+      final int edge = edges[ i ];
+      if ( labelIds == null || contains( labelIds, edgeLabels[ edge ] ) ) {
+        target.add( edge );
+      }
+    }
+  }
+
+  private void addVertices( final IntList target, final int[] edges, final int count, final int[] labelIds,
+                            final int[] edgeVertices ) {
+    for ( int i = 0; i < count; i++ ) {
+      final int edge = edges[ i ];
+      if ( labelIds == null || contains( labelIds, edgeLabels[ edge ] ) ) {
+        target.add( edgeVertices[ edge ] );
+      }
+    }
+  }
+
+  private static boolean contains( final int[] elements, final int element ) {
+    for ( int e : elements ) {
+      if ( e == element ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the label of the edge, or null if it has been removed
+   */
+  private synchronized String getLabel( final long id ) {
+    return isEdge( id ) ? names.get( edgeLabels[ slot( id ) ] ) : null;
+  }
+
+  /**
+   * @return the id of the vertex of the edge, or null if the edge has been removed
+   */
+  private synchronized Long getEdgeVertex( final long id, final Direction direction ) {
+    if ( !isEdge( id ) ) {
+      return null;
+    }
+    return vertexId( direction == Direction.OUT ? edgeOutVertices[ slot( id ) ] : edgeInVertices[ slot( id ) ] );
+  }
+
+  /**
+   * A growable list of ints
+   */
+  private static final class IntList {
+    private int[] elements = EMPTY;
+    private int size;
+
+    private void add( final int element ) {
+      elements = append( elements, size++, element );
+    }
+
+    private void addAll( final IntList list ) {
+      for ( int i = 0; i < list.size; i++ ) {
+        add( list.elements[ i ] );
+      }
+    }
+
+    private void remove( final int element ) {
+      size = CompactGraph.remove( elements, size, element );
+    }
+
+    private int removeLast() {
+      return elements[ --size ];
+    }
+  }
+
+  /**
+   * The vertices with the given ids
+   */
+  private final class VertexList extends AbstractList<Vertex> {
+    private final long[] ids;
+
+    private VertexList( final long[] ids ) {
+      this.ids = ids;
+    }
+
+    @Override
+    public Vertex get( final int index ) {
+      return new CompactVertex( ids[ index ] );
+    }
+
+    @Override
+    public int size() {
+      return ids.length;
+    }
+  }
+
+  /**
+   * The edges with the given ids
+   */
+  private final class EdgeList extends AbstractList<Edge> {
+    private final long[] ids;
+
+    private EdgeList( final long[] ids ) {
+      this.ids = ids;
+    }
+
+    @Override
+    public Edge get( final int index ) {
+      return new CompactEdge( ids[ index ] );
+    }
+
+    @Override
+    public int size() {
+      return ids.length;
+    }
+  }
+
+  /**
+   * A handle onto a vertex or edge slot, for as long as the slot holds the element
+   */
+  private abstract class CompactElement implements Element {
+    protected final long id;
+
+    private CompactElement( final long id ) {
+      this.id = id;
+    }
+
+    protected abstract boolean isVertex();
+
+    protected CompactGraph graph() {
+      return CompactGraph.this;
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public <T> T getProperty( final String key ) {
+      return (T) CompactGraph.this.getProperty( isVertex(), id, key );
+    }
+
+    @Override
+    public Set<String> getPropertyKeys() {
+      return CompactGraph.this.getPropertyKeys( isVertex(), id );
+    }
+
+    @Override
+    public void setProperty( final String key, final Object value ) {
+      ElementHelper.validateProperty( this, key, value );
+      CompactGraph.this.setProperty( isVertex(), id, key, value );
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public <T> T removeProperty( final String key ) {
+      return (T) CompactGraph.this.removeProperty( isVertex(), id, key );
+    }
+
+    @Override
+    public Object getId() {
+      return id;
+    }
+
+    @Override
+    public boolean equals( final Object object ) {
+      return object instanceof CompactElement && ( (CompactElement) object ).graph() == graph()
+        && ElementHelper.areEqual( this, object );
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode( id );
+    }
+  }
+
+  /**
+   * A handle onto a vertex slot
+   */
+  private final class CompactVertex extends CompactElement implements Vertex {
+
+    private CompactVertex( final long id ) {
+      super( id );
+    }
+
+    @Override
+    protected boolean isVertex() {
+      return true;
+    }
+
+    @Override
+    public Iterable<Edge> getEdges( final Direction direction, final String... labels ) {
+      return new EdgeList( CompactGraph.this.getEdges( id, direction, labels ) );
+    }
+
+    @Override
+    public Iterable<Vertex> getVertices( final Direction direction, final String... labels ) {
+      return new VertexList( getAdjacentVertices( id, direction, labels ) );
+    }
+
+    @Override
+    public VertexQuery query() {
+      return new DefaultVertexQuery( this );
+    }
+
+    @Override
+    public Edge addEdge( final String label, final Vertex inVertex ) {
+      return CompactGraph.this.addEdge( null, this, inVertex, label );
+    }
+
+    @Override
+    public void remove() {
+      removeVertex( this );
+    }
+
+    @Override
+    public String toString() {
+      return StringFactory.vertexString( this );
+    }
+  }
+
+  /**
+   * A handle onto an edge slot
+   */
+  private final class CompactEdge extends CompactElement implements Edge {
+
+    private CompactEdge( final long id ) {
+      super( id );
+    }
+
+    @Override
+    protected boolean isVertex() {
+      return false;
+    }
+
+    @Override
+    public Vertex getVertex( final Direction direction ) {
+      if ( direction == Direction.BOTH ) {
+        throw ExceptionFactory.bothIsNotSupported();
+      }
+      final Long vertexId = getEdgeVertex( id, direction );
+      return vertexId == null ? null : new CompactVertex( vertexId );
+    }
+
+    @Override
+    public String getLabel() {
+      return CompactGraph.this.getLabel( id );
+    }
+
+    @Override
+    public void remove() {
+      removeEdge( this );
+    }
+
+    @Override
+    public String toString() {
+      return StringFactory.edgeString( this );
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+
+package org.pentaho.metaverse.graph;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.pentaho.metaverse.impl.MetaverseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache of the design-time lineage graphs produced by analyzing a transformation, keyed by a hash of everything the
+ * analysis depends on (the transformation definition and the values of the variables it uses). Repeated runs of an
+ * unchanged transformation can copy the cached graph instead of analyzing it again.
+ * <p>
+ * The cache holds private copies of the graphs, so that runtime information added to a graph after it was cached, or
+ * copied from the cache, does not leak into other executions.
+ */
+public class DesignGraphCache {
+
+  private static final Logger log = LoggerFactory.getLogger( DesignGraphCache.class );
+
+  protected static final long DEFAULT_TIMEOUT_SECONDS = 60L * 60; // 1 hour
+
+  private static DesignGraphCache INSTANCE;
+
+  private final Cache<String, Graph> graphCache;
+
+  private final int maximumSize;
+
+  public static DesignGraphCache getInstance() {
+    if ( INSTANCE == null ) {
+      synchronized ( DesignGraphCache.class ) {
+        if ( INSTANCE == null ) {
+          final MetaverseConfig config = MetaverseConfig.getInstance();
+          final String expireTime = config.getDesignGraphCacheExpireTime();
+          INSTANCE = new DesignGraphCache( config.getDesignGraphCacheSize(),
+            expireTime == null ? DEFAULT_TIMEOUT_SECONDS : Long.parseLong( expireTime ), TimeUnit.SECONDS );
+        }
+      }
+    }
+    return INSTANCE;
+  }
+
+  /**
+   * Creates a new cache
+   *
+   * @param maximumSize the maximum number of graphs to keep, 0 disables caching
+   * @param expireTime  how long a graph is kept after it was cached
+   * @param timeUnit    the unit of {@code expireTime}
+   */
+  protected DesignGraphCache( final int maximumSize, final long expireTime, final TimeUnit timeUnit ) {
+    this.maximumSize = Math.max( 0, maximumSize );
+    graphCache = CacheBuilder.newBuilder().maximumSize( this.maximumSize ).expireAfterWrite( expireTime, timeUnit )
+      .recordStats().build();
+    log.debug( "{} size set to {}, expire time set to {} {}", getClass().getSimpleName(), this.maximumSize, expireTime,
+      timeUnit );
+  }
+
+  /**
+   * @return true if graphs are cached at all
+   */
+  public boolean isEnabled() {
+    return maximumSize > 0;
+  }
+
+  /**
+   * Copies the graph cached under the given key into the target graph.
+   *
+   * @param key    the hash of the analyzed transformation
+   * @param target the graph to copy the cached vertices and edges into
+   * @return true if a graph was cached under the key and copied, false otherwise
+   */
+  public boolean copyInto( final String key, final Graph target ) {
+    if ( !isEnabled() || key == null ) {
+      return false;
+    }
+    final Graph cached = graphCache.getIfPresent( key );
+    if ( cached == null ) {
+      return false;
+    }
+    GraphUtil.copyGraph( cached, target );
+    return true;
+  }
+
+  /**
+   * Caches a copy of the given graph.
+   *
+   * @param key   the hash of the analyzed transformation
+   * @param graph the graph produced by analyzing the transformation
+   */
+  public void put( final String key, final Graph graph ) {
+    if ( !isEnabled() || key == null || graph == null ) {
+      return;
+    }
+    final Graph copy = new TinkerGraph();
+    GraphUtil.copyGraph( graph, copy );
+    graphCache.put( key, copy );
+  }
+
+  public void invalidateAll() {
+    graphCache.invalidateAll();
+  }
+
+  /**
+   * @return the current metrics of this cache, keyed by name
+   */
+  public Map<String, Object> getMetrics() {
+    final CacheStats stats = graphCache.stats();
+    final Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put( "size", graphCache.size() );
+    metrics.put( "maximumSize", maximumSize );
+    metrics.put( "hitCount", stats.hitCount() );
+    metrics.put( "missCount", stats.missCount() );
+    metrics.put( "hitRate", stats.hitRate() );
+    metrics.put( "evictionCount", stats.evictionCount() );
+    return metrics;
+  }
+}
@@ -0,0 +1,306 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.graph;
+
+import com.google.common.collect.Iterables;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Features;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.GraphQuery;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.VertexQuery;
+import com.tinkerpop.blueprints.util.DefaultGraphQuery;
+import com.tinkerpop.blueprints.util.DefaultVertexQuery;
+import com.tinkerpop.blueprints.util.ElementHelper;
+import com.tinkerpop.blueprints.util.StringFactory;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.util.EnhancementLookup;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A graph that shows the vertices and edges of another graph with their enhancement properties (localized type and
+ * category, color), see {@link EnhancementLookup}. The enhancement is computed when a property is read, nothing is
+ * written to the underlying graph, so the same graph can be shown in different locales.
+ * <p>
+ * Everything else is delegated to the underlying graph, including changes. An enhancement property cannot be changed
+ * or removed through this graph, its value always comes from the lookup.
+ */
+public class EnhancedGraph implements Graph {
+
+  private final Graph graph;
+
+  private final EnhancementLookup lookup;
+
+  /**
+   * Creates a new enhanced graph, localized for the locale of the current thread
+   *
+   * @param graph the underlying graph
+   */
+  public EnhancedGraph( Graph graph ) {
+    this( graph, EnhancementLookup.getInstance() );
+  }
+
+  /**
+   * Creates a new enhanced graph
+   *
+   * @param graph  the underlying graph
+   * @param lookup the enhancement lookup to use
+   */
+  public EnhancedGraph( Graph graph, EnhancementLookup lookup ) {
+    this.graph = graph;
+    this.lookup = lookup;
+  }
+
+  /**
+   * @return the underlying graph
+   */
+  public Graph getBaseGraph() {
+    return graph;
+  }
+
+  @Override
+  public Features getFeatures() {
+    Features features = graph.getFeatures().copyFeatures();
+    features.isWrapper = true;
+    return features;
+  }
+
+  @Override
+  public Vertex addVertex( Object id ) {
+    return wrapVertex( graph.addVertex( id ) );
+  }
+
+  @Override
+  public Vertex getVertex( Object id ) {
+    return wrapVertex( graph.getVertex( id ) );
+  }
+
+  @Override
+  public void removeVertex( Vertex vertex ) {
+    graph.removeVertex( unwrap( vertex ) );
+  }
+
+  @Override
+  public Iterable<Vertex> getVertices() {
+    return Iterables.transform( graph.getVertices(), this::wrapVertex );
+  }
+
+  @Override
+  public Iterable<Vertex> getVertices( String key, Object value ) {
+    if ( isVertexEnhancement( key ) ) {
+      return Iterables.filter( getVertices(), vertex -> Objects.equals( value, vertex.getProperty( key ) ) );
+    }
+    return Iterables.transform( graph.getVertices( key, value ), this::wrapVertex );
+  }
+
+  @Override
+  public Edge addEdge( Object id, Vertex outVertex, Vertex inVertex, String label ) {
+    return wrapEdge( graph.addEdge( id, unwrap( outVertex ), unwrap( inVertex ), label ) );
+  }
+
+  @Override
+  public Edge getEdge( Object id ) {
+    return wrapEdge( graph.getEdge( id ) );
+  }
+
+  @Override
+  public void removeEdge( Edge edge ) {
+    graph.removeEdge( unwrap( edge ) );
+  }
+
+  @Override
+  public Iterable<Edge> getEdges() {
+    return Iterables.transform( graph.getEdges(), this::wrapEdge );
+  }
+
+  @Override
+  public Iterable<Edge> getEdges( String key, Object value ) {
+    if ( DictionaryConst.PROPERTY_TYPE_LOCALIZED.equals( key ) ) {
+      return Iterables.filter( getEdges(), edge -> Objects.equals( value, edge.getProperty( key ) ) );
+    }
+    return Iterables.transform( graph.getEdges( key, value ), this::wrapEdge );
+  }
+
+  @Override
+  public GraphQuery query() {
+    return new DefaultGraphQuery( this );
+  }
+
+  /**
+   * Does nothing, the underlying graph is owned by someone else
+   */
+  @Override
+  public void shutdown() {
+    // nothing to release
+  }
+
+  @Override
+  public String toString() {
+    return StringFactory.graphString( this, graph.toString() );
+  }
+
+  private static boolean isVertexEnhancement( String key ) {
+    return DictionaryConst.PROPERTY_TYPE_LOCALIZED.equals( key )
+      || DictionaryConst.PROPERTY_CATEGORY.equals( key )
+      || DictionaryConst.PROPERTY_CATEGORY_LOCALIZED.equals( key )
+      || DictionaryConst.PROPERTY_COLOR.equals( key );
+  }
+
+  private Vertex wrapVertex( Vertex vertex ) {
+    return vertex == null ? null : new EnhancedVertex( vertex );
+  }
+
+  private Edge wrapEdge( Edge edge ) {
+    return edge == null ? null : new EnhancedEdge( edge );
+  }
+
+  private static Vertex unwrap( Vertex vertex ) {
+    return vertex instanceof EnhancedVertex ? ( (EnhancedVertex) vertex ).element : vertex;
+  }
+
+  private static Edge unwrap( Edge edge ) {
+    return edge instanceof EnhancedEdge ? ( (EnhancedEdge) edge ).element : edge;
+  }
+
+  /**
+   * An element of the underlying graph, with its enhancement properties
+   */
+  private abstract static class EnhancedElement<T extends Element> implements Element {
+
+    protected final T element;
+
+    EnhancedElement( T element ) {
+      this.element = element;
+    }
+
+    protected abstract Map<String, Object> getEnhancements();
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public <V> V getProperty( String key ) {
+      Map<String, Object> enhancements = getEnhancements();
+      if ( enhancements.containsKey( key ) ) {
+        return (V) enhancements.get( key );
+      }
+      return element.getProperty( key );
+    }
+
+    @Override
+    public Set<String> getPropertyKeys() {
+      Set<String> keys = new HashSet<>( element.getPropertyKeys() );
+      keys.addAll( getEnhancements().keySet() );
+      return keys;
+    }
+
+    @Override
+    public void setProperty( String key, Object value ) {
+      element.setProperty( key, value );
+    }
+
+    @Override
+    public <V> V removeProperty( String key ) {
+      return element.removeProperty( key );
+    }
+
+    @Override
+    public void remove() {
+      element.remove();
+    }
+
+    @Override
+    public Object getId() {
+      return element.getId();
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+      return ElementHelper.areEqual( this, o );
+    }
+
+    @Override
+    public int hashCode() {
+      return element.getId().hashCode();
+    }
+  }
+
+  private final class EnhancedVertex extends EnhancedElement<Vertex> implements Vertex {
+
+    EnhancedVertex( Vertex vertex ) {
+      super( vertex );
+    }
+
+    @Override
+    protected Map<String, Object> getEnhancements() {
+      return lookup.getVertexProperties( element.getProperty( DictionaryConst.PROPERTY_TYPE ) );
+    }
+
+    @Override
+    public Iterable<Edge> getEdges( Direction direction, String... labels ) {
+      return Iterables.transform( element.getEdges( direction, labels ), EnhancedGraph.this::wrapEdge );
+    }
+
+    @Override
+    public Iterable<Vertex> getVertices( Direction direction, String... labels ) {
+      return Iterables.transform( element.getVertices( direction, labels ), EnhancedGraph.this::wrapVertex );
+    }
+
+    @Override
+    public VertexQuery query() {
+      return new DefaultVertexQuery( this );
+    }
+
+    @Override
+    public Edge addEdge( String label, Vertex inVertex ) {
+      return wrapEdge( element.addEdge( label, unwrap( inVertex ) ) );
+    }
+
+    @Override
+    public String toString() {
+      return StringFactory.vertexString( this );
+    }
+  }
+
+  private final class EnhancedEdge extends EnhancedElement<Edge> implements Edge {
+
+    EnhancedEdge( Edge edge ) {
+      super( edge );
+    }
+
+    @Override
+    protected Map<String, Object> getEnhancements() {
+      return lookup.getEdgeProperties( element.getLabel() );
+    }
+
+    @Override
+    public Vertex getVertex( Direction direction ) {
+      return wrapVertex( element.getVertex( direction ) );
+    }
+
+    @Override
+    public String getLabel() {
+      return element.getLabel();
+    }
+
+    @Override
+    public String toString() {
+      return StringFactory.edgeString( this );
+    }
+  }
+}
@@ -0,0 +1,233 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import org.pentaho.dictionary.DictionaryConst;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Indexes a lineage graph for the catalog in a single pass: the resources read and written by steps, and the vertices
+ * by path, table and query. The origins of fields are traced back across populates, derives and contains edges once
+ * per vertex, and shared by every field they lead to.
+ * <p>
+ * Lookups match the Gremlin {@code has( key, T.eq, value )} filter they replace, so a null value finds the vertices
+ * that do not have the property.
+ */
+class FieldProvenance {
+
+  private final List<Vertex> readResources = new ArrayList<>();
+  private final List<Vertex> writtenResources = new ArrayList<>();
+  private final Map<Object, List<Vertex>> verticesByPath = new HashMap<>();
+  private final Map<Object, List<Vertex>> verticesByTable = new HashMap<>();
+  private final Map<Object, List<Vertex>> verticesByQuery = new HashMap<>();
+
+  private final Map<Vertex, Set<Origin>> origins = new HashMap<>();
+  // the state of the strongly connected components search, see trace
+  private final Map<Vertex, Integer> indexes = new HashMap<>();
+  private final Map<Vertex, Integer> lowLinks = new HashMap<>();
+  private final Deque<Vertex> stack = new ArrayDeque<>();
+  private final Set<Vertex> onStack = new HashSet<>();
+  private int traced;
+
+  FieldProvenance( final Graph graph ) {
+    for ( Vertex vertex : graph.getVertices() ) {
+      index( verticesByPath, vertex.getProperty( DictionaryConst.PROPERTY_PATH ), vertex );
+      index( verticesByTable, vertex.getProperty( DictionaryConst.PROPERTY_TABLE ), vertex );
+      index( verticesByQuery, vertex.getProperty( DictionaryConst.PROPERTY_QUERY ), vertex );
+      if ( DictionaryConst.NODE_TYPE_TRANS_STEP.equals( vertex.getProperty( DictionaryConst.PROPERTY_TYPE ) ) ) {
+        readResources.addAll( getAdjacent( vertex, Direction.IN, DictionaryConst.LINK_READBY ) );
+        writtenResources.addAll( getAdjacent( vertex, Direction.OUT, DictionaryConst.LINK_WRITESTO ) );
+      }
+    }
+  }
+
+  /**
+   * @return the resources read by steps, once per step reading them
+   */
+  List<Vertex> getReadResources() {
+    return readResources;
+  }
+
+  /**
+   * @return the resources written by steps, once per step writing them
+   */
+  List<Vertex> getWrittenResources() {
+    return writtenResources;
+  }
+
+  /**
+   * @return the fields contained in the vertices with the given path
+   */
+  List<Vertex> getFieldsByPath( final Object path ) {
+    return getContained( verticesByPath.get( path ) );
+  }
+
+  /**
+   * @return the fields contained in the vertices with the given table
+   */
+  List<Vertex> getFieldsByTable( final Object table ) {
+    return getContained( verticesByTable.get( table ) );
+  }
+
+  /**
+   * @return the fields contained in the vertices with the given query
+   */
+  List<Vertex> getFieldsByQuery( final Object query ) {
+    return getContained( verticesByQuery.get( query ) );
+  }
+
+  /**
+   * Returns where the field comes from: the vertices found by walking back across populates, derives and contains
+   * edges until there are no more such edges, each with the vertex following it on the way to the field. A field
+   * without such edges is its own origin.
+   * <p>
+   * Fields on a cycle (e.g. a file read from and written to) share the origins leading into the cycle, found once for
+   * the strongly connected component they are in, so that the origins of a field do not depend on which fields were
+   * asked for before. A field on a cycle that nothing leads into is its own origin.
+   *
+   * @param field the field vertex
+   * @return the origins of the field
+   */
+  Set<Origin> getOrigins( final Vertex field ) {
+    if ( !origins.containsKey( field ) ) {
+      trace( field );
+    }
+    return origins.get( field );
+  }
+
+  /**
+   * Finds the strongly connected components upstream of the vertex (Tarjan), and the origins of each of them once all
+   * the components upstream of it are done
+   */
+  private void trace( final Vertex vertex ) {
+    final int vertexIndex = traced++;
+    indexes.put( vertex, vertexIndex );
+    lowLinks.put( vertex, vertexIndex );
+    stack.push( vertex );
+    onStack.add( vertex );
+    for ( Vertex previous : getPrevious( vertex ) ) {
+      if ( !indexes.containsKey( previous ) ) {
+        trace( previous );
+        lowLinks.put( vertex, Math.min( lowLinks.get( vertex ), lowLinks.get( previous ) ) );
+      } else if ( onStack.contains( previous ) ) {
+        lowLinks.put( vertex, Math.min( lowLinks.get( vertex ), indexes.get( previous ) ) );
+      }
+    }
+    if ( lowLinks.get( vertex ) != vertexIndex ) {
+      return;
+    }
+    final Set<Vertex> component = new LinkedHashSet<>();
+    Vertex member;
+    do {
+      member = stack.pop();
+      onStack.remove( member );
+      component.add( member );
+    } while ( !member.equals( vertex ) );
+
+    final Set<Origin> found = new LinkedHashSet<>();
+    for ( Vertex field : component ) {
+      for ( Vertex previous : getPrevious( field ) ) {
+        if ( !component.contains( previous ) ) {
+          for ( Origin origin : origins.get( previous ) ) {
+            found.add( origin.next == null ? new Origin( origin.vertex, field ) : origin );
+          }
+        }
+      }
+    }
+    final Set<Origin> shared = Collections.unmodifiableSet( found );
+    for ( Vertex field : component ) {
+      origins.put( field, found.isEmpty() ? Collections.singleton( new Origin( field, null ) ) : shared );
+    }
+  }
+
+  private static List<Vertex> getPrevious( final Vertex field ) {
+    final List<Vertex> previous = new ArrayList<>();
+    for ( Edge edge : field.getEdges( Direction.IN ) ) {
+      final String label = edge.getLabel();
+      if ( DictionaryConst.LINK_POPULATES.equals( label ) || DictionaryConst.LINK_DERIVES.equals( label )
+        || DictionaryConst.LINK_CONTAINS.equals( label ) ) {
+        previous.add( edge.getVertex( Direction.OUT ) );
+      }
+    }
+    return previous;
+  }
+
+  private static void index( final Map<Object, List<Vertex>> index, final Object key, final Vertex vertex ) {
+    index.computeIfAbsent( key, k -> new ArrayList<>() ).add( vertex );
+  }
+
+  private static List<Vertex> getContained( final List<Vertex> vertices ) {
+    if ( vertices == null ) {
+      return Collections.emptyList();
+    }
+    final List<Vertex> contained = new ArrayList<>();
+    for ( Vertex vertex : vertices ) {
+      contained.addAll( getAdjacent( vertex, Direction.OUT, DictionaryConst.LINK_CONTAINS ) );
+    }
+    return contained;
+  }
+
+  private static List<Vertex> getAdjacent( final Vertex vertex, final Direction direction, final String label ) {
+    final List<Vertex> adjacent = new ArrayList<>();
+    for ( Edge edge : vertex.getEdges( direction, label ) ) {
+      adjacent.add( edge.getVertex( direction.opposite() ) );
+    }
+    return adjacent;
+  }
+
+  /**
+   * The vertex a field comes from, along with the vertex following it on the way to the field
+   */
+  static final class Origin {
+    final Vertex vertex;
+    final Vertex next;
+
+    Origin( final Vertex vertex, final Vertex next ) {
+      this.vertex = vertex;
+      this.next = next;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( !( o instanceof Origin ) ) {
+        return false;
+      }
+      final Origin other = (Origin) o;
+      return vertex.equals( other.vertex ) && Objects.equals( next, other.next );
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash( vertex, next );
+    }
+  }
+}
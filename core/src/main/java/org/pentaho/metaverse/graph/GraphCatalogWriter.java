@@ -17,8 +17,6 @@ import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.Vertex;
-import com.tinkerpop.gremlin.Tokens;
-import com.tinkerpop.gremlin.java.GremlinPipeline;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.pentaho.dictionary.DictionaryConst;
@@ -34,6 +32,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The GraphCatalogWriter reads a tinkerpop graph and parses out any input files and output files and database tables
@@ -44,8 +43,11 @@ public class GraphCatalogWriter extends BaseGraphWriter {
 
   private static final Logger log = LogManager.getLogger( GraphCatalogWriter.class );
 
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 10L;
+
   private ICatalogLineageClient lineageClient;
   private ICatalogLineageClientProvider catalogLineageClientProvider;
+  private CatalogLineagePublisher publisher;
 
   private String catalogUrl;
   private String catalogUsername;
@@ -107,44 +109,73 @@ public class GraphCatalogWriter extends BaseGraphWriter {
     ArrayList<LineageDataResource> inputSources = new ArrayList<>();
     ArrayList<LineageDataResource> outputTargets = new ArrayList<>();
 
+    // Index the graph once, rather than scanning it for every resource and field
+    FieldProvenance provenance = new FieldProvenance( graph );
+
     // Get input data sources and fields
-    GremlinPipeline<Graph, Vertex> inputNodesPipe =
-            new GremlinPipeline<Graph, Vertex>( graph )
-                    .V()
-                    .has( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_STEP )
-                    .in( DictionaryConst.LINK_READBY )
-                    .cast( Vertex.class );
-    List<Vertex> inputVertexes = inputNodesPipe.toList();
-    inputVertexes.forEach( vertex -> processInputs( graph, inputSources, vertex ) );
+    provenance.getReadResources().forEach( vertex -> processInputs( provenance, inputSources, vertex ) );
 
     // Get output data sources and fields
-    GremlinPipeline<Graph, Vertex> outputNodesPipe =
-            new GremlinPipeline<Graph, Vertex>( graph )
-                    .V()
-                    .has( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_STEP )
-                    .out( DictionaryConst.LINK_WRITESTO )
-                    .cast( Vertex.class );
-    List<Vertex> outputVertexes = outputNodesPipe.toList();
-    outputVertexes.forEach( vertex -> processOutputs( graph, outputTargets, vertex ) );
+    provenance.getWrittenResources().forEach( vertex -> processOutputs( provenance, outputTargets, vertex ) );
 
     // Trace output fields to source fields
-    linkTargetFieldsToSources( outputTargets, inputSources, graph );
+    linkTargetFieldsToSources( outputTargets, inputSources, provenance );
 
-    try {
-      lineageClient.processLineage( inputSources, outputTargets );
-    } catch ( Exception e ) {
-      log.error( e.getMessage(), e );
+    CatalogLineagePublisher catalogPublisher = getPublisher();
+    if ( catalogPublisher != null ) {
+      // published off this thread, so that a slow catalog does not hold up lineage writing
+      catalogPublisher.publish( inputSources, outputTargets );
     }
 
     log.info( "Lineage processing done." );
   }
 
-  private void processOutputs( Graph graph, ArrayList<LineageDataResource> outputTargets, Vertex vertex ) {
+  /**
+   * Returns the publisher sending lineage to the catalog, creating it along with the catalog client
+   *
+   * @return the publisher, or null if there is no catalog client
+   */
+  protected synchronized CatalogLineagePublisher getPublisher() {
+    if ( null == publisher && null != lineageClient ) {
+      publisher = CatalogLineagePublisher.create( lineageClient );
+    }
+    return publisher;
+  }
+
+  /**
+   * Waits until the lineage handed to this writer has been published to the catalog, or spilled
+   *
+   * @param timeout the maximum time to wait
+   * @param unit    the unit of the timeout
+   * @return true if no lineage is waiting, false if the timeout elapsed first
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean flush( long timeout, TimeUnit unit ) throws InterruptedException {
+    CatalogLineagePublisher catalogPublisher = getPublisher();
+    return null == catalogPublisher || catalogPublisher.flush( timeout, unit );
+  }
+
+  /**
+   * Stops publishing to the catalog. Lineage not published yet is spilled, to be published after a restart.
+   */
+  public synchronized void close() {
+    if ( null != publisher ) {
+      try {
+        publisher.shutdown( SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+      publisher = null;
+    }
+  }
+
+  private void processOutputs( FieldProvenance provenance, ArrayList<LineageDataResource> outputTargets,
+                               Vertex vertex ) {
     // handles resources written to by a step that have a PATH property
     String pathProperty = vertex.getProperty( DictionaryConst.PROPERTY_PATH );
     if ( propertyPopulated( pathProperty ) ) {
       LineageDataResource dataResource =
-        getLineageDataResourceFromFileVertex( graph, vertex, pathProperty );
+        getLineageDataResourceFromFileVertex( provenance, vertex, pathProperty );
       outputTargets.add( dataResource );
     }
     // handles tables written to by a step
@@ -153,46 +184,50 @@ public class GraphCatalogWriter extends BaseGraphWriter {
       String tableName = vertex.getProperty( DictionaryConst.PROPERTY_TABLE );
       if ( propertyPopulated( tableName ) ) {
         LineageDataResource dataResource =
-          getLineageDataResourceFromTableVertex( graph, vertex, tableName );
+          getLineageDataResourceFromTableVertex( provenance, vertex, tableName );
         outputTargets.add( dataResource );
       }
     }
   }
 
-  private LineageDataResource getLineageDataResourceFromTableVertex( Graph graph, Vertex vertex, String tableName ) {
+  private LineageDataResource getLineageDataResourceFromTableVertex( FieldProvenance provenance, Vertex vertex,
+                                                                     String tableName ) {
     LineageDataResource dataResource = new LineageDataResource( tableName );
     dataResource.setVertexId( vertex.getId() );
     findDbConnectionProperties( vertex, dataResource, DictionaryConst.LINK_WRITESTO );
-    dataResource.setFields( getTableFields( tableName, graph ) );
+    dataResource.setFields( getFieldNames( provenance.getFieldsByTable( tableName ) ) );
     dataResource.setDbSchema( vertex.getProperty( DictionaryConst.PROPERTY_SCHEMA ) );
     return dataResource;
   }
 
-  private void processInputs( Graph graph, ArrayList<LineageDataResource> inputSources, Vertex vertex ) {
+  private void processInputs( FieldProvenance provenance, ArrayList<LineageDataResource> inputSources,
+                              Vertex vertex ) {
     // handles resources read by a step that have a PATH property
     String pathProperty = vertex.getProperty( DictionaryConst.PROPERTY_PATH );
     if ( propertyPopulated( pathProperty ) ) {
       LineageDataResource dataResource =
-        getLineageDataResourceFromFileVertex( graph, vertex, pathProperty );
+        getLineageDataResourceFromFileVertex( provenance, vertex, pathProperty );
       inputSources.add( dataResource );
     }
     // handles resources ready by a step that have a query property
     String queryString = vertex.getProperty( DictionaryConst.PROPERTY_QUERY );
     if ( propertyPopulated( queryString ) ) {
-      LineageDataResource dataResource = getLineageDataResourceFromQueryVertex( graph, vertex, queryString );
+      LineageDataResource dataResource = getLineageDataResourceFromQueryVertex( provenance, vertex, queryString );
       inputSources.add( dataResource );
     }
   }
 
-  private LineageDataResource getLineageDataResourceFromQueryVertex( Graph graph, Vertex vertex, String queryString ) {
+  private LineageDataResource getLineageDataResourceFromQueryVertex( FieldProvenance provenance, Vertex vertex,
+                                                                     String queryString ) {
     LineageDataResource dataResource = new LineageDataResource( queryString );
     dataResource.setVertexId( vertex.getId() );
     findDbConnectionProperties( vertex, dataResource, DictionaryConst.LINK_READBY );
-    dataResource.setFields( getQueryFields( queryString, graph ) );
+    dataResource.setFields( getFieldNames( provenance.getFieldsByQuery( queryString ) ) );
     return dataResource;
   }
 
-  private LineageDataResource getLineageDataResourceFromFileVertex( Graph graph, Vertex vertex, String path ) {
+  private LineageDataResource getLineageDataResourceFromFileVertex( FieldProvenance provenance, Vertex vertex,
+                                                                    String path ) {
     LineageDataResource dataResource = new LineageDataResource( getSourceName( path ) );
     String fileScheme = vertex.getProperty( DictionaryConst.PROPERTY_FILE_SCHEME );
     if ( null != fileScheme ) {
@@ -212,7 +247,7 @@ public class GraphCatalogWriter extends BaseGraphWriter {
       }
     }
     dataResource.setVertexId( vertex.getId() );
-    dataResource.setFields( getDatasourceFields( path, graph ) );
+    dataResource.setFields( getFieldNames( provenance.getFieldsByPath( path ) ) );
     return dataResource;
   }
 
@@ -258,42 +293,9 @@ public class GraphCatalogWriter extends BaseGraphWriter {
     return sourceName;
   }
 
-  private List<String> getDatasourceFields( String sourceName, Graph graph ) {
-    GremlinPipeline<Graph, Vertex> inputFieldsPipe =
-            new GremlinPipeline<Graph, Vertex>( graph )
-                    .V()
-                    .has( DictionaryConst.PROPERTY_PATH, Tokens.T.eq, sourceName )
-                    .out( DictionaryConst.LINK_CONTAINS )
-                    .cast( Vertex.class );
-    List<Vertex> inputFieldVertexes = inputFieldsPipe.toList();
-    ArrayList<String> fields = new ArrayList<>();
-    inputFieldVertexes.forEach( fieldVertex -> fields.add( fieldVertex.getProperty( DictionaryConst.PROPERTY_NAME ) ) );
-    return fields;
-  }
-
-  private List<String> getQueryFields( String sourceName, Graph graph ) {
-    GremlinPipeline<Graph, Vertex> inputFieldsPipe =
-      new GremlinPipeline<Graph, Vertex>( graph )
-        .V()
-        .has( DictionaryConst.PROPERTY_QUERY, Tokens.T.eq, sourceName )
-        .out( DictionaryConst.LINK_CONTAINS )
-        .cast( Vertex.class );
-    List<Vertex> inputFieldVertexes = inputFieldsPipe.toList();
+  private List<String> getFieldNames( List<Vertex> fieldVertexes ) {
     ArrayList<String> fields = new ArrayList<>();
-    inputFieldVertexes.forEach( fieldVertex -> fields.add( fieldVertex.getProperty( DictionaryConst.PROPERTY_NAME ) ) );
-    return fields;
-  }
-
-  private List<String> getTableFields( String sourceName, Graph graph ) {
-    GremlinPipeline<Graph, Vertex> inputFieldsPipe =
-      new GremlinPipeline<Graph, Vertex>( graph )
-        .V()
-        .has( DictionaryConst.PROPERTY_TABLE, Tokens.T.eq, sourceName )
-        .out( DictionaryConst.LINK_CONTAINS )
-        .cast( Vertex.class );
-    List<Vertex> inputFieldVertexes = inputFieldsPipe.toList();
-    ArrayList<String> fields = new ArrayList<>();
-    inputFieldVertexes.forEach( fieldVertex -> fields.add( fieldVertex.getProperty( DictionaryConst.PROPERTY_NAME ) ) );
+    fieldVertexes.forEach( fieldVertex -> fields.add( fieldVertex.getProperty( DictionaryConst.PROPERTY_NAME ) ) );
     return fields;
   }
 
@@ -302,34 +304,29 @@ public class GraphCatalogWriter extends BaseGraphWriter {
    * fields associated with the input resources.  Any links found will be added to the outputTargets list.
    * @param outputTargets
    * @param inputSources
-   * @param graph
+   * @param provenance
    */
-  private void linkTargetFieldsToSources( List<LineageDataResource> outputTargets, List<LineageDataResource> inputSources, Graph graph ) {
+  private void linkTargetFieldsToSources( List<LineageDataResource> outputTargets, List<LineageDataResource> inputSources,
+                                          FieldProvenance provenance ) {
+    // input sources by the ID of their vertex, so that each field origin is matched with a single lookup
+    Map<Object, List<LineageDataResource>> inputSourcesByVertexId = new HashMap<>();
+    inputSources.forEach( inputSource -> inputSourcesByVertexId
+      .computeIfAbsent( inputSource.getVertexId(), id -> new ArrayList<>() ).add( inputSource ) );
+
     for ( LineageDataResource outputTarget : outputTargets ) {
-      // returns all fields from previously identified output files
-      GremlinPipeline<Graph, Vertex> fileFieldsPipe =
-              new GremlinPipeline<Graph, Vertex>( graph )
-                      .V()
-                      .has( DictionaryConst.PROPERTY_PATH, Tokens.T.eq, outputTarget.getPath() )
-                      .out( DictionaryConst.LINK_CONTAINS )
-                      .cast( Vertex.class );
-      // returns all fields from all previously identified output tables
-      GremlinPipeline<Graph, Vertex> tableFieldsPipe =
-        new GremlinPipeline<Graph, Vertex>( graph )
-          .V()
-          .has( DictionaryConst.PROPERTY_TABLE, Tokens.T.eq, outputTarget.getName() )
-          .out( DictionaryConst.LINK_CONTAINS )
-          .cast( Vertex.class );
-      List<Vertex> allVertexes = fileFieldsPipe.toList();
-      allVertexes.addAll( tableFieldsPipe.toList() );
+      // all fields from previously identified output files, and from all previously identified output tables
+      List<Vertex> allVertexes = new ArrayList<>( provenance.getFieldsByPath( outputTarget.getPath() ) );
+      allVertexes.addAll( provenance.getFieldsByTable( outputTarget.getName() ) );
       allVertexes.forEach( vertex -> {
         String outputTargetResourceField = vertex.getProperty( DictionaryConst.PROPERTY_NAME );
-        List<List<Vertex>> paths = findOrigins( vertex, null );
-        paths.forEach( path -> inputSources.forEach( inputSource -> {
-          if ( path.get( 0 ).getId().equals( inputSource.getVertexId() ) ) {
-
-            String inputSourceField = path.get( 1 ).getProperty( DictionaryConst.PROPERTY_NAME );
-            log.info( "Field path found: " + path );
+        for ( FieldProvenance.Origin origin : provenance.getOrigins( vertex ) ) {
+          List<LineageDataResource> matchingSources = inputSourcesByVertexId.get( origin.vertex.getId() );
+          if ( null == matchingSources || null == origin.next ) {
+            continue;
+          }
+          String inputSourceField = origin.next.getProperty( DictionaryConst.PROPERTY_NAME );
+          log.info( "Field path found: " + origin.vertex + " -> " + origin.next + " -> " + vertex );
+          for ( LineageDataResource inputSource : matchingSources ) {
             FieldLevelRelationship fieldRelationship = new FieldLevelRelationship();
             fieldRelationship.setInputSourceResource( inputSource );
             fieldRelationship.setInputSourceResourceField( inputSourceField );
@@ -338,50 +335,9 @@ public class GraphCatalogWriter extends BaseGraphWriter {
             inputSource.addFieldLevelRelationship( fieldRelationship );
             outputTarget.addFieldLevelRelationship( fieldRelationship );
           }
-        } ) );
-      } );
-    }
-  }
-
-  /**
-   * Method assumes the vertex being processed is a field contained in an output file or output table.
-   * Recursively walks backwards across any populates, derives, or contains edges until it hits the last graph vertex in
-   * that path (no more such edges to follow), which may be a data file or query read by the transformation.
-   *
-   * @param vertex vertex of a field in an output file or table
-   * @param seenVertices should be null when called by other methods; contains a hash map of vertices already processed
-   *                     to avoid recursing through an infinite loop (e.g. read from and write to the same file).
-   * @return a List of a paths from the given vertex back across populates, derives, and/or contains edges.  In each
-   * path, the first vertex is the beginning of the path, and the last vertex is the original argument passed.
-   */
-  private List<List<Vertex>> findOrigins( Vertex vertex, Map<Vertex, Object> seenVertices ) {
-    ArrayList<List<Vertex>> paths = new ArrayList<>();
-    if ( null == seenVertices ) {
-      seenVertices = new HashMap<>();
-    }
-    seenVertices.put( vertex, "" );
-
-    Iterator<Edge> edges = vertex.getEdges( Direction.IN ).iterator();
-    while ( edges.hasNext() ) {
-      Edge edge = edges.next();
-      if ( edge.getLabel().equals( DictionaryConst.LINK_POPULATES )
-        || edge.getLabel().equals( DictionaryConst.LINK_DERIVES )
-        || edge.getLabel().equals( DictionaryConst.LINK_CONTAINS ) ) {
-        Vertex nextVertex = edge.getVertex( Direction.OUT );
-        // this might not be the most efficient way to avoid processing a cycle, but it works
-        if ( null == seenVertices.get( nextVertex ) ) {
-          List<List<Vertex>> newPaths = findOrigins( nextVertex, seenVertices );
-          newPaths.forEach( path -> path.add( vertex ) );
-          paths.addAll( newPaths );
         }
-      }
-    }
-    if ( paths.isEmpty() ) {
-      ArrayList<Vertex> thisVertex = new ArrayList<>();
-      thisVertex.add( vertex );
-      paths.add( thisVertex );
+      } );
     }
-    return paths;
   }
 
   private boolean propertyPopulated( String propertyVal ) {
@@ -0,0 +1,488 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.KeyIndexableGraph;
+import com.tinkerpop.blueprints.Vertex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the changes made to a graph. Each change is one record, framed with its length and checksum
+ * so that a record torn by a crash is detected, and dropped along with everything after it, when the log is replayed.
+ * <p>
+ * Records are encoded into a pending buffer when they are appended and only written to the file on {@link #flush()},
+ * so that changes are written in batches.
+ */
+class GraphChangeLog implements Closeable {
+
+  static final byte ADD_VERTEX = 1;
+  static final byte REMOVE_VERTEX = 2;
+  static final byte SET_VERTEX_PROPERTY = 3;
+  static final byte REMOVE_VERTEX_PROPERTY = 4;
+  static final byte ADD_EDGE = 5;
+  static final byte REMOVE_EDGE = 6;
+  static final byte SET_EDGE_PROPERTY = 7;
+  static final byte REMOVE_EDGE_PROPERTY = 8;
+  static final byte CREATE_KEY_INDEX = 9;
+  static final byte DROP_KEY_INDEX = 10;
+
+  // number of arguments of each record type
+  private static final int[] ARITY = { 0, 1, 1, 3, 2, 4, 1, 3, 2, 2, 2 };
+
+  static final String VERTEX_INDEX = "vertex";
+  static final String EDGE_INDEX = "edge";
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte INTEGER = 2;
+  private static final byte LONG = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte FLOAT = 5;
+  private static final byte BOOLEAN = 6;
+  private static final byte SHORT = 7;
+  private static final byte BYTE = 8;
+  private static final byte CHARACTER = 9;
+  private static final byte SERIALIZED = 10;
+
+  private static final String TEMP_EXTENSION = ".tmp";
+
+  private static final Logger log = LoggerFactory.getLogger( GraphChangeLog.class );
+
+  private final Path file;
+  private final Object writeLock = new Object();
+
+  private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+  private int pendingRecords;
+  private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+  private final DataOutputStream recordOut = new DataOutputStream( record );
+  private final CRC32 crc = new CRC32();
+
+  private FileOutputStream out;
+
+  /**
+   * Creates a log on the given file. Records are appended to the file once it has been replayed or rewritten.
+   *
+   * @param file the log file
+   */
+  GraphChangeLog( final Path file ) {
+    this.file = file;
+  }
+
+  /**
+   * Applies the records of the log file to the given graph. If the file ends with a torn record, the file is cut
+   * back to the last complete record.
+   *
+   * @param graph the graph to apply the records to
+   * @return the number of records applied
+   * @throws IOException if the log file cannot be read
+   */
+  int replay( final KeyIndexableGraph graph ) throws IOException {
+    if ( !Files.exists( file ) ) {
+      openForAppend();
+      return 0;
+    }
+    final boolean suppliedIds = !Boolean.TRUE.equals( graph.getFeatures().ignoresSuppliedIds );
+    final Map<Object, Vertex> vertices = suppliedIds ? null : new HashMap<>();
+    final Map<Object, Edge> edges = suppliedIds ? null : new HashMap<>();
+    final long fileLength = Files.size( file );
+    int records = 0;
+    long validLength = 0;
+    try ( DataInputStream in = new DataInputStream( new BufferedInputStream( Files.newInputStream( file ) ) ) ) {
+      byte[] payload;
+      while ( ( payload = readFrame( in, fileLength - validLength - 8 ) ) != null ) {
+        apply( graph, payload, vertices, edges );
+        validLength += payload.length + 8;
+        records++;
+      }
+    }
+    if ( validLength < fileLength ) {
+      log.warn( "The metaverse graph log " + file + " ends with an incomplete change, "
+        + ( fileLength - validLength ) + " bytes are dropped" );
+      try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.WRITE ) ) {
+        channel.truncate( validLength );
+      }
+    }
+    openForAppend();
+    return records;
+  }
+
+  /**
+   * Replaces the log file with the records that rebuild the given graph as it is now, dropping every change that has
+   * been overwritten since. Pending records are discarded, since the graph already reflects them.
+   *
+   * @param graph the graph to write
+   * @return the number of records written
+   * @throws IOException if the log file cannot be written
+   */
+  int rewrite( final KeyIndexableGraph graph ) throws IOException {
+    int records = 0;
+    synchronized ( writeLock ) {
+      closeQuietly();
+      final Path temp = file.resolveSibling( file.getFileName() + TEMP_EXTENSION );
+      try ( FileOutputStream tempOut = new FileOutputStream( temp.toFile() ) ) {
+        synchronized ( this ) {
+          pending.reset();
+          pendingRecords = 0;
+          for ( String key : graph.getIndexedKeys( Vertex.class ) ) {
+            append( CREATE_KEY_INDEX, key, VERTEX_INDEX );
+          }
+          for ( String key : graph.getIndexedKeys( Edge.class ) ) {
+            append( CREATE_KEY_INDEX, key, EDGE_INDEX );
+          }
+          for ( Vertex vertex : graph.getVertices() ) {
+            append( ADD_VERTEX, vertex.getId() );
+            for ( String key : vertex.getPropertyKeys() ) {
+              append( SET_VERTEX_PROPERTY, vertex.getId(), key, vertex.getProperty( key ) );
+            }
+            records += drainTo( tempOut );
+          }
+          for ( Edge edge : graph.getEdges() ) {
+            append( ADD_EDGE, edge.getId(), edge.getVertex( Direction.OUT ).getId(),
+              edge.getVertex( Direction.IN ).getId(), edge.getLabel() );
+            for ( String key : edge.getPropertyKeys() ) {
+              append( SET_EDGE_PROPERTY, edge.getId(), key, edge.getProperty( key ) );
+            }
+            records += drainTo( tempOut );
+          }
+          records += drainTo( tempOut );
+        }
+        tempOut.getChannel().force( true );
+      }
+      try {
+        Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+      } catch ( AtomicMoveNotSupportedException e ) {
+        Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING );
+      }
+      openForAppend();
+    }
+    return records;
+  }
+
+  /**
+   * Encodes a record into the pending buffer. Values other than strings, numbers, booleans and characters are
+   * recorded in their Java serialized form, so they must be {@link Serializable}.
+   *
+   * @param type      the record type
+   * @param arguments the record arguments
+   * @throws IllegalArgumentException if a value cannot be serialized, nothing is recorded then
+   */
+  synchronized void append( final byte type, final Object... arguments ) {
+    try {
+      record.reset();
+      recordOut.writeByte( type );
+      for ( Object argument : arguments ) {
+        writeValue( recordOut, argument );
+      }
+      recordOut.flush();
+      final byte[] payload = record.toByteArray();
+      crc.reset();
+      crc.update( payload, 0, payload.length );
+      final DataOutputStream pendingOut = new DataOutputStream( pending );
+      pendingOut.writeInt( payload.length );
+      pendingOut.writeInt( (int) crc.getValue() );
+      pendingOut.write( payload );
+      pendingOut.flush();
+      pendingRecords++;
+    } catch ( IOException e ) {
+      // writing to a byte array does not fail, values that cannot be serialized do
+      throw new IllegalArgumentException( "Could not log a metaverse graph change", e );
+    }
+  }
+
+  /**
+   * @return the number of records appended since the last flush
+   */
+  synchronized int getPendingRecords() {
+    return pendingRecords;
+  }
+
+  /**
+   * Writes the pending records to the log file and forces them to disk
+   *
+   * @throws IOException if the records cannot be written
+   */
+  void flush() throws IOException {
+    synchronized ( writeLock ) {
+      if ( out == null ) {
+        return;
+      }
+      synchronized ( this ) {
+        if ( pendingRecords == 0 ) {
+          return;
+        }
+        drainTo( out );
+      }
+      out.getChannel().force( false );
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized ( writeLock ) {
+      flush();
+      closeQuietly();
+    }
+  }
+
+  private int drainTo( final OutputStream target ) throws IOException {
+    final int drained = pendingRecords;
+    pending.writeTo( target );
+    pending = new ByteArrayOutputStream();
+    pendingRecords = 0;
+    return drained;
+  }
+
+  private void openForAppend() throws IOException {
+    if ( file.getParent() != null ) {
+      Files.createDirectories( file.getParent() );
+    }
+    out = new FileOutputStream( file.toFile(), true );
+  }
+
+  private void closeQuietly() {
+    if ( out != null ) {
+      try {
+        out.close();
+      } catch ( IOException e ) {
+        log.warn( "Could not close the metaverse graph log " + file, e );
+      }
+      out = null;
+    }
+  }
+
+  private byte[] readFrame( final DataInputStream in, final long maxLength ) throws IOException {
+    try {
+      final int length = in.readInt();
+      final int checksum = in.readInt();
+      if ( length < 1 || length > maxLength ) {
+        return null;
+      }
+      final byte[] payload = new byte[ length ];
+      in.readFully( payload );
+      crc.reset();
+      crc.update( payload, 0, length );
+      return (int) crc.getValue() == checksum ? payload : null;
+    } catch ( EOFException e ) {
+      return null;
+    }
+  }
+
+  private static void apply( final KeyIndexableGraph graph, final byte[] payload, final Map<Object, Vertex> vertices,
+                             final Map<Object, Edge> edges ) throws IOException {
+    final DataInputStream in = new DataInputStream( new ByteArrayInputStream( payload ) );
+    final byte type = in.readByte();
+    if ( type < 1 || type >= ARITY.length ) {
+      throw new IOException( "Unknown metaverse graph change: " + type );
+    }
+    final Object[] arguments = new Object[ ARITY[ type ] ];
+    for ( int i = 0; i < arguments.length; i++ ) {
+      arguments[ i ] = readValue( in );
+    }
+    switch ( type ) {
+      case ADD_VERTEX:
+        final Vertex added = graph.addVertex( arguments[ 0 ] );
+        if ( vertices != null ) {
+          vertices.put( arguments[ 0 ], added );
+        }
+        break;
+      case REMOVE_VERTEX:
+        final Vertex removed = vertex( graph, vertices, arguments[ 0 ] );
+        if ( removed != null ) {
+          graph.removeVertex( removed );
+          if ( vertices != null ) {
+            vertices.remove( arguments[ 0 ] );
+          }
+        }
+        break;
+      case SET_VERTEX_PROPERTY:
+        final Vertex changed = vertex( graph, vertices, arguments[ 0 ] );
+        if ( changed != null ) {
+          changed.setProperty( (String) arguments[ 1 ], arguments[ 2 ] );
+        }
+        break;
+      case REMOVE_VERTEX_PROPERTY:
+        final Vertex cleared = vertex( graph, vertices, arguments[ 0 ] );
+        if ( cleared != null ) {
+          cleared.removeProperty( (String) arguments[ 1 ] );
+        }
+        break;
+      case ADD_EDGE:
+        final Vertex outVertex = vertex( graph, vertices, arguments[ 1 ] );
+        final Vertex inVertex = vertex( graph, vertices, arguments[ 2 ] );
+        if ( outVertex != null && inVertex != null ) {
+          final Edge edge = graph.addEdge( arguments[ 0 ], outVertex, inVertex, (String) arguments[ 3 ] );
+          if ( edges != null ) {
+            edges.put( arguments[ 0 ], edge );
+          }
+        }
+        break;
+      case REMOVE_EDGE:
+        final Edge removedEdge = edge( graph, edges, arguments[ 0 ] );
+        if ( removedEdge != null ) {
+          graph.removeEdge( removedEdge );
+          if ( edges != null ) {
+            edges.remove( arguments[ 0 ] );
+          }
+        }
+        break;
+      case SET_EDGE_PROPERTY:
+        final Edge changedEdge = edge( graph, edges, arguments[ 0 ] );
+        if ( changedEdge != null ) {
+          changedEdge.setProperty( (String) arguments[ 1 ], arguments[ 2 ] );
+        }
+        break;
+      case REMOVE_EDGE_PROPERTY:
+        final Edge clearedEdge = edge( graph, edges, arguments[ 0 ] );
+        if ( clearedEdge != null ) {
+          clearedEdge.removeProperty( (String) arguments[ 1 ] );
+        }
+        break;
+      case CREATE_KEY_INDEX:
+        if ( !graph.getIndexedKeys( indexClass( arguments[ 1 ] ) ).contains( (String) arguments[ 0 ] ) ) {
+          graph.createKeyIndex( (String) arguments[ 0 ], indexClass( arguments[ 1 ] ) );
+        }
+        break;
+      default:
+        graph.dropKeyIndex( (String) arguments[ 0 ], indexClass( arguments[ 1 ] ) );
+        break;
+    }
+  }
+
+  private static Vertex vertex( final KeyIndexableGraph graph, final Map<Object, Vertex> vertices, final Object id ) {
+    return vertices == null ? graph.getVertex( id ) : vertices.get( id );
+  }
+
+  private static Edge edge( final KeyIndexableGraph graph, final Map<Object, Edge> edges, final Object id ) {
+    return edges == null ? graph.getEdge( id ) : edges.get( id );
+  }
+
+  private static Class<? extends Element> indexClass( final Object name ) {
+    return EDGE_INDEX.equals( name ) ? Edge.class : Vertex.class;
+  }
+
+  private static void writeValue( final DataOutputStream out, final Object value ) throws IOException {
+    if ( value == null ) {
+      out.writeByte( NULL );
+    } else if ( value instanceof String ) {
+      final byte[] bytes = ( (String) value ).getBytes( StandardCharsets.UTF_8 );
+      out.writeByte( STRING );
+      out.writeInt( bytes.length );
+      out.write( bytes );
+    } else if ( value instanceof Integer ) {
+      out.writeByte( INTEGER );
+      out.writeInt( (Integer) value );
+    } else if ( value instanceof Long ) {
+      out.writeByte( LONG );
+      out.writeLong( (Long) value );
+    } else if ( value instanceof Double ) {
+      out.writeByte( DOUBLE );
+      out.writeDouble( (Double) value );
+    } else if ( value instanceof Float ) {
+      out.writeByte( FLOAT );
+      out.writeFloat( (Float) value );
+    } else if ( value instanceof Boolean ) {
+      out.writeByte( BOOLEAN );
+      out.writeBoolean( (Boolean) value );
+    } else if ( value instanceof Short ) {
+      out.writeByte( SHORT );
+      out.writeShort( (Short) value );
+    } else if ( value instanceof Byte ) {
+      out.writeByte( BYTE );
+      out.writeByte( (Byte) value );
+    } else if ( value instanceof Character ) {
+      out.writeByte( CHARACTER );
+      out.writeChar( (Character) value );
+    } else if ( value instanceof Serializable ) {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try ( ObjectOutputStream objectOut = new ObjectOutputStream( bytes ) ) {
+        objectOut.writeObject( value );
+      }
+      out.writeByte( SERIALIZED );
+      out.writeInt( bytes.size() );
+      bytes.writeTo( out );
+    } else {
+      throw new IOException( "Value of type " + value.getClass().getName() + " cannot be logged" );
+    }
+  }
+
+  private static Object readValue( final DataInputStream in ) throws IOException {
+    final byte type = in.readByte();
+    switch ( type ) {
+      case NULL:
+        return null;
+      case STRING:
+        return new String( readBytes( in ), StandardCharsets.UTF_8 );
+      case INTEGER:
+        return in.readInt();
+      case LONG:
+        return in.readLong();
+      case DOUBLE:
+        return in.readDouble();
+      case FLOAT:
+        return in.readFloat();
+      case BOOLEAN:
+        return in.readBoolean();
+      case SHORT:
+        return in.readShort();
+      case BYTE:
+        return in.readByte();
+      case CHARACTER:
+        return in.readChar();
+      case SERIALIZED:
+        try ( InputStream bytes = new ByteArrayInputStream( readBytes( in ) );
+              ObjectInputStream objectIn = new ObjectInputStream( bytes ) ) {
+          return objectIn.readObject();
+        } catch ( ClassNotFoundException e ) {
+          throw new IOException( e );
+        }
+      default:
+        throw new IOException( "Unknown value type in the metaverse graph log: " + type );
+    }
+  }
+
+  private static byte[] readBytes( final DataInputStream in ) throws IOException {
+    final byte[] bytes = new byte[ in.readInt() ];
+    in.readFully( bytes );
+    return bytes;
+  }
+}
@@ -25,8 +25,7 @@ public class GraphMLWriter extends BaseGraphWriter {
 
   @Override
   public void outputGraphImpl( Graph graph, OutputStream graphMLOutputStream ) throws IOException {
-    com.tinkerpop.blueprints.util.io.graphml.GraphMLWriter writer =
-      new com.tinkerpop.blueprints.util.io.graphml.GraphMLWriter( graph );
+    StreamingGraphMLWriter writer = new StreamingGraphMLWriter( graph );
 
     writer.setNormalize( true );
     writer.outputGraph( graphMLOutputStream );
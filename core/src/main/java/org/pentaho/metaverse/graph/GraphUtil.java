@@ -13,6 +13,8 @@
 
 package org.pentaho.metaverse.graph;
 
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.Vertex;
 
@@ -53,4 +55,28 @@ public class GraphUtil {
     return clone;
   }
 
+  /**
+   * Copies all vertices and edges of a graph, with their IDs and properties, into another graph. Elements whose IDs
+   * are already present in the target graph are not copied again.
+   * @param from The graph to copy
+   * @param to The graph to copy the elements into
+   */
+  public static void copyGraph( Graph from, Graph to ) {
+    for ( Vertex vertex : from.getVertices() ) {
+      cloneVertexIntoGraph( vertex, to );
+    }
+    for ( Edge edge : from.getEdges() ) {
+      if ( to.getEdge( edge.getId() ) != null ) {
+        continue;
+      }
+      Edge clone = to.addEdge( edge.getId(),
+        to.getVertex( edge.getVertex( Direction.OUT ).getId() ),
+        to.getVertex( edge.getVertex( Direction.IN ).getId() ),
+        edge.getLabel() );
+      for ( String key : edge.getPropertyKeys() ) {
+        clone.setProperty( key, edge.getProperty( key ) );
+      }
+    }
+  }
+
 }
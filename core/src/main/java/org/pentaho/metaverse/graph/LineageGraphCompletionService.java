@@ -14,26 +14,27 @@
 package org.pentaho.metaverse.graph;
 
 import com.tinkerpop.blueprints.Graph;
+import org.pentaho.metaverse.impl.LineageExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 public class LineageGraphCompletionService implements CompletionService<Graph> {
 
   private static final LineageGraphCompletionService INSTANCE = new LineageGraphCompletionService();
 
-  private ExecutorCompletionService<Graph> executionCompletionService;
-  private Executor executor = Executors.newCachedThreadPool();
+  private final LineageExecutor executor;
+  private final BlockingQueue<Future<Graph>> completed = new LinkedBlockingQueue<>();
   private static final Logger log = LoggerFactory.getLogger( LineageGraphCompletionService.class );
   private Queue<Future<Graph>> queue = new ConcurrentLinkedQueue<Future<Graph>>();
 
@@ -43,46 +44,56 @@ public class LineageGraphCompletionService implements CompletionService<Graph> {
   }
 
   private LineageGraphCompletionService() {
-    executionCompletionService = new ExecutorCompletionService<Graph>( executor );
+    executor = LineageExecutor.create( "lineage-graph" );
   }
 
   @Override
   public Future<Graph> submit( Callable<Graph> task ) {
     log.debug( "Submitting Callable task --> " + task.toString() );
-    Future<Graph> f = executionCompletionService.submit( task );
-    queue.add( f );
-    return f;
+    return execute( new QueueingTask( task ) );
   }
 
   @Override
   public Future<Graph> submit( Runnable task, Graph result ) {
     log.debug( "Submitting Runnable task --> " + result );
-    Future<Graph> f = executionCompletionService.submit( task, result );
-    queue.add( f );
-    return f;
+    return execute( new QueueingTask( task, result ) );
+  }
+
+  private Future<Graph> execute( final QueueingTask task ) {
+    // queued first, since the executor may run the task, or drop it, before returning
+    queue.add( task );
+    executor.execute( task );
+    return task;
   }
 
   @Override
   public Future<Graph> take() throws InterruptedException {
-    Future<Graph> result = executionCompletionService.take();
+    Future<Graph> result = completed.take();
     queue.remove( result );
     return result;
   }
 
   @Override
   public Future<Graph> poll() {
-    Future<Graph> result = executionCompletionService.poll();
+    Future<Graph> result = completed.poll();
     queue.remove( result );
     return result;
   }
 
   @Override
   public Future<Graph> poll( long timeout, TimeUnit unit ) throws InterruptedException {
-    Future<Graph> result = executionCompletionService.poll( timeout, unit );
+    Future<Graph> result = completed.poll( timeout, unit );
     queue.remove( result );
     return result;
   }
 
+  /**
+   * @return the executor running the submitted tasks
+   */
+  public LineageExecutor getExecutor() {
+    return executor;
+  }
+
   public void waitTillEmpty() throws InterruptedException, ExecutionException {
     Future<Graph> result;
     while ( queue.size() > 0 ) {
@@ -98,4 +109,23 @@ public class LineageGraphCompletionService implements CompletionService<Graph> {
     }
   }
 
+  /**
+   * A task that is handed out by take and poll once it is done. A task dropped by the executor is cancelled, so it is
+   * done too, and nobody waiting on it is stuck.
+   */
+  private class QueueingTask extends FutureTask<Graph> {
+    private QueueingTask( final Callable<Graph> task ) {
+      super( task );
+    }
+
+    private QueueingTask( final Runnable task, final Graph result ) {
+      super( task, result );
+    }
+
+    @Override
+    protected void done() {
+      completed.add( this );
+    }
+  }
+
 }
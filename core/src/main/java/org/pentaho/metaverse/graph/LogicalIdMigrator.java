@@ -0,0 +1,165 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.graph;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.util.io.graphml.GraphMLReader;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.api.LogicalIdDictionary;
+import org.pentaho.metaverse.api.MetaverseLogicalIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Converts lineage graphs written with nested JSON logical ids to hashed logical ids. A legacy logical id embeds the
+ * logical id of its namespace as a nested JSON object, which is converted first, so that the converted ids are the
+ * same as the ones a {@link MetaverseLogicalIdGenerator} produces with hashing on.
+ * <p>
+ * The logical id and namespace properties of every vertex are converted, as well as vertex ids that are legacy
+ * logical ids. All other properties and the edges are copied as is.
+ */
+public class LogicalIdMigrator {
+
+  private static final Logger log = LoggerFactory.getLogger( LogicalIdMigrator.class );
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final Map<String, String> migratedIds = new HashMap<>();
+
+  private final LogicalIdDictionary dictionary;
+
+  /**
+   * Creates a new migrator
+   *
+   * @param dictionary the dictionary to record the canonical form of converted ids in, may be null
+   */
+  public LogicalIdMigrator( LogicalIdDictionary dictionary ) {
+    this.dictionary = dictionary;
+    // the legacy ids are escaped for JavaScript, which also escapes single quotes and slashes
+    objectMapper.configure( JsonParser.Feature.ALLOW_BACKSLASH_ESCAPING_ANY_CHARACTER, true );
+  }
+
+  /**
+   * Reads a GraphML lineage file, converts its logical ids and writes it back out as GraphML
+   *
+   * @param graphMLInputStream  the legacy GraphML
+   * @param graphMLOutputStream where to write the converted GraphML
+   * @throws IOException if the GraphML cannot be read or written
+   */
+  public void migrate( InputStream graphMLInputStream, OutputStream graphMLOutputStream ) throws IOException {
+    Graph source = new TinkerGraph();
+    Graph target = new TinkerGraph();
+    try {
+      GraphMLReader.inputGraph( source, graphMLInputStream );
+      migrate( source, target );
+      new GraphMLWriter().outputGraph( target, graphMLOutputStream );
+    } finally {
+      source.shutdown();
+      target.shutdown();
+    }
+  }
+
+  /**
+   * Copies a lineage graph into another, converting its logical ids
+   *
+   * @param source the graph with legacy logical ids
+   * @param target the graph to copy the converted vertices and edges into
+   */
+  public void migrate( Graph source, Graph target ) {
+    Map<Object, Vertex> targetVertices = new HashMap<>();
+    for ( Vertex vertex : source.getVertices() ) {
+      Vertex copy = target.addVertex( migrateId( vertex.getId() ) );
+      for ( String key : vertex.getPropertyKeys() ) {
+        Object value = vertex.getProperty( key );
+        if ( value instanceof String && ( DictionaryConst.PROPERTY_LOGICAL_ID.equals( key )
+          || DictionaryConst.PROPERTY_NAMESPACE.equals( key ) ) ) {
+          value = migrate( (String) value );
+        }
+        copy.setProperty( key, value );
+      }
+      targetVertices.put( vertex.getId(), copy );
+    }
+    for ( Edge edge : source.getEdges() ) {
+      Vertex out = targetVertices.get( edge.getVertex( Direction.OUT ).getId() );
+      Vertex in = targetVertices.get( edge.getVertex( Direction.IN ).getId() );
+      Edge copy = target.addEdge( edge.getId(), out, in, edge.getLabel() );
+      for ( String key : edge.getPropertyKeys() ) {
+        copy.setProperty( key, edge.getProperty( key ) );
+      }
+    }
+  }
+
+  /**
+   * Converts a legacy logical id to a hashed logical id
+   *
+   * @param logicalId the logical id
+   * @return the hashed logical id, or the given id if it is not a legacy logical id
+   */
+  public String migrate( String logicalId ) {
+    if ( logicalId == null || !logicalId.startsWith( "{" ) || !logicalId.endsWith( "}" ) ) {
+      return logicalId;
+    }
+    String migratedId = migratedIds.get( logicalId );
+    if ( migratedId == null ) {
+      try {
+        migratedId = migrate( objectMapper.readTree( logicalId ) );
+      } catch ( IOException e ) {
+        log.debug( "Not a legacy logical id, keeping it as is: " + logicalId, e );
+        migratedId = logicalId;
+      }
+      migratedIds.put( logicalId, migratedId );
+    }
+    return migratedId;
+  }
+
+  private Object migrateId( Object id ) {
+    return id instanceof String ? migrate( (String) id ) : id;
+  }
+
+  private String migrate( JsonNode logicalId ) {
+    StringBuilder sb = new StringBuilder( "{" );
+    Iterator<Map.Entry<String, JsonNode>> fields = logicalId.fields();
+    while ( fields.hasNext() ) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      JsonNode value = field.getValue();
+      String text = value.isObject() ? migrate( value ) : value.asText();
+      sb.append( '"' ).append( field.getKey() ).append( "\":\"" )
+        .append( StringEscapeUtils.escapeJavaScript( text ) ).append( '"' );
+      if ( fields.hasNext() ) {
+        sb.append( ',' );
+      }
+    }
+    String canonicalForm = sb.append( '}' ).toString();
+    String hashedId = MetaverseLogicalIdGenerator.hash( canonicalForm );
+    if ( dictionary != null ) {
+      dictionary.put( hashedId, canonicalForm );
+    }
+    return hashedId;
+  }
+}
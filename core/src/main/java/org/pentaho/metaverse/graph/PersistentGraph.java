@@ -0,0 +1,548 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.graph;
+
+import com.google.common.collect.Iterables;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Features;
+import com.tinkerpop.blueprints.GraphQuery;
+import com.tinkerpop.blueprints.KeyIndexableGraph;
+import com.tinkerpop.blueprints.Parameter;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.VertexQuery;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.util.DefaultGraphQuery;
+import com.tinkerpop.blueprints.util.DefaultVertexQuery;
+import com.tinkerpop.blueprints.util.ElementHelper;
+import com.tinkerpop.blueprints.util.StringFactory;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.pentaho.di.core.Const;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link KeyIndexableGraph} that keeps the metaverse across restarts. The graph lives in an in-memory graph as
+ * usual, and every change made to it is also appended to a change log in the configured directory. When the graph is
+ * opened, the log is replayed to recover the graph as it was, and rewritten from the recovered graph once it holds
+ * many more changes than the graph has elements. While the graph is open, the log is rewritten as well once it has
+ * grown to several times the size it had when last rewritten.
+ * <p>
+ * Property values are logged as they are when they are strings, numbers, booleans or characters, and in their Java
+ * serialized form otherwise. Setting a value that is not {@link java.io.Serializable} fails with an
+ * {@link IllegalArgumentException}, and leaves the property as it was.
+ * <p>
+ * Changes are written behind: they are buffered and written to the log in batches, every {@link #FLUSH_INTERVAL_KEY}
+ * milliseconds or as soon as {@link #BATCH_SIZE_KEY} changes are buffered, whichever comes first. Changes made since
+ * the last batch are lost if the process dies; {@link #shutdown()} writes them all.
+ * <p>
+ * Select it through the {@code blueprints.graph} entry of the graph configuration; the other settings are read from the
+ * same configuration.
+ */
+public class PersistentGraph implements KeyIndexableGraph {
+
+  /**
+   * Graph configuration key of the directory the change log is kept in, relative to the Kettle home directory unless
+   * absolute
+   */
+  public static final String DIRECTORY_KEY = "metaverse.graph.directory";
+
+  /**
+   * Graph configuration key of the in-memory graph class the graph lives in, it must implement
+   * {@link KeyIndexableGraph} and have a public no-argument constructor
+   */
+  public static final String BASE_GRAPH_KEY = "metaverse.graph.base";
+
+  /**
+   * Graph configuration key of the milliseconds between two writes of buffered changes
+   */
+  public static final String FLUSH_INTERVAL_KEY = "metaverse.graph.flush.interval";
+
+  /**
+   * Graph configuration key of the number of buffered changes that triggers a write
+   */
+  public static final String BATCH_SIZE_KEY = "metaverse.graph.batch.size";
+
+  static final String LOG_FILE_NAME = "metaverse.graphlog";
+
+  private static final String DEFAULT_DIRECTORY = "metaverse-graph";
+  private static final long DEFAULT_FLUSH_INTERVAL = 1000L;
+  private static final int DEFAULT_BATCH_SIZE = 1000;
+
+  // the log is rewritten on open once it holds this many times more changes than the graph has elements, and while
+  // open once it holds this many times more changes than when it was last rewritten
+  private static final int COMPACTION_RATIO = 4;
+  // smaller logs are not rewritten while the graph is open
+  private static final int MIN_COMPACTION_RECORDS = 10000;
+
+  private static final Logger log = LoggerFactory.getLogger( PersistentGraph.class );
+
+  private final KeyIndexableGraph baseGraph;
+  private final GraphChangeLog changeLog;
+  private final int batchSize;
+  private final ScheduledExecutorService flusher;
+  private final AtomicBoolean flushRequested = new AtomicBoolean();
+  private final AtomicBoolean compactionRequested = new AtomicBoolean();
+  private final Features features;
+
+  private int minCompactionRecords = MIN_COMPACTION_RECORDS;
+  // the records in the log, written or pending, and in the log as last rewritten
+  private long logRecords;
+  private long compactedRecords;
+
+  /**
+   * Opens the persistent graph with the default settings
+   */
+  public PersistentGraph() {
+    this( new BaseConfiguration() );
+  }
+
+  /**
+   * Opens the persistent graph described by the given configuration, recovering it from its change log
+   *
+   * @param configuration the graph configuration
+   */
+  public PersistentGraph( final Configuration configuration ) {
+    this( Paths.get( Const.getKettleDirectory() )
+        .resolve( configuration.getString( DIRECTORY_KEY, DEFAULT_DIRECTORY ) ),
+      createBaseGraph( configuration.getString( BASE_GRAPH_KEY, TinkerGraph.class.getName() ) ),
+      configuration.getLong( FLUSH_INTERVAL_KEY, DEFAULT_FLUSH_INTERVAL ),
+      configuration.getInt( BATCH_SIZE_KEY, DEFAULT_BATCH_SIZE ) );
+  }
+
+  /**
+   * Opens a persistent graph, recovering it from its change log
+   *
+   * @param directory     the directory the change log is kept in
+   * @param baseGraph     the empty in-memory graph to recover the graph into
+   * @param flushInterval milliseconds between two writes of buffered changes, 0 to write every change right away
+   * @param batchSize     the number of buffered changes that triggers a write
+   */
+  public PersistentGraph( final Path directory, final KeyIndexableGraph baseGraph, final long flushInterval,
+                          final int batchSize ) {
+    this.baseGraph = baseGraph;
+    this.batchSize = flushInterval > 0 ? Math.max( 1, batchSize ) : 1;
+    this.changeLog = new GraphChangeLog( directory.resolve( LOG_FILE_NAME ) );
+    this.features = baseGraph.getFeatures().copyFeatures();
+    this.features.isPersistent = true;
+    recover();
+    if ( flushInterval > 0 ) {
+      flusher = Executors.newSingleThreadScheduledExecutor( runnable -> {
+        final Thread thread = new Thread( runnable, "metaverse-graph-writer" );
+        thread.setDaemon( true );
+        return thread;
+      } );
+      flusher.scheduleWithFixedDelay( this::flushQuietly, flushInterval, flushInterval, TimeUnit.MILLISECONDS );
+    } else {
+      flusher = null;
+    }
+  }
+
+  /**
+   * @return the in-memory graph this graph lives in
+   */
+  public KeyIndexableGraph getBaseGraph() {
+    return baseGraph;
+  }
+
+  /**
+   * Writes the buffered changes to the change log
+   *
+   * @throws IOException if the changes cannot be written
+   */
+  public void flush() throws IOException {
+    flushRequested.set( false );
+    changeLog.flush();
+  }
+
+  /**
+   * Rewrites the change log from the graph as it is now, so that it only holds the changes needed to rebuild it
+   *
+   * @throws IOException if the change log cannot be written
+   */
+  public synchronized void compact() throws IOException {
+    logRecords = changeLog.rewrite( baseGraph );
+    compactedRecords = logRecords;
+  }
+
+  void setMinCompactionRecords( final int minCompactionRecords ) {
+    this.minCompactionRecords = minCompactionRecords;
+  }
+
+  @Override
+  public Features getFeatures() {
+    return features;
+  }
+
+  @Override
+  public synchronized Vertex addVertex( final Object id ) {
+    final Vertex vertex = baseGraph.addVertex( id );
+    logged( GraphChangeLog.ADD_VERTEX, vertex.getId() );
+    compactIfDue();
+    return new PersistentVertex( vertex );
+  }
+
+  @Override
+  public Vertex getVertex( final Object id ) {
+    final Vertex vertex = baseGraph.getVertex( id );
+    return vertex == null ? null : new PersistentVertex( vertex );
+  }
+
+  @Override
+  public synchronized void removeVertex( final Vertex vertex ) {
+    final Vertex base = unwrap( vertex );
+    logged( GraphChangeLog.REMOVE_VERTEX, base.getId() );
+    baseGraph.removeVertex( base );
+    compactIfDue();
+  }
+
+  @Override
+  public Iterable<Vertex> getVertices() {
+    return wrapVertices( baseGraph.getVertices() );
+  }
+
+  @Override
+  public Iterable<Vertex> getVertices( final String key, final Object value ) {
+    return wrapVertices( baseGraph.getVertices( key, value ) );
+  }
+
+  @Override
+  public synchronized Edge addEdge( final Object id, final Vertex outVertex, final Vertex inVertex,
+                                    final String label ) {
+    final Vertex out = unwrap( outVertex );
+    final Vertex in = unwrap( inVertex );
+    final Edge edge = baseGraph.addEdge( id, out, in, label );
+    logged( GraphChangeLog.ADD_EDGE, edge.getId(), out.getId(), in.getId(), label );
+    compactIfDue();
+    return new PersistentEdge( edge );
+  }
+
+  @Override
+  public Edge getEdge( final Object id ) {
+    final Edge edge = baseGraph.getEdge( id );
+    return edge == null ? null : new PersistentEdge( edge );
+  }
+
+  @Override
+  public synchronized void removeEdge( final Edge edge ) {
+    final Edge base = edge instanceof PersistentEdge ? ( (PersistentEdge) edge ).base : edge;
+    logged( GraphChangeLog.REMOVE_EDGE, base.getId() );
+    baseGraph.removeEdge( base );
+    compactIfDue();
+  }
+
+  @Override
+  public Iterable<Edge> getEdges() {
+    return wrapEdges( baseGraph.getEdges() );
+  }
+
+  @Override
+  public Iterable<Edge> getEdges( final String key, final Object value ) {
+    return wrapEdges( baseGraph.getEdges( key, value ) );
+  }
+
+  @Override
+  public GraphQuery query() {
+    return new DefaultGraphQuery( this );
+  }
+
+  @Override
+  public synchronized <T extends Element> void createKeyIndex( final String key, final Class<T> elementClass,
+                                                               final Parameter... indexParameters ) {
+    if ( !baseGraph.getIndexedKeys( elementClass ).contains( key ) ) {
+      baseGraph.createKeyIndex( key, elementClass, indexParameters );
+      logged( GraphChangeLog.CREATE_KEY_INDEX, key, indexName( elementClass ) );
+      compactIfDue();
+    }
+  }
+
+  @Override
+  public synchronized <T extends Element> void dropKeyIndex( final String key, final Class<T> elementClass ) {
+    baseGraph.dropKeyIndex( key, elementClass );
+    logged( GraphChangeLog.DROP_KEY_INDEX, key, indexName( elementClass ) );
+    compactIfDue();
+  }
+
+  @Override
+  public <T extends Element> Set<String> getIndexedKeys( final Class<T> elementClass ) {
+    return baseGraph.getIndexedKeys( elementClass );
+  }
+
+  /**
+   * Writes all buffered changes to the change log and closes it. The in-memory graph is shut down as well.
+   */
+  @Override
+  public synchronized void shutdown() {
+    if ( flusher != null ) {
+      flusher.shutdown();
+    }
+    try {
+      changeLog.close();
+    } catch ( IOException e ) {
+      log.error( "Could not write the metaverse graph changes", e );
+    }
+    baseGraph.shutdown();
+  }
+
+  @Override
+  public String toString() {
+    return StringFactory.graphString( this, baseGraph.toString() );
+  }
+
+  private void recover() {
+    try {
+      final long start = System.currentTimeMillis();
+      final int records = changeLog.replay( baseGraph );
+      logRecords = records;
+      compactedRecords = records;
+      if ( records > 0 ) {
+        long elements = Iterables.size( baseGraph.getVertices() ) + Iterables.size( baseGraph.getEdges() );
+        log.info( "Recovered the metaverse graph from " + records + " changes in "
+          + ( System.currentTimeMillis() - start ) + " ms" );
+        // graphs that assign their own ids recover with new ones, which the log must refer to from now on
+        if ( records > COMPACTION_RATIO * elements || Boolean.TRUE.equals( features.ignoresSuppliedIds ) ) {
+          compact();
+        }
+      }
+    } catch ( IOException e ) {
+      throw new IllegalStateException( "Could not recover the metaverse graph", e );
+    }
+  }
+
+  private void logged( final byte type, final Object... arguments ) {
+    changeLog.append( type, arguments );
+    logRecords++;
+    if ( flusher == null ) {
+      flushQuietly();
+    } else if ( changeLog.getPendingRecords() >= batchSize && flushRequested.compareAndSet( false, true ) ) {
+      flusher.execute( this::flushQuietly );
+    }
+  }
+
+  /**
+   * Rewrites the log once it has grown enough since it was last rewritten. Called by every change once it is both
+   * logged and applied, since the rewrite replaces the log, pending records included, with what the graph holds.
+   */
+  private void compactIfDue() {
+    if ( logRecords > COMPACTION_RATIO * Math.max( compactedRecords, minCompactionRecords ) ) {
+      if ( flusher == null ) {
+        compactQuietly();
+      } else if ( compactionRequested.compareAndSet( false, true ) ) {
+        flusher.execute( this::compactQuietly );
+      }
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch ( IOException e ) {
+      log.error( "Could not write the metaverse graph changes", e );
+    }
+  }
+
+  private void compactQuietly() {
+    try {
+      compact();
+    } catch ( IOException e ) {
+      log.error( "Could not rewrite the metaverse graph log", e );
+      synchronized ( this ) {
+        // not tried again before the log has grown as much again
+        compactedRecords = logRecords;
+      }
+    } finally {
+      compactionRequested.set( false );
+    }
+  }
+
+  private Vertex unwrap( final Vertex vertex ) {
+    return vertex instanceof PersistentVertex ? ( (PersistentVertex) vertex ).base : vertex;
+  }
+
+  private Iterable<Vertex> wrapVertices( final Iterable<Vertex> vertices ) {
+    return Iterables.transform( vertices, vertex -> new PersistentVertex( vertex ) );
+  }
+
+  private Iterable<Edge> wrapEdges( final Iterable<Edge> edges ) {
+    return Iterables.transform( edges, edge -> new PersistentEdge( edge ) );
+  }
+
+  private static String indexName( final Class<? extends Element> elementClass ) {
+    return Edge.class.isAssignableFrom( elementClass ) ? GraphChangeLog.EDGE_INDEX : GraphChangeLog.VERTEX_INDEX;
+  }
+
+  private static KeyIndexableGraph createBaseGraph( final String className ) {
+    try {
+      return (KeyIndexableGraph) Class.forName( className ).getConstructor().newInstance();
+    } catch ( ReflectiveOperationException | ClassCastException e ) {
+      throw new IllegalArgumentException( "Cannot create a metaverse graph of type " + className, e );
+    }
+  }
+
+  /**
+   * An element whose changes are logged
+   */
+  private abstract class PersistentElement<E extends Element> implements Element {
+    protected final E base;
+
+    private PersistentElement( final E base ) {
+      this.base = base;
+    }
+
+    protected abstract byte setPropertyType();
+
+    protected abstract byte removePropertyType();
+
+    @Override
+    public <T> T getProperty( final String key ) {
+      return base.getProperty( key );
+    }
+
+    @Override
+    public Set<String> getPropertyKeys() {
+      return base.getPropertyKeys();
+    }
+
+    @Override
+    public void setProperty( final String key, final Object value ) {
+      ElementHelper.validateProperty( this, key, value );
+      synchronized ( PersistentGraph.this ) {
+        logged( setPropertyType(), base.getId(), key, value );
+        base.setProperty( key, value );
+        compactIfDue();
+      }
+    }
+
+    @Override
+    public <T> T removeProperty( final String key ) {
+      synchronized ( PersistentGraph.this ) {
+        logged( removePropertyType(), base.getId(), key );
+        final T value = base.removeProperty( key );
+        compactIfDue();
+        return value;
+      }
+    }
+
+    @Override
+    public Object getId() {
+      return base.getId();
+    }
+
+    @Override
+    public boolean equals( final Object object ) {
+      return object instanceof PersistentElement && base.equals( ( (PersistentElement<?>) object ).base );
+    }
+
+    @Override
+    public int hashCode() {
+      return base.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return base.toString();
+    }
+  }
+
+  /**
+   * A vertex whose changes are logged
+   */
+  private final class PersistentVertex extends PersistentElement<Vertex> implements Vertex {
+
+    private PersistentVertex( final Vertex base ) {
+      super( base );
+    }
+
+    @Override
+    protected byte setPropertyType() {
+      return GraphChangeLog.SET_VERTEX_PROPERTY;
+    }
+
+    @Override
+    protected byte removePropertyType() {
+      return GraphChangeLog.REMOVE_VERTEX_PROPERTY;
+    }
+
+    @Override
+    public Iterable<Edge> getEdges( final Direction direction, final String... labels ) {
+      return wrapEdges( base.getEdges( direction, labels ) );
+    }
+
+    @Override
+    public Iterable<Vertex> getVertices( final Direction direction, final String... labels ) {
+      return wrapVertices( base.getVertices( direction, labels ) );
+    }
+
+    @Override
+    public VertexQuery query() {
+      return new DefaultVertexQuery( this );
+    }
+
+    @Override
+    public Edge addEdge( final String label, final Vertex inVertex ) {
+      return PersistentGraph.this.addEdge( null, this, inVertex, label );
+    }
+
+    @Override
+    public void remove() {
+      removeVertex( this );
+    }
+  }
+
+  /**
+   * An edge whose changes are logged
+   */
+  private final class PersistentEdge extends PersistentElement<Edge> implements Edge {
+
+    private PersistentEdge( final Edge base ) {
+      super( base );
+    }
+
+    @Override
+    protected byte setPropertyType() {
+      return GraphChangeLog.SET_EDGE_PROPERTY;
+    }
+
+    @Override
+    protected byte removePropertyType() {
+      return GraphChangeLog.REMOVE_EDGE_PROPERTY;
+    }
+
+    @Override
+    public Vertex getVertex( final Direction direction ) {
+      return new PersistentVertex( base.getVertex( direction ) );
+    }
+
+    @Override
+    public String getLabel() {
+      return base.getLabel();
+    }
+
+    @Override
+    public void remove() {
+      removeEdge( this );
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.io.graphml.GraphMLTokens;
+import com.tinkerpop.blueprints.util.io.graphml.GraphMLWriterHelper;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a graph in GraphML format, producing the same document as the Blueprints
+ * {@link com.tinkerpop.blueprints.util.io.graphml.GraphMLWriter}. Vertices and edges are written as they are
+ * iterated instead of being copied into lists first. When normalizing, only their IDs are collected and sorted, and
+ * each element is looked up by ID as it is written, so that the output is deterministic.
+ */
+public class StreamingGraphMLWriter {
+
+  private static final Comparator<Object> ID_ORDER = Comparator.comparing( Object::toString );
+
+  private final Graph graph;
+
+  private boolean normalize = false;
+
+  /**
+   * @param graph the graph to write
+   */
+  public StreamingGraphMLWriter( final Graph graph ) {
+    this.graph = graph;
+  }
+
+  /**
+   * @param normalize true to write vertices, edges and property keys in lexicographical order, and indent the output
+   */
+  public void setNormalize( final boolean normalize ) {
+    this.normalize = normalize;
+  }
+
+  /**
+   * Writes the graph to the given stream. The stream is flushed, not closed.
+   *
+   * @param outputStream the stream to write to
+   * @throws IOException if the graph cannot be written
+   */
+  public void outputGraph( final OutputStream outputStream ) throws IOException {
+    final Map<String, String> vertexKeyTypes = new HashMap<>();
+    final Map<String, String> edgeKeyTypes = new HashMap<>();
+    final List<Object> vertexIds = new ArrayList<>();
+    final List<Object> edgeIds = new ArrayList<>();
+    for ( final Vertex vertex : graph.getVertices() ) {
+      collectKeyTypes( vertex, vertexKeyTypes );
+      if ( normalize ) {
+        vertexIds.add( vertex.getId() );
+      }
+      for ( final Edge edge : vertex.getEdges( Direction.OUT ) ) {
+        collectKeyTypes( edge, edgeKeyTypes );
+        if ( normalize ) {
+          edgeIds.add( edge.getId() );
+        }
+      }
+    }
+
+    try {
+      XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter( outputStream, "UTF8" );
+      if ( normalize ) {
+        writer = new GraphMLWriterHelper.IndentingXMLStreamWriter( writer );
+        ( (GraphMLWriterHelper.IndentingXMLStreamWriter) writer ).setIndentStep( "    " );
+      }
+
+      writer.writeStartDocument();
+      writer.writeStartElement( GraphMLTokens.GRAPHML );
+      writer.writeAttribute( GraphMLTokens.XMLNS, GraphMLTokens.GRAPHML_XMLNS );
+      writer.writeAttribute( GraphMLTokens.XMLNS + ":" + GraphMLTokens.XML_SCHEMA_NAMESPACE_TAG,
+        XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI );
+      writer.writeAttribute( GraphMLTokens.XML_SCHEMA_NAMESPACE_TAG + ":"
+        + GraphMLTokens.XML_SCHEMA_LOCATION_ATTRIBUTE, GraphMLTokens.GRAPHML_XMLNS + " "
+        + GraphMLTokens.DEFAULT_GRAPHML_SCHEMA_LOCATION );
+
+      writeKeys( writer, vertexKeyTypes, GraphMLTokens.NODE );
+      writeKeys( writer, edgeKeyTypes, GraphMLTokens.EDGE );
+
+      writer.writeStartElement( GraphMLTokens.GRAPH );
+      writer.writeAttribute( GraphMLTokens.ID, GraphMLTokens.G );
+      writer.writeAttribute( GraphMLTokens.EDGEDEFAULT, GraphMLTokens.DIRECTED );
+
+      if ( normalize ) {
+        vertexIds.sort( ID_ORDER );
+        for ( final Object vertexId : vertexIds ) {
+          writeVertex( writer, graph.getVertex( vertexId ) );
+        }
+        edgeIds.sort( ID_ORDER );
+        for ( final Object edgeId : edgeIds ) {
+          writeEdge( writer, graph.getEdge( edgeId ) );
+        }
+      } else {
+        for ( final Vertex vertex : graph.getVertices() ) {
+          writeVertex( writer, vertex );
+        }
+        for ( final Vertex vertex : graph.getVertices() ) {
+          for ( final Edge edge : vertex.getEdges( Direction.OUT ) ) {
+            writeEdge( writer, edge );
+          }
+        }
+      }
+
+      writer.writeEndElement(); // graph
+      writer.writeEndElement(); // graphml
+      writer.writeEndDocument();
+
+      writer.flush();
+      writer.close();
+    } catch ( XMLStreamException e ) {
+      throw new IOException( e );
+    }
+    outputStream.flush();
+  }
+
+  private void writeKeys( final XMLStreamWriter writer, final Map<String, String> keyTypes, final String keyFor )
+    throws XMLStreamException {
+    for ( final String key : keys( keyTypes.keySet() ) ) {
+      writer.writeStartElement( GraphMLTokens.KEY );
+      writer.writeAttribute( GraphMLTokens.ID, key );
+      writer.writeAttribute( GraphMLTokens.FOR, keyFor );
+      writer.writeAttribute( GraphMLTokens.ATTR_NAME, key );
+      writer.writeAttribute( GraphMLTokens.ATTR_TYPE, keyTypes.get( key ) );
+      writer.writeEndElement();
+    }
+  }
+
+  private void writeVertex( final XMLStreamWriter writer, final Vertex vertex ) throws XMLStreamException {
+    if ( vertex == null ) {
+      return;
+    }
+    writer.writeStartElement( GraphMLTokens.NODE );
+    writer.writeAttribute( GraphMLTokens.ID, vertex.getId().toString() );
+    writeData( writer, vertex );
+    writer.writeEndElement();
+  }
+
+  private void writeEdge( final XMLStreamWriter writer, final Edge edge ) throws XMLStreamException {
+    if ( edge == null ) {
+      return;
+    }
+    writer.writeStartElement( GraphMLTokens.EDGE );
+    writer.writeAttribute( GraphMLTokens.ID, edge.getId().toString() );
+    writer.writeAttribute( GraphMLTokens.SOURCE, edge.getVertex( Direction.OUT ).getId().toString() );
+    writer.writeAttribute( GraphMLTokens.TARGET, edge.getVertex( Direction.IN ).getId().toString() );
+    writer.writeAttribute( GraphMLTokens.LABEL, edge.getLabel() );
+    writeData( writer, edge );
+    writer.writeEndElement();
+  }
+
+  private void writeData( final XMLStreamWriter writer, final Element element ) throws XMLStreamException {
+    for ( final String key : keys( element.getPropertyKeys() ) ) {
+      writer.writeStartElement( GraphMLTokens.DATA );
+      writer.writeAttribute( GraphMLTokens.KEY, key );
+      final Object value = element.getProperty( key );
+      if ( value != null ) {
+        writer.writeCharacters( value.toString() );
+      }
+      writer.writeEndElement();
+    }
+  }
+
+  private Collection<String> keys( final Collection<String> keys ) {
+    if ( !normalize ) {
+      return keys;
+    }
+    final List<String> sortedKeys = new ArrayList<>( keys );
+    Collections.sort( sortedKeys );
+    return sortedKeys;
+  }
+
+  private static void collectKeyTypes( final Element element, final Map<String, String> keyTypes ) {
+    for ( final String key : element.getPropertyKeys() ) {
+      if ( !keyTypes.containsKey( key ) ) {
+        keyTypes.put( key, getStringType( element.getProperty( key ) ) );
+      }
+    }
+  }
+
+  private static String getStringType( final Object object ) {
+    if ( object instanceof Integer ) {
+      return GraphMLTokens.INT;
+    } else if ( object instanceof Long ) {
+      return GraphMLTokens.LONG;
+    } else if ( object instanceof Float ) {
+      return GraphMLTokens.FLOAT;
+    } else if ( object instanceof Double ) {
+      return GraphMLTokens.DOUBLE;
+    } else if ( object instanceof Boolean ) {
+      return GraphMLTokens.BOOLEAN;
+    }
+    return GraphMLTokens.STRING;
+  }
+}
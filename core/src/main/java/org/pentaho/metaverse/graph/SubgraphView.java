@@ -0,0 +1,312 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Features;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.GraphQuery;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.VertexQuery;
+import com.tinkerpop.blueprints.util.DefaultGraphQuery;
+import com.tinkerpop.blueprints.util.DefaultVertexQuery;
+import com.tinkerpop.blueprints.util.ElementHelper;
+import com.tinkerpop.blueprints.util.StringFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A read-only view of some of the vertices and edges of another graph. Nothing is copied: the view holds references to
+ * the elements of the underlying graph and hides everything else, including the edges of its vertices that are not
+ * part of the view.
+ * <p>
+ * Vertices and edges cannot be added to or removed from the view. Property changes are written through to the
+ * underlying elements.
+ */
+public class SubgraphView implements Graph {
+
+  private final Graph graph;
+
+  private final Map<Object, Vertex> vertices = new LinkedHashMap<>();
+
+  private final Map<Object, Edge> edges = new LinkedHashMap<>();
+
+  /**
+   * Creates a new, empty view
+   *
+   * @param graph the underlying graph
+   */
+  public SubgraphView( Graph graph ) {
+    this.graph = graph;
+  }
+
+  /**
+   * Includes a vertex of the underlying graph in this view
+   *
+   * @param vertex the vertex to include
+   */
+  public void include( Vertex vertex ) {
+    vertices.putIfAbsent( vertex.getId(), vertex );
+  }
+
+  /**
+   * Includes an edge of the underlying graph, and both of its vertices, in this view
+   *
+   * @param edge the edge to include
+   */
+  public void include( Edge edge ) {
+    if ( edges.putIfAbsent( edge.getId(), edge ) == null ) {
+      include( edge.getVertex( Direction.OUT ) );
+      include( edge.getVertex( Direction.IN ) );
+    }
+  }
+
+  /**
+   * @return the number of vertices in this view
+   */
+  public int getVertexCount() {
+    return vertices.size();
+  }
+
+  /**
+   * @return the number of edges in this view
+   */
+  public int getEdgeCount() {
+    return edges.size();
+  }
+
+  @Override
+  public Features getFeatures() {
+    Features features = graph.getFeatures().copyFeatures();
+    features.isWrapper = true;
+    return features;
+  }
+
+  @Override
+  public Vertex addVertex( Object id ) {
+    throw new UnsupportedOperationException( "SubgraphView is read-only" );
+  }
+
+  @Override
+  public Vertex getVertex( Object id ) {
+    Vertex vertex = id == null ? null : vertices.get( id );
+    return vertex == null ? null : new ViewVertex( vertex );
+  }
+
+  @Override
+  public void removeVertex( Vertex vertex ) {
+    throw new UnsupportedOperationException( "SubgraphView is read-only" );
+  }
+
+  @Override
+  public Iterable<Vertex> getVertices() {
+    List<Vertex> result = new ArrayList<>( vertices.size() );
+    for ( Vertex vertex : vertices.values() ) {
+      result.add( new ViewVertex( vertex ) );
+    }
+    return result;
+  }
+
+  @Override
+  public Iterable<Vertex> getVertices( String key, Object value ) {
+    List<Vertex> result = new ArrayList<>();
+    for ( Vertex vertex : vertices.values() ) {
+      if ( Objects.equals( value, vertex.getProperty( key ) ) ) {
+        result.add( new ViewVertex( vertex ) );
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public Edge addEdge( Object id, Vertex outVertex, Vertex inVertex, String label ) {
+    throw new UnsupportedOperationException( "SubgraphView is read-only" );
+  }
+
+  @Override
+  public Edge getEdge( Object id ) {
+    Edge edge = id == null ? null : edges.get( id );
+    return edge == null ? null : new ViewEdge( edge );
+  }
+
+  @Override
+  public void removeEdge( Edge edge ) {
+    throw new UnsupportedOperationException( "SubgraphView is read-only" );
+  }
+
+  @Override
+  public Iterable<Edge> getEdges() {
+    List<Edge> result = new ArrayList<>( edges.size() );
+    for ( Edge edge : edges.values() ) {
+      result.add( new ViewEdge( edge ) );
+    }
+    return result;
+  }
+
+  @Override
+  public Iterable<Edge> getEdges( String key, Object value ) {
+    List<Edge> result = new ArrayList<>();
+    for ( Edge edge : edges.values() ) {
+      if ( Objects.equals( value, edge.getProperty( key ) ) ) {
+        result.add( new ViewEdge( edge ) );
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public GraphQuery query() {
+    return new DefaultGraphQuery( this );
+  }
+
+  /**
+   * Does nothing, the underlying graph is owned by someone else
+   */
+  @Override
+  public void shutdown() {
+    // nothing to release
+  }
+
+  @Override
+  public String toString() {
+    return StringFactory.graphString( this, "vertices:" + vertices.size() + " edges:" + edges.size() );
+  }
+
+  /**
+   * An element of the view, backed by an element of the underlying graph
+   */
+  private abstract static class ViewElement<T extends Element> implements Element {
+
+    protected final T element;
+
+    ViewElement( T element ) {
+      this.element = element;
+    }
+
+    @Override
+    public <V> V getProperty( String key ) {
+      return element.getProperty( key );
+    }
+
+    @Override
+    public Set<String> getPropertyKeys() {
+      return element.getPropertyKeys();
+    }
+
+    @Override
+    public void setProperty( String key, Object value ) {
+      element.setProperty( key, value );
+    }
+
+    @Override
+    public <V> V removeProperty( String key ) {
+      return element.removeProperty( key );
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException( "SubgraphView is read-only" );
+    }
+
+    @Override
+    public Object getId() {
+      return element.getId();
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+      return ElementHelper.areEqual( this, o );
+    }
+
+    @Override
+    public int hashCode() {
+      return element.getId().hashCode();
+    }
+  }
+
+  private final class ViewVertex extends ViewElement<Vertex> implements Vertex {
+
+    ViewVertex( Vertex vertex ) {
+      super( vertex );
+    }
+
+    @Override
+    public Iterable<Edge> getEdges( Direction direction, String... labels ) {
+      List<Edge> result = new ArrayList<>();
+      for ( Edge edge : element.getEdges( direction, labels ) ) {
+        if ( edges.containsKey( edge.getId() ) ) {
+          result.add( new ViewEdge( edge ) );
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public Iterable<Vertex> getVertices( Direction direction, String... labels ) {
+      List<Vertex> result = new ArrayList<>();
+      for ( Edge edge : getEdges( direction, labels ) ) {
+        Direction other = direction.opposite();
+        if ( direction == Direction.BOTH ) {
+          other = getId().equals( edge.getVertex( Direction.OUT ).getId() ) ? Direction.IN : Direction.OUT;
+        }
+        result.add( edge.getVertex( other ) );
+      }
+      return result;
+    }
+
+    @Override
+    public VertexQuery query() {
+      return new DefaultVertexQuery( this );
+    }
+
+    @Override
+    public Edge addEdge( String label, Vertex inVertex ) {
+      throw new UnsupportedOperationException( "SubgraphView is read-only" );
+    }
+
+    @Override
+    public String toString() {
+      return StringFactory.vertexString( this );
+    }
+  }
+
+  private final class ViewEdge extends ViewElement<Edge> implements Edge {
+
+    ViewEdge( Edge edge ) {
+      super( edge );
+    }
+
+    @Override
+    public Vertex getVertex( Direction direction ) {
+      return new ViewVertex( element.getVertex( direction ) );
+    }
+
+    @Override
+    public String getLabel() {
+      return element.getLabel();
+    }
+
+    @Override
+    public String toString() {
+      return StringFactory.edgeString( this );
+    }
+  }
+}
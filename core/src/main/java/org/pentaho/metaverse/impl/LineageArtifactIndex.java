@@ -0,0 +1,327 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.impl;
+
+import com.google.common.util.concurrent.Striped;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.Capability;
+import org.apache.commons.vfs2.FileDepthSelector;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileType;
+import org.pentaho.di.core.Const;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * An append-only index of the lineage artifacts written to a date folder. Each line records either an artifact that
+ * was written, as {@code +<TAB>path<TAB>execution id<TAB>time}, or a folder whose artifacts were removed, as
+ * {@code -<TAB>path<TAB><TAB>time}, with paths relative to the date folder. Replaying the lines in the order of their
+ * time yields the artifacts the folder holds, without walking it.
+ * <p>
+ * The index is split in segment files, whose names start with {@link #INDEX_FILE_NAME}, so that writers never update
+ * the same file: the index built from the folder contents is kept in the {@link #INDEX_FILE_NAME} file, and each
+ * execution written by this JVM gets a segment of its own. Processes sharing the output folder then do not lose each
+ * other's lines, and file systems that cannot append (object stores) only rewrite the few lines of one execution.
+ * <p>
+ * The index only knows about the changes made through {@link VfsLineageWriter}. An index is built from the folder
+ * contents when it is first written to, so the artifacts a folder held before it had an index stay listed. The index
+ * is checked against the top level of the folder when read, and is not used when it lists artifacts in folders that are
+ * gone. Folders changed by other means are brought up to date with {@link #rebuild(FileObject)}, and an index that
+ * could not be updated is dropped with {@link #invalidate(FileObject)}, so that the folder is walked until it is
+ * indexed again.
+ */
+public class LineageArtifactIndex {
+
+  /**
+   * The name of the index file in each date folder, and the prefix of the names of its other segments
+   */
+  public static final String INDEX_FILE_NAME = ".lineage-index";
+
+  private static final String ADDED = "+";
+  private static final String REMOVED = "-";
+  private static final String SEPARATOR = "\t";
+  private static final String SEGMENT_SEPARATOR = "-";
+
+  /**
+   * Tells the segments of this JVM from those of the other processes writing to the same folders
+   */
+  private static final String WRITER_ID = UUID.randomUUID().toString();
+
+  /**
+   * Numbers the segments of the changes that belong to no execution
+   */
+  private static final AtomicLong SEGMENTS = new AtomicLong();
+
+  /**
+   * The time of the last recorded line, so that the lines of this JVM keep their order if the clock goes back
+   */
+  private static final AtomicLong LAST_TIME = new AtomicLong();
+
+  /**
+   * Guards the segments of this JVM, so that lines appended by concurrent writers of an execution are not interleaved
+   */
+  private static final Striped<Lock> LOCKS = Striped.lazyWeakLock( 64 );
+
+  private LineageArtifactIndex() {
+  }
+
+  /**
+   * Records an artifact written to the date folder
+   *
+   * @param dateFolder  the date folder
+   * @param artifact    the artifact file, somewhere below the date folder
+   * @param executionId the ID of the execution the artifact belongs to, may be null
+   * @throws IOException if the index cannot be written
+   */
+  public static void recordArtifact( final FileObject dateFolder, final FileObject artifact, final String executionId )
+    throws IOException {
+    append( dateFolder, executionId, ADDED + SEPARATOR + getRelativePath( dateFolder, artifact ) + SEPARATOR
+      + Const.NVL( executionId, "" ) + SEPARATOR + nextTime() );
+  }
+
+  /**
+   * Records the removal of a folder below the date folder, along with all of the artifacts it held
+   *
+   * @param dateFolder the date folder
+   * @param folder     the removed folder
+   * @throws IOException if the index cannot be written
+   */
+  public static void recordRemoval( final FileObject dateFolder, final FileObject folder ) throws IOException {
+    append( dateFolder, null, REMOVED + SEPARATOR + getRelativePath( dateFolder, folder ) + SEPARATOR + SEPARATOR
+      + nextTime() );
+  }
+
+  /**
+   * Returns the paths of the artifacts the index of the date folder lists, in the order they were written
+   *
+   * @param dateFolder the date folder
+   * @return the artifact paths, or null if the date folder has no index, or an index that lists artifacts in folders
+   * that are gone
+   * @throws IOException if the index cannot be read
+   */
+  public static List<String> readArtifacts( final FileObject dateFolder ) throws IOException {
+    final FileObject[] children = dateFolder.exists() ? dateFolder.getChildren() : new FileObject[ 0 ];
+    final List<FileObject> segments = new ArrayList<>();
+    final Set<String> topLevelNames = new HashSet<>();
+    for ( FileObject child : children ) {
+      if ( isIndexFile( child ) ) {
+        segments.add( child );
+      } else {
+        topLevelNames.add( child.getName().getBaseName() );
+      }
+    }
+    if ( segments.isEmpty() ) {
+      return null;
+    }
+    final List<String[]> lines = new ArrayList<>();
+    for ( FileObject segment : segments ) {
+      readLines( segment, lines );
+    }
+    // stable, so lines of the same time keep the order of their segment
+    lines.sort( Comparator.comparingLong( LineageArtifactIndex::getTime ) );
+    final Map<String, String> artifacts = new LinkedHashMap<>();
+    for ( String[] fields : lines ) {
+      replay( fields, artifacts );
+    }
+    final String datePath = dateFolder.getName().getPath();
+    final List<String> paths = new ArrayList<>( artifacts.size() );
+    for ( String relativePath : artifacts.keySet() ) {
+      final int separator = relativePath.indexOf( FileName.SEPARATOR_CHAR );
+      if ( !topLevelNames.contains( separator < 0 ? relativePath : relativePath.substring( 0, separator ) ) ) {
+        // removed by other means, which only a walk of the folder tells
+        return null;
+      }
+      paths.add( datePath + FileName.SEPARATOR + relativePath );
+    }
+    return paths;
+  }
+
+  /**
+   * Rewrites the index of the date folder from the artifacts the folder currently holds. This is used to index
+   * folders written before the index existed, or to drop artifacts that were removed by other means. The segments
+   * written while the folder is walked are kept.
+   *
+   * @param dateFolder the date folder
+   * @return the number of indexed artifacts
+   * @throws IOException if the folder cannot be walked or the index cannot be written
+   */
+  public static int rebuild( final FileObject dateFolder ) throws IOException {
+    final List<FileObject> segments = getSegments( dateFolder );
+    final int count = writeIndex( dateFolder );
+    for ( FileObject segment : segments ) {
+      if ( !INDEX_FILE_NAME.equals( segment.getName().getBaseName() ) ) {
+        segment.delete();
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Deletes the index of the date folder, for an index that missed a change. The folder is then walked when listing
+   * artifacts, and indexed again from its contents by the next change.
+   *
+   * @param dateFolder the date folder
+   * @throws IOException if the index cannot be deleted
+   */
+  public static void invalidate( final FileObject dateFolder ) throws IOException {
+    for ( FileObject segment : getSegments( dateFolder ) ) {
+      segment.delete();
+    }
+  }
+
+  /**
+   * @return true if the file is a segment of an index rather than a lineage artifact
+   */
+  public static boolean isIndexFile( final FileObject file ) {
+    return file.getName().getBaseName().startsWith( INDEX_FILE_NAME );
+  }
+
+  /**
+   * Writes the {@link #INDEX_FILE_NAME} segment from the artifacts the folder currently holds, leaving the other
+   * segments alone
+   */
+  private static int writeIndex( final FileObject dateFolder ) throws IOException {
+    final StringBuilder index = new StringBuilder();
+    int count = 0;
+    final FileObject[] files = dateFolder.findFiles( new FileDepthSelector( 1, 256 ) );
+    if ( files != null ) {
+      for ( FileObject file : files ) {
+        if ( file.getType() == FileType.FILE && !isIndexFile( file ) ) {
+          index.append( ADDED ).append( SEPARATOR ).append( getRelativePath( dateFolder, file ) ).append( SEPARATOR )
+            .append( '\n' );
+          count++;
+        }
+      }
+    }
+    try ( OutputStream os = dateFolder.resolveFile( INDEX_FILE_NAME ).getContent().getOutputStream() ) {
+      os.write( index.toString().getBytes( StandardCharsets.UTF_8 ) );
+    }
+    return count;
+  }
+
+  private static void replay( final String[] fields, final Map<String, String> artifacts ) {
+    if ( fields.length < 2 || fields[ 1 ].isEmpty() ) {
+      return;
+    }
+    if ( ADDED.equals( fields[ 0 ] ) ) {
+      // a file written again moves to the end, as a walk would list it among the latest
+      artifacts.remove( fields[ 1 ] );
+      artifacts.put( fields[ 1 ], fields.length > 2 ? fields[ 2 ] : "" );
+    } else if ( REMOVED.equals( fields[ 0 ] ) ) {
+      final String prefix = fields[ 1 ] + FileName.SEPARATOR;
+      artifacts.keySet().removeIf( path -> path.equals( fields[ 1 ] ) || path.startsWith( prefix ) );
+    }
+  }
+
+  private static void readLines( final FileObject segment, final List<String[]> lines ) throws IOException {
+    try ( BufferedReader reader = new BufferedReader(
+      new InputStreamReader( segment.getContent().getInputStream(), StandardCharsets.UTF_8 ) ) ) {
+      String line;
+      while ( ( line = reader.readLine() ) != null ) {
+        lines.add( line.split( SEPARATOR, -1 ) );
+      }
+    }
+  }
+
+  /**
+   * @return the time of the line, 0 for the lines of the index built from the folder contents
+   */
+  private static long getTime( final String[] fields ) {
+    if ( fields.length < 4 || fields[ 3 ].isEmpty() ) {
+      return 0L;
+    }
+    try {
+      return Long.parseLong( fields[ 3 ] );
+    } catch ( NumberFormatException e ) {
+      return 0L;
+    }
+  }
+
+  private static long nextTime() {
+    final long now = System.currentTimeMillis();
+    return LAST_TIME.updateAndGet( last -> Math.max( now, last + 1 ) );
+  }
+
+  private static List<FileObject> getSegments( final FileObject dateFolder ) throws IOException {
+    final List<FileObject> segments = new ArrayList<>();
+    if ( dateFolder.exists() ) {
+      for ( FileObject child : dateFolder.getChildren() ) {
+        if ( isIndexFile( child ) ) {
+          segments.add( child );
+        }
+      }
+    }
+    return segments;
+  }
+
+  private static String getSegmentName( final String executionId ) {
+    final String key = executionId == null || executionId.isEmpty()
+      ? String.valueOf( SEGMENTS.incrementAndGet() ) : executionId.replaceAll( "[^A-Za-z0-9_.-]", "_" );
+    return INDEX_FILE_NAME + SEGMENT_SEPARATOR + WRITER_ID + SEGMENT_SEPARATOR + key;
+  }
+
+  private static String getRelativePath( final FileObject dateFolder, final FileObject file ) throws IOException {
+    return dateFolder.getName().getRelativeName( file.getName() );
+  }
+
+  private static void append( final FileObject dateFolder, final String executionId, final String line )
+    throws IOException {
+    if ( getSegments( dateFolder ).isEmpty() ) {
+      // the folder may hold artifacts written before it had an index, which the index must list too. The segments
+      // other writers may have started meanwhile are kept, unlike a rebuild.
+      writeIndex( dateFolder );
+    }
+    final byte[] bytes = ( line + "\n" ).getBytes( StandardCharsets.UTF_8 );
+    final FileObject segment = dateFolder.resolveFile( getSegmentName( executionId ) );
+    final Lock lock = LOCKS.get( segment.getName().getPath() );
+    lock.lock();
+    try {
+      if ( segment.getFileSystem().hasCapability( Capability.APPEND_CONTENT ) ) {
+        try ( OutputStream os = segment.getContent().getOutputStream( true ) ) {
+          os.write( bytes );
+        }
+      } else {
+        // file systems that cannot append (object stores) get the segment of the execution rewritten
+        byte[] existing = new byte[ 0 ];
+        if ( segment.exists() ) {
+          try ( InputStream is = segment.getContent().getInputStream() ) {
+            existing = IOUtils.toByteArray( is );
+          }
+        }
+        try ( OutputStream os = segment.getContent().getOutputStream() ) {
+          os.write( existing );
+          os.write( bytes );
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+}
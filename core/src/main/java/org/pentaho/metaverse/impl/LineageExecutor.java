@@ -0,0 +1,291 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+
+package org.pentaho.metaverse.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, named pool of worker threads for lineage tasks. Tasks wait in a queue of limited depth; once it is full,
+ * the backpressure policy decides whether the submitting thread waits for room ("block"), the task is skipped
+ * ("drop") or the task runs on the submitting thread ("sync").
+ * <p>
+ * Tasks that wait on each other must not share a pool, otherwise a task could wait on one queued behind it. This is
+ * why lineage analysis, lineage graph and lineage writing tasks each run on their own instance.
+ */
+public class LineageExecutor implements Executor {
+
+  public static final String BACKPRESSURE_BLOCK = "block";
+  public static final String BACKPRESSURE_DROP = "drop";
+  public static final String BACKPRESSURE_SYNC = "sync";
+
+  private static final Logger log = LoggerFactory.getLogger( LineageExecutor.class );
+
+  private static final long KEEP_ALIVE_SECONDS = 60L;
+
+  private final String name;
+  private final String backpressure;
+  private final ThreadPoolExecutor pool;
+
+  private final LongAdder droppedTasks = new LongAdder();
+  private final LongAdder finishedTasks = new LongAdder();
+  private final LongAdder totalLatency = new LongAdder();
+  private final AtomicLong maxLatency = new AtomicLong();
+
+  private static class Holder {
+    private static final LineageExecutor WRITER = create( "lineage-writer" );
+  }
+
+  /**
+   * @return the executor that writes the lineage of finished transformations and jobs
+   */
+  public static LineageExecutor getWriterInstance() {
+    return Holder.WRITER;
+  }
+
+  /**
+   * Creates an executor sized according to the {@link MetaverseConfig}
+   *
+   * @param name the name of the pool, used to name its threads
+   * @return a new executor
+   */
+  public static LineageExecutor create( final String name ) {
+    final MetaverseConfig config = MetaverseConfig.getInstance();
+    return new LineageExecutor( name, config.getExecutorPoolSize(), config.getExecutorQueueDepth(),
+      config.getExecutorBackpressure() );
+  }
+
+  /**
+   * Creates a new executor
+   *
+   * @param name         the name of the pool, used to name its threads
+   * @param poolSize     the maximum number of worker threads
+   * @param queueDepth   the maximum number of tasks waiting for a worker
+   * @param backpressure what to do with a task submitted while the queue is full: {@link #BACKPRESSURE_BLOCK},
+   *                     {@link #BACKPRESSURE_DROP} or {@link #BACKPRESSURE_SYNC}
+   */
+  public LineageExecutor( final String name, final int poolSize, final int queueDepth, final String backpressure ) {
+    this.name = name;
+    this.backpressure = backpressure == null ? BACKPRESSURE_BLOCK : backpressure.toLowerCase();
+    pool = new ThreadPoolExecutor( Math.max( 1, poolSize ), Math.max( 1, poolSize ), KEEP_ALIVE_SECONDS,
+      TimeUnit.SECONDS, new ArrayBlockingQueue<>( Math.max( 1, queueDepth ) ), new NamedThreadFactory( name ),
+      getRejectedExecutionHandler( this.backpressure ) );
+    // idle workers go away, so the pool does not keep threads (or the JVM) alive when there is nothing to do
+    pool.allowCoreThreadTimeOut( true );
+  }
+
+  @Override
+  public void execute( final Runnable task ) {
+    pool.execute( new TimedTask( task, null ) );
+  }
+
+  /**
+   * Runs the task on a worker, like {@link #execute(Runnable)}, but runs {@code onDrop} on the submitting thread if the
+   * task is dropped instead, so that whatever the task would have cleaned up is cleaned up anyway.
+   *
+   * @param task   the task
+   * @param onDrop what to do if the task is dropped
+   */
+  public void execute( final Runnable task, final Runnable onDrop ) {
+    pool.execute( new TimedTask( task, onDrop ) );
+  }
+
+  private RejectedExecutionHandler getRejectedExecutionHandler( final String backpressure ) {
+    switch ( backpressure ) {
+      case BACKPRESSURE_DROP:
+        return ( task, executor ) -> drop( task );
+      case BACKPRESSURE_SYNC:
+        return ( task, executor ) -> {
+          if ( executor.isShutdown() ) {
+            drop( task );
+          } else {
+            task.run();
+          }
+        };
+      case BACKPRESSURE_BLOCK:
+        return ( task, executor ) -> {
+          try {
+            if ( executor.isShutdown() ) {
+              drop( task );
+            } else {
+              executor.getQueue().put( task );
+            }
+          } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            drop( task );
+          }
+        };
+      default:
+        throw new IllegalArgumentException( "Unknown lineage executor backpressure policy: " + backpressure );
+    }
+  }
+
+  private void drop( final Runnable task ) {
+    droppedTasks.increment();
+    final Runnable dropped = task instanceof TimedTask ? ( (TimedTask) task ).task : task;
+    log.warn( "Lineage executor {} is saturated, dropping task {}", name, dropped );
+    final Runnable onDrop = task instanceof TimedTask ? ( (TimedTask) task ).onDrop : null;
+    if ( onDrop != null ) {
+      try {
+        onDrop.run();
+      } catch ( RuntimeException e ) {
+        log.warn( "Lineage executor {} could not clean up after dropped task {}", name, dropped, e );
+      }
+    }
+    if ( dropped instanceof Future ) {
+      // complete the future, so that whoever waits on it (e.g. a completion service) is not stuck
+      ( (Future) dropped ).cancel( false );
+    }
+  }
+
+  private void recordLatency( final long nanos ) {
+    finishedTasks.increment();
+    totalLatency.add( nanos );
+    maxLatency.accumulateAndGet( nanos, Math::max );
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getBackpressure() {
+    return backpressure;
+  }
+
+  /**
+   * @return the number of tasks waiting for a worker
+   */
+  public int getQueueDepth() {
+    return pool.getQueue().size();
+  }
+
+  /**
+   * @return the number of workers running a task
+   */
+  public int getActiveWorkers() {
+    return pool.getActiveCount();
+  }
+
+  /**
+   * @return the number of tasks that have finished, successfully or not
+   */
+  public long getFinishedTaskCount() {
+    return finishedTasks.sum();
+  }
+
+  /**
+   * @return the number of tasks skipped because the queue was full or the executor was shut down
+   */
+  public long getDroppedTaskCount() {
+    return droppedTasks.sum();
+  }
+
+  /**
+   * @return the average time, in milliseconds, from the submission of a task until it finished
+   */
+  public double getAverageTaskLatency() {
+    final long finished = finishedTasks.sum();
+    return finished == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros( totalLatency.sum() / finished ) / 1000d;
+  }
+
+  /**
+   * @return the longest time, in milliseconds, from the submission of a task until it finished
+   */
+  public double getMaxTaskLatency() {
+    return TimeUnit.NANOSECONDS.toMicros( maxLatency.get() ) / 1000d;
+  }
+
+  /**
+   * @return the current metrics of this executor, keyed by name
+   */
+  public Map<String, Object> getMetrics() {
+    final Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put( "name", name );
+    metrics.put( "poolSize", pool.getMaximumPoolSize() );
+    metrics.put( "backpressure", backpressure );
+    metrics.put( "queueDepth", getQueueDepth() );
+    metrics.put( "queueCapacity", getQueueDepth() + pool.getQueue().remainingCapacity() );
+    metrics.put( "activeWorkers", getActiveWorkers() );
+    metrics.put( "finishedTasks", getFinishedTaskCount() );
+    metrics.put( "droppedTasks", getDroppedTaskCount() );
+    metrics.put( "averageTaskLatencyMillis", getAverageTaskLatency() );
+    metrics.put( "maxTaskLatencyMillis", getMaxTaskLatency() );
+    return metrics;
+  }
+
+  /**
+   * Stops accepting tasks and waits for the queued ones to finish
+   *
+   * @param timeout the maximum time to wait
+   * @param unit    the unit of the timeout
+   * @return true if all tasks finished, false if the timeout elapsed first
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean shutdown( final long timeout, final TimeUnit unit ) throws InterruptedException {
+    pool.shutdown();
+    return pool.awaitTermination( timeout, unit );
+  }
+
+  /**
+   * Records the time from submission until the wrapped task has run
+   */
+  private class TimedTask implements Runnable {
+    private final Runnable task;
+    private final Runnable onDrop;
+    private final long submitted = System.nanoTime();
+
+    private TimedTask( final Runnable task, final Runnable onDrop ) {
+      this.task = task;
+      this.onDrop = onDrop;
+    }
+
+    @Override
+    public void run() {
+      try {
+        task.run();
+      } finally {
+        recordLatency( System.nanoTime() - submitted );
+      }
+    }
+  }
+
+  private static class NamedThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    private NamedThreadFactory( final String name ) {
+      this.prefix = name + "-";
+    }
+
+    @Override
+    public Thread newThread( final Runnable runnable ) {
+      return new Thread( runnable, prefix + count.incrementAndGet() );
+    }
+  }
+}
@@ -17,20 +17,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 public class MetaverseCompletionService implements CompletionService<String> {
 
-  private ExecutorCompletionService<String> executionCompletionService;
-  private Executor executor = Executors.newCachedThreadPool();
+  private final LineageExecutor executor;
+  private final BlockingQueue<Future<String>> completed = new LinkedBlockingQueue<>();
   private static final Logger log = LoggerFactory.getLogger( MetaverseCompletionService.class );
   private Queue<Future<String>> queue = new ConcurrentLinkedQueue<Future<String>>();
 
@@ -44,46 +44,60 @@ public class MetaverseCompletionService implements CompletionService<String> {
   }
 
   private MetaverseCompletionService() {
-    executionCompletionService = new ExecutorCompletionService<String>( executor );
+    this( LineageExecutor.create( "lineage-analysis" ) );
+  }
+
+  MetaverseCompletionService( final LineageExecutor executor ) {
+    this.executor = executor;
   }
 
   @Override
   public Future<String> submit( Callable<String> task ) {
     log.debug( "Submitting Callable task --> " + task.toString() );
-    Future<String> f = executionCompletionService.submit( task );
-    queue.add( f );
-    return f;
+    return execute( new QueueingTask( task ) );
   }
 
   @Override
   public Future<String> submit( Runnable task, String result ) {
     log.debug( "Submitting Runnable task --> " + result );
-    Future<String> f = executionCompletionService.submit( task, result );
-    queue.add( f );
-    return f;
+    return execute( new QueueingTask( task, result ) );
+  }
+
+  private Future<String> execute( final QueueingTask task ) {
+    // queued first, since the executor may run the task, or drop it, before returning
+    queue.add( task );
+    executor.execute( task );
+    return task;
   }
 
   @Override
   public Future<String> take() throws InterruptedException {
-    Future<String> result = executionCompletionService.take();
+    Future<String> result = completed.take();
     queue.remove( result );
     return result;
   }
 
   @Override
   public Future<String> poll() {
-    Future<String> result = executionCompletionService.poll();
+    Future<String> result = completed.poll();
     queue.remove( result );
     return result;
   }
 
   @Override
   public Future<String> poll( long timeout, TimeUnit unit ) throws InterruptedException {
-    Future<String> result = executionCompletionService.poll( timeout, unit );
+    Future<String> result = completed.poll( timeout, unit );
     queue.remove( result );
     return result;
   }
 
+  /**
+   * @return the executor running the submitted tasks
+   */
+  public LineageExecutor getExecutor() {
+    return executor;
+  }
+
   public void waitTillEmpty() throws InterruptedException, ExecutionException {
     Future<String> result;
     while ( queue.size() > 0 ) {
@@ -99,4 +113,23 @@ public class MetaverseCompletionService implements CompletionService<String> {
     }
   }
 
+  /**
+   * A task that is handed out by take and poll once it is done. A task dropped by the executor is cancelled, so it is
+   * done too, and nobody waiting on it is stuck.
+   */
+  private class QueueingTask extends FutureTask<String> {
+    private QueueingTask( final Callable<String> task ) {
+      super( task );
+    }
+
+    private QueueingTask( final Runnable task, final String result ) {
+      super( task, result );
+    }
+
+    @Override
+    protected void done() {
+      completed.add( this );
+    }
+  }
+
 }
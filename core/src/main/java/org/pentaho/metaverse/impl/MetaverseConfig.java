@@ -14,13 +14,29 @@
 package org.pentaho.metaverse.impl;
 
 import org.pentaho.metaverse.api.IMetaverseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.zip.Deflater;
 
 /**
  * A single point of access for all metaverse osgi configuration properties.
  */
 public class MetaverseConfig implements IMetaverseConfig {
 
+  private static final Logger log = LoggerFactory.getLogger( MetaverseConfig.class );
+
   private static final String EXECUTION_RUNTIME_OFF = "off";
+
+  /**
+   * Web service resources captured from rows keep every header and parameter value
+   */
+  public static final String WEBSERVICE_RESOURCE_CAPTURE_FULL = "full";
+
+  /**
+   * Web service resources captured from rows keep only the URL and the header and parameter names
+   */
+  public static final String WEBSERVICE_RESOURCE_CAPTURE_NORMALIZED = "normalized";
   private String executionRuntime = EXECUTION_RUNTIME_OFF;
   private String executionOutputFolder = "./pentaho-lineage-output";
   private String executionGenerationStrategy = "latest";
@@ -30,6 +46,25 @@ public class MetaverseConfig implements IMetaverseConfig {
   private boolean adjustExternalResourceFields = true;
   private boolean generateSubGraphs = true;
   private boolean consolidateSubGraphs = true;
+  private String webServiceResourceCapture = WEBSERVICE_RESOURCE_CAPTURE_FULL;
+  private int webServiceResourceLimit = 0;
+  private int executorPoolSize = 4;
+  private int executorQueueDepth = 1000;
+  private String executorBackpressure = LineageExecutor.BACKPRESSURE_BLOCK;
+  private int designGraphCacheSize = 0;
+  private String designGraphCacheExpireTime = "3600";
+  private int analysisParallelism = 1;
+  private String executionOutputCompression = VfsLineageWriter.COMPRESSION_NONE;
+  private int downloadCompressionLevel = Deflater.DEFAULT_COMPRESSION;
+  private int catalogPublishQueueSize = 0;
+  private int catalogPublishBatchSize = 1;
+  private int catalogPublishMaxRetries = 3;
+  private String catalogSpillFolder = "";
+  private int searchMaxDepth = 100;
+  private int searchMaxResults = 10000;
+  private int searchTimeout = 60;
+  private boolean shareOutputFieldNodes = false;
+  private boolean hashLogicalIds = false;
 
   private static MetaverseConfig instance;
 
@@ -54,6 +89,41 @@ public class MetaverseConfig implements IMetaverseConfig {
     adjustExternalResourceFields = "true".equalsIgnoreCase( System.getProperty( KETTLE_LINEAGE_ADJUST_EXTERNAL_RESOURCE_FIELDS, Boolean.toString( adjustExternalResourceFields ) ) );
     generateSubGraphs = "true".equalsIgnoreCase( System.getProperty( KETTLE_LINEAGE_GENERATE_SUBGRAPHS, Boolean.toString( generateSubGraphs ) ) );
     consolidateSubGraphs = "true".equalsIgnoreCase( System.getProperty( KETTLE_LINEAGE_CONSOLIDATE_SUBGRAPHS, Boolean.toString( consolidateSubGraphs ) ) );
+    webServiceResourceCapture = System.getProperty( KETTLE_LINEAGE_WEBSERVICE_RESOURCE_CAPTURE, webServiceResourceCapture );
+    webServiceResourceLimit = getIntProperty( KETTLE_LINEAGE_WEBSERVICE_RESOURCE_LIMIT, webServiceResourceLimit );
+    executorPoolSize = getIntProperty( KETTLE_LINEAGE_EXECUTOR_POOL_SIZE, executorPoolSize );
+    executorQueueDepth = getIntProperty( KETTLE_LINEAGE_EXECUTOR_QUEUE_DEPTH, executorQueueDepth );
+    executorBackpressure = System.getProperty( KETTLE_LINEAGE_EXECUTOR_BACKPRESSURE, executorBackpressure );
+    designGraphCacheSize = getIntProperty( KETTLE_LINEAGE_DESIGN_GRAPH_CACHE_SIZE, designGraphCacheSize );
+    designGraphCacheExpireTime = System.getProperty( KETTLE_LINEAGE_DESIGN_GRAPH_CACHE_EXPIRE_TIME, designGraphCacheExpireTime );
+    analysisParallelism = getIntProperty( KETTLE_LINEAGE_ANALYSIS_PARALLELISM, analysisParallelism );
+    executionOutputCompression = System.getProperty( KETTLE_LINEAGE_EXECUTION_OUTPUT_COMPRESSION, executionOutputCompression );
+    downloadCompressionLevel = getIntProperty( KETTLE_LINEAGE_DOWNLOAD_COMPRESSION_LEVEL, downloadCompressionLevel );
+    catalogPublishQueueSize = getIntProperty( KETTLE_LINEAGE_CATALOG_PUBLISH_QUEUE_SIZE, catalogPublishQueueSize );
+    catalogPublishBatchSize = getIntProperty( KETTLE_LINEAGE_CATALOG_PUBLISH_BATCH_SIZE, catalogPublishBatchSize );
+    catalogPublishMaxRetries = getIntProperty( KETTLE_LINEAGE_CATALOG_PUBLISH_MAX_RETRIES, catalogPublishMaxRetries );
+    catalogSpillFolder = System.getProperty( KETTLE_LINEAGE_CATALOG_SPILL_FOLDER, catalogSpillFolder );
+    searchMaxDepth = getIntProperty( KETTLE_LINEAGE_SEARCH_MAX_DEPTH, searchMaxDepth );
+    searchMaxResults = getIntProperty( KETTLE_LINEAGE_SEARCH_MAX_RESULTS, searchMaxResults );
+    searchTimeout = getIntProperty( KETTLE_LINEAGE_SEARCH_TIMEOUT, searchTimeout );
+    shareOutputFieldNodes = "true".equalsIgnoreCase( System.getProperty( KETTLE_LINEAGE_SHARE_OUTPUT_FIELD_NODES, Boolean.toString( shareOutputFieldNodes ) ) );
+    hashLogicalIds = "true".equalsIgnoreCase( System.getProperty( KETTLE_LINEAGE_HASH_LOGICAL_IDS, Boolean.toString( hashLogicalIds ) ) );
+  }
+
+  /**
+   * Reads an integer system property, falling back to the default if the property is not a number
+   */
+  private static int getIntProperty( final String name, final int defaultValue ) {
+    final String value = System.getProperty( name );
+    if ( value == null ) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt( value.trim() );
+    } catch ( NumberFormatException e ) {
+      log.warn( "Ignoring system property {}: \"{}\" is not a number, using {}", name, value, defaultValue );
+      return defaultValue;
+    }
   }
 
   public void setExecutionRuntime( final String executionRuntime ) {
@@ -156,6 +226,174 @@ public class MetaverseConfig implements IMetaverseConfig {
     return config != null && config.getConsolidateSubGraphs();
   }
 
+  public void setWebServiceResourceCapture( final String webServiceResourceCapture ) {
+    this.webServiceResourceCapture = webServiceResourceCapture;
+  }
+
+  public String getWebServiceResourceCapture() {
+    return this.webServiceResourceCapture;
+  }
+
+  public static boolean normalizeWebServiceResources() {
+    final MetaverseConfig config = getInstance();
+    return config != null
+      && WEBSERVICE_RESOURCE_CAPTURE_NORMALIZED.equalsIgnoreCase( config.getWebServiceResourceCapture() );
+  }
+
+  public void setWebServiceResourceLimit( final int webServiceResourceLimit ) {
+    this.webServiceResourceLimit = webServiceResourceLimit;
+  }
+
+  public int getWebServiceResourceLimit() {
+    return this.webServiceResourceLimit;
+  }
+
+  public static int webServiceResourceLimit() {
+    final MetaverseConfig config = getInstance();
+    return config == null ? 0 : Math.max( 0, config.getWebServiceResourceLimit() );
+  }
+
+  public void setExecutorPoolSize( final int executorPoolSize ) {
+    this.executorPoolSize = executorPoolSize;
+  }
+
+  public int getExecutorPoolSize() {
+    return this.executorPoolSize;
+  }
+
+  public void setExecutorQueueDepth( final int executorQueueDepth ) {
+    this.executorQueueDepth = executorQueueDepth;
+  }
+
+  public int getExecutorQueueDepth() {
+    return this.executorQueueDepth;
+  }
+
+  public void setExecutorBackpressure( final String executorBackpressure ) {
+    this.executorBackpressure = executorBackpressure;
+  }
+
+  public String getExecutorBackpressure() {
+    return this.executorBackpressure;
+  }
+
+  public void setDesignGraphCacheSize( final int designGraphCacheSize ) {
+    this.designGraphCacheSize = designGraphCacheSize;
+  }
+
+  public int getDesignGraphCacheSize() {
+    return this.designGraphCacheSize;
+  }
+
+  public void setDesignGraphCacheExpireTime( final String designGraphCacheExpireTime ) {
+    this.designGraphCacheExpireTime = designGraphCacheExpireTime;
+  }
+
+  public String getDesignGraphCacheExpireTime() {
+    return this.designGraphCacheExpireTime;
+  }
+
+  public void setAnalysisParallelism( final int analysisParallelism ) {
+    this.analysisParallelism = analysisParallelism;
+  }
+
+  public int getAnalysisParallelism() {
+    return this.analysisParallelism;
+  }
+
+  public static int analysisParallelism() {
+    final MetaverseConfig config = getInstance();
+    return config == null ? 1 : Math.max( 1, config.getAnalysisParallelism() );
+  }
+
+  public void setExecutionOutputCompression( final String executionOutputCompression ) {
+    this.executionOutputCompression = executionOutputCompression;
+  }
+
+  public String getExecutionOutputCompression() {
+    return this.executionOutputCompression;
+  }
+
+  public void setDownloadCompressionLevel( final int downloadCompressionLevel ) {
+    this.downloadCompressionLevel = downloadCompressionLevel;
+  }
+
+  public int getDownloadCompressionLevel() {
+    return this.downloadCompressionLevel;
+  }
+
+  public void setCatalogPublishQueueSize( final int catalogPublishQueueSize ) {
+    this.catalogPublishQueueSize = catalogPublishQueueSize;
+  }
+
+  public int getCatalogPublishQueueSize() {
+    return this.catalogPublishQueueSize;
+  }
+
+  public void setCatalogPublishBatchSize( final int catalogPublishBatchSize ) {
+    this.catalogPublishBatchSize = catalogPublishBatchSize;
+  }
+
+  public int getCatalogPublishBatchSize() {
+    return this.catalogPublishBatchSize;
+  }
+
+  public void setCatalogPublishMaxRetries( final int catalogPublishMaxRetries ) {
+    this.catalogPublishMaxRetries = catalogPublishMaxRetries;
+  }
+
+  public int getCatalogPublishMaxRetries() {
+    return this.catalogPublishMaxRetries;
+  }
+
+  public void setCatalogSpillFolder( final String catalogSpillFolder ) {
+    this.catalogSpillFolder = catalogSpillFolder;
+  }
+
+  public String getCatalogSpillFolder() {
+    return this.catalogSpillFolder;
+  }
+
+  public void setSearchMaxDepth( final int searchMaxDepth ) {
+    this.searchMaxDepth = searchMaxDepth;
+  }
+
+  public int getSearchMaxDepth() {
+    return this.searchMaxDepth;
+  }
+
+  public void setSearchMaxResults( final int searchMaxResults ) {
+    this.searchMaxResults = searchMaxResults;
+  }
+
+  public int getSearchMaxResults() {
+    return this.searchMaxResults;
+  }
+
+  public void setSearchTimeout( final int searchTimeout ) {
+    this.searchTimeout = searchTimeout;
+  }
+
+  public int getSearchTimeout() {
+    return this.searchTimeout;
+  }
+
+  public void setShareOutputFieldNodes( final boolean shareOutputFieldNodes ) {
+    this.shareOutputFieldNodes = shareOutputFieldNodes;
+  }
+
+  public boolean getShareOutputFieldNodes() {
+    return this.shareOutputFieldNodes;
+  }
+
+  public void setHashLogicalIds( final boolean hashLogicalIds ) {
+    this.hashLogicalIds = hashLogicalIds;
+  }
+
+  public boolean getHashLogicalIds() {
+    return this.hashLogicalIds;
+  }
+
   public static boolean isLineageExecutionEnabled() {
     final MetaverseConfig instance = getInstance();
     return instance != null && !EXECUTION_RUNTIME_OFF.equalsIgnoreCase( instance.getExecutionRuntime() );
@@ -21,6 +21,7 @@ import org.pentaho.dictionary.DictionaryConst;
 import org.pentaho.dictionary.DictionaryHelper;
 import org.pentaho.metaverse.api.ILogicalIdGenerator;
 import org.pentaho.metaverse.api.IMetaverseNode;
+import org.pentaho.metaverse.api.LogicalIdCache;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -39,7 +40,7 @@ public class MetaverseNode implements IMetaverseNode {
    */
   protected Vertex v;
 
-  private String logicalId;
+  private final LogicalIdCache logicalIdCache = new LogicalIdCache();
   protected ILogicalIdGenerator logicalIdGenerator = DictionaryConst.LOGICAL_ID_GENERATOR_DEFAULT;
   private boolean dirty = false;
 
@@ -285,17 +286,16 @@ public class MetaverseNode implements IMetaverseNode {
   public String getLogicalId() {
     if ( logicalIdGenerator == null ) {
       return getStringID();
-    } else if ( logicalId == null || isDirty() ) {
-      logicalId = logicalIdGenerator.generateId( this );
     }
 
+    String logicalId = logicalIdCache.getLogicalId( logicalIdGenerator, this );
     return logicalId == null ? getStringID() : logicalId;
   }
 
   @Override
   public void setLogicalIdGenerator( ILogicalIdGenerator idGenerator ) {
     // clear out the logicalId so it will be re-generated on the next call to getLogicalId
-    logicalId = null;
+    logicalIdCache.clear();
     logicalIdGenerator = idGenerator;
   }
 
@@ -15,8 +15,10 @@ package org.pentaho.metaverse.impl;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.vfs2.FileDepthSelector;
+import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSelector;
+import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileSystemOptions;
 import org.apache.commons.vfs2.FileType;
 import org.pentaho.di.core.exception.KettleFileException;
@@ -31,9 +33,17 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -41,13 +51,18 @@ public class VfsLineageCollector implements ILineageCollector {
 
   public static final String DEFAULT_OUTPUT_FOLDER = "tmp://dir";
 
+  private static final String LOCAL_FILE_SCHEME = "file";
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
   private String outputFolder = DEFAULT_OUTPUT_FOLDER;
+  private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
   private static final Logger log = LoggerFactory.getLogger( VfsLineageCollector.class );
   protected SimpleDateFormat format = new SimpleDateFormat( "yyyyMMdd" );
 
   public VfsLineageCollector() {
     format.setLenient( false );
     this.setOutputFolder( MetaverseConfig.getInstance().getExecutionOutputFolder() );
+    this.setCompressionLevel( MetaverseConfig.getInstance().getDownloadCompressionLevel() );
   }
 
   /**
@@ -99,28 +114,17 @@ public class VfsLineageCollector implements ILineageCollector {
     return listArtifacts( startingDate, null );
   }
 
+  /**
+   * Lists the artifacts of the date folders within the given range. Date folders that have an artifact index are
+   * listed from the index rather than walked.
+   */
   @Override
   public List<String> listArtifacts( final String startingDate, final String endingDate )
     throws IllegalArgumentException {
     List<String> paths = new ArrayList<>();
     try {
-      FileSystemOptions opts = new FileSystemOptions();
-      FileObject lineageRootFolder = KettleVFS.getFileObject( getOutputFolder(), opts );
-
-      FileSelector dateRangeFilter = new VfsDateRangeFilter( format, startingDate, endingDate );
-      FileSelector depthFilter = new FileDepthSelector( 1, 256 );
-
-      if ( lineageRootFolder.exists() && lineageRootFolder.getType() == FileType.FOLDER ) {
-        // get the folders that come on or after the startingDate
-        FileObject[] dayFolders = lineageRootFolder.findFiles( dateRangeFilter );
-        for ( FileObject dayFolder : dayFolders ) {
-          FileObject[] listThisFolder = dayFolder.findFiles( depthFilter );
-          for ( FileObject currentFile : listThisFolder ) {
-            if ( currentFile.getType() == FileType.FILE ) {
-              paths.add( currentFile.getName().getPath() );
-            }
-          }
-        }
+      for ( FileObject dayFolder : getDayFolders( startingDate, endingDate ) ) {
+        paths.addAll( listDayFolder( dayFolder ) );
       }
       return paths;
     } catch ( Exception e ) {
@@ -138,34 +142,23 @@ public class VfsLineageCollector implements ILineageCollector {
     return listArtifactsForFile( pathToArtifact, startingDate, null );
   }
 
+  /**
+   * Lists the artifacts of the given file, within the date folders of the given range. An artifact belongs to the file
+   * if the folder holding it is the file's folder, which is matched on the trailing part of its path, so that
+   * {@code validation/merge_join.ktr} finds the artifacts of {@code repo/validation/merge_join.ktr}.
+   */
   @Override
   public List<String> listArtifactsForFile( String pathToArtifact, String startingDate, String endingDate )
     throws IllegalArgumentException {
     List<String> paths = new ArrayList<>();
 
     try {
-      FileSystemOptions opts = new FileSystemOptions();
-      FileObject lineageRootFolder = KettleVFS.getFileObject( getOutputFolder(), opts );
-
-      FileSelector dateRangeFilter = new VfsDateRangeFilter( format, startingDate, endingDate );
-      FileSelector depthFilter = new FileDepthSelector( 1, 256 );
-
-      if ( lineageRootFolder.exists() && lineageRootFolder.getType() == FileType.FOLDER ) {
-
-        // get all of the date folders of lineage we have
-        FileObject[] dayFolders = lineageRootFolder.findFiles( dateRangeFilter );
-        for ( FileObject dayFolder : dayFolders ) {
-          FileObject[] listThisFolder = dayFolder.findFiles( depthFilter );
-          for ( FileObject currentFile : listThisFolder ) {
-            FileObject requested = currentFile.resolveFile( pathToArtifact );
-            if ( requested.exists() && requested.getType() == FileType.FOLDER ) {
-              FileObject[] requestedChildren = requested.getChildren();
-              for ( FileObject requestedChild : requestedChildren ) {
-                if ( requestedChild.getType() == FileType.FILE ) {
-                  paths.add( requestedChild.getName().getPath() );
-                }
-              }
-            }
+      final String suffix = FileName.SEPARATOR + trimSeparators( pathToArtifact );
+      for ( FileObject dayFolder : getDayFolders( startingDate, endingDate ) ) {
+        for ( String path : listDayFolder( dayFolder ) ) {
+          final int lastSeparator = path.lastIndexOf( FileName.SEPARATOR_CHAR );
+          if ( lastSeparator > 0 && path.substring( 0, lastSeparator ).endsWith( suffix ) ) {
+            paths.add( path );
           }
         }
       }
@@ -175,6 +168,72 @@ public class VfsLineageCollector implements ILineageCollector {
     }
   }
 
+  /**
+   * Rewrites the artifact index of every date folder from the artifacts the folders hold. This indexes folders written
+   * before the index existed, so that they are no longer walked when listing artifacts.
+   *
+   * @return the number of indexed artifacts
+   * @throws IllegalArgumentException if the output folder cannot be read or an index cannot be written
+   */
+  @Override
+  public int rebuildIndex() throws IllegalArgumentException {
+    int count = 0;
+    try {
+      for ( FileObject dayFolder : getDayFolders( null, null ) ) {
+        count += LineageArtifactIndex.rebuild( dayFolder );
+      }
+      return count;
+    } catch ( Exception e ) {
+      throw new IllegalArgumentException( e );
+    }
+  }
+
+  private FileObject[] getDayFolders( final String startingDate, final String endingDate )
+    throws KettleFileException, FileSystemException {
+    FileSystemOptions opts = new FileSystemOptions();
+    FileObject lineageRootFolder = KettleVFS.getFileObject( getOutputFolder(), opts );
+
+    // parsed up front, so that an invalid date is reported even if there are no artifacts to list
+    FileSelector dateRangeFilter = new VfsDateRangeFilter( format, startingDate, endingDate );
+
+    if ( lineageRootFolder.exists() && lineageRootFolder.getType() == FileType.FOLDER ) {
+      // get the folders that come on or after the startingDate
+      return lineageRootFolder.findFiles( dateRangeFilter );
+    }
+    return new FileObject[ 0 ];
+  }
+
+  private List<String> listDayFolder( final FileObject dayFolder ) throws IOException {
+    List<String> paths = LineageArtifactIndex.readArtifacts( dayFolder );
+    if ( paths != null ) {
+      return paths;
+    }
+    paths = new ArrayList<>();
+    FileObject[] listThisFolder = dayFolder.findFiles( new FileDepthSelector( 1, 256 ) );
+    for ( FileObject currentFile : listThisFolder ) {
+      if ( currentFile.getType() == FileType.FILE && !LineageArtifactIndex.isIndexFile( currentFile ) ) {
+        paths.add( currentFile.getName().getPath() );
+      }
+    }
+    return paths;
+  }
+
+  private static String trimSeparators( final String path ) {
+    String trimmed = path.replace( '\\', FileName.SEPARATOR_CHAR );
+    while ( trimmed.startsWith( FileName.SEPARATOR ) ) {
+      trimmed = trimmed.substring( 1 );
+    }
+    while ( trimmed.endsWith( FileName.SEPARATOR ) ) {
+      trimmed = trimmed.substring( 0, trimmed.length() - 1 );
+    }
+    return trimmed;
+  }
+
+  /**
+   * Writes the given artifacts to a zip stream. Each artifact is streamed into its entry through a single buffer, so
+   * the memory a download takes does not depend on the size of the artifacts. Artifacts on the local file system are
+   * transferred through their file channel.
+   */
   @Override
   public void compressArtifacts( List<String> paths, OutputStream os ) {
     ZipOutputStream zos = null;
@@ -182,17 +241,23 @@ public class VfsLineageCollector implements ILineageCollector {
       FileSystemOptions opts = new FileSystemOptions();
 
       zos = new ZipOutputStream( os );
+      zos.setLevel( compressionLevel );
+      // not closed, as that would close the zip stream
+      final WritableByteChannel zipChannel = Channels.newChannel( zos );
+      final byte[] buffer = new byte[ COPY_BUFFER_SIZE ];
       for ( String path : paths ) {
         FileObject file = KettleVFS.getFileObject( path, opts );
         try {
           // register the file as an entry in the zip file
           ZipEntry zipEntry = new ZipEntry( file.getName().getPath() );
+          if ( isCompressed( file ) ) {
+            // compressed lineage files are stored as is rather than deflated a second time
+            storeEntry( zipEntry, file, buffer );
+          }
           zos.putNextEntry( zipEntry );
 
           // write the file's bytes to the zip stream
-          try ( InputStream fis = file.getContent().getInputStream() ) {
-            zos.write( IOUtils.toByteArray( fis ) );
-          }
+          copyContent( file, zos, zipChannel, buffer );
         } catch ( IOException e ) {
           log.error( Messages.getString( "ERROR.FailedAddingFileToZip", file.getName().getPath() ) );
         } finally {
@@ -210,4 +275,84 @@ public class VfsLineageCollector implements ILineageCollector {
       IOUtils.closeQuietly( zos );
     }
   }
+
+  private void copyContent( final FileObject file, final OutputStream zos, final WritableByteChannel zipChannel,
+                            final byte[] buffer ) throws IOException {
+    final Path localPath = getLocalPath( file );
+    if ( localPath != null ) {
+      try ( FileChannel channel = FileChannel.open( localPath, StandardOpenOption.READ ) ) {
+        final long size = channel.size();
+        long position = 0;
+        while ( position < size ) {
+          position += channel.transferTo( position, size - position, zipChannel );
+        }
+      }
+    } else {
+      try ( InputStream fis = file.getContent().getInputStream() ) {
+        IOUtils.copyLarge( fis, zos, buffer );
+      }
+    }
+  }
+
+  /**
+   * @return the path of the file if it is on the local file system, null otherwise
+   */
+  protected Path getLocalPath( final FileObject file ) {
+    if ( !LOCAL_FILE_SCHEME.equals( file.getName().getScheme() ) ) {
+      return null;
+    }
+    try {
+      return Paths.get( file.getURL().toURI() );
+    } catch ( Exception e ) {
+      // not resolvable to a local path, the file is read through VFS instead
+      return null;
+    }
+  }
+
+  /**
+   * Gets the deflate level of the zip streams written by {@link #compressArtifacts(List, OutputStream)}
+   *
+   * @return the compression level
+   */
+  public int getCompressionLevel() {
+    return compressionLevel;
+  }
+
+  /**
+   * Sets the deflate level of the zip streams written by {@link #compressArtifacts(List, OutputStream)}, from 0 (no
+   * compression) to 9 (best compression). Any other value selects the default level.
+   *
+   * @param compressionLevel the compression level
+   */
+  public void setCompressionLevel( int compressionLevel ) {
+    this.compressionLevel = compressionLevel >= Deflater.NO_COMPRESSION && compressionLevel <= Deflater.BEST_COMPRESSION
+      ? compressionLevel : Deflater.DEFAULT_COMPRESSION;
+  }
+
+  /**
+   * @return true if the file is a lineage artifact written compressed
+   */
+  protected boolean isCompressed( final FileObject file ) {
+    return file.getName().getBaseName().endsWith( VfsLineageWriter.GZIP_EXTENSION );
+  }
+
+  /**
+   * Sets up the entry to store the file uncompressed. A stored entry needs its size and checksum up front, which are
+   * computed by reading through the file once.
+   */
+  private void storeEntry( final ZipEntry zipEntry, final FileObject file, final byte[] buffer ) throws IOException {
+    final CRC32 crc = new CRC32();
+    long size = 0;
+    try ( InputStream fis = file.getContent().getInputStream() ) {
+      int read;
+      while ( ( read = fis.read( buffer ) ) != -1 ) {
+        crc.update( buffer, 0, read );
+        size += read;
+      }
+    }
+    zipEntry.setMethod( ZipEntry.STORED );
+    zipEntry.setSize( size );
+    zipEntry.setCompressedSize( size );
+    zipEntry.setCrc( crc.getValue() );
+  }
 }
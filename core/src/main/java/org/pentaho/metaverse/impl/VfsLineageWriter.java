@@ -19,6 +19,7 @@ import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.vfs2.FileContent;
 import org.apache.commons.vfs2.FileObject;
@@ -49,6 +50,20 @@ public class VfsLineageWriter implements ILineageWriter {
 
   public static final String DEFAULT_OUTPUT_FOLDER = "tmp://dir";
 
+  /**
+   * Lineage output files are written as is
+   */
+  public static final String COMPRESSION_NONE = "none";
+
+  /**
+   * Lineage output files are gzip compressed, and get the {@link #GZIP_EXTENSION} appended to their names
+   */
+  public static final String COMPRESSION_GZIP = "gzip";
+
+  public static final String GZIP_EXTENSION = ".gz";
+
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
   private static final Logger log = LoggerFactory.getLogger( VfsLineageWriter.class );
   private static final String UNKNOWN_ARTIFACT = "unknown_artifact";
   private static final int MAX_NAME_LEN = 150;  // should be a safe, conservative number
@@ -59,6 +74,7 @@ public class VfsLineageWriter implements ILineageWriter {
   //TODO: try to get these properties from kettle first, fallback to defaults
   private String outputFolder = DEFAULT_OUTPUT_FOLDER;
   private String outputStrategy = DEFAULT_OUTPUT_STRATEGY;
+  private String outputCompression = COMPRESSION_NONE;
 
   protected static SimpleDateFormat dateFolderFormat = new SimpleDateFormat( "YYYYMMdd" );
 
@@ -76,6 +92,7 @@ public class VfsLineageWriter implements ILineageWriter {
 
   public VfsLineageWriter() {
     this.setOutputStrategy( MetaverseConfig.getInstance().getExecutionGenerationStrategy() );
+    this.setOutputCompression( MetaverseConfig.getInstance().getExecutionOutputCompression() );
   }
 
   @Override
@@ -188,9 +205,17 @@ public class VfsLineageWriter implements ILineageWriter {
         String timestampString = Long.toString( profile.getExecutionData().getStartTime().getTime() );
         FileObject destFolder = getOutputDirectoryAsFile( holder );
         String name = cleanseName( Const.NVL( profile.getName(), "unknown" ) );
+        if ( isGzipCompressed() ) {
+          FileObject file = destFolder.resolveFile( timestampString + "_" + name + extension + GZIP_EXTENSION );
+          OutputStream os = new GZIPOutputStream( file.getContent().getOutputStream(), GZIP_BUFFER_SIZE );
+          indexArtifact( holder, file );
+          return os;
+        }
         FileObject file = destFolder.resolveFile( timestampString + "_" + name + extension );
         FileContent content = file.getContent();
-        return content.getOutputStream();
+        OutputStream os = content.getOutputStream();
+        indexArtifact( holder, file );
+        return os;
       } catch ( Exception e ) {
         log.error( Messages.getErrorString( "ERROR.CantCreateOutputStream" ), e );
         return null;
@@ -200,6 +225,31 @@ public class VfsLineageWriter implements ILineageWriter {
     }
   }
 
+  /**
+   * Records the artifact in the index of its date folder. The artifact is written even if the index cannot be updated,
+   * in which case the index is dropped, so that the folder is walked and the artifact listed until it is indexed again.
+   */
+  protected void indexArtifact( LineageHolder holder, FileObject artifact ) {
+    FileObject dateFolder = null;
+    try {
+      IExecutionProfile profile = holder.getExecutionProfile();
+      String executionId = profile.getExecutionData() == null ? null
+        : profile.getExecutionData().getLoggingChannelId();
+      dateFolder = getDateFolder( holder );
+      LineageArtifactIndex.recordArtifact( dateFolder, artifact, executionId );
+    } catch ( Exception e ) {
+      log.warn( Messages.getString( "WARN.CouldNotUpdateArtifactIndex", artifact.getName().getPath() ), e );
+      if ( dateFolder != null ) {
+        try {
+          LineageArtifactIndex.invalidate( dateFolder );
+        } catch ( Exception invalidateException ) {
+          log.warn( Messages.getString( "WARN.CouldNotUpdateArtifactIndex", artifact.getName().getPath() ),
+            invalidateException );
+        }
+      }
+    }
+  }
+
   protected FileObject getOutputDirectoryAsFile( LineageHolder holder ) {
     try {
       FileObject dateRootFolder = getDateFolder( holder );
@@ -277,6 +327,35 @@ public class VfsLineageWriter implements ILineageWriter {
     return createOutputStream( holder, ext );
   }
 
+  /**
+   * Returns the compression (none, gzip) of the lineage output files
+   *
+   * @return The String name of the output compression
+   */
+  public String getOutputCompression() {
+    return outputCompression;
+  }
+
+  /**
+   * Sets the compression (none, gzip) of the lineage output files. Unknown compressions are ignored, leaving the files
+   * uncompressed.
+   *
+   * @param outputCompression The String name of the output compression
+   */
+  public void setOutputCompression( String outputCompression ) {
+    if ( outputCompression == null || COMPRESSION_NONE.equalsIgnoreCase( outputCompression )
+      || COMPRESSION_GZIP.equalsIgnoreCase( outputCompression ) ) {
+      this.outputCompression = outputCompression == null ? COMPRESSION_NONE : outputCompression.toLowerCase();
+    } else {
+      log.warn( Messages.getString( "WARN.UnsupportedOutputCompression", outputCompression ) );
+      this.outputCompression = COMPRESSION_NONE;
+    }
+  }
+
+  protected boolean isGzipCompressed() {
+    return COMPRESSION_GZIP.equals( outputCompression );
+  }
+
   /**
    * Returns the output strategy (all, latest, none, etc.) as a string
    *
@@ -307,7 +386,8 @@ public class VfsLineageWriter implements ILineageWriter {
       FileObject folder = getOutputDirectoryAsFile( holder );
       folderName = folder.getName().getPath();
       folder.deleteAll();
-    } catch ( IOException ioe ) {
+      LineageArtifactIndex.recordRemoval( getDateFolder( holder ), folder );
+    } catch ( IOException | KettleFileException ioe ) {
       log.error( Messages.getErrorString( "ERROR.CouldNotDeleteFile", folderName ), ioe );
     }
   }
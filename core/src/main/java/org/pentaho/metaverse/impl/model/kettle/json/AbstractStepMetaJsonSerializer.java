@@ -30,6 +30,7 @@ import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.metaverse.analyzer.kettle.step.GenericStepMetaAnalyzer;
 import org.pentaho.metaverse.api.MetaverseAnalyzerException;
 import org.pentaho.metaverse.api.analyzer.kettle.ComponentDerivationRecord;
+import org.pentaho.metaverse.api.analyzer.kettle.StepFieldsCache;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IFieldLineageMetadataProvider;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IStepAnalyzer;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IStepAnalyzerProvider;
@@ -226,7 +227,7 @@ public abstract class AbstractStepMetaJsonSerializer<T extends BaseStepMeta>
     TransMeta parentTransMeta = parentStepMeta.getParentTransMeta();
     if ( parentTransMeta != null ) {
       try {
-        RowMetaInterface stepFields = parentTransMeta.getStepFields( parentStepMeta );
+        RowMetaInterface stepFields = StepFieldsCache.getStepFields( parentTransMeta, parentStepMeta );
         writeFields( json, stepFields, JSON_PROPERTY_OUTPUT_FIELDS );
       } catch ( KettleStepException e ) {
         LOGGER.warn( Messages.getString( "WARNING.Serialization.Step.OutputFields",
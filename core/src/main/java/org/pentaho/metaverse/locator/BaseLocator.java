@@ -15,6 +15,8 @@ package org.pentaho.metaverse.locator;
 
 import org.pentaho.dictionary.DictionaryConst;
 import org.pentaho.dictionary.DictionaryHelper;
+import org.pentaho.metaverse.api.IDocumentAnalyzer;
+import org.pentaho.metaverse.api.IDocumentAnalyzerProvider;
 import org.pentaho.metaverse.api.IDocumentEvent;
 import org.pentaho.metaverse.api.IDocumentListener;
 import org.pentaho.metaverse.api.IDocumentLocator;
@@ -29,6 +31,8 @@ import org.pentaho.platform.api.engine.IPentahoSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Date;
@@ -95,6 +99,10 @@ public abstract class BaseLocator<T> implements IDocumentLocator {
    */
   protected List<IDocumentListener> listeners = new ArrayList<IDocumentListener>();
 
+  private String manifestFile;
+
+  private transient ScanManifest manifest;
+
   /**
    * Constructor for the abstract super class
    */
@@ -137,6 +145,60 @@ public abstract class BaseLocator<T> implements IDocumentLocator {
     listeners.remove( listener );
   }
 
+  /**
+   * @param type the type of a document, i.e. its extension
+   * @return true if the listeners may analyze documents of that type
+   */
+  protected boolean hasAnalyzers( String type ) {
+    for ( IDocumentListener listener : listeners ) {
+      if ( !( listener instanceof IDocumentAnalyzerProvider ) ) {
+        return true;
+      }
+      List<IDocumentAnalyzer> analyzers = ( (IDocumentAnalyzerProvider) listener ).getDocumentAnalyzers( type );
+      if ( analyzers != null && !analyzers.isEmpty() ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public String getManifestFile() {
+    return manifestFile;
+  }
+
+  /**
+   * Makes the scans incremental: the documents found by a scan are recorded in the given manifest file, and the next
+   * scan, in this or a later session, only analyzes the documents that changed since.
+   *
+   * @param manifestFile the manifest file, null for full scans
+   */
+  public void setManifestFile( String manifestFile ) {
+    this.manifestFile = manifestFile;
+    this.manifest = null;
+  }
+
+  /**
+   * @return true if the scans are incremental
+   */
+  protected boolean isIncremental() {
+    return manifestFile != null;
+  }
+
+  /**
+   * @return the manifest of the incremental scans, null for full scans
+   */
+  protected ScanManifest getManifest() {
+    if ( manifest == null && isIncremental() ) {
+      manifest = new ScanManifest( manifestFile == null ? null : new File( manifestFile ) );
+      try {
+        manifest.load();
+      } catch ( IOException e ) {
+        LOG.warn( "Could not read the scan manifest " + manifestFile + ", all documents will be analyzed", e );
+      }
+    }
+    return manifest;
+  }
+
   public String getRepositoryId() {
     return id;
   }
@@ -0,0 +1,159 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.locator;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.api.IMetaverseBuilder;
+import org.pentaho.metaverse.api.model.BaseSynchronizedGraph;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Finds what the analysis of a document left in the metaverse: the vertices carrying the document path, and everything
+ * they contain, directly or not. Vertices linked to from there, such as fields or data sources, may be shared with
+ * other documents and are not part of it.
+ */
+class DocumentSubgraphs {
+
+  private final IMetaverseBuilder metaverseBuilder;
+
+  DocumentSubgraphs( IMetaverseBuilder metaverseBuilder ) {
+    this.metaverseBuilder = metaverseBuilder;
+  }
+
+  /**
+   * Identifies the subgraph of a document, so that a document whose subgraph is gone or has been replaced can be told
+   * apart from one that is still in the metaverse as it was analyzed.
+   *
+   * @param path the document path
+   * @return the hash of the logical ids in the subgraph of the document, or null if nothing of the document is in the
+   * metaverse
+   */
+  String fingerprint( String path ) {
+    if ( metaverseBuilder == null || metaverseBuilder.getGraph() == null ) {
+      return null;
+    }
+    final Graph graph = metaverseBuilder.getGraph();
+    final List<String> ids = exclusively( graph, () -> {
+      final List<String> subgraphIds = new ArrayList<>();
+      for ( Vertex vertex : collect( graph, path ).values() ) {
+        Object logicalId = vertex.getProperty( DictionaryConst.PROPERTY_LOGICAL_ID );
+        subgraphIds.add( String.valueOf( logicalId == null ? vertex.getId() : logicalId ) );
+      }
+      return subgraphIds;
+    } );
+    if ( ids.isEmpty() ) {
+      return null;
+    }
+    Collections.sort( ids );
+    final Hasher hasher = Hashing.sha256().newHasher();
+    for ( String id : ids ) {
+      hasher.putString( id, StandardCharsets.UTF_8 ).putByte( (byte) 0 );
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Removes the subgraph of a document from the metaverse, along with the vertices it was the only link of
+   *
+   * @param path         the document path
+   * @param keepDocument true to keep the vertices carrying the document path, for a document about to be analyzed
+   *                     again, false to remove them too, for a document that is gone
+   * @return the number of vertices removed
+   */
+  int remove( String path, boolean keepDocument ) {
+    if ( metaverseBuilder == null || metaverseBuilder.getGraph() == null ) {
+      return 0;
+    }
+    final Graph graph = metaverseBuilder.getGraph();
+    return exclusively( graph, () -> {
+      final Map<Object, Vertex> subgraph = collect( graph, path );
+      if ( keepDocument ) {
+        for ( Vertex document : graph.getVertices( DictionaryConst.PROPERTY_PATH, path ) ) {
+          subgraph.remove( document.getId() );
+        }
+      }
+      final Map<Object, Vertex> neighbors = new LinkedHashMap<>();
+      for ( Vertex vertex : subgraph.values() ) {
+        for ( Vertex neighbor : vertex.getVertices( Direction.BOTH ) ) {
+          if ( !subgraph.containsKey( neighbor.getId() ) ) {
+            neighbors.put( neighbor.getId(), neighbor );
+          }
+        }
+      }
+      int removed = 0;
+      for ( Vertex vertex : subgraph.values() ) {
+        graph.removeVertex( vertex );
+        removed++;
+      }
+      for ( Vertex neighbor : neighbors.values() ) {
+        if ( isOrphan( graph, neighbor ) ) {
+          graph.removeVertex( neighbor );
+          removed++;
+        }
+      }
+      return removed;
+    } );
+  }
+
+  /**
+   * Runs the operation holding the lock the changes made by the analyzers take, if the graph has one
+   */
+  private static <T> T exclusively( Graph graph, Supplier<T> operation ) {
+    if ( graph instanceof BaseSynchronizedGraph ) {
+      return ( (BaseSynchronizedGraph) graph ).runExclusively( operation );
+    }
+    return operation.get();
+  }
+
+  private static Map<Object, Vertex> collect( Graph graph, String path ) {
+    final Map<Object, Vertex> subgraph = new LinkedHashMap<>();
+    final List<Vertex> pending = new ArrayList<>();
+    for ( Vertex document : graph.getVertices( DictionaryConst.PROPERTY_PATH, path ) ) {
+      pending.add( document );
+    }
+    final Set<Object> visited = new HashSet<>();
+    while ( !pending.isEmpty() ) {
+      final Vertex vertex = pending.remove( pending.size() - 1 );
+      if ( visited.add( vertex.getId() ) ) {
+        subgraph.put( vertex.getId(), vertex );
+        for ( Vertex child : vertex.getVertices( Direction.OUT, DictionaryConst.LINK_CONTAINS ) ) {
+          pending.add( child );
+        }
+      }
+    }
+    return subgraph;
+  }
+
+  private static boolean isOrphan( Graph graph, Vertex vertex ) {
+    if ( graph.getVertex( vertex.getId() ) == null || vertex.getEdges( Direction.BOTH ).iterator().hasNext() ) {
+      return false;
+    }
+    final Object type = vertex.getProperty( DictionaryConst.PROPERTY_TYPE );
+    return !DictionaryConst.NODE_TYPE_LOCATOR.equals( type ) && !DictionaryConst.NODE_TYPE_ROOT_ENTITY.equals( type );
+  }
+}
@@ -21,6 +21,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.util.List;
 
@@ -42,6 +43,10 @@ public class FileSystemLocator extends BaseLocator<File> {
 
   private String rootFolder;
 
+  private boolean watchFolder;
+
+  private transient FileSystemWatcher watcher;
+
   /**
    * Creates a filessytem locator
    */
@@ -87,6 +92,25 @@ public class FileSystemLocator extends BaseLocator<File> {
     this.rootFolder = rootFolder;
   }
 
+  public boolean isWatchFolder() {
+    return watchFolder;
+  }
+
+  /**
+   * Keeps the metaverse up to date with the root folder after a scan, by watching it for changes. Scans are incremental
+   * when watching, with a manifest kept in memory if there is no manifest file.
+   *
+   * @param watchFolder true to watch the root folder
+   */
+  public void setWatchFolder( boolean watchFolder ) {
+    this.watchFolder = watchFolder;
+  }
+
+  @Override
+  protected boolean isIncremental() {
+    return super.isIncremental() || watchFolder;
+  }
+
   @Override
   public void startScan() throws MetaverseLocatorException {
 
@@ -103,9 +127,44 @@ public class FileSystemLocator extends BaseLocator<File> {
           Messages.getString("ERROR.FileSystemLocator.RootFolder.NotAFolder", root.getAbsolutePath() ) );
     }
 
-    LocatorRunner<File> lr = new FileSystemLocatorRunner();
+    FileSystemLocatorRunner lr = new FileSystemLocatorRunner();
     lr.setRoot( root );
-    startScan( lr );
+    lr.setManifest( getManifest() );
+    closeWatcher();
+    if ( watchFolder ) {
+      try {
+        // watch first, so that no change made during the scan is missed
+        watcher = new FileSystemWatcher( root, lr );
+      } catch ( IOException e ) {
+        LOG.error( "Could not watch " + root.getAbsolutePath() + " for changes", e );
+      }
+    }
+    try {
+      startScan( lr );
+    } catch ( MetaverseLocatorException e ) {
+      closeWatcher();
+      throw e;
+    }
+    if ( watcher != null ) {
+      watcher.start();
+    }
+  }
+
+  @Override
+  public void stopScan() {
+    closeWatcher();
+    super.stopScan();
+  }
+
+  private void closeWatcher() {
+    if ( watcher != null ) {
+      try {
+        watcher.close();
+      } catch ( IOException e ) {
+        LOG.warn( "Could not stop watching " + rootFolder, e );
+      }
+      watcher = null;
+    }
   }
 
   @Override
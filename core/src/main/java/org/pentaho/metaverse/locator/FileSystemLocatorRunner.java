@@ -18,15 +18,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 
 /**
  * A runnable (and stoppable) class for crawling a Hitachi Vantara repository for documents
+ *
  * @author jdixon
  *
  */
 public class FileSystemLocatorRunner extends LocatorRunner<File> {
 
   private static final Logger LOG = LoggerFactory.getLogger( LocatorRunner.class );
+
   /**
    * Indexes a set of files/folders. Folders are recursed into and files are passed to indexFile.
    * @param folder The files/folders to examine
@@ -34,6 +37,10 @@ public class FileSystemLocatorRunner extends LocatorRunner<File> {
   public void locate( File folder ) {
 
     File[] files = folder.listFiles();
+    if ( files == null ) {
+      // the folder is gone or cannot be read
+      return;
+    }
     for ( File file : files ) {
       if ( stopping ) {
         return;
@@ -41,7 +48,11 @@ public class FileSystemLocatorRunner extends LocatorRunner<File> {
       if ( !file.isDirectory() ) {
         try {
           if ( !file.isHidden( ) ) {
-            processFile( locator.getNamespace(), file.getName(), file.getCanonicalPath(), file );
+            if ( getManifest() == null ) {
+              processFile( locator.getNamespace(), file.getName(), file.getCanonicalPath(), file );
+            } else {
+              locateFile( file );
+            }
           }
         } catch ( Exception e ) {
           // something truly unexpected would have to have happened ... NPE or similar ugliness
@@ -53,4 +64,24 @@ public class FileSystemLocatorRunner extends LocatorRunner<File> {
     }
   }
 
+  /**
+   * Analyzes a file found by an incremental scan, unless the manifest shows it is unchanged and still analyzed in the
+   * metaverse
+   *
+   * @param file the file
+   * @throws IOException if the file cannot be read
+   */
+  protected void locateFile( File file ) throws IOException {
+    if ( getManifest().isManifestFile( file ) ) {
+      return;
+    }
+    locateDocument( file.getCanonicalPath(), file.getName(), file, file.length(), file.lastModified(),
+      () -> ScanManifest.hash( file ) );
+  }
+
+  @Override
+  protected String getSeparator() {
+    return File.separator;
+  }
+
 }
@@ -0,0 +1,171 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.locator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the metaverse up to date with a local folder between scans. The folder and its sub folders are watched for
+ * changes, and each changed document is handed to an incremental {@link FileSystemLocatorRunner}: created and modified
+ * documents are analyzed again, deleted documents and folders are removed from the metaverse.
+ * <p>
+ * Events are only reported for local file systems; on other file systems, such as network shares, changes may be
+ * reported late or not at all, and a scan is still needed to pick them up.
+ */
+public class FileSystemWatcher implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger( FileSystemWatcher.class );
+
+  // editors save a document in several steps, the events of a folder are collected for this long before handling them
+  private static final long SETTLE_DELAY = 200L;
+
+  private final File root;
+  private final FileSystemLocatorRunner runner;
+  private final WatchService watchService;
+  private final Map<WatchKey, Path> folders = new ConcurrentHashMap<>();
+  private final Thread thread;
+  private volatile boolean closed;
+
+  /**
+   * Registers the folder and its sub folders to be watched
+   *
+   * @param root   the folder
+   * @param runner the runner to hand changed documents to, it must have a manifest
+   * @throws IOException if the folder cannot be watched
+   */
+  public FileSystemWatcher( File root, FileSystemLocatorRunner runner ) throws IOException {
+    if ( runner.getManifest() == null ) {
+      throw new IllegalArgumentException( "Watching a folder requires an incremental locator runner" );
+    }
+    this.root = root;
+    this.runner = runner;
+    this.watchService = root.toPath().getFileSystem().newWatchService();
+    register( root.toPath() );
+    thread = new Thread( this::watch, "metaverse-filesystem-watcher" );
+    thread.setDaemon( true );
+  }
+
+  /**
+   * Starts handling changes
+   */
+  public void start() {
+    thread.start();
+  }
+
+  /**
+   * @return true until the watcher is closed
+   */
+  public boolean isWatching() {
+    return !closed;
+  }
+
+  /**
+   * Stops handling changes
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    watchService.close();
+  }
+
+  private void register( Path folder ) throws IOException {
+    Files.walkFileTree( folder, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attrs ) throws IOException {
+        WatchKey key = dir.register( watchService, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE );
+        folders.put( key, dir );
+        return FileVisitResult.CONTINUE;
+      }
+    } );
+  }
+
+  private void watch() {
+    while ( !closed ) {
+      WatchKey key;
+      try {
+        key = watchService.take();
+        Thread.sleep( SETTLE_DELAY );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch ( ClosedWatchServiceException e ) {
+        return;
+      }
+      Path folder = folders.get( key );
+      // only the last event of each entry matters
+      Map<Path, WatchEvent.Kind<?>> changes = new LinkedHashMap<>();
+      boolean overflow = false;
+      for ( WatchEvent<?> event : key.pollEvents() ) {
+        if ( event.kind() == StandardWatchEventKinds.OVERFLOW ) {
+          overflow = true;
+        } else if ( folder != null ) {
+          Path entry = folder.resolve( (Path) event.context() );
+          changes.remove( entry );
+          changes.put( entry, event.kind() );
+        }
+      }
+      if ( !key.reset() ) {
+        folders.remove( key );
+      }
+      try {
+        if ( overflow ) {
+          // events were lost, look at the whole folder instead, which also finds the documents that were deleted
+          runner.rescan( root, root.getCanonicalPath() );
+        }
+        for ( Map.Entry<Path, WatchEvent.Kind<?>> change : changes.entrySet() ) {
+          handle( change.getKey().toFile(), change.getValue() );
+        }
+        runner.saveManifest();
+      } catch ( IOException | RuntimeException e ) {
+        log.error( "Could not handle the changes to " + folder, e );
+      }
+    }
+  }
+
+  private void handle( File file, WatchEvent.Kind<?> kind ) {
+    try {
+      if ( kind == StandardWatchEventKinds.ENTRY_DELETE ) {
+        runner.removeDocument( file.getCanonicalPath() );
+      } else if ( file.isDirectory() ) {
+        if ( kind == StandardWatchEventKinds.ENTRY_CREATE ) {
+          register( file.toPath() );
+          runner.locate( file );
+        }
+      } else if ( file.isFile() && !file.isHidden() ) {
+        runner.locateFile( file );
+      }
+    } catch ( IOException e ) {
+      log.error( "Could not handle the change to " + file, e );
+    }
+  }
+}
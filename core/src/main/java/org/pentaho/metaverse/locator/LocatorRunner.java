@@ -22,11 +22,18 @@ import org.pentaho.metaverse.util.MetaverseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.FileNameMap;
 import java.net.URLConnection;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * The LocatorRunner is a execution construct for concurrently running document locator logic.
+ * <p>
+ * Given a {@link ScanManifest}, the scan is incremental: documents that did not change since the previous scan, and
+ * whose analysis is still in the metaverse, are skipped; changed documents have their previous analysis removed before
+ * being analyzed again; and documents that are gone are removed from the metaverse.
  *
  * @param <T> The type of the locator for this runner
  * @author jdixon
@@ -56,6 +63,13 @@ public abstract class LocatorRunner<T> implements Runnable {
    */
   protected boolean running;
 
+  private ScanManifest manifest;
+
+  private DocumentSubgraphs documents;
+
+  // the documents found by the scans in progress, each scan runs on a thread of its own
+  private final ThreadLocal<Set<String>> located = new ThreadLocal<>();
+
   public void setRoot( T root ) {
     this.root = root;
   }
@@ -64,13 +78,60 @@ public abstract class LocatorRunner<T> implements Runnable {
     this.locator = repoLocator;
   }
 
+  public ScanManifest getManifest() {
+    return manifest;
+  }
+
+  /**
+   * Makes the scans of this runner incremental
+   *
+   * @param manifest the documents found by the previous scan, null for full scans
+   */
+  public void setManifest( ScanManifest manifest ) {
+    this.manifest = manifest;
+  }
+
   @Override
   public void run() {
     running = true;
-    locate( root );
+    if ( manifest == null ) {
+      locate( root );
+      running = false;
+      return;
+    }
+    rescan( root, null );
+    saveManifest();
     running = false;
   }
 
+  /**
+   * Looks at all of the documents below the given files/folders, as an incremental scan does: the documents found are
+   * analyzed if they changed, and the documents of the manifest below the given path that were not found are removed.
+   *
+   * @param root the files/folders to examine
+   * @param path the id of the given folder, to only remove the documents below it, or null to look at every document
+   *             of the manifest
+   */
+  protected void rescan( T root, String path ) {
+    final Set<String> found = new HashSet<>();
+    located.set( found );
+    try {
+      locate( root );
+    } finally {
+      located.remove();
+    }
+    if ( stopping ) {
+      return;
+    }
+    final String folderPrefix = path == null ? null : path + getSeparator();
+    for ( String documentPath : manifest.getPaths() ) {
+      if ( !found.contains( documentPath )
+        && ( path == null || documentPath.equals( path ) || documentPath.startsWith( folderPrefix ) ) ) {
+        removeDocument( documentPath );
+      }
+    }
+  }
+
   public boolean isRunning() {
     return running;
   }
@@ -89,6 +150,115 @@ public abstract class LocatorRunner<T> implements Runnable {
    */
   protected abstract void locate( T root );
 
+  /**
+   * Analyzes a document found by an incremental scan, unless the manifest shows it is unchanged and still analyzed in
+   * the metaverse
+   *
+   * @param id           the id of the document, which is also its path in the metaverse
+   * @param name         the name of the document
+   * @param file         the document, as handed to the locator for its contents
+   * @param size         the current size of the document
+   * @param lastModified the current modification time of the document
+   * @param hasher       hashes the contents of the document, only called when its size or modification time changed
+   * @throws IOException if the document cannot be read
+   */
+  protected synchronized void locateDocument( String id, String name, Object file, long size, long lastModified,
+                                              ContentHasher hasher ) throws IOException {
+    if ( stopping ) {
+      return;
+    }
+    final Set<String> found = located.get();
+    if ( found != null ) {
+      found.add( id );
+    }
+    ScanManifest.Entry entry = manifest.get( id );
+    String contentHash = null;
+    boolean unchanged = entry != null && !entry.isModified( size, lastModified );
+    if ( entry != null && !unchanged ) {
+      // touched documents keep their analysis as long as their contents are the same
+      contentHash = hasher.hash();
+      unchanged = contentHash.equals( entry.getContentHash() );
+      if ( unchanged ) {
+        entry = new ScanManifest.Entry( size, lastModified, contentHash, entry.getFingerprint() );
+        manifest.put( id, entry );
+      }
+    }
+    if ( unchanged ) {
+      String fingerprint = getDocuments().fingerprint( id );
+      if ( fingerprint == null && isAnalyzable( name ) ) {
+        // nothing of the document is in the metaverse, e.g. it was not persisted before a restart
+        LOG.debug( "The analysis of " + id + " is not in the metaverse, analyzing it again" );
+      } else if ( entry.getFingerprint() == null || fingerprint == null ) {
+        // first scan since the document was analyzed, remember what the analysis left in the metaverse
+        entry.setFingerprint( fingerprint );
+        return;
+      } else if ( entry.getFingerprint().equals( fingerprint ) ) {
+        return;
+      } else {
+        LOG.debug( "The analysis of " + id + " is no longer in the metaverse, analyzing it again" );
+      }
+    }
+    if ( entry != null ) {
+      getDocuments().remove( id, true );
+    }
+    if ( contentHash == null ) {
+      contentHash = hasher.hash();
+    }
+    manifest.put( id, new ScanManifest.Entry( size, lastModified, contentHash, null ) );
+    processFile( locator.getNamespace(), name, id, file );
+  }
+
+  /**
+   * Removes a document that is gone, or all documents below a folder that is gone, from the metaverse and the manifest
+   *
+   * @param path the path of the document or folder
+   */
+  protected synchronized void removeDocument( String path ) {
+    String folderPrefix = path + getSeparator();
+    for ( String documentPath : manifest.getPaths() ) {
+      if ( documentPath.equals( path ) || documentPath.startsWith( folderPrefix ) ) {
+        getDocuments().remove( documentPath, false );
+        manifest.remove( documentPath );
+      }
+    }
+  }
+
+  /**
+   * Writes the manifest, so that the next scan starts from what this one found
+   */
+  protected synchronized void saveManifest() {
+    try {
+      manifest.save();
+    } catch ( IOException e ) {
+      LOG.error( "Could not write the scan manifest " + manifest.getFile(), e );
+    }
+  }
+
+  /**
+   * @return the separator of the folders in the document ids
+   */
+  protected String getSeparator() {
+    return "/";
+  }
+
+  /**
+   * A document with no analyzer leaves nothing in the metaverse, and is not analyzed again by every scan for that
+   *
+   * @param name the name of the document
+   * @return true if the document is of a type the listeners of the locator analyze
+   */
+  private boolean isAnalyzable( String name ) {
+    String extension = FilenameUtils.getExtension( name );
+    return !"".equals( extension ) && locator.hasAnalyzers( extension );
+  }
+
+  private DocumentSubgraphs getDocuments() {
+    if ( documents == null ) {
+      documents = new DocumentSubgraphs( locator.getMetaverseBuilder() );
+    }
+    return documents;
+  }
+
   /**
    * Processes the contents of a file. Creates a metaverse document, sets the main properties,
    * and calls the document listeners to parse/process the file.
@@ -136,4 +306,12 @@ public abstract class LocatorRunner<T> implements Runnable {
 
   }
 
+  /**
+   * Hashes the contents of a document, to tell a changed document from one that was only touched
+   */
+  @FunctionalInterface
+  protected interface ContentHasher {
+    String hash() throws IOException;
+  }
+
 }
@@ -75,6 +75,7 @@ public abstract class RepositoryLocator extends BaseLocator<RepositoryFile> {
 
     LocatorRunner lr = new RepositoryLocatorRunner();
     lr.setRoot( children );
+    lr.setManifest( getManifest() );
     startScan( lr );
   }
 
@@ -19,10 +19,14 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.Date;
 import java.util.List;
 
 /**
  * A runnable (and stoppable) class for crawling a Hitachi Vantara repository for documents
+ * <p>
+ * Given a {@link ScanManifest}, the scan is incremental, see {@link LocatorRunner}.
  * @author jdixon
  *
  */
@@ -48,7 +52,11 @@ public class RepositoryLocatorRunner extends LocatorRunner<List<RepositoryFileTr
           if ( !file.isHidden() ) {
             // don't index hidden fields
             try {
-              processFile( locator.getNamespace(), file.getName(), file.getPath(),  file );
+              if ( getManifest() == null ) {
+                processFile( locator.getNamespace(), file.getName(), file.getPath(),  file );
+              } else {
+                locateFile( file );
+              }
             } catch ( Exception e ) {
               // something truly unexpected would have to have happened ... NPE or similar ugliness
               LOG.error( Messages.getString( "ERROR.ProcessFileFailed", file.getName() ), e );
@@ -65,4 +73,20 @@ public class RepositoryLocatorRunner extends LocatorRunner<List<RepositoryFileTr
     }
   }
 
+  /**
+   * Analyzes a file found by an incremental scan, unless the manifest shows it is unchanged and still analyzed in the
+   * metaverse. The contents of a repository file are not read to tell whether it changed: each save of a versioned
+   * file makes a new version, and any change to an unversioned one counts.
+   *
+   * @param file the repository file
+   * @throws IOException if the file cannot be read
+   */
+  protected void locateFile( final RepositoryFile file ) throws IOException {
+    Date modified = file.getLastModifiedDate() == null ? file.getCreatedDate() : file.getLastModifiedDate();
+    final long lastModified = modified == null ? 0L : modified.getTime();
+    locateDocument( file.getPath(), file.getName(), file, file.getFileSize(), lastModified,
+      () -> file.getVersionId() == null
+        ? file.getFileSize() + ":" + lastModified : "version:" + file.getVersionId() );
+  }
+
 }
@@ -0,0 +1,215 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.locator;
+
+import com.google.common.hash.Hashing;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The documents found by the last scan of a locator, so that the next scan only analyzes the documents that changed
+ * since. Each line of the manifest file records one document as
+ * {@code size<TAB>last modified<TAB>content hash<TAB>fingerprint<TAB>path}, where the fingerprint identifies what the
+ * analysis of the document left in the metaverse, or is empty until that has been checked.
+ * <p>
+ * A manifest without a file is only kept in memory.
+ */
+public class ScanManifest {
+
+  private static final String SEPARATOR = "\t";
+  private static final int FIELDS = 5;
+  private static final String TEMP_EXTENSION = ".tmp";
+
+  private final File file;
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  /**
+   * Creates an empty manifest
+   *
+   * @param file the manifest file, or null to keep the manifest in memory only
+   */
+  public ScanManifest( File file ) {
+    this.file = file;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Reads the manifest file, if there is one
+   *
+   * @throws IOException if the manifest file cannot be read
+   */
+  public void load() throws IOException {
+    entries.clear();
+    if ( file == null || !file.exists() ) {
+      return;
+    }
+    try ( BufferedReader reader = Files.newBufferedReader( file.toPath(), StandardCharsets.UTF_8 ) ) {
+      String line;
+      while ( ( line = reader.readLine() ) != null ) {
+        String[] fields = line.split( SEPARATOR, FIELDS );
+        if ( fields.length == FIELDS ) {
+          try {
+            entries.put( fields[ 4 ], new Entry( Long.parseLong( fields[ 0 ] ), Long.parseLong( fields[ 1 ] ),
+              fields[ 2 ], fields[ 3 ].isEmpty() ? null : fields[ 3 ] ) );
+          } catch ( NumberFormatException e ) {
+            // a damaged line only costs the analysis of its document
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the manifest file, replacing it at once so that a crash leaves the previous manifest in place
+   *
+   * @throws IOException if the manifest file cannot be written
+   */
+  public void save() throws IOException {
+    if ( file == null ) {
+      return;
+    }
+    File parent = file.getAbsoluteFile().getParentFile();
+    if ( parent != null && !parent.exists() && !parent.mkdirs() ) {
+      throw new IOException( "Cannot create the folder of " + file );
+    }
+    Path temp = new File( file.getPath() + TEMP_EXTENSION ).toPath();
+    try ( BufferedWriter writer = Files.newBufferedWriter( temp, StandardCharsets.UTF_8 ) ) {
+      for ( Map.Entry<String, Entry> entry : entries.entrySet() ) {
+        Entry value = entry.getValue();
+        writer.write( value.getSize() + SEPARATOR + value.getLastModified() + SEPARATOR + value.getContentHash()
+          + SEPARATOR + ( value.getFingerprint() == null ? "" : value.getFingerprint() ) + SEPARATOR
+          + entry.getKey() );
+        writer.newLine();
+      }
+    }
+    try {
+      Files.move( temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    } catch ( AtomicMoveNotSupportedException e ) {
+      Files.move( temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+    }
+  }
+
+  /**
+   * @param candidate a file found by a scan
+   * @return true if the file is this manifest, which is not a document, or its temporary copy
+   */
+  public boolean isManifestFile( File candidate ) {
+    if ( file == null ) {
+      return false;
+    }
+    File manifestFile = file.getAbsoluteFile();
+    File candidateFile = candidate.getAbsoluteFile();
+    return candidateFile.equals( manifestFile )
+      || candidateFile.equals( new File( manifestFile.getPath() + TEMP_EXTENSION ) );
+  }
+
+  public Entry get( String path ) {
+    return entries.get( path );
+  }
+
+  public void put( String path, Entry entry ) {
+    entries.put( path, entry );
+  }
+
+  public Entry remove( String path ) {
+    return entries.remove( path );
+  }
+
+  /**
+   * @return the paths of the documents in the manifest
+   */
+  public Set<String> getPaths() {
+    return new HashSet<>( entries.keySet() );
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Hashes the contents of a file
+   *
+   * @param file the file
+   * @return the SHA-256 hash of the file contents, as hex characters
+   * @throws IOException if the file cannot be read
+   */
+  public static String hash( File file ) throws IOException {
+    return Hashing.sha256().hashBytes( Files.readAllBytes( file.toPath() ) ).toString();
+  }
+
+  /**
+   * What the manifest knows about a document
+   */
+  public static class Entry {
+    private final long size;
+    private final long lastModified;
+    private final String contentHash;
+    private volatile String fingerprint;
+
+    public Entry( long size, long lastModified, String contentHash, String fingerprint ) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.contentHash = contentHash;
+      this.fingerprint = fingerprint;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    public String getContentHash() {
+      return contentHash;
+    }
+
+    /**
+     * @return the fingerprint of the analysis of the document, or null if it has not been checked yet
+     */
+    public String getFingerprint() {
+      return fingerprint;
+    }
+
+    public void setFingerprint( String fingerprint ) {
+      this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @param size         the current size of the document
+     * @param lastModified the current modification time of the document
+     * @return true if the document may have changed since this entry was recorded
+     */
+    public boolean isModified( long size, long lastModified ) {
+      return this.size != size || this.lastModified != lastModified;
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.util;
+
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.dictionary.DictionaryHelper;
+import org.pentaho.metaverse.messages.Messages;
+import org.pentaho.platform.util.messages.LocaleHelper;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The properties that enhance metaverse vertices and edges for display: the localized type, and for vertices the
+ * category, its localized name and its color. These only depend on the type of the vertex or the label of the edge,
+ * so they are looked up once per type and cached per locale.
+ */
+public final class EnhancementLookup {
+
+  private static final Map<Locale, EnhancementLookup> LOOKUPS = new ConcurrentHashMap<>();
+
+  private final Map<String, Map<String, Object>> vertexProperties = new ConcurrentHashMap<>();
+
+  private final Map<String, Map<String, Object>> edgeProperties = new ConcurrentHashMap<>();
+
+  private EnhancementLookup() {
+  }
+
+  /**
+   * Returns the lookup for the locale of the current thread, the one messages are localized in
+   *
+   * @return the lookup
+   */
+  public static EnhancementLookup getInstance() {
+    Locale locale = LocaleHelper.getLocale();
+    return LOOKUPS.computeIfAbsent( locale == null ? Locale.getDefault() : locale, key -> new EnhancementLookup() );
+  }
+
+  /**
+   * Returns the properties that enhance a vertex of the given type
+   *
+   * @param type the type of the vertex, may be null
+   * @return the properties by key, in the order they are to be set
+   */
+  public Map<String, Object> getVertexProperties( String type ) {
+    return vertexProperties.computeIfAbsent( String.valueOf( type ), EnhancementLookup::lookupVertexProperties );
+  }
+
+  /**
+   * Returns the properties that enhance an edge with the given label
+   *
+   * @param label the label of the edge
+   * @return the properties by key, in the order they are to be set
+   */
+  public Map<String, Object> getEdgeProperties( String label ) {
+    return edgeProperties.computeIfAbsent( String.valueOf( label ), EnhancementLookup::lookupEdgeProperties );
+  }
+
+  private static Map<String, Object> lookupVertexProperties( String type ) {
+    Map<String, Object> properties = new LinkedHashMap<>();
+    //localize the node type
+    String localizedType = Messages.getString( MetaverseUtil.MESSAGE_PREFIX_NODETYPE + type );
+    if ( !localizedType.startsWith( MetaverseUtil.MESSAGE_FAILED_PREFIX ) ) {
+      properties.put( DictionaryConst.PROPERTY_TYPE_LOCALIZED, localizedType );
+    }
+    // get the vertex category and its color
+    String category = DictionaryHelper.getCategoryForType( type );
+    properties.put( DictionaryConst.PROPERTY_CATEGORY, category );
+    properties.put( DictionaryConst.PROPERTY_COLOR, DictionaryHelper.getColorForCategory( category ) );
+    //localize the category
+    String localizedCat = Messages.getString( MetaverseUtil.MESSAGE_PREFIX_CATEGORY + category );
+    if ( !localizedCat.startsWith( MetaverseUtil.MESSAGE_FAILED_PREFIX ) ) {
+      properties.put( DictionaryConst.PROPERTY_CATEGORY_LOCALIZED, localizedCat );
+    }
+    return Collections.unmodifiableMap( properties );
+  }
+
+  private static Map<String, Object> lookupEdgeProperties( String label ) {
+    //localize the link type
+    String localizedType = Messages.getString( MetaverseUtil.MESSAGE_PREFIX_LINKTYPE + label );
+    if ( localizedType.startsWith( MetaverseUtil.MESSAGE_FAILED_PREFIX ) ) {
+      return Collections.emptyMap();
+    }
+    return Collections.singletonMap( DictionaryConst.PROPERTY_TYPE_LOCALIZED, localizedType );
+  }
+}
@@ -20,7 +20,6 @@ import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
 import flexjson.JSONDeserializer;
 import org.pentaho.di.core.Const;
 import org.pentaho.dictionary.DictionaryConst;
-import org.pentaho.dictionary.DictionaryHelper;
 import org.pentaho.metaverse.api.ChangeType;
 import org.pentaho.metaverse.api.IClonableDocumentAnalyzer;
 import org.pentaho.metaverse.api.IDocument;
@@ -144,11 +143,9 @@ public class MetaverseUtil {
    * @param edge The edge to enhance
    */
   public static void enhanceEdge( Edge edge ) {
-    String type = edge.getLabel();
-    //localize the node type
-    String localizedType = Messages.getString( MESSAGE_PREFIX_LINKTYPE + type );
-    if ( !localizedType.startsWith( MESSAGE_FAILED_PREFIX ) ) {
-      edge.setProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED, localizedType );
+    for ( Map.Entry<String, Object> property
+      : EnhancementLookup.getInstance().getEdgeProperties( edge.getLabel() ).entrySet() ) {
+      edge.setProperty( property.getKey(), property.getValue() );
     }
   }
 
@@ -159,21 +156,9 @@ public class MetaverseUtil {
    */
   public static void enhanceVertex( Vertex vertex ) {
     String type = vertex.getProperty( DictionaryConst.PROPERTY_TYPE );
-    //localize the node type
-    String localizedType = Messages.getString( MESSAGE_PREFIX_NODETYPE + type );
-    if ( !localizedType.startsWith( MESSAGE_FAILED_PREFIX ) ) {
-      vertex.setProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED, localizedType );
-    }
-    // get the vertex category and set it
-    String category = DictionaryHelper.getCategoryForType( type );
-    vertex.setProperty( DictionaryConst.PROPERTY_CATEGORY, category );
-    // get the vertex category color and set it
-    String color = DictionaryHelper.getColorForCategory( category );
-    vertex.setProperty( DictionaryConst.PROPERTY_COLOR, color );
-    //localize the category
-    String localizedCat = Messages.getString( MESSAGE_PREFIX_CATEGORY + category );
-    if ( !localizedCat.startsWith( MESSAGE_FAILED_PREFIX ) ) {
-      vertex.setProperty( DictionaryConst.PROPERTY_CATEGORY_LOCALIZED, localizedCat );
+    for ( Map.Entry<String, Object> property
+      : EnhancementLookup.getInstance().getVertexProperties( type ).entrySet() ) {
+      vertex.setProperty( property.getKey(), property.getValue() );
     }
   }
 
@@ -29,7 +29,8 @@ public class VfsDateRangeFilter extends FileDepthSelector {
   private Date endingDate;
 
   public VfsDateRangeFilter( SimpleDateFormat format ) {
-    super( 1, 256 );
+    // date folders are the direct children of the lineage output folder
+    super( 1, 1 );
     this.format = format;
   }
 
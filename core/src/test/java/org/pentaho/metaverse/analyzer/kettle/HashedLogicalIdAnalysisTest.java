@@ -0,0 +1,118 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.analyzer.kettle;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.steps.dummytrans.DummyTransMeta;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.api.IDocument;
+import org.pentaho.metaverse.api.ILogicalIdGenerator;
+import org.pentaho.metaverse.api.LogicalIdDictionary;
+import org.pentaho.metaverse.api.MetaverseComponentDescriptor;
+import org.pentaho.metaverse.api.MetaverseLogicalIdGenerator;
+import org.pentaho.metaverse.api.Namespace;
+import org.pentaho.metaverse.impl.MetaverseBuilder;
+import org.pentaho.metaverse.testutils.MetaverseTestUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Analyzes transformations with hashed logical ids, which must keep the nodes of different transformations apart
+ */
+public class HashedLogicalIdAnalysisTest {
+
+  private static final ILogicalIdGenerator[] GENERATORS = {
+    DictionaryConst.LOGICAL_ID_GENERATOR_DEFAULT, DictionaryConst.LOGICAL_ID_GENERATOR_TARGET_AWARE,
+    DictionaryConst.LOGICAL_ID_GENERATOR_FILE, DictionaryConst.LOGICAL_ID_GENERATOR_DB_JDBC,
+    DictionaryConst.LOGICAL_ID_GENERATOR_DB_JNDI, DictionaryConst.LOGICAL_ID_GENERATOR_LOCATOR,
+    DictionaryConst.LOGICAL_ID_GENERATOR_DOCUMENT, DictionaryConst.LOGICAL_ID_GENERATOR_DB_TABLE,
+    DictionaryConst.LOGICAL_ID_GENERATOR_DB_QUERY };
+
+  private Graph graph;
+  private TransformationAnalyzer analyzer;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    KettleEnvironment.init();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    for ( ILogicalIdGenerator generator : GENERATORS ) {
+      ( (MetaverseLogicalIdGenerator) generator ).setHashed( true );
+    }
+    graph = new TinkerGraph();
+    analyzer = new TransformationAnalyzer();
+    analyzer.setMetaverseBuilder( new MetaverseBuilder( graph ) );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    for ( ILogicalIdGenerator generator : GENERATORS ) {
+      ( (MetaverseLogicalIdGenerator) generator ).setHashed( null );
+    }
+    LogicalIdDictionary.getInstance().clear();
+  }
+
+  @Test
+  public void testStepsOfDifferentTransformationsAreDistinct() throws Exception {
+    analyze( "/repo/first.ktr" );
+    analyze( "/repo/second.ktr" );
+
+    Set<Object> stepIds = new HashSet<>();
+    Set<Object> namespaces = new HashSet<>();
+    for ( Vertex step : graph.getVertices( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_STEP ) ) {
+      assertEquals( "Dummy", step.getProperty( DictionaryConst.PROPERTY_NAME ) );
+      assertEquals( 32, step.<String>getProperty( DictionaryConst.PROPERTY_LOGICAL_ID ).length() );
+      assertNotNull( step.getProperty( DictionaryConst.PROPERTY_NAMESPACE ) );
+      stepIds.add( step.getProperty( DictionaryConst.PROPERTY_LOGICAL_ID ) );
+      namespaces.add( step.getProperty( DictionaryConst.PROPERTY_NAMESPACE ) );
+    }
+    assertEquals( 2, stepIds.size() );
+    assertEquals( 2, namespaces.size() );
+  }
+
+  private void analyze( String path ) throws Exception {
+    TransMeta transMeta = new TransMeta();
+    transMeta.setName( path.substring( path.lastIndexOf( '/' ) + 1 ) );
+    transMeta.setFilename( path );
+    transMeta.addStep( new StepMeta( "Dummy", new DummyTransMeta() ) );
+
+    Namespace namespace = new Namespace( "repo" );
+    IDocument document = MetaverseTestUtils.getMetaverseObjectFactory().createDocumentObject();
+    document.setNamespace( namespace );
+    document.setContent( transMeta );
+    document.setStringID( path );
+    document.setName( transMeta.getName() );
+    document.setType( DictionaryConst.NODE_TYPE_TRANS );
+    document.setProperty( DictionaryConst.PROPERTY_PATH, path );
+    document.setProperty( DictionaryConst.PROPERTY_NAMESPACE, namespace.getNamespaceId() );
+
+    analyzer.analyze( new MetaverseComponentDescriptor( "repo", DictionaryConst.NODE_TYPE_LOCATOR, namespace ),
+      document );
+  }
+}
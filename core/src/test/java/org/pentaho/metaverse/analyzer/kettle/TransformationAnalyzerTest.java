@@ -33,6 +33,7 @@ import org.pentaho.di.trans.step.StepMetaInterface;
 import org.pentaho.di.trans.steps.rowgenerator.RowGeneratorMeta;
 import org.pentaho.di.trans.steps.selectvalues.SelectValuesMeta;
 import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.api.IClonableDocumentAnalyzer;
 import org.pentaho.metaverse.api.IComponentDescriptor;
 import org.pentaho.metaverse.api.IDocument;
 import org.pentaho.metaverse.api.IMetaverseBuilder;
@@ -41,17 +42,29 @@ import org.pentaho.metaverse.api.IMetaverseObjectFactory;
 import org.pentaho.metaverse.api.INamespace;
 import org.pentaho.metaverse.api.MetaverseAnalyzerException;
 import org.pentaho.metaverse.api.MetaverseComponentDescriptor;
+import org.pentaho.metaverse.api.analyzer.kettle.step.IClonableStepAnalyzer;
+import org.pentaho.metaverse.api.analyzer.kettle.step.IStepAnalyzer;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IStepAnalyzerProvider;
+import org.pentaho.metaverse.impl.MetaverseConfig;
 import org.pentaho.metaverse.testutils.MetaverseTestUtils;
 
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
@@ -258,6 +271,55 @@ public class TransformationAnalyzerTest {
     analyzer.analyze( descriptor, mockTransDoc );
   }
 
+  @Test
+  public void testAnalyzeStepsInParallel() throws MetaverseAnalyzerException {
+    when( mockContent.nrSteps() ).thenReturn( 4 );
+    when( mockContent.getStep( 1 ) ).thenReturn( mockStepMeta );
+    when( mockContent.getStep( 2 ) ).thenReturn( mockStepMeta );
+    when( mockContent.getStep( 3 ) ).thenReturn( mockStepMeta );
+    CloningStepAnalyzer prototype = new CloningStepAnalyzer();
+    when( stepAnalyzerProvider.getAnalyzers( any() ) ).thenReturn( Collections.<IStepAnalyzer>singletonList( prototype ) );
+    analyzer.setStepAnalyzerProvider( stepAnalyzerProvider );
+    MetaverseConfig.getInstance().setAnalysisParallelism( 4 );
+    try {
+      assertNotNull( analyzer.analyze( descriptor, mockTransDoc ) );
+    } finally {
+      MetaverseConfig.getInstance().setAnalysisParallelism( 1 );
+    }
+    // each step is analyzed once, by its own clone, which gets the transformation's builder
+    assertEquals( 4, prototype.clones.size() );
+    assertEquals( 0, prototype.analyzed.get() );
+    for ( CloningStepAnalyzer clone : prototype.clones ) {
+      assertEquals( 1, clone.analyzed.get() );
+      assertEquals( mockBuilder, clone.getMetaverseBuilder() );
+      assertEquals( 1, clone.postAnalyzed.get() );
+    }
+  }
+
+  @Test
+  public void testSharedStepAnalyzerIsNotUsedConcurrently() throws Exception {
+    when( mockContent.nrSteps() ).thenReturn( 3 );
+    when( mockContent.getStep( 1 ) ).thenReturn( mockStepMeta );
+    when( mockContent.getStep( 2 ) ).thenReturn( mockStepMeta );
+    SharedStepAnalyzer shared = new SharedStepAnalyzer();
+    when( stepAnalyzerProvider.getAnalyzers( any() ) ).thenReturn( Collections.<IStepAnalyzer>singletonList( shared ) );
+    analyzer.setStepAnalyzerProvider( stepAnalyzerProvider );
+    MetaverseConfig.getInstance().setAnalysisParallelism( 4 );
+    ExecutorService executor = Executors.newFixedThreadPool( 2 );
+    try {
+      // the document controller shares one transformation analyzer between the documents it analyzes
+      Future<IMetaverseNode> first = executor.submit( () -> analyzer.analyze( descriptor, mockTransDoc ) );
+      Future<IMetaverseNode> second = executor.submit( () -> analyzer.analyze( descriptor, mockTransDoc ) );
+      assertNotNull( first.get( 30, TimeUnit.SECONDS ) );
+      assertNotNull( second.get( 30, TimeUnit.SECONDS ) );
+    } finally {
+      executor.shutdownNow();
+      MetaverseConfig.getInstance().setAnalysisParallelism( 1 );
+    }
+    assertEquals( 6, shared.analyzed.get() );
+    assertEquals( 1, shared.maxActive.get() );
+  }
+
   @Test
   public void testSetStepAnalyzerProvider() {
     analyzer.setStepAnalyzerProvider( stepAnalyzerProvider );
@@ -288,4 +350,85 @@ public class TransformationAnalyzerTest {
     Set<String> types = analyzer.getSupportedTypes();
     assertTrue( types == TransformationAnalyzer.defaultSupportedTypes );
   }
+
+  /**
+   * A step analyzer that is not cloned, and records how many threads use it at once
+   */
+  private static class SharedStepAnalyzer implements IStepAnalyzer<BaseStepMeta> {
+    final AtomicInteger analyzed = new AtomicInteger();
+    final AtomicInteger active = new AtomicInteger();
+    final AtomicInteger maxActive = new AtomicInteger();
+    private IMetaverseBuilder builder;
+
+    @Override
+    public IMetaverseNode analyze( IComponentDescriptor descriptor, BaseStepMeta meta ) {
+      maxActive.accumulateAndGet( active.incrementAndGet(), Math::max );
+      try {
+        Thread.sleep( 20 );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      } finally {
+        active.decrementAndGet();
+      }
+      analyzed.incrementAndGet();
+      return null;
+    }
+
+    @Override
+    public Set<Class<? extends BaseStepMeta>> getSupportedSteps() {
+      return null;
+    }
+
+    @Override
+    public void setMetaverseBuilder( IMetaverseBuilder builder ) {
+      this.builder = builder;
+    }
+
+    @Override
+    public IMetaverseBuilder getMetaverseBuilder() {
+      return builder;
+    }
+  }
+
+  /**
+   * A step analyzer that is cloned for each step, the clones are recorded by the prototype
+   */
+  private static class CloningStepAnalyzer extends SharedStepAnalyzer implements IClonableStepAnalyzer<BaseStepMeta> {
+    final List<CloningStepAnalyzer> clones = new CopyOnWriteArrayList<>();
+    final AtomicInteger postAnalyzed = new AtomicInteger();
+
+    @Override
+    public IClonableStepAnalyzer cloneAnalyzer() {
+      CloningStepAnalyzer clone = new CloningStepAnalyzer();
+      clones.add( clone );
+      return clone;
+    }
+
+    @Override
+    public void setDocumentAnalyzer( IClonableDocumentAnalyzer parentTransformationAnalyser ) {
+    }
+
+    @Override
+    public IClonableDocumentAnalyzer getDocumentAnalyzer() {
+      return null;
+    }
+
+    @Override
+    public void setDocumentDescriptor( IComponentDescriptor documentDescriptor ) {
+    }
+
+    @Override
+    public IComponentDescriptor getDocumentDescriptor() {
+      return null;
+    }
+
+    @Override
+    public void setDocumentPath( String documentPath ) {
+    }
+
+    @Override
+    public void postAnalyze( BaseStepMeta meta ) {
+      postAnalyzed.incrementAndGet();
+    }
+  }
 }
@@ -33,6 +33,8 @@ import org.pentaho.di.job.Job;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransListener;
 import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
 import org.pentaho.metastore.stores.memory.MemoryMetaStore;
 import org.pentaho.metaverse.analyzer.kettle.extensionpoints.BaseRuntimeExtensionPoint;
 import org.pentaho.metaverse.api.ICatalogLineageClientProvider;
@@ -41,10 +43,13 @@ import org.pentaho.metaverse.api.ILineageWriter;
 import org.pentaho.metaverse.api.IMetaverseBuilder;
 import org.pentaho.metaverse.api.IMetaverseObjectFactory;
 import org.pentaho.metaverse.api.analyzer.kettle.KettleAnalyzerUtil;
+import org.pentaho.metaverse.api.analyzer.kettle.step.IStepExternalResourceConsumer;
+import org.pentaho.metaverse.api.analyzer.kettle.step.IStepExternalResourceConsumerProvider;
 import org.pentaho.metaverse.api.model.IExecutionProfile;
 import org.pentaho.metaverse.api.model.LineageHolder;
 import org.pentaho.metaverse.api.model.kettle.MetaverseExtensionPoint;
 import org.pentaho.metaverse.impl.MetaverseConfig;
+import org.pentaho.metaverse.util.MetaverseBeanUtil;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Collections;
@@ -323,6 +328,28 @@ public class TransformationRuntimeExtensionPointTest {
     assertFalse( listeners.contains( transExtensionPoint ) );
   }
 
+  @Test
+  public void testHasDataDrivenSteps() {
+    TransMeta meta = mock( TransMeta.class );
+    StepMeta stepMeta = mock( StepMeta.class );
+    StepMetaInterface stepMetaInterface = mock( StepMetaInterface.class );
+    IStepExternalResourceConsumerProvider consumerProvider = mock( IStepExternalResourceConsumerProvider.class );
+    IStepExternalResourceConsumer consumer = mock( IStepExternalResourceConsumer.class );
+    MetaverseBeanUtil beanUtil = mock( MetaverseBeanUtil.class );
+    when( meta.getSteps() ).thenReturn( Collections.singletonList( stepMeta ) );
+    when( stepMeta.getStepMetaInterface() ).thenReturn( stepMetaInterface );
+    when( beanUtil.get( IStepExternalResourceConsumerProvider.class ) ).thenReturn( consumerProvider );
+    when( consumerProvider.getExternalResourceConsumers( any() ) ).thenReturn( Collections.singletonList( consumer ) );
+    when( consumer.isDataDriven( stepMetaInterface ) ).thenReturn( false, true );
+
+    try ( MockedStatic<MetaverseBeanUtil> mockedBeanUtil = mockStatic( MetaverseBeanUtil.class ) ) {
+      mockedBeanUtil.when( MetaverseBeanUtil::getInstance ).thenReturn( beanUtil );
+      assertFalse( transExtensionPoint.hasDataDrivenSteps( meta ) );
+      // resources named by rows are not part of the design, such a graph is not cached
+      assertTrue( transExtensionPoint.hasDataDrivenSteps( meta ) );
+    }
+  }
+
   private void setupMetaverseConfig( final boolean consolidateSubGraphs, final boolean generateSubGraphs ) {
     mockedMetaverseConfig.when( MetaverseConfig::consolidateSubGraphs ).thenReturn( consolidateSubGraphs );
     mockedMetaverseConfig.when( MetaverseConfig::generateSubGraphs ).thenReturn( generateSubGraphs );
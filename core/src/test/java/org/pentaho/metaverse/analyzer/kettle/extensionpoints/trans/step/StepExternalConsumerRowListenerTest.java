@@ -15,18 +15,28 @@ package org.pentaho.metaverse.analyzer.kettle.extensionpoints.trans.step;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.step.BaseStep;
 import org.pentaho.di.trans.step.BaseStepMeta;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.steps.http.HTTP;
+import org.pentaho.di.trans.steps.http.HTTPMeta;
+import org.pentaho.di.trans.steps.httppost.HTTPPOST;
+import org.pentaho.di.trans.steps.httppost.HTTPPOSTMeta;
 import org.pentaho.metaverse.analyzer.kettle.extensionpoints.trans.TransLineageHolderMap;
+import org.pentaho.metaverse.analyzer.kettle.step.httpclient.HTTPClientExternalResourceConsumer;
+import org.pentaho.metaverse.analyzer.kettle.step.httppost.HTTPPostExternalResourceConsumer;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IStepExternalResourceConsumer;
 import org.pentaho.metaverse.api.model.IExecutionProfile;
 import org.pentaho.metaverse.api.model.IExternalResourceInfo;
 import org.pentaho.metaverse.api.model.LineageHolder;
+import org.pentaho.metaverse.api.model.WebServiceResourceInfo;
+import org.pentaho.metaverse.impl.MetaverseConfig;
 import org.pentaho.metaverse.impl.model.ExecutionProfile;
 
 import java.util.Arrays;
@@ -67,12 +77,15 @@ public class StepExternalConsumerRowListenerTest {
     IExternalResourceInfo resource1 = mock( IExternalResourceInfo.class );
     IExternalResourceInfo resource2 = mock( IExternalResourceInfo.class );
     IExternalResourceInfo resource3 = mock( IExternalResourceInfo.class );
-    when( consumer.getResourcesFromRow( mockStep, rmi, row1 ) ).thenReturn(
+    when( consumer.getNewResourcesFromRow( mockStep, rmi, row1 ) ).thenReturn(
       Arrays.asList( new IExternalResourceInfo[] { resource1, resource2 } ) );
-    when( consumer.getResourcesFromRow( mockStep, rmi, row2 ) ).thenReturn(
+    when( consumer.getNewResourcesFromRow( mockStep, rmi, row2 ) ).thenReturn(
       Arrays.asList( new IExternalResourceInfo[] { resource2, resource3 } ) );
 
     listener.rowReadEvent( rmi, row1 );
+    // resources are accumulated in the holder until the transformation finishes
+    Assert.assertTrue( executionProfile.getExecutionData().getExternalResources().isEmpty() );
+    holder.flushStepResources();
     Map resourceMap = TransLineageHolderMap.getInstance().getLineageHolder( mockTrans ).getExecutionProfile()
       .getExecutionData().getExternalResources();
     Assert.assertNotNull( resourceMap );
@@ -86,6 +99,8 @@ public class StepExternalConsumerRowListenerTest {
     Assert.assertTrue( resources.contains( resource2 ) );
 
     listener.rowReadEvent( rmi, row2 );
+    listener.rowReadEvent( rmi, row1 );
+    holder.flushStepResources();
     resourceMap = TransLineageHolderMap.getInstance().getLineageHolder( mockTrans ).getExecutionProfile()
       .getExecutionData().getExternalResources();
     Assert.assertNotNull( resourceMap );
@@ -99,4 +114,73 @@ public class StepExternalConsumerRowListenerTest {
     Assert.assertTrue( resources.contains( resource2 ) );
     Assert.assertTrue( resources.contains( resource3 ) );
   }
+
+  @Test
+  public void testRowResourcesOfAWebServiceStep() throws Exception {
+    HTTP step = mock( HTTP.class );
+    HTTPMeta meta = mock( HTTPMeta.class );
+    when( step.getStepname() ).thenReturn( "http_step" );
+    when( step.getStepMetaInterface() ).thenReturn( meta );
+    when( meta.isUrlInField() ).thenReturn( true );
+    when( meta.getUrlField() ).thenReturn( "url" );
+    Trans trans = mock( Trans.class );
+    when( step.getTrans() ).thenReturn( trans );
+
+    LineageHolder holder = TransLineageHolderMap.getInstance().getLineageHolder( trans );
+    IExecutionProfile executionProfile = new ExecutionProfile();
+    holder.setExecutionProfile( executionProfile );
+    TransLineageHolderMap.getInstance().putLineageHolder( trans, holder );
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "url" ) );
+    StepExternalConsumerRowListener listener =
+      new StepExternalConsumerRowListener( HTTPClientExternalResourceConsumer.getInstance(), step );
+    listener.rowReadEvent( rowMeta, new Object[] { "http://example.com/a" } );
+    listener.rowReadEvent( rowMeta, new Object[] { "http://example.com/b" } );
+    listener.rowReadEvent( rowMeta, new Object[] { "http://example.com/a" } );
+    holder.flushStepResources();
+
+    List resources = (List) executionProfile.getExecutionData().getExternalResources().get( "http_step" );
+    Assert.assertNotNull( resources );
+    Assert.assertEquals( 2, resources.size() );
+    Assert.assertTrue( resources.get( 0 ) instanceof WebServiceResourceInfo );
+  }
+
+  @Test
+  public void testWebServiceResourceLimit() throws Exception {
+    HTTPPOST step = mock( HTTPPOST.class );
+    HTTPPOSTMeta meta = mock( HTTPPOSTMeta.class );
+    when( step.getStepname() ).thenReturn( "post_step" );
+    when( step.getStepMetaInterface() ).thenReturn( meta );
+    StepMeta stepMeta = mock( StepMeta.class );
+    when( step.getStepMeta() ).thenReturn( stepMeta );
+    when( stepMeta.getStepMetaInterface() ).thenReturn( meta );
+    when( meta.isUrlInField() ).thenReturn( true );
+    when( meta.getUrlField() ).thenReturn( "url" );
+    Trans trans = mock( Trans.class );
+    when( step.getTrans() ).thenReturn( trans );
+
+    LineageHolder holder = TransLineageHolderMap.getInstance().getLineageHolder( trans );
+    IExecutionProfile executionProfile = new ExecutionProfile();
+    holder.setExecutionProfile( executionProfile );
+    TransLineageHolderMap.getInstance().putLineageHolder( trans, holder );
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "url" ) );
+    int limit = MetaverseConfig.getInstance().getWebServiceResourceLimit();
+    MetaverseConfig.getInstance().setWebServiceResourceLimit( 2 );
+    try {
+      StepExternalConsumerRowListener listener =
+        new StepExternalConsumerRowListener( HTTPPostExternalResourceConsumer.getInstance(), step );
+      for ( int i = 0; i < 5; i++ ) {
+        listener.rowReadEvent( rowMeta, new Object[] { "http://example.com/" + i } );
+      }
+    } finally {
+      MetaverseConfig.getInstance().setWebServiceResourceLimit( limit );
+    }
+    holder.flushStepResources();
+
+    List resources = (List) executionProfile.getExecutionData().getExternalResources().get( "post_step" );
+    Assert.assertEquals( 2, resources.size() );
+  }
 }
@@ -0,0 +1,83 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+
+package org.pentaho.metaverse.analyzer.kettle.step;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.metaverse.api.model.WebServiceResourceInfo;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith( MockitoJUnitRunner.StrictStubs.class )
+public class WebServiceRowResourceResolverTest {
+
+  @Mock RowMetaInterface rowMeta;
+
+  @Test
+  public void testResolveFull() throws Exception {
+    WebServiceRowResourceResolver resolver = new WebServiceRowResourceResolver( null, "url",
+      new String[] { "headerField" }, new String[] { "header" },
+      new String[] { "paramField" }, new String[] { "param" }, false );
+    when( rowMeta.indexOfValue( "url" ) ).thenReturn( 0 );
+    when( rowMeta.indexOfValue( "headerField" ) ).thenReturn( 1 );
+    when( rowMeta.indexOfValue( "paramField" ) ).thenReturn( 2 );
+    Object[] row = new Object[] { "http://example.com", "h", "p" };
+    when( rowMeta.getString( row, 0 ) ).thenReturn( "http://example.com" );
+    when( rowMeta.getString( row, 1 ) ).thenReturn( "h" );
+    when( rowMeta.getString( row, 2 ) ).thenReturn( "p" );
+
+    WebServiceResourceInfo resource = resolver.resolve( rowMeta, row );
+    assertEquals( "http://example.com", resource.getName() );
+    assertEquals( "h", ( (Map) resource.getAttributes().get( "headers" ) ).get( "header" ) );
+    assertEquals( "p", ( (Map) resource.getAttributes().get( "parameters" ) ).get( "param" ) );
+
+    resolver.resolve( rowMeta, row );
+    // the field indexes are only looked up once for the same row layout
+    verify( rowMeta, times( 1 ) ).indexOfValue( "url" );
+  }
+
+  @Test
+  public void testResolveNormalized() throws Exception {
+    WebServiceRowResourceResolver resolver = new WebServiceRowResourceResolver( "http://example.com", null,
+      new String[] { "headerField" }, new String[] { "header" },
+      new String[] { "paramField" }, new String[] { "param" }, true );
+
+    WebServiceResourceInfo first = resolver.resolve( rowMeta, new Object[] { "h1", "p1" } );
+    WebServiceResourceInfo second = resolver.resolve( rowMeta, new Object[] { "h2", "p2" } );
+    assertEquals( first, second );
+    assertNull( ( (Map) first.getAttributes().get( "headers" ) ).get( "header" ) );
+    verify( rowMeta, never() ).getString( any( Object[].class ), anyInt() );
+  }
+
+  @Test
+  public void testResolveNoUrl() throws Exception {
+    WebServiceRowResourceResolver resolver =
+      new WebServiceRowResourceResolver( null, "url", null, null, null, null, false );
+    when( rowMeta.indexOfValue( "url" ) ).thenReturn( -1 );
+    assertNull( resolver.resolve( rowMeta, new Object[] { "x" } ) );
+  }
+}
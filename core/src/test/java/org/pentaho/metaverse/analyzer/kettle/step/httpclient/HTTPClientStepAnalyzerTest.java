@@ -209,13 +209,13 @@ public class HTTPClientStepAnalyzerTest extends ClonableStepAnalyzerTest
     when( meta.isUrlInField() ).thenReturn( true );
     assertTrue( consumer.isDataDriven( meta ) );
     assertTrue( consumer.getResourcesFromMeta( meta ).isEmpty() );
-    when( mockRowMetaInterface.getString( Mockito.any( Object[].class ), Mockito.any(), Mockito.any() ) )
+    when( mockRowMetaInterface.getString( Mockito.any( Object[].class ), Mockito.anyInt() ) )
       .thenReturn( "/path/to/row/file" );
     resources = consumer.getResourcesFromRow( mockHTTP, mockRowMetaInterface, new String[]{ "id", "name" } );
     assertFalse( resources.isEmpty() );
     assertEquals( 1, resources.size() );
 
-    when( mockRowMetaInterface.getString( Mockito.any( Object[].class ), Mockito.any(), Mockito.any() ) )
+    when( mockRowMetaInterface.getString( Mockito.any( Object[].class ), Mockito.anyInt() ) )
       .thenThrow( KettleValueException.class );
     resources = consumer.getResourcesFromRow( mockHTTP, mockRowMetaInterface, new String[]{ "id", "name" } );
     assertTrue( resources.isEmpty() );
@@ -210,13 +210,13 @@ public class HTTPPostStepAnalyzerTest extends ClonableStepAnalyzerTest {
     when( this.meta.isUrlInField() ).thenReturn( true );
     assertTrue( consumer.isDataDriven( this.meta ) );
     assertTrue( consumer.getResourcesFromMeta( this.meta ).isEmpty() );
-    when( mockRowMetaInterface.getString( Mockito.any( Object[].class ), Mockito.any(), Mockito.any() ) )
+    when( mockRowMetaInterface.getString( Mockito.any( Object[].class ), Mockito.anyInt() ) )
       .thenReturn( "/path/to/row/file" );
     resources = consumer.getResourcesFromRow( mockHTTPPost, mockRowMetaInterface, new String[]{ "id", "name" } );
     assertFalse( resources.isEmpty() );
     assertEquals( 1, resources.size() );
 
-    when( mockRowMetaInterface.getString( Mockito.any( Object[].class ), Mockito.any(), Mockito.any() ) )
+    when( mockRowMetaInterface.getString( Mockito.any( Object[].class ), Mockito.anyInt() ) )
       .thenThrow( KettleValueException.class );
     resources = consumer.getResourcesFromRow( mockHTTPPost, mockRowMetaInterface, new String[]{ "id", "name" } );
     assertTrue( resources.isEmpty() );
@@ -14,11 +14,32 @@
 package org.pentaho.metaverse.client;
 
 import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
 import org.junit.Before;
 import org.junit.Test;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.api.StepField;
+import org.pentaho.metaverse.api.StepFieldOperations;
 import org.pentaho.metaverse.graph.LineageGraphMap;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
 
 public class LineageClientTest {
 
@@ -35,4 +56,112 @@ public class LineageClientTest {
   @Test
   public void testGetInstance( ) {
   }
+
+  @Test
+  public void testGetOriginSteps() throws Exception {
+    TransMeta transMeta = createLineage();
+
+    Map<String, Set<StepField>> origins =
+      lineageClient.getOriginSteps( transMeta, "Output", Arrays.asList( "full_name", "id" ) );
+
+    assertEquals( 2, origins.size() );
+    assertEquals( new HashSet<>( Arrays.asList( new StepField( "Input", "first" ), new StepField( "Input", "last" ) ) ),
+      origins.get( "full_name" ) );
+    assertEquals( Collections.singleton( new StepField( "Output", "id" ) ), origins.get( "id" ) );
+    // the same query again is answered the same
+    assertEquals( origins, lineageClient.getOriginSteps( transMeta, "Output", Arrays.asList( "id", "full_name" ) ) );
+    assertTrue( lineageClient.getOriginSteps( transMeta, "Output", Collections.singletonList( "x" ) ).isEmpty() );
+  }
+
+  @Test
+  public void testGetOperationPaths() throws Exception {
+    TransMeta transMeta = createLineage();
+
+    Map<String, Set<List<StepFieldOperations>>> paths =
+      lineageClient.getOperationPaths( transMeta, "Output", Collections.singletonList( "full_name" ) );
+
+    Set<List<StepFieldOperations>> fullNamePaths = paths.get( "full_name" );
+    assertEquals( 2, fullNamePaths.size() );
+    for ( List<StepFieldOperations> path : fullNamePaths ) {
+      // from the origin to the target
+      assertEquals( 3, path.size() );
+      assertEquals( "Input", path.get( 0 ).getStepName() );
+      assertEquals( "name", path.get( 1 ).getFieldName() );
+      assertEquals( "full_name", path.get( 2 ).getFieldName() );
+      assertNotNull( path.get( 1 ).getOperations() );
+      assertNull( path.get( 0 ).getOperations() );
+    }
+  }
+
+  @Test
+  public void testOriginPathsAreShared() throws Exception {
+    createLineage();
+    LineageQueryEngine.GraphQueries queries = LineageQueryEngine.getInstance().forGraph( g );
+    assertSame( queries, LineageQueryEngine.getInstance().forGraph( g ) );
+
+    Vertex fullName = g.getVertices( DictionaryConst.PROPERTY_NAME, "full_name" ).iterator().next();
+    List<List<Vertex>> paths = queries.getOriginPaths( fullName, LineageClient.MAX_LOOPS );
+    assertEquals( 2, paths.size() );
+    assertSame( paths, queries.getOriginPaths( fullName, LineageClient.MAX_LOOPS ) );
+    Vertex name = paths.get( 0 ).get( 1 );
+    assertSame( queries.getOperations( name ), queries.getOperations( name ) );
+  }
+
+  @Test
+  public void testQueriesOfOtherGraphsAreNotAllKept() throws Exception {
+    LineageQueryEngine.GraphQueries queries = LineageQueryEngine.getInstance().forGraph( g );
+    for ( int i = 0; i < LineageQueryEngine.MAX_GRAPHS * 10; i++ ) {
+      LineageQueryEngine.getInstance().forGraph( new TinkerGraph() );
+    }
+    assertNotSame( queries, LineageQueryEngine.getInstance().forGraph( g ) );
+  }
+
+  @Test
+  public void testOriginPathsWithCycle() throws Exception {
+    TransMeta transMeta = createLineage();
+    Vertex fullName = g.getVertices( DictionaryConst.PROPERTY_NAME, "full_name" ).iterator().next();
+    Vertex name = g.getVertices( DictionaryConst.PROPERTY_NAME, "name" ).iterator().next();
+    g.addEdge( null, fullName, name, DictionaryConst.LINK_JOINS );
+
+    Map<String, Set<StepField>> origins =
+      lineageClient.getOriginSteps( transMeta, "Output", Collections.singletonList( "full_name" ) );
+    assertEquals( 2, origins.get( "full_name" ).size() );
+  }
+
+  /**
+   * Input outputs first and last, Calc derives name from both, Output derives full_name from name and creates id
+   */
+  private TransMeta createLineage() {
+    Vertex input = step( "Input" );
+    Vertex calc = step( "Calc" );
+    Vertex output = step( "Output" );
+    Vertex first = field( input, "first" );
+    Vertex last = field( input, "last" );
+    Vertex name = field( calc, "name" );
+    name.setProperty( DictionaryConst.PROPERTY_OPERATIONS, "{}" );
+    Vertex fullName = field( output, "full_name" );
+    field( output, "id" );
+    g.addEdge( null, first, name, DictionaryConst.LINK_DERIVES );
+    g.addEdge( null, last, name, DictionaryConst.LINK_DERIVES );
+    g.addEdge( null, name, fullName, DictionaryConst.LINK_DERIVES );
+
+    TransMeta transMeta = mock( TransMeta.class );
+    LineageGraphMap.getInstance().put( transMeta, CompletableFuture.completedFuture( g ) );
+    return transMeta;
+  }
+
+  private Vertex step( String name ) {
+    Vertex step = g.addVertex( null );
+    step.setProperty( DictionaryConst.PROPERTY_NAME, name );
+    step.setProperty( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_STEP );
+    return step;
+  }
+
+  private Vertex field( Vertex step, String name ) {
+    Vertex field = g.addVertex( null );
+    field.setProperty( DictionaryConst.PROPERTY_NAME, name );
+    field.setProperty( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_FIELD );
+    g.addEdge( null, step, field, DictionaryConst.LINK_OUTPUTS );
+    return field;
+  }
 }
@@ -0,0 +1,79 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.Test;
+import org.pentaho.dictionary.DictionaryConst;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BaseGraphWriterTest {
+
+  @Test
+  public void testAdjustGraphMergesOrphanedInputFields() {
+    final Graph graph = new TinkerGraph();
+    final Vertex input = addVertex( graph, "input", DictionaryConst.CATEGORY_DOCUMENT_ELEMENT,
+      DictionaryConst.NODE_TYPE_TRANS_STEP );
+    final Vertex otherInput = addVertex( graph, "otherInput", DictionaryConst.CATEGORY_DOCUMENT_ELEMENT,
+      DictionaryConst.NODE_TYPE_TRANS_STEP );
+    final Vertex output = addVertex( graph, "output", DictionaryConst.CATEGORY_DOCUMENT_ELEMENT,
+      DictionaryConst.NODE_TYPE_TRANS_STEP );
+    graph.addEdge( null, input, output, DictionaryConst.LINK_HOPSTO );
+    graph.addEdge( null, otherInput, output, DictionaryConst.LINK_HOPSTO );
+
+    final Vertex inputName = addField( graph, input, "name" );
+    addField( graph, input, "address" );
+    final Vertex otherInputName = addField( graph, otherInput, "name" );
+
+    // the field "output" reads, not linked to the step that wrote it
+    final Vertex orphanedName = addVertex( graph, "name", DictionaryConst.CATEGORY_FIELD,
+      DictionaryConst.NODE_TYPE_TRANS_FIELD );
+    graph.addEdge( null, orphanedName, output, DictionaryConst.LINK_INPUTS );
+    final Object orphanedNameId = orphanedName.getId();
+
+    BaseGraphWriter.adjustGraph( graph );
+
+    assertNull( graph.getVertex( orphanedNameId ) );
+    final List<Vertex> outputInputs = new ArrayList<>();
+    output.getVertices( Direction.IN, DictionaryConst.LINK_INPUTS ).forEach( outputInputs::add );
+    assertEquals( 2, outputInputs.size() );
+    assertTrue( outputInputs.contains( inputName ) );
+    assertTrue( outputInputs.contains( otherInputName ) );
+  }
+
+  private static Vertex addField( final Graph graph, final Vertex step, final String name ) {
+    final Vertex field = addVertex( graph, name, DictionaryConst.CATEGORY_FIELD,
+      DictionaryConst.NODE_TYPE_TRANS_FIELD );
+    graph.addEdge( null, step, field, DictionaryConst.LINK_OUTPUTS );
+    return field;
+  }
+
+  private static Vertex addVertex( final Graph graph, final String name, final String category, final String type ) {
+    final Vertex vertex = graph.addVertex( null );
+    vertex.setProperty( DictionaryConst.PROPERTY_NAME, name );
+    vertex.setProperty( DictionaryConst.PROPERTY_CATEGORY, category );
+    vertex.setProperty( DictionaryConst.PROPERTY_TYPE, type );
+    return vertex;
+  }
+}
@@ -29,6 +29,7 @@ import org.pentaho.metaverse.api.IMetaverseReader;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -287,6 +288,74 @@ public class BlueprintsGraphMetaverseReaderTest {
 
   }
 
+  @Test
+  public void testSearchLimits() throws Exception {
+    BlueprintsGraphMetaverseReader metaverseReader = new BlueprintsGraphMetaverseReader( graph );
+    List<String> types = Arrays.asList( DictionaryConst.NODE_TYPE_TRANS );
+    List<String> ids = Arrays.asList( "datasource1.table1.field1" );
+
+    // trans1.ktr is 3 edges upstream, trans2.ktr is further away
+    Graph result = metaverseReader.search( types, ids, true, 2, 0, 0 );
+    assertEquals( "Vertex count is wrong", 0, countVertices( result ) );
+
+    result = metaverseReader.search( types, ids, true, 3, 0, 0 );
+    assertEquals( "Vertex count is wrong", 4, countVertices( result ) );
+    assertEquals( "Edge count is wrong", 3, countEdges( result ) );
+    assertNotNull( result.getVertex( "trans1.ktr" ) );
+    assertNull( result.getVertex( "trans2.ktr" ) );
+
+    result = metaverseReader.search( types, ids, true, 0, 1, 0 );
+    assertEquals( "Vertex count is wrong", 4, countVertices( result ) );
+    assertNotNull( result.getVertex( "trans1.ktr" ) );
+    assertNull( result.getVertex( "trans2.ktr" ) );
+
+    result = metaverseReader.search( types, ids, true, 0, 0, 60000 );
+    assertEquals( "Vertex count is wrong", 9, countVertices( result ) );
+    assertEquals( "Edge count is wrong", 8, countEdges( result ) );
+  }
+
+  @Test
+  public void testSearchMultipleStartNodes() throws Exception {
+    BlueprintsGraphMetaverseReader metaverseReader = new BlueprintsGraphMetaverseReader( graph );
+
+    // each transformation is reached from the closest start node
+    Graph result = metaverseReader.search( Arrays.asList( DictionaryConst.NODE_TYPE_TRANS ),
+      Arrays.asList( "data.txt;field1", "datasource1.table2.field4", "unknown" ), true );
+
+    assertEquals( "Vertex count is wrong", 10, countVertices( result ) );
+    assertEquals( "Edge count is wrong", 8, countEdges( result ) );
+    assertNotNull( result.getVertex( "trans1.ktr" ) );
+    assertNotNull( result.getVertex( "trans2.ktr" ) );
+    assertNull( result.getVertex( "datasource1.table1" ) );
+
+    result = metaverseReader.search( null, Arrays.asList( "unknown" ), true );
+    assertEquals( "Vertex count is wrong", 0, countVertices( result ) );
+  }
+
+  @Test
+  public void testSearchReturnsView() throws Exception {
+    BlueprintsGraphMetaverseReader metaverseReader = new BlueprintsGraphMetaverseReader( graph );
+    Graph result = metaverseReader.search( Arrays.asList( DictionaryConst.NODE_TYPE_TRANS ),
+      Arrays.asList( "datasource1.table1.field1" ), true, 3, 0, 0 );
+
+    // only the edge on the path is visible, the vertex itself is the one of the metaverse
+    Vertex trans1 = result.getVertex( "trans1.ktr" );
+    Iterator<Edge> edges = trans1.getEdges( Direction.BOTH ).iterator();
+    assertTrue( edges.hasNext() );
+    assertEquals( "trans1.ktr;TableOutputStep", edges.next().getVertex( Direction.IN ).getId() );
+    assertFalse( edges.hasNext() );
+
+    graph.getVertex( "trans1.ktr" ).setProperty( "test", "value" );
+    assertEquals( "value", trans1.getProperty( "test" ) );
+
+    try {
+      result.addVertex( "new" );
+      fail( "The search result should be read-only" );
+    } catch ( UnsupportedOperationException e ) {
+      // expected
+    }
+  }
+
   private int countEdges( Graph graph ) {
     Iterator<Edge> edges = graph.getEdges().iterator();
     int edgeCount = 0;
@@ -0,0 +1,303 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.graph;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.metaverse.api.ICatalogLineageClient;
+import org.pentaho.metaverse.api.model.catalog.FieldLevelRelationship;
+import org.pentaho.metaverse.api.model.catalog.LineageDataResource;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CatalogLineagePublisherTest {
+
+  private File spillFolder;
+  private CatalogLineagePublisher publisher;
+
+  @Before
+  public void setUp() throws Exception {
+    spillFolder = new File( "target/catalog-spill-" + UUID.randomUUID() ).getCanonicalFile();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if ( publisher != null ) {
+      publisher.shutdown( 1, TimeUnit.SECONDS );
+    }
+    FileUtils.deleteDirectory( spillFolder );
+  }
+
+  @Test
+  public void testPublishBatchesQueuedExecutions() throws Exception {
+    final CountDownLatch firstCall = new CountDownLatch( 1 );
+    final CountDownLatch release = new CountDownLatch( 1 );
+    final StubClient client = new StubClient() {
+      @Override
+      public void processLineage( List<LineageDataResource> inputSources, List<LineageDataResource> outputTargets ) {
+        super.processLineage( inputSources, outputTargets );
+        firstCall.countDown();
+        try {
+          release.await( 10, TimeUnit.SECONDS );
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    publisher = new CatalogLineagePublisher( client, 10, 5, 0, spillFolder.getPath() );
+
+    publisher.publish( resources( "a" ), resources( "a-out" ) );
+    assertTrue( firstCall.await( 10, TimeUnit.SECONDS ) );
+    // queued while the first call is in progress, so published together
+    publisher.publish( resources( "b" ), resources( "b-out" ) );
+    publisher.publish( resources( "c" ), resources( "c-out" ) );
+    release.countDown();
+
+    assertTrue( publisher.flush( 10, TimeUnit.SECONDS ) );
+    assertEquals( 2, client.inputCalls.size() );
+    assertEquals( 1, client.inputCalls.get( 0 ).size() );
+    assertEquals( 2, client.inputCalls.get( 1 ).size() );
+    assertEquals( "b", client.inputCalls.get( 1 ).get( 0 ).getName() );
+    assertEquals( "c-out", client.outputCalls.get( 1 ).get( 1 ).getName() );
+    assertEquals( 3, publisher.getPublishedCount() );
+    assertEquals( 0, publisher.getSpilledCount() );
+  }
+
+  @Test
+  public void testRetry() throws Exception {
+    final AtomicInteger failures = new AtomicInteger( 2 );
+    final StubClient client = new StubClient() {
+      @Override
+      public void processLineage( List<LineageDataResource> inputSources, List<LineageDataResource> outputTargets ) {
+        super.processLineage( inputSources, outputTargets );
+        if ( failures.getAndDecrement() > 0 ) {
+          throw new IllegalStateException( "catalog unavailable" );
+        }
+      }
+    };
+    publisher = new CatalogLineagePublisher( client, 10, 1, 3, spillFolder.getPath() );
+    publisher.setInitialBackoffMillis( 1L );
+
+    publisher.publish( resources( "a" ), resources( "a-out" ) );
+
+    assertTrue( publisher.flush( 10, TimeUnit.SECONDS ) );
+    assertEquals( 3, client.inputCalls.size() );
+    assertEquals( 1, publisher.getPublishedCount() );
+    assertEquals( 0, publisher.getSpilledCount() );
+  }
+
+  @Test
+  public void testSpillAndReload() throws Exception {
+    final StubClient failingClient = new StubClient() {
+      @Override
+      public void processLineage( List<LineageDataResource> inputSources, List<LineageDataResource> outputTargets ) {
+        throw new IllegalStateException( "catalog unavailable" );
+      }
+    };
+    publisher = new CatalogLineagePublisher( failingClient, 10, 1, 0, spillFolder.getPath() );
+    final List<LineageDataResource> inputs = resources( "a" );
+    final List<LineageDataResource> outputs = resources( "a-out" );
+    final FieldLevelRelationship relationship =
+      new FieldLevelRelationship( inputs.get( 0 ), outputs.get( 0 ), "in", "out" );
+    inputs.get( 0 ).addFieldLevelRelationship( relationship );
+    outputs.get( 0 ).addFieldLevelRelationship( relationship );
+
+    publisher.publish( inputs, outputs );
+    assertTrue( publisher.flush( 10, TimeUnit.SECONDS ) );
+    assertEquals( 1, publisher.getSpilledCount() );
+    assertEquals( 1, spilledFiles().length );
+    assertTrue( FileUtils.readFileToString( spilledFiles()[ 0 ], StandardCharsets.UTF_8 ).startsWith( "{" ) );
+    publisher.shutdown( 1, TimeUnit.SECONDS );
+
+    // a new publisher, as after a restart, publishes the spilled lineage
+    final StubClient client = new StubClient();
+    publisher = new CatalogLineagePublisher( client, 10, 1, 0, spillFolder.getPath() );
+    assertTrue( publisher.flush( 10, TimeUnit.SECONDS ) );
+    assertEquals( 1, publisher.getPublishedCount() );
+    assertEquals( 0, spilledFiles().length );
+
+    final LineageDataResource input = client.inputCalls.get( 0 ).get( 0 );
+    final LineageDataResource output = client.outputCalls.get( 0 ).get( 0 );
+    assertEquals( "a", input.getName() );
+    assertEquals( "a-out", output.getName() );
+    assertEquals( "/data/a.csv", input.getPath() );
+    assertEquals( Collections.singletonList( "id" ), input.getFields() );
+    // relationships still point at the same resources
+    final FieldLevelRelationship reloaded = input.getFieldLevelRelationships().get( 0 );
+    assertSame( output, reloaded.getOutputTargetResource() );
+    assertSame( reloaded, output.getFieldLevelRelationships().get( 0 ) );
+    assertEquals( "in", reloaded.getInputSourceResourceField() );
+    assertEquals( "out", reloaded.getOutputTargetResourceField() );
+  }
+
+  @Test
+  public void testRejectedLineageIsQuarantined() throws Exception {
+    // the catalog accepts any lineage but "bad"
+    final StubClient client = new StubClient() {
+      @Override
+      public void processLineage( List<LineageDataResource> inputSources, List<LineageDataResource> outputTargets ) {
+        for ( LineageDataResource input : inputSources ) {
+          if ( "bad".equals( input.getName() ) ) {
+            throw new IllegalStateException( "rejected" );
+          }
+        }
+        super.processLineage( inputSources, outputTargets );
+      }
+    };
+    publisher = new CatalogLineagePublisher( client, 10, 5, 0, spillFolder.getPath() );
+
+    publisher.publish( resources( "bad" ), resources( "bad-out" ) );
+    assertTrue( publisher.flush( 10, TimeUnit.SECONDS ) );
+    assertEquals( 1, spilledFiles().length );
+    // each publication reloads the spilled lineage, which is sent on its own and fails again
+    for ( int i = 1; i < CatalogLineagePublisher.MAX_FAILURES; i++ ) {
+      publisher.publish( resources( "good" + i ), resources( "good-out" + i ) );
+      assertTrue( publisher.flush( 10, TimeUnit.SECONDS ) );
+    }
+
+    assertEquals( CatalogLineagePublisher.MAX_FAILURES - 1, publisher.getPublishedCount() );
+    assertEquals( 1, publisher.getQuarantinedCount() );
+    assertEquals( 0, spilledFiles().length );
+    final File[] quarantined =
+      spillFolder.listFiles( ( dir, name ) -> name.endsWith( CatalogLineagePublisher.QUARANTINE_EXTENSION ) );
+    assertNotNull( quarantined );
+    assertEquals( 1, quarantined.length );
+  }
+
+  @Test
+  public void testFullQueueSpills() throws Exception {
+    final CountDownLatch release = new CountDownLatch( 1 );
+    final StubClient client = new StubClient() {
+      @Override
+      public void processLineage( List<LineageDataResource> inputSources, List<LineageDataResource> outputTargets ) {
+        super.processLineage( inputSources, outputTargets );
+        try {
+          release.await( 10, TimeUnit.SECONDS );
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    publisher = new CatalogLineagePublisher( client, 1, 1, 0, spillFolder.getPath() );
+
+    for ( int i = 0; i < 5; i++ ) {
+      publisher.publish( resources( "r" + i ), resources( "o" + i ) );
+    }
+    // at most one execution is being published and one is queued, the others are spilled
+    assertTrue( publisher.getSpilledCount() >= 3 );
+    release.countDown();
+
+    assertTrue( publisher.flush( 10, TimeUnit.SECONDS ) );
+    // published executions get the spilled ones reloaded
+    assertEquals( 5, publisher.getPublishedCount() );
+    assertEquals( 0, spilledFiles().length );
+  }
+
+  @Test
+  public void testSynchronous() {
+    final StubClient client = new StubClient();
+    publisher = new CatalogLineagePublisher( client, 0, 1, 0, null );
+
+    publisher.publish( resources( "a" ), null );
+
+    assertEquals( 1, client.inputCalls.size() );
+    assertNotNull( client.outputCalls.get( 0 ) );
+    assertEquals( 1, publisher.getPublishedCount() );
+  }
+
+  @Test
+  public void testSynchronousIsNotRetried() {
+    final StubClient client = new StubClient() {
+      @Override
+      public void processLineage( List<LineageDataResource> inputSources, List<LineageDataResource> outputTargets ) {
+        super.processLineage( inputSources, outputTargets );
+        throw new IllegalStateException( "catalog unavailable" );
+      }
+    };
+    publisher = new CatalogLineagePublisher( client, 0, 1, 3, spillFolder.getPath() );
+
+    publisher.publish( resources( "a" ), resources( "a-out" ) );
+
+    // tried once, without sleeping on the lineage thread, and spilled
+    assertEquals( 1, client.inputCalls.size() );
+    assertEquals( 1, publisher.getSpilledCount() );
+    assertEquals( 1, spilledFiles().length );
+  }
+
+  @Test
+  public void testDropWithoutSpillFolder() {
+    final StubClient client = new StubClient() {
+      @Override
+      public void processLineage( List<LineageDataResource> inputSources, List<LineageDataResource> outputTargets ) {
+        throw new IllegalStateException( "catalog unavailable" );
+      }
+    };
+    publisher = new CatalogLineagePublisher( client, 0, 1, 0, "" );
+
+    publisher.publish( resources( "a" ), resources( "a-out" ) );
+
+    assertEquals( 0, publisher.getPublishedCount() );
+    assertEquals( 0, publisher.getSpilledCount() );
+    assertEquals( 1, publisher.getDroppedCount() );
+  }
+
+  private File[] spilledFiles() {
+    final File[] files =
+      spillFolder.listFiles( ( dir, name ) -> name.endsWith( CatalogLineagePublisher.SPILL_EXTENSION ) );
+    return files == null ? new File[ 0 ] : files;
+  }
+
+  private static List<LineageDataResource> resources( String name ) {
+    final List<LineageDataResource> resources = new ArrayList<>();
+    final LineageDataResource resource = new LineageDataResource( name );
+    resource.setPath( "/data/" + name + ".csv" );
+    resource.setFields( new ArrayList<>( Collections.singletonList( "id" ) ) );
+    resources.add( resource );
+    return resources;
+  }
+
+  /**
+   * A local stand-in for a catalog, recording the lineage it is sent
+   */
+  private static class StubClient implements ICatalogLineageClient {
+    final List<List<LineageDataResource>> inputCalls = Collections.synchronizedList( new ArrayList<>() );
+    final List<List<LineageDataResource>> outputCalls = Collections.synchronizedList( new ArrayList<>() );
+
+    @Override
+    public boolean urlConfigured() {
+      return true;
+    }
+
+    @Override
+    public void processLineage( List<LineageDataResource> inputSources, List<LineageDataResource> outputTargets ) {
+      inputCalls.add( new ArrayList<>( inputSources ) );
+      outputCalls.add( new ArrayList<>( outputTargets ) );
+    }
+  }
+}
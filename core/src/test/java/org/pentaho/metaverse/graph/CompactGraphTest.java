@@ -0,0 +1,244 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+
+package org.pentaho.metaverse.graph;
+
+import com.google.common.collect.Iterables;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.KeyIndexableGraph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+import com.tinkerpop.blueprints.util.GraphHelper;
+import com.tinkerpop.blueprints.util.wrappers.id.IdGraph;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.dictionary.MetaverseTransientNode;
+import org.pentaho.metaverse.api.model.BaseSynchronizedGraph;
+import org.pentaho.metaverse.impl.MetaverseBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CompactGraphTest {
+
+  private CompactGraph graph;
+
+  @Before
+  public void setUp() throws Exception {
+    graph = new CompactGraph();
+  }
+
+  @Test
+  public void testVerticesAndEdges() throws Exception {
+    Vertex trans = graph.addVertex( null );
+    Vertex step1 = graph.addVertex( null );
+    Vertex step2 = graph.addVertex( null );
+    Edge contains1 = graph.addEdge( null, trans, step1, DictionaryConst.LINK_CONTAINS );
+    graph.addEdge( null, trans, step2, DictionaryConst.LINK_CONTAINS );
+    Edge hops = step1.addEdge( DictionaryConst.LINK_HOPSTO, step2 );
+    hops.setProperty( "enabled", true );
+
+    assertEquals( 3, graph.getVertexCount() );
+    assertEquals( 3, graph.getEdgeCount() );
+    assertEquals( step1, graph.getVertex( step1.getId() ) );
+    assertEquals( hops, graph.getEdge( hops.getId() ) );
+    assertEquals( DictionaryConst.LINK_HOPSTO, hops.getLabel() );
+    assertEquals( step1, hops.getVertex( Direction.OUT ) );
+    assertEquals( step2, hops.getVertex( Direction.IN ) );
+    assertEquals( true, hops.getProperty( "enabled" ) );
+
+    assertEquals( 2, Iterables.size( trans.getEdges( Direction.OUT ) ) );
+    assertEquals( 2, Iterables.size( trans.getVertices( Direction.OUT, DictionaryConst.LINK_CONTAINS ) ) );
+    assertEquals( 0, Iterables.size( trans.getVertices( Direction.OUT, DictionaryConst.LINK_HOPSTO ) ) );
+    assertEquals( 0, Iterables.size( trans.getEdges( Direction.OUT, "unknown" ) ) );
+    assertEquals( 2, Iterables.size( step2.getVertices( Direction.BOTH ) ) );
+    assertEquals( 1, trans.query().direction( Direction.OUT ).has( "enabled", true ).count()
+      + step1.query().direction( Direction.OUT ).has( "enabled", true ).count() );
+
+    contains1.remove();
+    assertEquals( 2, graph.getEdgeCount() );
+    assertEquals( 1, Iterables.size( trans.getEdges( Direction.OUT ) ) );
+    assertNull( graph.getEdge( contains1.getId() ) );
+
+    step2.remove();
+    assertEquals( 2, graph.getVertexCount() );
+    assertEquals( 0, graph.getEdgeCount() );
+    assertNull( graph.getVertex( step2.getId() ) );
+    assertEquals( 2, Iterables.size( graph.getVertices() ) );
+    assertEquals( 0, Iterables.size( step1.getEdges( Direction.BOTH ) ) );
+  }
+
+  @Test
+  public void testProperties() throws Exception {
+    Vertex v1 = graph.addVertex( null );
+    Vertex v2 = graph.addVertex( null );
+    v1.setProperty( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_FIELD );
+    v2.setProperty( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_FIELD );
+    v1.setProperty( DictionaryConst.PROPERTY_NAME, "a" );
+    v1.setProperty( DictionaryConst.PROPERTY_NAME, "b" );
+
+    assertEquals( "b", v1.getProperty( DictionaryConst.PROPERTY_NAME ) );
+    assertEquals( 2, v1.getPropertyKeys().size() );
+    assertTrue( v2.getPropertyKeys().contains( DictionaryConst.PROPERTY_TYPE ) );
+    assertNull( v2.getProperty( DictionaryConst.PROPERTY_NAME ) );
+    // shared values are stored once
+    assertSame( v1.getProperty( DictionaryConst.PROPERTY_TYPE ), v2.getProperty( DictionaryConst.PROPERTY_TYPE ) );
+
+    assertEquals( "b", v1.removeProperty( DictionaryConst.PROPERTY_NAME ) );
+    assertNull( v1.getProperty( DictionaryConst.PROPERTY_NAME ) );
+    assertNull( v1.removeProperty( DictionaryConst.PROPERTY_NAME ) );
+    assertEquals( 1, v1.getPropertyKeys().size() );
+  }
+
+  @Test
+  public void testRemovedSlotsAndValuesAreReused() throws Exception {
+    Vertex removed = graph.addVertex( null );
+    removed.setProperty( DictionaryConst.PROPERTY_NAME, "removed" );
+    Vertex kept = graph.addVertex( null );
+    kept.setProperty( DictionaryConst.PROPERTY_NAME, "kept" );
+    Edge edge = removed.addEdge( DictionaryConst.LINK_CONTAINS, kept );
+    edge.setProperty( "order", 1.5d );
+    assertEquals( 3, graph.getValueCount() );
+
+    removed.remove();
+    assertEquals( 1, graph.getValueCount() );
+    Vertex added = graph.addVertex( null );
+    added.setProperty( DictionaryConst.PROPERTY_NAME, "added" );
+    Edge addedEdge = kept.addEdge( DictionaryConst.LINK_CONTAINS, added );
+    assertEquals( 2, graph.getValueCount() );
+
+    // the slot is reused, but the removed vertex and edge are not mistaken for the new ones
+    assertEquals( ( (Long) removed.getId() ).intValue(), ( (Long) added.getId() ).intValue() );
+    assertNotEquals( removed, added );
+    assertNotEquals( edge, addedEdge );
+    assertNull( graph.getVertex( removed.getId() ) );
+    assertNull( graph.getEdge( edge.getId() ) );
+    assertNull( removed.getProperty( DictionaryConst.PROPERTY_NAME ) );
+    assertNull( edge.getLabel() );
+    removed.setProperty( DictionaryConst.PROPERTY_NAME, "again" );
+    assertEquals( "added", added.getProperty( DictionaryConst.PROPERTY_NAME ) );
+    assertEquals( 0, Iterables.size( removed.getEdges( Direction.BOTH ) ) );
+    assertEquals( added, Iterables.getOnlyElement( kept.getVertices( Direction.OUT ) ) );
+
+    // values no element holds any more are dropped
+    added.setProperty( DictionaryConst.PROPERTY_NAME, "changed" );
+    kept.removeProperty( DictionaryConst.PROPERTY_NAME );
+    assertEquals( 1, graph.getValueCount() );
+    assertEquals( 0, Iterables.size( graph.getVertices( DictionaryConst.PROPERTY_NAME, "kept" ) ) );
+  }
+
+  @Test
+  public void testIdsAreIntegers() throws Exception {
+    Vertex vertex = graph.addVertex( null );
+    long id = (Long) vertex.getId();
+    assertEquals( vertex, graph.getVertex( id ) );
+    assertEquals( vertex, graph.getVertex( (int) id ) );
+    assertEquals( vertex, graph.getVertex( String.valueOf( id ) ) );
+    assertEquals( vertex, graph.getVertex( (double) id ) );
+    assertNull( graph.getVertex( id + 0.5d ) );
+    assertNull( graph.getVertex( new BigDecimal( id + ".5" ) ) );
+    assertNull( graph.getVertex( "not an id" ) );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testSetProperty_reservedKey() throws Exception {
+    graph.addVertex( null ).setProperty( "id", "value" );
+  }
+
+  @Test
+  public void testKeyIndex() throws Exception {
+    Vertex v1 = graph.addVertex( null );
+    Vertex v2 = graph.addVertex( null );
+    v1.setProperty( DictionaryConst.PROPERTY_NAME, "a" );
+    v2.setProperty( DictionaryConst.PROPERTY_NAME, "a" );
+
+    // lookups without an index
+    assertEquals( 2, Iterables.size( graph.getVertices( DictionaryConst.PROPERTY_NAME, "a" ) ) );
+    assertEquals( 0, Iterables.size( graph.getVertices( DictionaryConst.PROPERTY_NAME, "b" ) ) );
+
+    graph.createKeyIndex( DictionaryConst.PROPERTY_NAME, Vertex.class );
+    assertTrue( graph.getIndexedKeys( Vertex.class ).contains( DictionaryConst.PROPERTY_NAME ) );
+    assertEquals( 2, Iterables.size( graph.getVertices( DictionaryConst.PROPERTY_NAME, "a" ) ) );
+
+    v2.setProperty( DictionaryConst.PROPERTY_NAME, "b" );
+    assertEquals( v1, Iterables.getOnlyElement( graph.getVertices( DictionaryConst.PROPERTY_NAME, "a" ) ) );
+    assertEquals( v2, Iterables.getOnlyElement( graph.getVertices( DictionaryConst.PROPERTY_NAME, "b" ) ) );
+
+    v1.remove();
+    assertEquals( 0, Iterables.size( graph.getVertices( DictionaryConst.PROPERTY_NAME, "a" ) ) );
+
+    graph.dropKeyIndex( DictionaryConst.PROPERTY_NAME, Vertex.class );
+    assertTrue( graph.getIndexedKeys( Vertex.class ).isEmpty() );
+    assertEquals( v2, Iterables.getOnlyElement( graph.getVertices( DictionaryConst.PROPERTY_NAME, "b" ) ) );
+  }
+
+  @Test
+  public void testOpen_Map() throws Exception {
+    Map<String, String> config = new HashMap<>();
+    config.put( "blueprints.graph", CompactGraph.class.getName() );
+    BaseSynchronizedGraph g = (BaseSynchronizedGraph) SynchronizedGraphFactory.open( config );
+
+    assertTrue( g.getGraph() instanceof IdGraph );
+    assertTrue( ( (IdGraph) g.getGraph() ).getBaseGraph() instanceof CompactGraph );
+    Vertex vertex = g.addVertex( "myId" );
+    assertEquals( "myId", vertex.getId() );
+    assertEquals( vertex, g.getVertex( "myId" ) );
+    assertTrue( ( (KeyIndexableGraph) g.getGraph() ).getIndexedKeys( Vertex.class )
+      .contains( DictionaryConst.PROPERTY_LOGICAL_ID ) );
+  }
+
+  @Test
+  public void testMetaverseBuilder() throws Exception {
+    Graph wrapped = SynchronizedGraphFactory.wrapGraph( graph );
+    MetaverseBuilder builder = new MetaverseBuilder( wrapped );
+    MetaverseTransientNode node1 = new MetaverseTransientNode( "node1" );
+    node1.setName( "node1 name" );
+    node1.setType( DictionaryConst.NODE_TYPE_TRANS );
+    MetaverseTransientNode node2 = new MetaverseTransientNode( "node2" );
+    node2.setName( "node2 name" );
+    node2.setType( DictionaryConst.NODE_TYPE_TRANS_STEP );
+    builder.addNode( node1 ).addNode( node2 ).addLink( node1, DictionaryConst.LINK_CONTAINS, node2 );
+
+    Vertex vertex = wrapped.getVertex( "node1" );
+    assertNotNull( vertex );
+    assertEquals( "node1 name", vertex.getProperty( DictionaryConst.PROPERTY_NAME ) );
+    assertEquals( "node2", Iterables.getOnlyElement(
+      vertex.getVertices( Direction.OUT, DictionaryConst.LINK_CONTAINS ) ).getId() );
+    assertEquals( 2, graph.getVertexCount() );
+    assertEquals( 1, graph.getEdgeCount() );
+  }
+
+  @Test
+  public void testWritersMatchTinkerGraph() throws Exception {
+    Graph tinkerGraph = TinkerGraphFactory.createTinkerGraph();
+    Graph compactGraph = new IdGraph<>( graph );
+    GraphHelper.copyGraph( tinkerGraph, compactGraph );
+
+    assertEquals( write( new GraphMLWriter(), tinkerGraph ), write( new GraphMLWriter(), compactGraph ) );
+    assertTrue( write( new GraphSONWriter(), compactGraph ).contains( "marko" ) );
+  }
+
+  private static String write( BaseGraphWriter writer, Graph g ) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writer.outputGraph( g, out );
+    return out.toString( "UTF-8" );
+  }
+}
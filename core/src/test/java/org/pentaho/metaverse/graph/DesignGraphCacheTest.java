@@ -0,0 +1,68 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DesignGraphCacheTest {
+
+  @Test
+  public void testPutAndCopyInto() {
+    DesignGraphCache cache = new DesignGraphCache( 10, 1, TimeUnit.HOURS );
+    Graph graph = new TinkerGraph();
+    graph.addVertex( "a" ).setProperty( "name", "A" );
+
+    assertFalse( cache.copyInto( "key", new TinkerGraph() ) );
+    cache.put( "key", graph );
+    // changes made after caching are not visible in the cached copy
+    graph.addVertex( "runtime" );
+
+    Graph target = new TinkerGraph();
+    assertTrue( cache.copyInto( "key", target ) );
+    assertNotNull( target.getVertex( "a" ) );
+    assertNull( target.getVertex( "runtime" ) );
+
+    assertEquals( 1L, cache.getMetrics().get( "hitCount" ) );
+    assertEquals( 1L, cache.getMetrics().get( "missCount" ) );
+    assertEquals( 0.5, (double) cache.getMetrics().get( "hitRate" ), 0.001 );
+  }
+
+  @Test
+  public void testDisabled() {
+    DesignGraphCache cache = new DesignGraphCache( 0, 1, TimeUnit.HOURS );
+    assertFalse( cache.isEnabled() );
+    cache.put( "key", new TinkerGraph() );
+    assertFalse( cache.copyInto( "key", new TinkerGraph() ) );
+  }
+
+  @Test
+  public void testSizeEviction() {
+    DesignGraphCache cache = new DesignGraphCache( 1, 1, TimeUnit.HOURS );
+    cache.put( "first", new TinkerGraph() );
+    cache.put( "second", new TinkerGraph() );
+    assertFalse( cache.copyInto( "first", new TinkerGraph() ) );
+    assertTrue( cache.copyInto( "second", new TinkerGraph() ) );
+  }
+}
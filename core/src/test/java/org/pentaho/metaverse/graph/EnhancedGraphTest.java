@@ -0,0 +1,124 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.util.EnhancementLookup;
+import org.pentaho.metaverse.util.MetaverseUtil;
+
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+
+public class EnhancedGraphTest {
+
+  private Graph graph;
+
+  @Before
+  public void setUp() throws Exception {
+    graph = new TinkerGraph();
+    Vertex trans = graph.addVertex( "trans" );
+    trans.setProperty( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS );
+    Vertex field1 = graph.addVertex( "field1" );
+    field1.setProperty( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_FIELD );
+    Vertex field2 = graph.addVertex( "field2" );
+    field2.setProperty( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_FIELD );
+    graph.addEdge( "populates", field1, field2, DictionaryConst.LINK_POPULATES );
+  }
+
+  @Test
+  public void testEnhancesWithoutChangingGraph() throws Exception {
+    Graph enhanced = new EnhancedGraph( graph );
+
+    Vertex trans = enhanced.getVertex( "trans" );
+    assertEquals( DictionaryConst.NODE_TYPE_TRANS, trans.getProperty( DictionaryConst.PROPERTY_TYPE ) );
+    assertEquals( "Transformation", trans.getProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED ) );
+    assertEquals( DictionaryConst.CATEGORY_DOCUMENT, trans.getProperty( DictionaryConst.PROPERTY_CATEGORY ) );
+    assertEquals( "Document", trans.getProperty( DictionaryConst.PROPERTY_CATEGORY_LOCALIZED ) );
+    assertEquals( DictionaryConst.COLOR_DOCUMENT, trans.getProperty( DictionaryConst.PROPERTY_COLOR ) );
+    assertTrue( trans.getPropertyKeys().contains( DictionaryConst.PROPERTY_COLOR ) );
+
+    Edge edge = enhanced.getVertex( "field1" ).getEdges( Direction.OUT ).iterator().next();
+    assertEquals( "Populates", edge.getProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED ) );
+    assertEquals( "field2", edge.getVertex( Direction.IN ).getId() );
+    assertEquals( DictionaryConst.CATEGORY_FIELD,
+      edge.getVertex( Direction.IN ).getProperty( DictionaryConst.PROPERTY_CATEGORY ) );
+
+    // nothing was written to the underlying graph
+    assertEquals( 1, graph.getVertex( "trans" ).getPropertyKeys().size() );
+    assertNull( graph.getEdge( "populates" ).getProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED ) );
+  }
+
+  @Test
+  public void testMatchesEnhancedVertex() throws Exception {
+    Graph enhanced = new EnhancedGraph( graph );
+    Vertex vertex = enhanced.getVertex( "field1" );
+
+    MetaverseUtil.enhanceVertex( graph.getVertex( "field1" ) );
+    Vertex enhancedInPlace = graph.getVertex( "field1" );
+    assertEquals( enhancedInPlace.getPropertyKeys(), vertex.getPropertyKeys() );
+    for ( String key : enhancedInPlace.getPropertyKeys() ) {
+      assertEquals( key, enhancedInPlace.getProperty( key ), vertex.getProperty( key ) );
+    }
+  }
+
+  @Test
+  public void testGetVerticesByEnhancedProperty() throws Exception {
+    Graph enhanced = new EnhancedGraph( graph );
+
+    Iterator<Vertex> vertices =
+      enhanced.getVertices( DictionaryConst.PROPERTY_CATEGORY, DictionaryConst.CATEGORY_DOCUMENT ).iterator();
+    assertEquals( "trans", vertices.next().getId() );
+    assertFalse( vertices.hasNext() );
+
+    vertices = enhanced.getVertices( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS ).iterator();
+    assertEquals( "Transformation", vertices.next().getProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED ) );
+    assertFalse( vertices.hasNext() );
+  }
+
+  @Test
+  public void testChangesGoToUnderlyingGraph() throws Exception {
+    Graph enhanced = new EnhancedGraph( graph );
+
+    Edge edge = enhanced.addEdge( "derives", enhanced.getVertex( "field1" ), enhanced.getVertex( "trans" ),
+      DictionaryConst.LINK_DERIVES );
+    assertEquals( enhanced.getEdge( "derives" ), edge );
+    assertEquals( "trans", graph.getEdge( "derives" ).getVertex( Direction.IN ).getId() );
+
+    enhanced.getVertex( "trans" ).setProperty( DictionaryConst.PROPERTY_NAME, "trans.ktr" );
+    assertEquals( "trans.ktr", graph.getVertex( "trans" ).getProperty( DictionaryConst.PROPERTY_NAME ) );
+
+    enhanced.getVertex( "field2" ).remove();
+    assertNull( graph.getVertex( "field2" ) );
+    assertNull( enhanced.getVertex( "field2" ) );
+  }
+
+  @Test
+  public void testLookupIsCached() throws Exception {
+    EnhancementLookup lookup = EnhancementLookup.getInstance();
+    assertSame( lookup, EnhancementLookup.getInstance() );
+    assertSame( lookup.getVertexProperties( DictionaryConst.NODE_TYPE_TRANS ),
+      lookup.getVertexProperties( DictionaryConst.NODE_TYPE_TRANS ) );
+    assertEquals( DictionaryConst.CATEGORY_OTHER,
+      lookup.getVertexProperties( null ).get( DictionaryConst.PROPERTY_CATEGORY ) );
+    assertTrue( lookup.getEdgeProperties( "unknown" ).isEmpty() );
+  }
+}
@@ -0,0 +1,140 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.dictionary.DictionaryConst;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FieldProvenanceTest {
+
+  private Graph graph;
+  private Vertex inputFile;
+  private Vertex inputField;
+  private Vertex stepField;
+  private Vertex outputTable;
+  private Vertex outputField;
+
+  @Before
+  public void setUp() {
+    graph = new TinkerGraph();
+    Vertex step = vertex( "step", DictionaryConst.NODE_TYPE_TRANS_STEP );
+    inputFile = vertex( "in.csv", DictionaryConst.NODE_TYPE_FILE );
+    inputFile.setProperty( DictionaryConst.PROPERTY_PATH, "/data/in.csv" );
+    outputTable = vertex( "out", DictionaryConst.NODE_TYPE_DATA_TABLE );
+    outputTable.setProperty( DictionaryConst.PROPERTY_TABLE, "out" );
+    inputField = vertex( "id", DictionaryConst.NODE_TYPE_FILE_FIELD );
+    stepField = vertex( "id", DictionaryConst.NODE_TYPE_TRANS_FIELD );
+    outputField = vertex( "ID", DictionaryConst.NODE_TYPE_DATA_COLUMN );
+
+    graph.addEdge( null, inputFile, step, DictionaryConst.LINK_READBY );
+    graph.addEdge( null, step, outputTable, DictionaryConst.LINK_WRITESTO );
+    graph.addEdge( null, inputFile, inputField, DictionaryConst.LINK_CONTAINS );
+    graph.addEdge( null, outputTable, outputField, DictionaryConst.LINK_CONTAINS );
+    graph.addEdge( null, inputField, stepField, DictionaryConst.LINK_POPULATES );
+    graph.addEdge( null, stepField, outputField, DictionaryConst.LINK_POPULATES );
+  }
+
+  @Test
+  public void testResources() {
+    FieldProvenance provenance = new FieldProvenance( graph );
+    assertEquals( Collections.singletonList( inputFile ), provenance.getReadResources() );
+    assertEquals( Collections.singletonList( outputTable ), provenance.getWrittenResources() );
+    assertEquals( Collections.singletonList( inputField ), provenance.getFieldsByPath( "/data/in.csv" ) );
+    assertEquals( Collections.singletonList( outputField ), provenance.getFieldsByTable( "out" ) );
+    assertTrue( provenance.getFieldsByQuery( "select 1" ).isEmpty() );
+    // like has( key, T.eq, null ), a null value finds the vertices without the property
+    assertEquals( Collections.singletonList( outputField ), provenance.getFieldsByPath( null ) );
+  }
+
+  @Test
+  public void testOrigins() {
+    FieldProvenance provenance = new FieldProvenance( graph );
+    Set<FieldProvenance.Origin> origins = provenance.getOrigins( outputField );
+    // the input file through its field, and the output table containing the field
+    FieldProvenance.Origin fromInput = new FieldProvenance.Origin( inputFile, inputField );
+    assertEquals( new HashSet<>( Arrays.asList( fromInput, new FieldProvenance.Origin( outputTable, outputField ) ) ),
+      origins );
+    // memoized, and shared with the fields on the way
+    assertSame( origins, provenance.getOrigins( outputField ) );
+    assertEquals( Collections.singleton( fromInput ), provenance.getOrigins( stepField ) );
+  }
+
+  @Test
+  public void testOriginsOfDiamondAndCycle() {
+    // a second path to the same origin, and a field populating itself through another one
+    Vertex otherStepField = vertex( "id2", DictionaryConst.NODE_TYPE_TRANS_FIELD );
+    graph.addEdge( null, inputField, otherStepField, DictionaryConst.LINK_POPULATES );
+    graph.addEdge( null, otherStepField, outputField, DictionaryConst.LINK_DERIVES );
+    graph.addEdge( null, outputField, otherStepField, DictionaryConst.LINK_DERIVES );
+
+    FieldProvenance provenance = new FieldProvenance( graph );
+    Set<FieldProvenance.Origin> origins = provenance.getOrigins( outputField );
+    assertEquals( new HashSet<>( Arrays.asList( new FieldProvenance.Origin( inputFile, inputField ),
+      new FieldProvenance.Origin( outputTable, outputField ) ) ), origins );
+    // both fields of the cycle have the origins leading into it
+    assertSame( origins, provenance.getOrigins( otherStepField ) );
+  }
+
+  @Test
+  public void testOriginsOfCycleMemberAskedFirst() {
+    // a column populating a field that is written back to it, and to a downstream column
+    Vertex table = vertex( "T", DictionaryConst.NODE_TYPE_DATA_TABLE );
+    Vertex column = vertex( "c", DictionaryConst.NODE_TYPE_DATA_COLUMN );
+    Vertex field = vertex( "f", DictionaryConst.NODE_TYPE_TRANS_FIELD );
+    Vertex downstreamTable = vertex( "O", DictionaryConst.NODE_TYPE_DATA_TABLE );
+    Vertex downstream = vertex( "o", DictionaryConst.NODE_TYPE_DATA_COLUMN );
+    graph.addEdge( null, table, column, DictionaryConst.LINK_CONTAINS );
+    graph.addEdge( null, column, field, DictionaryConst.LINK_POPULATES );
+    graph.addEdge( null, field, column, DictionaryConst.LINK_POPULATES );
+    graph.addEdge( null, field, downstream, DictionaryConst.LINK_POPULATES );
+    graph.addEdge( null, downstreamTable, downstream, DictionaryConst.LINK_CONTAINS );
+
+    Set<FieldProvenance.Origin> expected = new FieldProvenance( graph ).getOrigins( downstream );
+    assertTrue( expected.contains( new FieldProvenance.Origin( table, column ) ) );
+
+    FieldProvenance provenance = new FieldProvenance( graph );
+    assertEquals( Collections.singleton( new FieldProvenance.Origin( table, column ) ),
+      provenance.getOrigins( column ) );
+    // the same as when the downstream column is asked for first
+    assertEquals( expected, provenance.getOrigins( downstream ) );
+  }
+
+  @Test
+  public void testFieldWithoutOriginIsItsOwn() {
+    Vertex orphan = vertex( "orphan", DictionaryConst.NODE_TYPE_TRANS_FIELD );
+    FieldProvenance provenance = new FieldProvenance( graph );
+    Set<FieldProvenance.Origin> origins = provenance.getOrigins( orphan );
+    assertEquals( new HashSet<>( Arrays.asList( new FieldProvenance.Origin( orphan, null ) ) ), origins );
+  }
+
+  private Vertex vertex( String name, String type ) {
+    Vertex vertex = graph.addVertex( null );
+    vertex.setProperty( DictionaryConst.PROPERTY_NAME, name );
+    vertex.setProperty( DictionaryConst.PROPERTY_TYPE, type );
+    return vertex;
+  }
+}
@@ -13,8 +13,15 @@
 
 package org.pentaho.metaverse.graph;
 
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+
 public class GraphUtilTest {
 
   @Test( expected = UnsupportedOperationException.class )
@@ -26,4 +33,30 @@ public class GraphUtilTest {
   public void testCloneVertexIntoGraph() throws Exception {
 
   }
+
+  @Test
+  public void testCopyGraph() throws Exception {
+    Graph from = new TinkerGraph();
+    Vertex a = from.addVertex( "a" );
+    a.setProperty( "name", "A" );
+    Vertex b = from.addVertex( "b" );
+    Edge edge = from.addEdge( "ab", a, b, "link" );
+    edge.setProperty( "weight", 1 );
+
+    Graph to = new TinkerGraph();
+    GraphUtil.copyGraph( from, to );
+    // copying again does not duplicate anything
+    GraphUtil.copyGraph( from, to );
+
+    assertEquals( "A", to.getVertex( "a" ).getProperty( "name" ) );
+    Edge copy = to.getEdge( "ab" );
+    assertEquals( "link", copy.getLabel() );
+    assertEquals( 1, (int) copy.getProperty( "weight" ) );
+    assertEquals( "b", copy.getVertex( Direction.IN ).getId() );
+    int edges = 0;
+    for ( Edge e : to.getEdges() ) {
+      edges++;
+    }
+    assertEquals( 1, edges );
+  }
 }
@@ -0,0 +1,129 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.dictionary.MetaverseTransientNode;
+import org.pentaho.metaverse.api.LogicalIdDictionary;
+import org.pentaho.metaverse.api.MetaverseLogicalIdGenerator;
+import org.pentaho.metaverse.api.Namespace;
+
+import static org.junit.Assert.*;
+
+public class LogicalIdMigratorTest {
+
+  private String legacyTransId;
+  private String legacyStepId;
+  private String hashedTransId;
+  private String hashedStepId;
+  private LogicalIdDictionary dictionary;
+
+  @Before
+  public void setUp() throws Exception {
+    MetaverseLogicalIdGenerator legacyGenerator = new MetaverseLogicalIdGenerator(
+      DictionaryConst.PROPERTY_NAMESPACE, DictionaryConst.PROPERTY_TYPE, DictionaryConst.PROPERTY_NAME );
+    legacyGenerator.setHashed( false );
+    MetaverseLogicalIdGenerator hashedGenerator = new MetaverseLogicalIdGenerator(
+      DictionaryConst.PROPERTY_NAMESPACE, DictionaryConst.PROPERTY_TYPE, DictionaryConst.PROPERTY_NAME );
+    hashedGenerator.setHashed( true );
+    dictionary = new LogicalIdDictionary();
+    hashedGenerator.setDictionary( dictionary );
+
+    legacyTransId = legacyGenerator.generateId( createNode( "/home/user's/trans.ktr", DictionaryConst.NODE_TYPE_TRANS,
+      "trans" ) );
+    legacyStepId = legacyGenerator.generateId( createNode( legacyTransId, DictionaryConst.NODE_TYPE_TRANS_STEP,
+      "step\n1" ) );
+    hashedTransId = hashedGenerator.generateId( createNode( "/home/user's/trans.ktr", DictionaryConst.NODE_TYPE_TRANS,
+      "trans" ) );
+    hashedStepId = hashedGenerator.generateId( createNode( hashedTransId, DictionaryConst.NODE_TYPE_TRANS_STEP,
+      "step\n1" ) );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    LogicalIdDictionary.getInstance().clear();
+  }
+
+  @Test
+  public void testHashedNamespacesMatchMigratedOnes() throws Exception {
+    MetaverseLogicalIdGenerator legacyGenerator = new MetaverseLogicalIdGenerator(
+      DictionaryConst.PROPERTY_NAMESPACE, DictionaryConst.PROPERTY_TYPE, DictionaryConst.PROPERTY_NAME );
+    legacyGenerator.setHashed( false );
+    String legacySiblingId = legacyGenerator.generateId( createNode( legacyTransId, DictionaryConst.NODE_TYPE_FILE,
+      "/data/file's.txt" ) );
+
+    Namespace stepNamespace = new Namespace( hashedStepId );
+    assertEquals( hashedTransId, stepNamespace.getParentNamespace().getNamespaceId() );
+    assertEquals( new LogicalIdMigrator( null ).migrate( legacySiblingId ),
+      stepNamespace.getSiblingNamespace( "/data/file's.txt", DictionaryConst.NODE_TYPE_FILE ).getNamespaceId() );
+  }
+
+  @Test
+  public void testMigrateLogicalId() throws Exception {
+    LogicalIdMigrator migrator = new LogicalIdMigrator( null );
+    assertEquals( hashedTransId, migrator.migrate( legacyTransId ) );
+    assertEquals( hashedStepId, migrator.migrate( legacyStepId ) );
+    assertEquals( "notALogicalId", migrator.migrate( "notALogicalId" ) );
+    assertEquals( "{notJson}", migrator.migrate( "{notJson}" ) );
+    assertNull( migrator.migrate( (String) null ) );
+  }
+
+  @Test
+  public void testDictionaryExpandsToLegacyForm() throws Exception {
+    assertEquals( legacyStepId, dictionary.expand( hashedStepId ) );
+    assertEquals( "unknown", dictionary.expand( "unknown" ) );
+
+    LogicalIdDictionary migratedDictionary = new LogicalIdDictionary();
+    new LogicalIdMigrator( migratedDictionary ).migrate( legacyStepId );
+    assertEquals( 2, migratedDictionary.size() );
+    assertEquals( legacyStepId, migratedDictionary.expand( hashedStepId ) );
+  }
+
+  @Test
+  public void testMigrateGraph() throws Exception {
+    Graph legacy = new TinkerGraph();
+    Vertex trans = legacy.addVertex( legacyTransId );
+    trans.setProperty( DictionaryConst.PROPERTY_LOGICAL_ID, legacyTransId );
+    Vertex step = legacy.addVertex( legacyStepId );
+    step.setProperty( DictionaryConst.PROPERTY_LOGICAL_ID, legacyStepId );
+    step.setProperty( DictionaryConst.PROPERTY_NAMESPACE, legacyTransId );
+    step.setProperty( DictionaryConst.PROPERTY_NAME, "step\n1" );
+    legacy.addEdge( null, trans, step, DictionaryConst.LINK_CONTAINS );
+
+    Graph migrated = new TinkerGraph();
+    new LogicalIdMigrator( null ).migrate( legacy, migrated );
+
+    Vertex migratedStep = migrated.getVertex( hashedStepId );
+    assertNotNull( migratedStep );
+    assertEquals( hashedStepId, migratedStep.getProperty( DictionaryConst.PROPERTY_LOGICAL_ID ) );
+    assertEquals( hashedTransId, migratedStep.getProperty( DictionaryConst.PROPERTY_NAMESPACE ) );
+    assertEquals( "step\n1", migratedStep.getProperty( DictionaryConst.PROPERTY_NAME ) );
+    assertEquals( 1, migrated.getVertex( hashedTransId ).query().labels( DictionaryConst.LINK_CONTAINS ).count() );
+  }
+
+  private static MetaverseTransientNode createNode( String namespace, String type, String name ) {
+    MetaverseTransientNode node = new MetaverseTransientNode();
+    node.setProperty( DictionaryConst.PROPERTY_NAMESPACE, namespace );
+    node.setProperty( DictionaryConst.PROPERTY_TYPE, type );
+    node.setProperty( DictionaryConst.PROPERTY_NAME, name );
+    return node;
+  }
+}
@@ -0,0 +1,246 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.graph;
+
+import com.google.common.collect.Iterables;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.util.wrappers.id.IdGraph;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.api.model.BaseSynchronizedGraph;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PersistentGraphTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private PersistentGraph open() throws Exception {
+    return new PersistentGraph( folder.getRoot().toPath(), new TinkerGraph(), 0, 1 );
+  }
+
+  private Path logFile() {
+    return folder.getRoot().toPath().resolve( PersistentGraph.LOG_FILE_NAME );
+  }
+
+  @Test
+  public void testRecover() throws Exception {
+    PersistentGraph graph = open();
+    assertTrue( graph.getFeatures().isPersistent );
+    graph.createKeyIndex( DictionaryConst.PROPERTY_NAME, Vertex.class );
+    Vertex trans = graph.addVertex( "trans" );
+    trans.setProperty( DictionaryConst.PROPERTY_NAME, "my trans" );
+    trans.setProperty( "lastModified", 42L );
+    Vertex step = graph.addVertex( "step" );
+    step.setProperty( DictionaryConst.PROPERTY_NAME, "my step" );
+    step.setProperty( "temporary", "value" );
+    step.removeProperty( "temporary" );
+    Edge contains = trans.addEdge( DictionaryConst.LINK_CONTAINS, step );
+    contains.setProperty( "order", 1 );
+    Vertex removed = graph.addVertex( "removed" );
+    graph.addEdge( "removedEdge", trans, removed, DictionaryConst.LINK_CONTAINS );
+    removed.remove();
+    graph.shutdown();
+
+    graph = open();
+    assertEquals( 2, Iterables.size( graph.getVertices() ) );
+    assertEquals( 1, Iterables.size( graph.getEdges() ) );
+    assertTrue( graph.getIndexedKeys( Vertex.class ).contains( DictionaryConst.PROPERTY_NAME ) );
+    trans = graph.getVertex( "trans" );
+    assertEquals( "my trans", trans.getProperty( DictionaryConst.PROPERTY_NAME ) );
+    assertEquals( 42L, (long) trans.getProperty( "lastModified" ) );
+    step = graph.getVertex( "step" );
+    assertNull( step.getProperty( "temporary" ) );
+    assertNull( graph.getVertex( "removed" ) );
+    Edge edge = Iterables.getOnlyElement( trans.getEdges( Direction.OUT ) );
+    assertEquals( step, edge.getVertex( Direction.IN ) );
+    assertEquals( 1, (int) edge.getProperty( "order" ) );
+    assertEquals( trans, Iterables.getOnlyElement( graph.getVertices( DictionaryConst.PROPERTY_NAME, "my trans" ) ) );
+    graph.shutdown();
+  }
+
+  @Test
+  public void testRecover_tornTail() throws Exception {
+    PersistentGraph graph = open();
+    graph.addVertex( "v1" ).setProperty( DictionaryConst.PROPERTY_NAME, "first" );
+    graph.shutdown();
+    long length = Files.size( logFile() );
+
+    graph = open();
+    graph.addVertex( "v2" ).setProperty( DictionaryConst.PROPERTY_NAME, "second" );
+    graph.shutdown();
+    // a crash halfway through writing the last change
+    try ( RandomAccessFile file = new RandomAccessFile( logFile().toFile(), "rw" ) ) {
+      file.setLength( file.length() - 3 );
+    }
+
+    graph = open();
+    assertEquals( "first", graph.getVertex( "v1" ).getProperty( DictionaryConst.PROPERTY_NAME ) );
+    assertNotNull( graph.getVertex( "v2" ) );
+    assertNull( graph.getVertex( "v2" ).getProperty( DictionaryConst.PROPERTY_NAME ) );
+    graph.getVertex( "v2" ).setProperty( DictionaryConst.PROPERTY_NAME, "again" );
+    graph.shutdown();
+    assertTrue( Files.size( logFile() ) > length );
+
+    graph = open();
+    assertEquals( "again", graph.getVertex( "v2" ).getProperty( DictionaryConst.PROPERTY_NAME ) );
+    graph.shutdown();
+  }
+
+  @Test
+  public void testCompact() throws Exception {
+    PersistentGraph graph = open();
+    Vertex vertex = graph.addVertex( "v" );
+    for ( int i = 0; i < 100; i++ ) {
+      vertex.setProperty( "count", i );
+    }
+    long length = Files.size( logFile() );
+    graph.compact();
+    assertTrue( Files.size( logFile() ) < length );
+    vertex.setProperty( "other", "value" );
+    graph.shutdown();
+
+    graph = open();
+    assertEquals( 99, (int) graph.getVertex( "v" ).getProperty( "count" ) );
+    assertEquals( "value", graph.getVertex( "v" ).getProperty( "other" ) );
+    graph.shutdown();
+  }
+
+  @Test
+  public void testCompactWhileOpen() throws Exception {
+    PersistentGraph graph = open();
+    graph.setMinCompactionRecords( 50 );
+    Vertex vertex = graph.addVertex( "v" );
+    vertex.setProperty( "count", 0 );
+    long length = Files.size( logFile() );
+    vertex.setProperty( "count", 1 );
+    long recordLength = Files.size( logFile() ) - length;
+    for ( int i = 2; i < 500; i++ ) {
+      vertex.setProperty( "count", i );
+    }
+    // rewritten each time it grew past 200 records
+    assertTrue( Files.size( logFile() ) <= recordLength * 201 );
+    graph.shutdown();
+
+    graph = open();
+    assertEquals( 499, (int) graph.getVertex( "v" ).getProperty( "count" ) );
+    graph.shutdown();
+  }
+
+  @Test
+  public void testCompactWhileAdding() throws Exception {
+    PersistentGraph graph = open();
+    graph.setMinCompactionRecords( 50 );
+    // crosses the compaction threshold on added vertices and edges, which have to be in the log only once
+    Vertex previous = graph.addVertex( "v0" );
+    for ( int i = 1; i < 300; i++ ) {
+      Vertex vertex = graph.addVertex( "v" + i );
+      graph.addEdge( "e" + i, previous, vertex, "next" );
+      previous = vertex;
+    }
+    graph.shutdown();
+
+    graph = open();
+    assertEquals( 300, Iterables.size( graph.getVertices() ) );
+    assertEquals( 299, Iterables.size( graph.getEdges() ) );
+    assertEquals( "v1", graph.getEdge( "e1" ).getVertex( Direction.IN ).getId() );
+    graph.shutdown();
+  }
+
+  @Test
+  public void testNotSerializableValueIsRejected() throws Exception {
+    PersistentGraph graph = open();
+    Vertex vertex = graph.addVertex( "v" );
+    vertex.setProperty( "key", "value" );
+    try {
+      vertex.setProperty( "key", new Object() );
+      fail();
+    } catch ( IllegalArgumentException e ) {
+      // expected
+    }
+    assertEquals( "value", vertex.getProperty( "key" ) );
+    graph.shutdown();
+  }
+
+  @Test
+  public void testWriteBehind() throws Exception {
+    PersistentGraph graph = new PersistentGraph( folder.getRoot().toPath(), new TinkerGraph(), 60000, 1000 );
+    graph.addVertex( "v" ).setProperty( "key", "value" );
+    assertEquals( 0, Files.size( logFile() ) );
+    graph.flush();
+    assertTrue( Files.size( logFile() ) > 0 );
+    graph.shutdown();
+  }
+
+  @Test
+  public void testCompactGraphBase() throws Exception {
+    PersistentGraph graph = new PersistentGraph( folder.getRoot().toPath(), new CompactGraph(), 0, 1 );
+    Vertex trans = graph.addVertex( null );
+    trans.setProperty( DictionaryConst.PROPERTY_NAME, "trans" );
+    Vertex step = graph.addVertex( null );
+    step.setProperty( DictionaryConst.PROPERTY_NAME, "step" );
+    graph.addVertex( null ).remove();
+    trans.addEdge( DictionaryConst.LINK_CONTAINS, step );
+    graph.shutdown();
+
+    // the recovered vertices get new ids, the log has to follow them
+    for ( int i = 0; i < 2; i++ ) {
+      graph = new PersistentGraph( folder.getRoot().toPath(), new CompactGraph(), 0, 1 );
+      assertEquals( 2, Iterables.size( graph.getVertices() ) );
+      trans = Iterables.getOnlyElement( graph.getVertices( DictionaryConst.PROPERTY_NAME, "trans" ) );
+      Vertex recovered = Iterables.getOnlyElement( trans.getVertices( Direction.OUT, DictionaryConst.LINK_CONTAINS ) );
+      assertEquals( "step", recovered.getProperty( DictionaryConst.PROPERTY_NAME ) );
+      graph.shutdown();
+    }
+  }
+
+  @Test
+  public void testOpenViaGraphFactory() throws Exception {
+    Map<String, String> config = new HashMap<>();
+    config.put( "blueprints.graph", PersistentGraph.class.getName() );
+    config.put( PersistentGraph.DIRECTORY_KEY, folder.getRoot().getAbsolutePath() );
+    config.put( PersistentGraph.BASE_GRAPH_KEY, CompactGraph.class.getName() );
+    config.put( PersistentGraph.FLUSH_INTERVAL_KEY, "0" );
+    BaseSynchronizedGraph graph = (BaseSynchronizedGraph) SynchronizedGraphFactory.open( config );
+    PersistentGraph persistentGraph = (PersistentGraph) ( (IdGraph) graph.getGraph() ).getBaseGraph();
+    assertTrue( persistentGraph.getBaseGraph() instanceof CompactGraph );
+    graph.addVertex( "myId" ).setProperty( DictionaryConst.PROPERTY_NAME, "name" );
+    graph.shutdown();
+
+    graph = (BaseSynchronizedGraph) SynchronizedGraphFactory.open( config );
+    assertEquals( "name", graph.getVertex( "myId" ).getProperty( DictionaryConst.PROPERTY_NAME ) );
+    graph.shutdown();
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testUnknownBaseGraph() throws Exception {
+    BaseConfiguration config = new BaseConfiguration();
+    config.setProperty( PersistentGraph.DIRECTORY_KEY, folder.getRoot().getAbsolutePath() );
+    config.setProperty( PersistentGraph.BASE_GRAPH_KEY, "org.pentaho.UnknownGraph" );
+    new PersistentGraph( config );
+  }
+}
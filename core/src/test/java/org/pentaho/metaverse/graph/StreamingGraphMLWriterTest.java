@@ -0,0 +1,70 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+import com.tinkerpop.blueprints.util.io.graphml.GraphMLReader;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class StreamingGraphMLWriterTest {
+
+  @Test
+  public void testNormalizedOutputMatchesBlueprints() throws Exception {
+    final Graph graph = TinkerGraphFactory.createTinkerGraph();
+
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    final com.tinkerpop.blueprints.util.io.graphml.GraphMLWriter blueprintsWriter =
+      new com.tinkerpop.blueprints.util.io.graphml.GraphMLWriter( graph );
+    blueprintsWriter.setNormalize( true );
+    blueprintsWriter.outputGraph( expected );
+
+    final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    final StreamingGraphMLWriter writer = new StreamingGraphMLWriter( graph );
+    writer.setNormalize( true );
+    writer.outputGraph( actual );
+
+    assertArrayEquals( expected.toByteArray(), actual.toByteArray() );
+  }
+
+  @Test
+  public void testOutputCanBeReadBack() throws Exception {
+    final Graph graph = TinkerGraphFactory.createTinkerGraph();
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new StreamingGraphMLWriter( graph ).outputGraph( out );
+
+    final Graph readGraph = new TinkerGraph();
+    GraphMLReader.inputGraph( readGraph, new ByteArrayInputStream( out.toByteArray() ) );
+    assertEquals( 6, count( readGraph.getVertices() ) );
+    assertEquals( 6, count( readGraph.getEdges() ) );
+    assertEquals( "marko", readGraph.getVertex( "1" ).getProperty( "name" ) );
+    assertEquals( 29, (int) readGraph.getVertex( "1" ).getProperty( "age" ) );
+  }
+
+  private static int count( final Iterable<?> elements ) {
+    int count = 0;
+    for ( final Object ignored : elements ) {
+      count++;
+    }
+    return count;
+  }
+}
@@ -15,6 +15,7 @@ package org.pentaho.metaverse.graph;
 
 import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.KeyIndexableGraph;
+import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
 import com.tinkerpop.blueprints.util.wrappers.id.IdGraph;
 import org.apache.commons.configuration.Configuration;
@@ -24,6 +25,7 @@ import org.pentaho.metaverse.api.model.BaseSynchronizedGraph;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -80,5 +82,15 @@ public class SynchronizedGraphFactoryTest {
 
   }
 
+  @Test
+  public void testWrapGraph_createsKeyIndices() throws Exception {
+    BaseSynchronizedGraph wrapped = (BaseSynchronizedGraph) SynchronizedGraphFactory.wrapGraph( new TinkerGraph() );
+    Set<String> indexedKeys = ( (KeyIndexableGraph) wrapped.getGraph() ).getIndexedKeys( Vertex.class );
+
+    for ( String key : SynchronizedGraphFactory.INDEXED_VERTEX_KEYS ) {
+      assertTrue( key, indexedKeys.contains( key ) );
+    }
+  }
+
 
 }
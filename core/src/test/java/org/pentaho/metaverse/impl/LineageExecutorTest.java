@@ -0,0 +1,127 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+
+package org.pentaho.metaverse.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LineageExecutorTest {
+
+  @Test
+  public void testExecute() throws Exception {
+    LineageExecutor executor = new LineageExecutor( "test", 2, 10, LineageExecutor.BACKPRESSURE_BLOCK );
+    AtomicReference<String> threadName = new AtomicReference<>();
+    CountDownLatch done = new CountDownLatch( 1 );
+    executor.execute( () -> {
+      threadName.set( Thread.currentThread().getName() );
+      done.countDown();
+    } );
+    assertTrue( done.await( 5, TimeUnit.SECONDS ) );
+    assertTrue( executor.shutdown( 5, TimeUnit.SECONDS ) );
+    assertEquals( "test-1", threadName.get() );
+    assertEquals( 1, executor.getFinishedTaskCount() );
+    assertEquals( 0, executor.getQueueDepth() );
+  }
+
+  @Test
+  public void testDropWhenSaturated() throws Exception {
+    LineageExecutor executor = new LineageExecutor( "test", 1, 1, LineageExecutor.BACKPRESSURE_DROP );
+    CountDownLatch release = new CountDownLatch( 1 );
+    CountDownLatch started = new CountDownLatch( 1 );
+    executor.execute( () -> {
+      started.countDown();
+      awaitQuietly( release );
+    } );
+    assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+    executor.execute( () -> { } );
+    FutureTask<String> dropped = new FutureTask<>( () -> "dropped" );
+    executor.execute( dropped );
+
+    assertEquals( 1, executor.getActiveWorkers() );
+    assertEquals( 1, executor.getQueueDepth() );
+    assertEquals( 1, executor.getDroppedTaskCount() );
+    assertTrue( dropped.isCancelled() );
+
+    release.countDown();
+    assertTrue( executor.shutdown( 5, TimeUnit.SECONDS ) );
+    assertEquals( 2, executor.getFinishedTaskCount() );
+  }
+
+  @Test
+  public void testCleanupWhenDropped() throws Exception {
+    LineageExecutor executor = new LineageExecutor( "test", 1, 1, LineageExecutor.BACKPRESSURE_DROP );
+    CountDownLatch release = new CountDownLatch( 1 );
+    CountDownLatch started = new CountDownLatch( 1 );
+    executor.execute( () -> {
+      started.countDown();
+      awaitQuietly( release );
+    } );
+    assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+    AtomicInteger cleanups = new AtomicInteger();
+    executor.execute( () -> { }, cleanups::incrementAndGet );
+    assertEquals( 0, cleanups.get() );
+    AtomicBoolean ran = new AtomicBoolean();
+    executor.execute( () -> ran.set( true ), cleanups::incrementAndGet );
+    assertEquals( 1, cleanups.get() );
+
+    release.countDown();
+    assertTrue( executor.shutdown( 5, TimeUnit.SECONDS ) );
+    assertFalse( ran.get() );
+    assertEquals( 1, cleanups.get() );
+  }
+
+  @Test
+  public void testSyncWhenSaturated() throws Exception {
+    LineageExecutor executor = new LineageExecutor( "test", 1, 1, LineageExecutor.BACKPRESSURE_SYNC );
+    CountDownLatch release = new CountDownLatch( 1 );
+    CountDownLatch started = new CountDownLatch( 1 );
+    executor.execute( () -> {
+      started.countDown();
+      awaitQuietly( release );
+    } );
+    assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+    executor.execute( () -> { } );
+    AtomicReference<Thread> runner = new AtomicReference<>();
+    executor.execute( () -> runner.set( Thread.currentThread() ) );
+
+    assertEquals( Thread.currentThread(), runner.get() );
+    release.countDown();
+    assertTrue( executor.shutdown( 5, TimeUnit.SECONDS ) );
+    assertEquals( 0, executor.getDroppedTaskCount() );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testUnknownBackpressure() {
+    new LineageExecutor( "test", 1, 1, "bogus" );
+  }
+
+  private static void awaitQuietly( CountDownLatch latch ) {
+    try {
+      latch.await( 5, TimeUnit.SECONDS );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -548,4 +548,27 @@ public class MetaverseBuilderTest {
     Vertex newVertex = builder.getVertexForNode( node );
     assertEquals( vertex, newVertex );
   }
+
+  @Test
+  public void testGetVertexForNodeWithDiffStringId_deletedVertex() {
+    node.setStringID( "test string id" );
+    builder.addNode( node );
+    builder.deleteNode( node );
+    node.setStringID( "diff test string id" );
+    assertNull( builder.getVertexForNode( node ) );
+  }
+
+  @Test
+  public void testGetVertexForNodeWithDiffStringId_graphModifiedExternally() {
+    node.setStringID( "test string id" );
+    builder.addNode( node );
+    Vertex vertex = graph.getVertex( "test string id" );
+    String logicalId = vertex.getProperty( DictionaryConst.PROPERTY_LOGICAL_ID );
+    graph.removeVertex( vertex );
+
+    Vertex other = graph.addVertex( "other" );
+    other.setProperty( DictionaryConst.PROPERTY_LOGICAL_ID, logicalId );
+    node.setStringID( "diff test string id" );
+    assertEquals( other, builder.getVertexForNode( node ) );
+  }
 }
@@ -17,10 +17,17 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class MetaverseCompletionServiceTest {
 
@@ -90,6 +97,34 @@ public class MetaverseCompletionServiceTest {
     assertNull( mcs.poll() );
   }
 
-
+  @Test( timeout = 10000 )
+  public void testDroppedTask() throws Exception {
+    MetaverseCompletionService service =
+      new MetaverseCompletionService( new LineageExecutor( "test", 1, 1, LineageExecutor.BACKPRESSURE_DROP ) );
+    CountDownLatch release = new CountDownLatch( 1 );
+    CountDownLatch started = new CountDownLatch( 1 );
+    service.submit( () -> {
+      started.countDown();
+      release.await();
+      return "running";
+    } );
+    assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+    service.submit( () -> "queued" );
+    Future<String> dropped = service.submit( () -> "dropped" );
+
+    assertTrue( dropped.isCancelled() );
+    try {
+      dropped.get();
+      fail();
+    } catch ( CancellationException e ) {
+      // expected
+    }
+    assertSame( dropped, service.poll() );
+
+    release.countDown();
+    service.waitTillEmpty();
+    assertNull( service.poll() );
+    assertTrue( service.getExecutor().shutdown( 5, TimeUnit.SECONDS ) );
+  }
 
 }
@@ -0,0 +1,39 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.impl;
+
+import org.junit.After;
+import org.junit.Test;
+import org.pentaho.metaverse.api.IMetaverseConfig;
+
+import static org.junit.Assert.assertEquals;
+
+public class MetaverseConfigTest {
+
+  @After
+  public void tearDown() {
+    System.clearProperty( IMetaverseConfig.KETTLE_LINEAGE_EXECUTOR_POOL_SIZE );
+    System.clearProperty( IMetaverseConfig.KETTLE_LINEAGE_EXECUTOR_QUEUE_DEPTH );
+  }
+
+  @Test
+  public void testIntegerSystemProperties() {
+    System.setProperty( IMetaverseConfig.KETTLE_LINEAGE_EXECUTOR_POOL_SIZE, " 8 " );
+    System.setProperty( IMetaverseConfig.KETTLE_LINEAGE_EXECUTOR_QUEUE_DEPTH, "lots" );
+    MetaverseConfig config = new MetaverseConfig();
+    assertEquals( 8, config.getExecutorPoolSize() );
+    // not a number, the default is kept
+    assertEquals( 1000, config.getExecutorQueueDepth() );
+  }
+}
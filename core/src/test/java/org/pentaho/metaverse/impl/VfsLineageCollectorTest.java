@@ -13,16 +13,34 @@
 
 package org.pentaho.metaverse.impl;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.pentaho.di.core.vfs.KettleVFS;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.atLeast;
@@ -36,6 +54,8 @@ public class VfsLineageCollectorTest {
 
   VfsLineageCollector collector;
 
+  File indexedFolder;
+
   @Before
   public void setUp() throws Exception {
     collector = new VfsLineageCollector();
@@ -44,6 +64,22 @@ public class VfsLineageCollectorTest {
         + "/src/test/resources/pentaho-lineage-output" ) );
   }
 
+  @After
+  public void tearDown() throws Exception {
+    if ( indexedFolder != null ) {
+      FileUtils.deleteDirectory( indexedFolder );
+    }
+  }
+
+  /**
+   * Copies the test lineage output to a scratch folder, so that indexes can be written without touching the resources
+   */
+  private void useIndexedFolder() throws Exception {
+    indexedFolder = new File( "target/lineage-index-" + UUID.randomUUID() ).getCanonicalFile();
+    FileUtils.copyDirectory( new File( "src/test/resources/pentaho-lineage-output" ), indexedFolder );
+    collector.setOutputFolder( FilenameUtils.separatorsToSystem( "file://" + indexedFolder.getPath() ) );
+  }
+
   @Test
   public void testListArtifacts() throws Exception {
     List<String> artifacts = collector.listArtifacts();
@@ -103,6 +139,53 @@ public class VfsLineageCollectorTest {
 
   }
 
+  @Test
+  public void testCompressArtifacts_storesCompressedFiles() throws Exception {
+    final File folder = new File( "target/outputfiles/compressedArtifacts" );
+    folder.mkdirs();
+    final File graphFile = new File( folder, "20150706_test.graphml.gz" );
+    try ( OutputStream os = new GZIPOutputStream( new FileOutputStream( graphFile ) ) ) {
+      os.write( "<graphml/>".getBytes( StandardCharsets.UTF_8 ) );
+    }
+    final byte[] graphBytes = Files.readAllBytes( graphFile.toPath() );
+
+    final ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    collector.compressArtifacts( Collections.singletonList( graphFile.getAbsolutePath() ), zip );
+
+    try ( ZipInputStream zis = new ZipInputStream( new ByteArrayInputStream( zip.toByteArray() ) ) ) {
+      final ZipEntry entry = zis.getNextEntry();
+      assertNotNull( entry );
+      assertEquals( ZipEntry.STORED, entry.getMethod() );
+      assertArrayEquals( graphBytes, IOUtils.toByteArray( zis ) );
+    }
+  }
+
+  @Test
+  public void testCompressArtifacts_streamsFileContent() throws Exception {
+    final List<String> artifacts = collector.listArtifacts();
+    collector.setCompressionLevel( Deflater.BEST_SPEED );
+    final ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    collector.compressArtifacts( artifacts, zip );
+
+    int entries = 0;
+    try ( ZipInputStream zis = new ZipInputStream( new ByteArrayInputStream( zip.toByteArray() ) ) ) {
+      for ( ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry() ) {
+        final File artifact = new File( artifacts.get( entries++ ) );
+        assertArrayEquals( Files.readAllBytes( artifact.toPath() ), IOUtils.toByteArray( zis ) );
+      }
+    }
+    assertEquals( artifacts.size(), entries );
+  }
+
+  @Test
+  public void testGetSetCompressionLevel() {
+    assertEquals( Deflater.DEFAULT_COMPRESSION, collector.getCompressionLevel() );
+    collector.setCompressionLevel( Deflater.BEST_COMPRESSION );
+    assertEquals( Deflater.BEST_COMPRESSION, collector.getCompressionLevel() );
+    collector.setCompressionLevel( 42 );
+    assertEquals( Deflater.DEFAULT_COMPRESSION, collector.getCompressionLevel() );
+  }
+
   @Test
   public void testGetArtifactsForFile_mergeJoin() throws Exception {
     // we have artifacts for merge_join on 2 days (execution profile + graph for each day)
@@ -127,4 +210,94 @@ public class VfsLineageCollectorTest {
   public void testGetArtifactsForFile_noArtifacts_InvalidDate() throws Exception {
     List<String> artifacts = collector.listArtifactsForFile( "repo/validation/XYZ.ktr", "20159999" );
   }
+
+  @Test
+  public void testRebuildIndex() throws Exception {
+    useIndexedFolder();
+    assertEquals( 6, collector.rebuildIndex() );
+    assertTrue( new File( indexedFolder, "20150706/" + LineageArtifactIndex.INDEX_FILE_NAME ).exists() );
+    assertTrue( new File( indexedFolder, "20150707/" + LineageArtifactIndex.INDEX_FILE_NAME ).exists() );
+
+    assertEquals( 6, collector.listArtifacts().size() );
+    assertEquals( 2, collector.listArtifacts( "20150707" ).size() );
+    assertEquals( 4, collector.listArtifactsForFile( "validation/merge_join.ktr" ).size() );
+    assertEquals( 2, collector.listArtifactsForFile( "/repo/validation/strings_cut.ktr" ).size() );
+    assertEquals( 0, collector.listArtifactsForFile( "repo/validation/XYZ.ktr" ).size() );
+  }
+
+  @Test
+  public void testFirstRecordIndexesTheArtifactsAlreadyInTheFolder() throws Exception {
+    useIndexedFolder();
+    final File artifact = new File( indexedFolder, "20150707/repo/validation/new.ktr/1_new.graphml" );
+    FileUtils.write( artifact, "<graphml/>", StandardCharsets.UTF_8 );
+    LineageArtifactIndex.recordArtifact( KettleVFS.getFileObject( new File( indexedFolder, "20150707" ).getPath() ),
+      KettleVFS.getFileObject( artifact.getPath() ), "id1" );
+
+    assertTrue( new File( indexedFolder, "20150707/" + LineageArtifactIndex.INDEX_FILE_NAME ).exists() );
+    assertEquals( 3, collector.listArtifacts( "20150707" ).size() );
+    assertEquals( 7, collector.listArtifacts().size() );
+  }
+
+  @Test
+  public void testSegmentsOfOtherWritersAreMerged() throws Exception {
+    useIndexedFolder();
+    collector.rebuildIndex();
+    final File other = new File( indexedFolder, "20150707/repo/validation/other.ktr/1_other.graphml" );
+    FileUtils.write( other, "<graphml/>", StandardCharsets.UTF_8 );
+    // written by another process, which has a segment of its own
+    FileUtils.write( new File( indexedFolder, "20150707/" + LineageArtifactIndex.INDEX_FILE_NAME + "-other-id2" ),
+      "+\trepo/validation/other.ktr/1_other.graphml\tid2\t1\n", StandardCharsets.UTF_8 );
+    final File artifact = new File( indexedFolder, "20150707/repo/validation/new.ktr/1_new.graphml" );
+    FileUtils.write( artifact, "<graphml/>", StandardCharsets.UTF_8 );
+    LineageArtifactIndex.recordArtifact( KettleVFS.getFileObject( new File( indexedFolder, "20150707" ).getPath() ),
+      KettleVFS.getFileObject( artifact.getPath() ), "id1" );
+
+    final List<String> artifacts = collector.listArtifacts( "20150707" );
+    assertEquals( 4, artifacts.size() );
+    assertTrue( artifacts.get( 2 ).endsWith( "1_other.graphml" ) );
+    assertTrue( artifacts.get( 3 ).endsWith( "1_new.graphml" ) );
+
+    // a rebuild folds the segments into the index built from the folder contents
+    assertEquals( 4, LineageArtifactIndex.rebuild(
+      KettleVFS.getFileObject( new File( indexedFolder, "20150707" ).getPath() ) ) );
+    assertFalse(
+      new File( indexedFolder, "20150707/" + LineageArtifactIndex.INDEX_FILE_NAME + "-other-id2" ).exists() );
+    assertEquals( 4, collector.listArtifacts( "20150707" ).size() );
+  }
+
+  @Test
+  public void testIndexOfMissingFolderIsNotUsed() throws Exception {
+    useIndexedFolder();
+    // the index lists an artifact whose folder was removed by other means
+    FileUtils.write( new File( indexedFolder, "20150707/" + LineageArtifactIndex.INDEX_FILE_NAME ),
+      "+\tgone/validation/gone.ktr/1_gone.graphml\tid1\n", StandardCharsets.UTF_8 );
+
+    assertEquals( 2, collector.listArtifacts( "20150707" ).size() );
+  }
+
+  @Test
+  public void testInvalidatedIndexIsNotUsed() throws Exception {
+    useIndexedFolder();
+    collector.rebuildIndex();
+    LineageArtifactIndex.invalidate( KettleVFS.getFileObject( new File( indexedFolder, "20150707" ).getPath() ) );
+    final File artifact = new File( indexedFolder, "20150707/repo/validation/new.ktr/1_new.graphml" );
+    FileUtils.write( artifact, "<graphml/>", StandardCharsets.UTF_8 );
+
+    assertEquals( 3, collector.listArtifacts( "20150707" ).size() );
+  }
+
+  @Test
+  public void testListArtifactsFromIndex() throws Exception {
+    useIndexedFolder();
+    // the index is trusted over the folder content, which is not walked
+    FileUtils.write( new File( indexedFolder, "20150706/" + LineageArtifactIndex.INDEX_FILE_NAME ),
+      "+\trepo/validation/merge_join.ktr/1_merge_join.graphml\tid1\n"
+        + "+\trepo/validation/strings_cut.ktr/2_strings_cut.graphml\tid2\n"
+        + "-\trepo/validation/strings_cut.ktr\n", StandardCharsets.UTF_8 );
+
+    final List<String> artifacts = collector.listArtifacts( "20150706", "20150706" );
+    assertEquals( 1, artifacts.size() );
+    assertTrue( artifacts.get( 0 ).endsWith( "/20150706/repo/validation/merge_join.ktr/1_merge_join.graphml" ) );
+    assertEquals( 0, collector.listArtifactsForFile( "validation/strings_cut.ktr", "20150706", "20150706" ).size() );
+  }
 }
@@ -16,6 +16,8 @@ package org.pentaho.metaverse.impl;
 import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileDepthSelector;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileSystemManager;
@@ -37,9 +39,13 @@ import org.pentaho.metaverse.impl.model.ExecutionProfile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
+import java.util.List;
 import java.util.Random;
+import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.CoreMatchers.endsWith;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -152,6 +158,50 @@ public class VfsLineageWriterTest {
     }
   }
 
+  @Test
+  public void testCreateGzipOutputStream() throws IOException {
+    writer.setOutputCompression( VfsLineageWriter.COMPRESSION_GZIP );
+    try ( OutputStream os = writer.createOutputStream( holder, ".graphml" ) ) {
+      os.write( "<graphml/>".getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    final FileObject[] files = VFS.getManager().resolveFile( GOOD_OUTPUT_FOLDER ).findFiles( new FileDepthSelector( 1,
+      5 ) );
+    FileObject graphFile = null;
+    for ( final FileObject file : files ) {
+      if ( file.getName().getBaseName().endsWith( ".graphml" + VfsLineageWriter.GZIP_EXTENSION ) ) {
+        graphFile = file;
+      }
+    }
+    assertNotNull( graphFile );
+    try ( InputStream is = new GZIPInputStream( graphFile.getContent().getInputStream() ) ) {
+      assertEquals( "<graphml/>", IOUtils.toString( is, StandardCharsets.UTF_8 ) );
+    }
+  }
+
+  @Test
+  public void testCreateOutputStreamIndexesArtifact() throws Exception {
+    try ( OutputStream os = writer.createOutputStream( holder, ".graphml" ) ) {
+      assertNotNull( os );
+    }
+    List<String> artifacts = LineageArtifactIndex.readArtifacts( writer.getDateFolder( holder ) );
+    assertNotNull( artifacts );
+    assertEquals( 1, artifacts.size() );
+    assertThat( artifacts.get( 0 ), endsWith( "_test.graphml" ) );
+
+    writer.cleanOutput( holder );
+    assertTrue( LineageArtifactIndex.readArtifacts( writer.getDateFolder( holder ) ).isEmpty() );
+  }
+
+  @Test
+  public void testGetSetOutputCompression() {
+    assertEquals( VfsLineageWriter.COMPRESSION_NONE, writer.getOutputCompression() );
+    writer.setOutputCompression( "GZIP" );
+    assertEquals( VfsLineageWriter.COMPRESSION_GZIP, writer.getOutputCompression() );
+    writer.setOutputCompression( "zstd" );
+    assertEquals( VfsLineageWriter.COMPRESSION_NONE, writer.getOutputCompression() );
+  }
+
   @Test
   public void testGetDateFolder() throws KettleFileException, FileSystemException {
     assertNotNull( writer.getDateFolder( null ) );
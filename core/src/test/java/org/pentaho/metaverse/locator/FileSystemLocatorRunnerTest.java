@@ -0,0 +1,282 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.locator;
+
+import com.google.common.collect.Iterables;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.api.IDocumentEvent;
+import org.pentaho.metaverse.api.IDocumentListener;
+import org.pentaho.metaverse.impl.MetaverseBuilder;
+import org.pentaho.metaverse.testutils.MetaverseTestUtils;
+import org.pentaho.metaverse.util.MetaverseUtil;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the incremental scans of the FileSystemLocatorRunner
+ */
+public class FileSystemLocatorRunnerTest implements IDocumentListener {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Graph graph;
+  private FileSystemLocator locator;
+  private File root;
+  private File manifestFile;
+  private File trans;
+  private File job;
+  private List<String> events;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    KettleEnvironment.init();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    MetaverseUtil.setDocumentController( MetaverseTestUtils.getDocumentController() );
+    graph = new TinkerGraph();
+    locator = new FileSystemLocator( new ArrayList<IDocumentListener>() );
+    locator.setRepositoryId( "test" );
+    locator.setMetaverseBuilder( new MetaverseBuilder( graph ) );
+    locator.addDocumentListener( this );
+    root = folder.newFolder( "root" );
+    manifestFile = new File( folder.getRoot(), "manifest.txt" );
+    trans = new File( root, "trans.ktr" );
+    job = new File( new File( root, "jobs" ), "job.kjb" );
+    FileUtils.write( trans, "step1" );
+    FileUtils.write( job, "entry1" );
+    events = Collections.synchronizedList( new ArrayList<String>() );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    locator.stopScan();
+  }
+
+  private void scan() {
+    runner().run();
+  }
+
+  private FileSystemLocatorRunner runner() {
+    ScanManifest manifest = new ScanManifest( manifestFile );
+    try {
+      manifest.load();
+    } catch ( Exception e ) {
+      fail( e.getMessage() );
+    }
+    FileSystemLocatorRunner runner = new FileSystemLocatorRunner();
+    runner.setRoot( root );
+    runner.setLocator( locator );
+    runner.setManifest( manifest );
+    events.clear();
+    return runner;
+  }
+
+  private String[] contents( File file ) throws Exception {
+    List<String> names = new ArrayList<>();
+    for ( Vertex document : graph.getVertices( DictionaryConst.PROPERTY_PATH, file.getCanonicalPath() ) ) {
+      for ( Vertex child : document.getVertices( Direction.OUT, DictionaryConst.LINK_CONTAINS ) ) {
+        names.add( child.<String>getProperty( DictionaryConst.PROPERTY_NAME ) );
+      }
+    }
+    Collections.sort( names );
+    return names.toArray( new String[ names.size() ] );
+  }
+
+  @Test
+  public void testUnchangedDocumentsAreSkipped() throws Exception {
+    scan();
+    assertEquals( 2, events.size() );
+    assertTrue( manifestFile.exists() );
+
+    scan();
+    assertEquals( 0, events.size() );
+    scan();
+    assertEquals( 0, events.size() );
+    assertArrayEquals( new String[] { "step1" }, contents( trans ) );
+  }
+
+  @Test
+  public void testChangedDocumentsAreAnalyzedAgain() throws Exception {
+    scan();
+    scan();
+
+    FileUtils.write( trans, "step2" );
+    assertTrue( trans.setLastModified( trans.lastModified() + 2000 ) );
+    scan();
+    assertEquals( Collections.singletonList( trans.getCanonicalPath() ), events );
+    // the steps of the previous analysis are gone
+    assertArrayEquals( new String[] { "step2" }, contents( trans ) );
+    assertEquals( 1, Iterables.size( graph.getVertices( DictionaryConst.PROPERTY_PATH, trans.getCanonicalPath() ) ) );
+
+    // only touched
+    assertTrue( job.setLastModified( job.lastModified() + 2000 ) );
+    scan();
+    assertEquals( 0, events.size() );
+  }
+
+  @Test
+  public void testDeletedDocumentsArePruned() throws Exception {
+    scan();
+    assertTrue( job.delete() );
+    assertTrue( job.getParentFile().delete() );
+    scan();
+    assertEquals( 0, events.size() );
+    assertEquals( 0, contents( job ).length );
+    assertFalse( graph.getVertices( DictionaryConst.PROPERTY_PATH, job.getCanonicalPath() ).iterator().hasNext() );
+    assertArrayEquals( new String[] { "step1" }, contents( trans ) );
+
+    ScanManifest manifest = new ScanManifest( manifestFile );
+    manifest.load();
+    assertEquals( 1, manifest.size() );
+    assertNotNull( manifest.get( trans.getCanonicalPath() ) );
+  }
+
+  @Test
+  public void testRescanPrunesOnlyBelowTheFolder() throws Exception {
+    scan();
+    File jobs = job.getParentFile();
+    assertTrue( job.delete() );
+    assertTrue( trans.delete() );
+    File newJob = new File( jobs, "new.kjb" );
+    FileUtils.write( newJob, "new entry" );
+
+    // as the watcher does when it lost the events of the folder
+    FileSystemLocatorRunner runner = runner();
+    runner.rescan( jobs, jobs.getCanonicalPath() );
+    runner.saveManifest();
+    assertEquals( Collections.singletonList( newJob.getCanonicalPath() ), events );
+    assertEquals( 0, contents( job ).length );
+    assertArrayEquals( new String[] { "step1" }, contents( trans ) );
+
+    ScanManifest manifest = new ScanManifest( manifestFile );
+    manifest.load();
+    assertEquals( 2, manifest.size() );
+    assertNull( manifest.get( job.getCanonicalPath() ) );
+    assertNotNull( manifest.get( trans.getCanonicalPath() ) );
+    assertNotNull( manifest.get( newJob.getCanonicalPath() ) );
+  }
+
+  @Test
+  public void testLostAnalysisIsRedone() throws Exception {
+    scan();
+    scan();
+
+    // the metaverse was not persisted
+    for ( Vertex vertex : graph.getVertices() ) {
+      vertex.remove();
+    }
+    scan();
+    assertEquals( 2, events.size() );
+    assertArrayEquals( new String[] { "step1" }, contents( trans ) );
+  }
+
+  @Test
+  public void testLostAnalysisIsRedoneAfterOneScan() throws Exception {
+    scan();
+
+    // restarted on a metaverse that was not persisted, before any scan recorded what the analysis left in it
+    for ( Vertex vertex : graph.getVertices() ) {
+      vertex.remove();
+    }
+    scan();
+    assertEquals( 2, events.size() );
+    assertArrayEquals( new String[] { "step1" }, contents( trans ) );
+
+    scan();
+    assertEquals( 0, events.size() );
+  }
+
+  @Test
+  public void testManifestFileIsNotADocument() throws Exception {
+    manifestFile = new File( root, "manifest.txt" );
+    scan();
+    scan();
+    assertEquals( 0, events.size() );
+    ScanManifest manifest = new ScanManifest( manifestFile );
+    manifest.load();
+    assertEquals( 2, manifest.size() );
+  }
+
+  @Test
+  public void testWatchFolder() throws Exception {
+    locator.setRootFolder( root.getPath() );
+    locator.setManifestFile( manifestFile.getPath() );
+    locator.setWatchFolder( true );
+    locator.startScan();
+    waitFor( 2 );
+
+    events.clear();
+    File newTrans = new File( root, "new.ktr" );
+    FileUtils.write( newTrans, "new step" );
+    waitFor( 1 );
+    assertArrayEquals( new String[] { "new step" }, contents( newTrans ) );
+
+    assertTrue( newTrans.delete() );
+    long end = System.currentTimeMillis() + 20000;
+    while ( contents( newTrans ).length > 0 && System.currentTimeMillis() < end ) {
+      Thread.sleep( 100 );
+    }
+    assertEquals( 0, contents( newTrans ).length );
+  }
+
+  private void waitFor( int count ) throws InterruptedException {
+    long end = System.currentTimeMillis() + 20000;
+    while ( events.size() < count && System.currentTimeMillis() < end ) {
+      Thread.sleep( 100 );
+    }
+    assertEquals( count, events.size() );
+  }
+
+  /**
+   * Stands in for the document analyzers: the document contains one step named after the document contents
+   */
+  @Override
+  public void onEvent( IDocumentEvent event ) {
+    String path = event.getDocument().getStringID();
+    synchronized ( graph ) {
+      Vertex document = Iterables.getFirst( graph.getVertices( DictionaryConst.PROPERTY_PATH, path ), null );
+      if ( document == null ) {
+        document = graph.addVertex( null );
+        document.setProperty( DictionaryConst.PROPERTY_PATH, path );
+        document.setProperty( DictionaryConst.PROPERTY_LOGICAL_ID, path );
+      }
+      String content = (String) event.getDocument().getContent();
+      Vertex step = graph.addVertex( null );
+      step.setProperty( DictionaryConst.PROPERTY_NAME, content );
+      step.setProperty( DictionaryConst.PROPERTY_LOGICAL_ID, path + "/" + content );
+      graph.addEdge( null, document, step, DictionaryConst.LINK_CONTAINS );
+    }
+    events.add( path );
+  }
+}
@@ -0,0 +1,204 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.locator;
+
+import com.google.common.collect.Iterables;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.api.IDocumentEvent;
+import org.pentaho.metaverse.api.IDocumentListener;
+import org.pentaho.metaverse.impl.MetaverseBuilder;
+import org.pentaho.metaverse.testutils.MetaverseTestUtils;
+import org.pentaho.metaverse.util.MetaverseUtil;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the incremental scans of the RepositoryLocatorRunner
+ */
+public class RepositoryLocatorRunnerTest implements IDocumentListener {
+
+  private Graph graph;
+  private RepositoryLocator locator;
+  private ScanManifest manifest;
+  private List<RepositoryFileTree> tree;
+  private RepositoryFile trans;
+  private RepositoryFile job;
+  private List<String> events;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    KettleEnvironment.init();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    MetaverseUtil.setDocumentController( MetaverseTestUtils.getDocumentController() );
+    graph = new TinkerGraph();
+    locator = new RepositoryLocator( new ArrayList<IDocumentListener>() ) {
+      @Override protected IUnifiedRepository getUnifiedRepository( IPentahoSession session ) throws Exception {
+        return null;
+      }
+
+      @Override protected Object getContents( RepositoryFile locatedItem ) throws Exception {
+        return "step" + locatedItem.getVersionId();
+      }
+
+      @Override public URI getRootUri() {
+        return null;
+      }
+    };
+    locator.setRepositoryId( "test" );
+    locator.setMetaverseBuilder( new MetaverseBuilder( graph ) );
+    locator.addDocumentListener( this );
+    manifest = new ScanManifest( null );
+    trans = file( "/public/trans.ktr", "1" );
+    job = file( "/public/jobs/job.kjb", "1" );
+    tree = new ArrayList<>();
+    tree.add( folder( node( trans ), folder( node( job ) ) ) );
+    events = new ArrayList<>();
+  }
+
+  private RepositoryFile file( String path, String versionId ) {
+    RepositoryFile file = mock( RepositoryFile.class );
+    when( file.getPath() ).thenReturn( path );
+    when( file.getName() ).thenReturn( path.substring( path.lastIndexOf( '/' ) + 1 ) );
+    when( file.getFileSize() ).thenReturn( 10L );
+    when( file.getLastModifiedDate() ).thenReturn( new Date( 1000L * Integer.parseInt( versionId ) ) );
+    when( file.getVersionId() ).thenReturn( versionId );
+    return file;
+  }
+
+  private RepositoryFileTree node( RepositoryFile file ) {
+    RepositoryFileTree node = mock( RepositoryFileTree.class );
+    when( node.getFile() ).thenReturn( file );
+    return node;
+  }
+
+  private RepositoryFileTree folder( RepositoryFileTree... children ) {
+    RepositoryFile file = mock( RepositoryFile.class );
+    when( file.isFolder() ).thenReturn( true );
+    RepositoryFileTree folder = node( file );
+    List<RepositoryFileTree> kids = new ArrayList<>();
+    Collections.addAll( kids, children );
+    when( folder.getChildren() ).thenReturn( kids );
+    return folder;
+  }
+
+  private void scan() {
+    RepositoryLocatorRunner runner = new RepositoryLocatorRunner();
+    runner.setRoot( tree );
+    runner.setLocator( locator );
+    runner.setManifest( manifest );
+    events.clear();
+    runner.run();
+  }
+
+  private String[] contents( String path ) {
+    List<String> names = new ArrayList<>();
+    for ( Vertex document : graph.getVertices( DictionaryConst.PROPERTY_PATH, path ) ) {
+      for ( Vertex child : document.getVertices( Direction.OUT, DictionaryConst.LINK_CONTAINS ) ) {
+        names.add( child.<String>getProperty( DictionaryConst.PROPERTY_NAME ) );
+      }
+    }
+    Collections.sort( names );
+    return names.toArray( new String[ names.size() ] );
+  }
+
+  @Test
+  public void testUnchangedDocumentsAreSkipped() throws Exception {
+    scan();
+    assertEquals( 2, events.size() );
+    scan();
+    assertEquals( 0, events.size() );
+    scan();
+    assertEquals( 0, events.size() );
+    assertArrayEquals( new String[] { "step1" }, contents( "/public/trans.ktr" ) );
+  }
+
+  @Test
+  public void testNewVersionsAreAnalyzedAgain() throws Exception {
+    scan();
+    scan();
+
+    RepositoryFile newTrans = file( "/public/trans.ktr", "2" );
+    tree.set( 0, folder( node( newTrans ), folder( node( job ) ) ) );
+    scan();
+    assertEquals( Collections.singletonList( "/public/trans.ktr" ), events );
+    assertArrayEquals( new String[] { "step2" }, contents( "/public/trans.ktr" ) );
+  }
+
+  @Test
+  public void testDeletedDocumentsArePruned() throws Exception {
+    scan();
+    tree.set( 0, folder( node( trans ) ) );
+    scan();
+    assertEquals( 0, events.size() );
+    assertEquals( 0, contents( "/public/jobs/job.kjb" ).length );
+    assertArrayEquals( new String[] { "step1" }, contents( "/public/trans.ktr" ) );
+    assertEquals( 1, manifest.size() );
+  }
+
+  @Test
+  public void testLostAnalysisIsRedoneAfterOneScan() throws Exception {
+    scan();
+    for ( Vertex vertex : graph.getVertices() ) {
+      vertex.remove();
+    }
+    scan();
+    assertEquals( 2, events.size() );
+    assertArrayEquals( new String[] { "step1" }, contents( "/public/trans.ktr" ) );
+  }
+
+  /**
+   * Stands in for the document analyzers: the document contains one step named after the document contents
+   */
+  @Override
+  public void onEvent( IDocumentEvent event ) {
+    String path = event.getDocument().getStringID();
+    synchronized ( graph ) {
+      Vertex document = Iterables.getFirst( graph.getVertices( DictionaryConst.PROPERTY_PATH, path ), null );
+      if ( document == null ) {
+        document = graph.addVertex( null );
+        document.setProperty( DictionaryConst.PROPERTY_PATH, path );
+        document.setProperty( DictionaryConst.PROPERTY_LOGICAL_ID, path );
+      }
+      String content = (String) event.getDocument().getContent();
+      Vertex step = graph.addVertex( null );
+      step.setProperty( DictionaryConst.PROPERTY_NAME, content );
+      step.setProperty( DictionaryConst.PROPERTY_LOGICAL_ID, path + "/" + content );
+      graph.addEdge( null, document, step, DictionaryConst.LINK_CONTAINS );
+    }
+    events.add( path );
+  }
+}
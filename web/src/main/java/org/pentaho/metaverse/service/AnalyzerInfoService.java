@@ -21,6 +21,10 @@ import org.pentaho.metaverse.api.analyzer.kettle.jobentry.IJobEntryAnalyzer;
 import org.pentaho.metaverse.api.analyzer.kettle.jobentry.IJobEntryAnalyzerProvider;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IStepAnalyzer;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IStepAnalyzerProvider;
+import org.pentaho.metaverse.graph.DesignGraphCache;
+import org.pentaho.metaverse.graph.LineageGraphCompletionService;
+import org.pentaho.metaverse.impl.LineageExecutor;
+import org.pentaho.metaverse.impl.MetaverseCompletionService;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -31,6 +35,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -133,6 +138,62 @@ public class AnalyzerInfoService {
     return Response.ok( analyzers ).build();
   }
 
+  /**
+   * Gets the metrics of the worker pools that run lineage analysis, graph and writing tasks.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho-di/osgi/cxf/lineage/info/executors
+   * </p>
+   *
+   * @return List of executor metrics
+   *
+   * <p><b>Example Response:</b></p>
+   *    <pre function="syntax.js">
+   *      [ { name: "lineage-writer", poolSize: 4, backpressure: "block", queueDepth: 0, queueCapacity: 1000,
+   *          activeWorkers: 1, finishedTasks: 42, droppedTasks: 0, averageTaskLatencyMillis: 12.5,
+   *          maxTaskLatencyMillis: 80.1 } ]
+   *    </pre>
+   */
+  @GET
+  @Path( "/executors" )
+  @Produces( { MediaType.APPLICATION_JSON } )
+  @StatusCodes( {
+    @ResponseCode( code = OK, condition = "Successfully listed the executor metrics" ),
+    @ResponseCode( code = SERVER_ERROR, condition = "Server Error." )
+  } )
+  public Response getExecutorMetrics() {
+    List<Map<String, Object>> metrics = new ArrayList<>();
+    metrics.add( MetaverseCompletionService.getInstance().getExecutor().getMetrics() );
+    metrics.add( LineageGraphCompletionService.getInstance().getExecutor().getMetrics() );
+    metrics.add( LineageExecutor.getWriterInstance().getMetrics() );
+    return Response.ok( metrics ).build();
+  }
+
+  /**
+   * Gets the metrics of the cache of analyzed transformation graphs.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho-di/osgi/cxf/lineage/info/caches/design
+   * </p>
+   *
+   * @return The cache metrics
+   *
+   * <p><b>Example Response:</b></p>
+   *    <pre function="syntax.js">
+   *      { size: 400, maximumSize: 500, hitCount: 3600, missCount: 400, hitRate: 0.9, evictionCount: 0 }
+   *    </pre>
+   */
+  @GET
+  @Path( "/caches/design" )
+  @Produces( { MediaType.APPLICATION_JSON } )
+  @StatusCodes( {
+    @ResponseCode( code = OK, condition = "Successfully listed the cache metrics" ),
+    @ResponseCode( code = SERVER_ERROR, condition = "Server Error." )
+  } )
+  public Response getDesignGraphCacheMetrics() {
+    return Response.ok( DesignGraphCache.getInstance().getMetrics() ).build();
+  }
+
   class AnalyzerInfoComparator implements Comparator<AnalyzerInfo> {
     @Override
     public int compare( AnalyzerInfo left, AnalyzerInfo right ) {
@@ -352,6 +352,34 @@ public class MetaverseService {
     }
   }
 
+  /**
+   * Rebuilds the index of the lineage artifacts from the artifacts in the lineage output folder, for artifacts that
+   * were copied, moved or deleted by hand.
+   *
+   * <p><b>Example Request:</b><br />
+   *    POST pentaho-di/osgi/cxf/lineage/api/index/rebuild
+   * </p>
+   *
+   * @return the number of indexed artifacts
+   */
+  @POST
+  @Path( "/index/rebuild" )
+  @Produces( { MediaType.TEXT_PLAIN } )
+  @StatusCodes ( {
+    @ResponseCode ( code = OK, condition = "Successfully rebuilt the index." ),
+    @ResponseCode ( code = SERVER_ERROR, condition = "Server Error." )
+  } )
+  public Response rebuildIndex() {
+    if ( lineageCollector == null ) {
+      return Response.serverError().entity( Messages.getString( "ERROR.LineageCollector.IsNull" ) ).build();
+    }
+    try {
+      return Response.ok( String.valueOf( lineageCollector.rebuildIndex() ) ).build();
+    } catch ( UnsupportedOperationException | IllegalArgumentException e ) {
+      return Response.serverError().entity( Messages.getString( "ERROR.LineageIndex.CannotRebuild" ) ).build();
+    }
+  }
+
 
   /**
    * Makes sure that the metaverse is fully populated.
@@ -29,6 +29,7 @@ import org.pentaho.metaverse.api.analyzer.kettle.step.IStepAnalyzerProvider;
 import javax.ws.rs.core.Response;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -96,4 +97,23 @@ public class AnalyzerInfoServiceTest {
     assertEquals( transJobEntryAnalyzer.getSupportedEntries().iterator().next().getSimpleName(), responseList.get( 0 ).getMeta() );
 
   }
+
+  @Test
+  public void testGetExecutorMetrics() throws Exception {
+    Response metrics = service.getExecutorMetrics();
+
+    assertEquals( Response.Status.OK.getStatusCode(), metrics.getStatus() );
+    List<Map<String, Object>> responseList = (List<Map<String, Object>>) metrics.getEntity();
+    assertEquals( 3, responseList.size() );
+    assertEquals( "lineage-writer", responseList.get( 2 ).get( "name" ) );
+    assertTrue( responseList.get( 2 ).containsKey( "queueDepth" ) );
+  }
+
+  @Test
+  public void testGetDesignGraphCacheMetrics() throws Exception {
+    Response metrics = service.getDesignGraphCacheMetrics();
+
+    assertEquals( Response.Status.OK.getStatusCode(), metrics.getStatus() );
+    assertTrue( ( (Map<String, Object>) metrics.getEntity() ).containsKey( "hitRate" ) );
+  }
 }
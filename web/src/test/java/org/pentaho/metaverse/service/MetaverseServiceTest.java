@@ -378,6 +378,33 @@ public class MetaverseServiceTest {
     assertEquals( Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), response.getStatus() );
   }
 
+  @Test
+  public void testRebuildIndex() throws Exception {
+    service.setLineageCollector( mockCollector );
+    when( mockCollector.rebuildIndex() ).thenReturn( 6 );
+
+    Response response = service.rebuildIndex();
+    assertEquals( Response.Status.OK.getStatusCode(), response.getStatus() );
+    assertEquals( "6", response.getEntity() );
+  }
+
+  @Test
+  public void testRebuildIndex_unsupported() throws Exception {
+    service.setLineageCollector( mockCollector );
+    when( mockCollector.rebuildIndex() ).thenThrow( new UnsupportedOperationException() );
+
+    Response response = service.rebuildIndex();
+    assertEquals( Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), response.getStatus() );
+  }
+
+  @Test
+  public void testRebuildIndex_nullLineageCollector() throws Exception {
+    service.setLineageCollector( null );
+
+    Response response = service.rebuildIndex();
+    assertEquals( Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), response.getStatus() );
+  }
+
   @Test
   public void testDownload_forSpecificKtr_startingDate() throws Exception {
     service.setLineageCollector( mockCollector );